@@ -7,6 +7,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
+import org.springframework.security.authorization.AuthorizationDecision;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.oauth2.jwt.JwtDecoders;
 import org.springframework.security.web.SecurityFilterChain;
@@ -43,6 +44,8 @@ public class AuthenticationConfiguration {
 
             log.trace("Got jwt issuer URI {} from configuration!", jwtIssuerURL);
 
+            final String adminRole = configurator.getString("Authentication.OIDC.adminRole");
+
             // Routes
 
             final String recipes = "/recipes/**";
@@ -52,6 +55,8 @@ public class AuthenticationConfiguration {
             final String user = "/user/**";
             final String images = "/images";
             final String image = "/image/**";
+            final String health = "/actuator/health/**";
+            final String actuator = "/actuator/**";
 
             http.authorizeHttpRequests(authorizeRequests -> authorizeRequests
                             .requestMatchers(HttpMethod.POST, recipes).authenticated()
@@ -65,6 +70,12 @@ public class AuthenticationConfiguration {
                             .requestMatchers(HttpMethod.POST, images).authenticated()
                             .requestMatchers(HttpMethod.DELETE, image).authenticated()
                             .requestMatchers(HttpMethod.POST, image).authenticated()
+                            // Apart from the health check, actuator endpoints expose internals and are reserved to admins.
+                            // Roles are compared ignoring their case, like the admin checks of the API do.
+                            .requestMatchers(health).permitAll()
+                            .requestMatchers(actuator).access((authentication, context) -> new AuthorizationDecision(
+                                    authentication.get().getAuthorities().stream()
+                                            .anyMatch(grantedAuthority -> grantedAuthority.getAuthority().equalsIgnoreCase("ROLE_" + adminRole))))
                             .anyRequest().permitAll()
                     )
                     .oauth2ResourceServer(oauth2ResourceServer ->
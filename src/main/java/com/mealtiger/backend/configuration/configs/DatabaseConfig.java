@@ -24,9 +24,15 @@ public class DatabaseConfig {
      */
     private final String databaseName;
 
+    /**
+     * In-memory filter of existing image and recipe IDs.
+     */
+    private final IdFilter idFilter;
+
     public DatabaseConfig() {
         mongoDBURL = "";
         databaseName = "MealTigerDB";
+        idFilter = new IdFilter();
     }
 
     @ConfigNode(name = "mongoDBURL", envKey = "DBURL")
@@ -38,4 +44,31 @@ public class DatabaseConfig {
     public String getDatabaseName() {
         return databaseName;
     }
+
+    @ConfigNode(name = "IdFilter.enabled", envKey = "ID_FILTER")
+    public boolean getIdFilterEnabled() {
+        return idFilter.enabled;
+    }
+
+    @ConfigNode(name = "IdFilter.expectedIds")
+    public int getIdFilterExpectedIds() {
+        return idFilter.expectedIds;
+    }
+
+    @ConfigNode(name = "IdFilter.falsePositiveRate")
+    public double getIdFilterFalsePositiveRate() {
+        return idFilter.falsePositiveRate;
+    }
+
+    static class IdFilter {
+        private final boolean enabled;
+        private final int expectedIds;
+        private final double falsePositiveRate;
+
+        private IdFilter() {
+            enabled = false;
+            expectedIds = 100000;
+            falsePositiveRate = 0.01;
+        }
+    }
 }
@@ -21,12 +21,27 @@ public class ImageConfig {
     private final BMP bmp;
     private final WebP webp;
 
+    private final Processing processing;
+    private final Limits limits;
+    private final Variants variants;
+    private final Quantization quantization;
+    private final Cache cache;
+    private final Storage storage;
+    private final Sweeper sweeper;
+
     public ImageConfig() {
         png = new PNG();
         jpeg = new JPEG();
         gif = new GIF();
         bmp = new BMP();
         webp = new WebP();
+        processing = new Processing();
+        limits = new Limits();
+        variants = new Variants();
+        quantization = new Quantization();
+        cache = new Cache();
+        storage = new Storage();
+        sweeper = new Sweeper();
         imagePath = "images/";
         maxFileSize = "5MB";
     }
@@ -79,11 +94,28 @@ public class ImageConfig {
         return stringBuilder.toString();
     }
 
+    @ConfigNode(name = "servedImageVariants")
+    public String getServedImageVariants() {
+        StringBuilder stringBuilder = new StringBuilder();
+        if (variants.thumb > 0) {
+            stringBuilder.append("thumb:").append(variants.thumb).append(",");
+        }
+        if (variants.medium > 0) {
+            stringBuilder.append("medium:").append(variants.medium);
+        }
+        return stringBuilder.toString();
+    }
+
     @ConfigNode(name = "PNG.compressionQuality")
     public double getPNGCompressionQuality() {
         return png.compressionQuality;
     }
 
+    @ConfigNode(name = "PNG.palette")
+    public boolean getPNGPalette() {
+        return png.palette;
+    }
+
     @ConfigNode(name = "JPEG.compressionQuality")
     public double getJPEGCompressionQuality() {
         return jpeg.compressionQuality;
@@ -124,20 +156,207 @@ public class ImageConfig {
         return webp.losslessSpeedFactor;
     }
 
+    @ConfigNode(name = "WebP.encoderPath", envKey = "WEBP_ENCODER_PATH")
+    public String getWebPEncoderPath() {
+        return webp.encoderPath;
+    }
+
+    @ConfigNode(name = "WebP.scratchDirectory", envKey = "WEBP_SCRATCH_DIRECTORY")
+    public String getWebPScratchDirectory() {
+        return webp.scratchDirectory;
+    }
+
+    @ConfigNode(name = "WebP.encoderTimeout")
+    public int getWebPEncoderTimeout() {
+        return webp.encoderTimeout;
+    }
+
     @ConfigNode(name = "imagePath", envKey = "IMAGE_PATH")
     public String getImagePath() {
         return imagePath;
     }
 
+    @ConfigNode(name = "Processing.parallelism")
+    public int getProcessingParallelism() {
+        return processing.parallelism;
+    }
+
+    @ConfigNode(name = "Processing.queueCapacity")
+    public int getProcessingQueueCapacity() {
+        return processing.queueCapacity;
+    }
+
+    @ConfigNode(name = "Processing.retryAfter")
+    public int getProcessingRetryAfter() {
+        return processing.retryAfter;
+    }
+
+    @ConfigNode(name = "Processing.maxDimension")
+    public int getProcessingMaxDimension() {
+        return processing.maxDimension;
+    }
+
+    @ConfigNode(name = "Processing.batchParallelism")
+    public int getProcessingBatchParallelism() {
+        return processing.batchParallelism;
+    }
+
+    @ConfigNode(name = "Processing.lazyConversion", envKey = "LAZY_IMAGE_CONVERSION")
+    public boolean getProcessingLazyConversion() {
+        return processing.lazyConversion;
+    }
+
+    @ConfigNode(name = "Quantization.algorithm")
+    public String getQuantizationAlgorithm() {
+        return quantization.algorithm;
+    }
+
+    @ConfigNode(name = "Quantization.parallelism")
+    public int getQuantizationParallelism() {
+        return quantization.parallelism;
+    }
+
+    @ConfigNode(name = "Limits.maxPixels")
+    public int getLimitsMaxPixels() {
+        return limits.maxPixels;
+    }
+
+    @ConfigNode(name = "Limits.maxDecodeMemory", envKey = "MAX_IMAGE_DECODE_MEMORY")
+    public String getLimitsMaxDecodeMemory() {
+        return limits.maxDecodeMemory;
+    }
+
+    @ConfigNode(name = "Limits.memoryBudget", envKey = "IMAGE_MEMORY_BUDGET")
+    public double getLimitsMemoryBudget() {
+        return limits.memoryBudget;
+    }
+
+    @ConfigNode(name = "Limits.memoryBudgetTimeout")
+    public int getLimitsMemoryBudgetTimeout() {
+        return limits.memoryBudgetTimeout;
+    }
+
+    @ConfigNode(name = "Cache.maxSize", envKey = "IMAGE_CACHE_SIZE")
+    public String getCacheMaxSize() {
+        return cache.maxSize;
+    }
+
+    @ConfigNode(name = "Cache.maxEntrySize")
+    public String getCacheMaxEntrySize() {
+        return cache.maxEntrySize;
+    }
+
+    @ConfigNode(name = "Cache.existingImages")
+    public int getCacheExistingImages() {
+        return cache.existingImages;
+    }
+
+    @ConfigNode(name = "Storage.backend", envKey = "IMAGE_STORE")
+    public String getStorageBackend() {
+        return storage.backend;
+    }
+
+    @ConfigNode(name = "Storage.fanOutLevels")
+    public int getStorageFanOutLevels() {
+        return storage.fanOutLevels;
+    }
+
+    @ConfigNode(name = "Storage.migrate", envKey = "MIGRATE_IMAGE_STORE")
+    public boolean getStorageMigrate() {
+        return storage.migrate;
+    }
+
+    @ConfigNode(name = "Storage.migrationBatchSize")
+    public int getStorageMigrationBatchSize() {
+        return storage.migrationBatchSize;
+    }
+
+    @ConfigNode(name = "Storage.migrationPause")
+    public int getStorageMigrationPause() {
+        return storage.migrationPause;
+    }
+
+    @ConfigNode(name = "Storage.GridFS.bucket")
+    public String getStorageGridFSBucket() {
+        return storage.gridfs.bucket;
+    }
+
+    @ConfigNode(name = "Storage.GridFS.chunkSize")
+    public String getStorageGridFSChunkSize() {
+        return storage.gridfs.chunkSize;
+    }
+
+    @ConfigNode(name = "Storage.S3.endpoint", envKey = "S3_ENDPOINT")
+    public String getStorageS3Endpoint() {
+        return storage.s3.endpoint;
+    }
+
+    @ConfigNode(name = "Storage.S3.region", envKey = "S3_REGION")
+    public String getStorageS3Region() {
+        return storage.s3.region;
+    }
+
+    @ConfigNode(name = "Storage.S3.bucket", envKey = "S3_BUCKET")
+    public String getStorageS3Bucket() {
+        return storage.s3.bucket;
+    }
+
+    @ConfigNode(name = "Storage.S3.accessKey", envKey = "S3_ACCESS_KEY")
+    public String getStorageS3AccessKey() {
+        return storage.s3.accessKey;
+    }
+
+    @ConfigNode(name = "Storage.S3.secretKey", envKey = "S3_SECRET_KEY")
+    public String getStorageS3SecretKey() {
+        return storage.s3.secretKey;
+    }
+
+    @ConfigNode(name = "Storage.S3.requestTimeout")
+    public int getStorageS3RequestTimeout() {
+        return storage.s3.requestTimeout;
+    }
+
+    @ConfigNode(name = "Sweeper.enabled", envKey = "IMAGE_SWEEPER")
+    public boolean getSweeperEnabled() {
+        return sweeper.enabled;
+    }
+
+    @ConfigNode(name = "Sweeper.interval")
+    public int getSweeperInterval() {
+        return sweeper.interval;
+    }
+
+    @ConfigNode(name = "Sweeper.gracePeriod")
+    public int getSweeperGracePeriod() {
+        return sweeper.gracePeriod;
+    }
+
+    @ConfigNode(name = "Sweeper.batchSize")
+    public int getSweeperBatchSize() {
+        return sweeper.batchSize;
+    }
+
+    @ConfigNode(name = "Sweeper.pause")
+    public int getSweeperPause() {
+        return sweeper.pause;
+    }
+
+    @ConfigNode(name = "Sweeper.leaseDuration")
+    public int getSweeperLeaseDuration() {
+        return sweeper.leaseDuration;
+    }
+
      static class PNG {
         private final boolean enabled;
         private final double compressionQuality;
         private final double qualityWeighting;
+        private final boolean palette;
 
         private PNG() {
             enabled = false;
             compressionQuality = 75;
             qualityWeighting = 0.8;
+            palette = false;
         }
     }
 
@@ -187,6 +406,9 @@ public class ImageConfig {
         private final int compressionFactor;
         private final int compressionMethod;
         private final int losslessSpeedFactor;
+        private final String encoderPath;
+        private final String scratchDirectory;
+        private final int encoderTimeout;
 
         private WebP() {
             enabled = true;
@@ -195,6 +417,154 @@ public class ImageConfig {
             compressionFactor = 75;
             compressionMethod = 4;
             losslessSpeedFactor = 6;
+            // Empty means that images are encoded with scrimage.
+            encoderPath = "";
+            // Empty means that /dev/shm is used if available, the temporary directory otherwise.
+            scratchDirectory = "";
+            encoderTimeout = 60000;
+        }
+    }
+
+    static class Processing {
+        private final int parallelism;
+        private final int queueCapacity;
+        private final int retryAfter;
+        private final boolean lazyConversion;
+        private final int maxDimension;
+        private final int batchParallelism;
+
+        private Processing() {
+            // 0 means that the number of available processors is used.
+            parallelism = 0;
+            queueCapacity = 64;
+            retryAfter = 5;
+            lazyConversion = false;
+            // 0 means that images are processed at the resolution they are uploaded in.
+            maxDimension = 2048;
+            batchParallelism = 4;
+        }
+    }
+
+    static class Limits {
+        private final int maxPixels;
+        private final String maxDecodeMemory;
+        private final double memoryBudget;
+        private final int memoryBudgetTimeout;
+
+        private Limits() {
+            maxPixels = 50000000;
+            maxDecodeMemory = "256MB";
+            memoryBudget = 0.5;
+            memoryBudgetTimeout = 10000;
+        }
+    }
+
+    static class Variants {
+        private final int thumb;
+        private final int medium;
+
+        private Variants() {
+            thumb = 320;
+            medium = 1024;
+        }
+    }
+
+    static class Cache {
+        private final String maxSize;
+        private final String maxEntrySize;
+        private final int existingImages;
+
+        private Cache() {
+            // 0 disables the cache.
+            maxSize = "64MB";
+            maxEntrySize = "1MB";
+            // Number of image IDs, 0 disables the cache.
+            existingImages = 10000;
+        }
+    }
+
+    static class Storage {
+        private final String backend;
+        private final int fanOutLevels;
+        private final boolean migrate;
+        private final int migrationBatchSize;
+        private final int migrationPause;
+        private final GridFS gridfs;
+        private final S3 s3;
+
+        private Storage() {
+            // filesystem, gridfs, s3
+            backend = "filesystem";
+            // 0 keeps all image directories directly in the image path.
+            fanOutLevels = 2;
+            migrate = false;
+            migrationBatchSize = 100;
+            // Milliseconds
+            migrationPause = 1000;
+            gridfs = new GridFS();
+            s3 = new S3();
+        }
+    }
+
+    static class Sweeper {
+        private final boolean enabled;
+        private final int interval;
+        private final int gracePeriod;
+        private final int batchSize;
+        private final int pause;
+        private final int leaseDuration;
+
+        private Sweeper() {
+            enabled = false;
+            // Minutes
+            interval = 360;
+            // Minutes
+            gracePeriod = 1440;
+            batchSize = 100;
+            // Milliseconds
+            pause = 1000;
+            // Minutes
+            leaseDuration = 10;
+        }
+    }
+
+    static class GridFS {
+        private final String bucket;
+        private final String chunkSize;
+
+        private GridFS() {
+            bucket = "images";
+            chunkSize = "255KB";
+        }
+    }
+
+    static class S3 {
+        private final String endpoint;
+        private final String region;
+        private final String bucket;
+        private final String accessKey;
+        private final String secretKey;
+        private final int requestTimeout;
+
+        private S3() {
+            endpoint = "";
+            region = "us-east-1";
+            bucket = "images";
+            accessKey = "";
+            secretKey = "";
+            // Milliseconds
+            requestTimeout = 10000;
+        }
+    }
+
+    static class Quantization {
+        private final String algorithm;
+        private final int parallelism;
+
+        private Quantization() {
+            // octree, java2d
+            algorithm = "octree";
+            parallelism = 1;
         }
     }
 }
@@ -13,10 +13,12 @@ import org.springframework.boot.logging.LogLevel;
 @SuppressWarnings("unused")
 public class MainConfig {
     private final Logging logging;
+    private final Monitoring monitoring;
 
     @SuppressWarnings("unused")
     public MainConfig() {
         logging = new Logging();
+        monitoring = new Monitoring();
     }
 
     @ConfigNode(name = "Logging.logLevel", envKey = "LOGLEVEL", springProperties = "logging.level.root")
@@ -25,6 +27,12 @@ public class MainConfig {
         return logging.logLevel;
     }
 
+    @ConfigNode(name = "Monitoring.exposedEndpoints", envKey = "MONITORING_ENDPOINTS", springProperties = "management.endpoints.web.exposure.include")
+    @SuppressWarnings("unused")
+    public String getMonitoringExposedEndpoints() {
+        return monitoring.exposedEndpoints;
+    }
+
     static class Logging {
         private final String logLevel;
 
@@ -33,4 +41,12 @@ public class MainConfig {
         }
     }
 
+    static class Monitoring {
+        private final String exposedEndpoints;
+
+        Monitoring() {
+            exposedEndpoints = "health";
+        }
+    }
+
 }
@@ -0,0 +1,360 @@
+package com.mealtiger.backend.database.filter;
+
+import com.mealtiger.backend.configuration.Configurator;
+import com.mealtiger.backend.database.model.image_metadata.ImageMetadata;
+import com.mealtiger.backend.database.model.recipe.Recipe;
+import com.mealtiger.backend.database.repository.ImageMetadataRepository;
+import com.mealtiger.backend.database.repository.RecipeRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import jakarta.annotation.PreDestroy;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * This class filters lookups of image and recipe IDs which do not exist, so that they are answered without touching
+ * the database or the image store. Every entity has a Bloom filter of its IDs, which is built from the database
+ * once the application is ready. IDs are added whenever an entity is saved, regardless of the repository or template
+ * it has been saved with.
+ * Until a filter has been built, all IDs pass it.
+ * <p>
+ * Deleted IDs cannot be removed from a Bloom filter and keep passing it until the filter is rebuilt. A filter is rebuilt
+ * in the background once a quarter of its IDs has been deleted or once it holds more IDs than it has been sized for.
+ * <p>
+ * Every instance only learns about the IDs created by itself. Thus, the filter is disabled by default and cannot be enabled
+ * while images are stored in GridFS or S3, which are meant to be shared by several instances.
+ */
+@Component
+public class ExistenceFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(ExistenceFilter.class);
+
+    /**
+     * Entities whose IDs are filtered.
+     */
+    public enum Entity {
+        IMAGES, RECIPES
+    }
+
+    private final boolean enabled;
+    private final long expectedIds;
+    private final double falsePositiveRate;
+
+    private final Map<Entity, FilterState> filters = new EnumMap<>(Entity.class);
+    private final ExecutorService rebuildExecutor;
+
+    @Autowired
+    public ExistenceFilter(Configurator configurator,
+                           ImageMetadataRepository imageMetadataRepository,
+                           RecipeRepository recipeRepository,
+                           MeterRegistry meterRegistry) {
+        this(isEnabled(configurator),
+                configurator.getInteger("Database.IdFilter.expectedIds"),
+                configurator.getDouble("Database.IdFilter.falsePositiveRate"),
+                Map.of(Entity.IMAGES, new IdSource(imageMetadataRepository::count,
+                                () -> imageMetadataRepository.streamAllIds().map(ImageMetadata::getId)),
+                        Entity.RECIPES, new IdSource(recipeRepository::count,
+                                () -> recipeRepository.streamAllIds().map(Recipe::getId))),
+                meterRegistry);
+    }
+
+    /**
+     * Package-local constructor for unit tests.
+     */
+    ExistenceFilter(boolean enabled, long expectedIds, double falsePositiveRate, Map<Entity, IdSource> idSources, MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.expectedIds = expectedIds;
+        this.falsePositiveRate = falsePositiveRate;
+
+        if (!enabled) {
+            log.debug("ID filter is disabled.");
+            rebuildExecutor = null;
+            return;
+        }
+
+        rebuildExecutor = Executors.newFixedThreadPool(Entity.values().length, runnable -> {
+            Thread rebuildThread = new Thread(runnable, "id-filter-rebuild");
+            rebuildThread.setDaemon(true);
+            return rebuildThread;
+        });
+
+        for (Entity entity : Entity.values()) {
+            String name = entity.name().toLowerCase();
+            FilterState filterState = new FilterState(idSources.get(entity),
+                    Counter.builder("id.filter.rejections")
+                            .tag("filter", name)
+                            .description("Lookups of IDs which do not exist answered by the filter")
+                            .register(meterRegistry));
+
+            Gauge.builder("id.filter.false.positive.rate", filterState, state -> state.current == null ? 0 : state.current.getFalsePositiveRate())
+                    .tag("filter", name)
+                    .description("Estimated probability that an ID which does not exist passes the filter")
+                    .register(meterRegistry);
+            Gauge.builder("id.filter.memory", filterState, state -> state.current == null ? 0 : state.current.getMemoryBytes())
+                    .tag("filter", name)
+                    .baseUnit(BaseUnits.BYTES)
+                    .description("Memory held by the filter")
+                    .register(meterRegistry);
+            Gauge.builder("id.filter.ids", filterState, state -> state.current == null ? 0 : state.current.getIdCount())
+                    .tag("filter", name)
+                    .description("IDs held by the filter, including deleted ones")
+                    .register(meterRegistry);
+
+            filters.put(entity, filterState);
+        }
+    }
+
+    /**
+     * @return True if the filter is enabled and images are stored in a backend used by a single instance only.
+     */
+    private static boolean isEnabled(Configurator configurator) {
+        if (!configurator.getBoolean("Database.IdFilter.enabled")) {
+            return false;
+        }
+
+        String storageBackend = configurator.getString("Image.Storage.backend");
+
+        if (!"filesystem".equals(storageBackend)) {
+            log.warn("ID filter is not started, since images are stored in {}, which is shared by several instances.", storageBackend);
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Builds the filters in the background once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildFilters() {
+        filters.keySet().forEach(this::rebuild);
+    }
+
+    /**
+     * @param entity Entity of the ID.
+     * @param id ID to be looked up.
+     * @return False if the entity definitely does not exist, true if it might exist.
+     */
+    public boolean mightExist(Entity entity, String id) {
+        FilterState filterState = filters.get(entity);
+
+        if (filterState == null || filterState.current == null || filterState.current.mightContain(id)) {
+            return true;
+        }
+
+        filterState.rejections.increment();
+        return false;
+    }
+
+    /**
+     * Adds the IDs of saved images and recipes.
+     * @param event Event published by MongoDB after an entity has been saved.
+     */
+    @EventListener
+    public void onAfterSave(AfterSaveEvent<?> event) {
+        if (event.getSource() instanceof ImageMetadata imageMetadata) {
+            add(Entity.IMAGES, imageMetadata.getId());
+        } else if (event.getSource() instanceof Recipe recipe) {
+            add(Entity.RECIPES, recipe.getId());
+        }
+    }
+
+    /**
+     * Records deleted images and recipes. Only deletions by ID are recorded, other deletions leave the filter unchanged.
+     * @param event Event published by MongoDB after entities have been deleted.
+     */
+    @EventListener
+    public void onAfterDelete(AfterDeleteEvent<?> event) {
+        Object id = event.getSource().get("_id");
+
+        if (!(id instanceof String || id instanceof ObjectId)) {
+            return;
+        }
+
+        if (event.getType() == ImageMetadata.class) {
+            remove(Entity.IMAGES, id.toString());
+        } else if (event.getType() == Recipe.class) {
+            remove(Entity.RECIPES, id.toString());
+        }
+    }
+
+    /**
+     * Adds the ID of a created entity.
+     * @param entity Entity of the ID.
+     * @param id ID to be added.
+     */
+    void add(Entity entity, String id) {
+        FilterState filterState = filters.get(entity);
+
+        if (filterState == null) {
+            return;
+        }
+
+        // The filter being built is read first, so that an ID added while it replaces the current one is not lost.
+        IdFilter building = filterState.building;
+        IdFilter current = filterState.current;
+
+        if (building != null) {
+            building.put(id);
+        }
+
+        if (current != null) {
+            current.put(id);
+
+            if (current.getIdCount() > filterState.capacity) {
+                rebuild(entity);
+            }
+        }
+    }
+
+    /**
+     * Records that an entity has been deleted. Its ID keeps passing the filter until the filter is rebuilt.
+     * @param entity Entity of the ID.
+     * @param id ID of the deleted entity.
+     */
+    void remove(Entity entity, String id) {
+        FilterState filterState = filters.get(entity);
+
+        if (filterState == null || filterState.current == null) {
+            return;
+        }
+
+        log.trace("ID {} has been deleted and passes the {} filter until it is rebuilt.", id, entity);
+
+        if (filterState.deletedIds.incrementAndGet() > filterState.current.getIdCount() / 4) {
+            rebuild(entity);
+        }
+    }
+
+    /**
+     * @return True if IDs are filtered.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param entity Entity of the filter.
+     * @return True if the filter of the entity has been built and is not being rebuilt.
+     */
+    boolean isBuilt(Entity entity) {
+        FilterState filterState = filters.get(entity);
+        return filterState != null && filterState.current != null && !filterState.rebuilding.get();
+    }
+
+    /**
+     * Rebuilds the filter of an entity from the database in the background, unless it is being rebuilt already.
+     */
+    private void rebuild(Entity entity) {
+        FilterState filterState = filters.get(entity);
+
+        if (filterState == null || !filterState.rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            rebuildExecutor.execute(() -> {
+                try {
+                    IdFilter idFilter = filterState.rebuild();
+                    log.debug("Built {} filter of {} IDs in {} bytes.", entity, idFilter.getIdCount(), idFilter.getMemoryBytes());
+                } catch (RuntimeException e) {
+                    log.error("Building the {} filter failed: {}", entity, e.getMessage());
+                    filterState.building = null;
+                } finally {
+                    filterState.rebuilding.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.debug("Not rebuilding the {} filter, since the application is shutting down.", entity);
+            filterState.rebuilding.set(false);
+        }
+    }
+
+    /**
+     * Stops rebuilds of the filters which are running or pending.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (rebuildExecutor != null) {
+            rebuildExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Source of all IDs of an entity.
+     * @param count Counts the IDs.
+     * @param ids Streams the IDs.
+     */
+    record IdSource(LongSupplier count, Supplier<Stream<String>> ids) {
+    }
+
+    /**
+     * Filter of an entity.
+     */
+    private class FilterState {
+        private final IdSource idSource;
+        private final Counter rejections;
+
+        private final AtomicBoolean rebuilding = new AtomicBoolean();
+        private final AtomicLong deletedIds = new AtomicLong();
+
+        /**
+         * Filter answering lookups, null until it has been built.
+         */
+        private volatile IdFilter current;
+
+        /**
+         * Filter being built, null if no filter is being built.
+         */
+        private volatile IdFilter building;
+
+        /**
+         * Number of IDs the current filter has been sized for.
+         */
+        private volatile long capacity;
+
+        private FilterState(IdSource idSource, Counter rejections) {
+            this.idSource = idSource;
+            this.rejections = rejections;
+        }
+
+        private IdFilter rebuild() {
+            // Leaves room for twice the IDs stored now, so that the filter is not rebuilt again soon.
+            long newCapacity = Math.max(expectedIds, 2 * idSource.count().getAsLong());
+            IdFilter newFilter = new IdFilter(newCapacity, falsePositiveRate);
+
+            deletedIds.set(0);
+            building = newFilter;
+
+            try (Stream<String> ids = idSource.ids().get()) {
+                ids.forEach(newFilter::put);
+            }
+
+            capacity = newCapacity;
+            current = newFilter;
+            building = null;
+
+            return newFilter;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.mealtiger.backend.database.filter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class is a thread-safe Bloom filter of IDs.
+ * An ID which has been put is always reported as possibly contained. An ID which has not been put is reported
+ * as possibly contained with the false positive probability the filter has been sized for.
+ * IDs cannot be removed, since their bits may be shared with other IDs.
+ */
+public class IdFilter {
+
+    private final AtomicLongArray bits;
+    private final long bitSize;
+    private final int hashFunctions;
+
+    private final AtomicLong setBits = new AtomicLong();
+    private final AtomicLong ids = new AtomicLong();
+
+    /**
+     * @param expectedIds Number of IDs the filter is sized for.
+     * @param falsePositiveRate False positive probability once the expected number of IDs has been put.
+     */
+    public IdFilter(long expectedIds, double falsePositiveRate) {
+        if (expectedIds <= 0) {
+            throw new IllegalArgumentException("Expected number of IDs has to be positive!");
+        }
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False positive rate has to be between 0 and 1!");
+        }
+
+        // Optimal size and number of hash functions, see https://en.wikipedia.org/wiki/Bloom_filter#Optimal_number_of_hash_functions
+        long optimalBitSize = (long) Math.ceil(-expectedIds * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.min(Integer.MAX_VALUE - 8, (optimalBitSize + 63) / 64);
+
+        this.bits = new AtomicLongArray(words);
+        this.bitSize = words * 64L;
+        this.hashFunctions = Math.max(1, (int) Math.round((double) bitSize / expectedIds * Math.log(2)));
+    }
+
+    /**
+     * Puts an ID into the filter.
+     * @param id ID to be put.
+     */
+    public void put(String id) {
+        long hash = hash(id);
+        long increment = mix(hash) | 1;
+        boolean changed = false;
+
+        for (int i = 0; i < hashFunctions; i++) {
+            if (setBit(Math.floorMod(hash + i * increment, bitSize))) {
+                changed = true;
+            }
+        }
+
+        // An ID whose bits have all been set already is counted as having been put before.
+        if (changed) {
+            ids.incrementAndGet();
+        }
+    }
+
+    /**
+     * @param id ID to be looked up.
+     * @return False if the ID has definitely not been put, true if it possibly has been put.
+     */
+    public boolean mightContain(String id) {
+        long hash = hash(id);
+        long increment = mix(hash) | 1;
+
+        for (int i = 0; i < hashFunctions; i++) {
+            long bit = Math.floorMod(hash + i * increment, bitSize);
+
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return Probability that an ID which has not been put is reported as possibly contained,
+     * estimated from the bits set so far.
+     */
+    public double getFalsePositiveRate() {
+        return Math.pow((double) setBits.get() / bitSize, hashFunctions);
+    }
+
+    /**
+     * @return Approximate number of IDs put so far.
+     */
+    public long getIdCount() {
+        return ids.get();
+    }
+
+    /**
+     * @return Memory held by the filter's bits in bytes.
+     */
+    public long getMemoryBytes() {
+        return bitSize / 8;
+    }
+
+    /**
+     * Sets a bit.
+     * @return True if the bit has not been set before.
+     */
+    private boolean setBit(long bit) {
+        int word = (int) (bit >>> 6);
+        long mask = 1L << bit;
+
+        while (true) {
+            long value = bits.get(word);
+
+            if ((value & mask) != 0) {
+                return false;
+            }
+            if (bits.compareAndSet(word, value, value | mask)) {
+                setBits.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the ID's UTF-8 bytes, mixed to spread similar IDs over all bits.
+     */
+    private static long hash(String id) {
+        long hash = 0xcbf29ce484222325L;
+
+        for (byte b : id.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+
+        return mix(hash);
+    }
+
+    /**
+     * Finalizer of SplitMix64.
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+}
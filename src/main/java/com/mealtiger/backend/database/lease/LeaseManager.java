@@ -0,0 +1,141 @@
+package com.mealtiger.backend.database.lease;
+
+import com.mealtiger.backend.database.model.lease.Lease;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * This class acquires leases in MongoDB, so that tasks only run on one backend node at a time.
+ * A lease is acquired by an atomic upsert, which only matches if the lease has expired or is held by this node already.
+ * Otherwise, the upsert fails on the unique ID of the lease. Leases expire on their own, thus a crashed node does not
+ * hold a lease forever. Expiry relies on the clocks of the nodes being roughly in sync.
+ * <p>
+ * Locks are leases held by a single thread instead of a node, so that they guard a resource against other threads
+ * of the same node as well.
+ */
+@Component
+public class LeaseManager {
+
+    private static final Logger log = LoggerFactory.getLogger(LeaseManager.class);
+
+    /**
+     * Milliseconds between two attempts to acquire a lock held by someone else.
+     */
+    private static final long LOCK_RETRY_INTERVAL = 25;
+
+    private final MongoOperations mongoOperations;
+    private final String owner;
+
+    public LeaseManager(MongoOperations mongoOperations) {
+        this(mongoOperations, UUID.randomUUID().toString());
+    }
+
+    LeaseManager(MongoOperations mongoOperations, String owner) {
+        this.mongoOperations = mongoOperations;
+        this.owner = owner;
+    }
+
+    /**
+     * Acquires a lease or extends it if it is held by this node already.
+     * @param name Name of the task.
+     * @param duration Time the lease is held for unless it is extended.
+     * @return True if the lease is held by this node, false if it is held by another node.
+     */
+    public boolean acquire(String name, Duration duration) {
+        Instant now = Instant.now();
+
+        Query query = Query.query(Criteria.where("_id").is(name)
+                .orOperator(Criteria.where("owner").is(owner), Criteria.where("expiresAt").lt(now)));
+        Update update = new Update()
+                .set("owner", owner)
+                .set("expiresAt", now.plus(duration));
+
+        try {
+            mongoOperations.upsert(query, update, Lease.class);
+        } catch (DuplicateKeyException e) {
+            log.trace("Lease {} is held by another node.", name);
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Releases a lease, if it is held by this node.
+     * @param name Name of the task.
+     */
+    public void release(String name) {
+        mongoOperations.remove(Query.query(Criteria.where("_id").is(name).and("owner").is(owner)), Lease.class);
+    }
+
+    /**
+     * Locks a resource. Waits until it is unlocked by other threads or nodes, at most for the given timeout.
+     * @param name Name of the resource.
+     * @param duration Time the lock expires after if it is not unlocked, e.g. since the node holding it has crashed.
+     * @param timeout Time to wait for the lock. Zero tries to lock the resource once.
+     * @return Lock, which has to be closed once the resource has been changed. Null if the lock has not been acquired in time.
+     * @throws InterruptedIOException Whenever the thread is interrupted while waiting.
+     */
+    public Lock lock(String name, Duration duration, Duration timeout) throws InterruptedIOException {
+        String holder = UUID.randomUUID().toString();
+        long deadline = System.nanoTime() + timeout.toNanos();
+
+        while (true) {
+            Instant now = Instant.now();
+
+            // Unlike leases, locks only match once they have expired. Thus, not even the same thread locks a resource twice.
+            Query query = Query.query(Criteria.where("_id").is(name).and("expiresAt").lt(now));
+            Update update = new Update()
+                    .set("owner", holder)
+                    .set("expiresAt", now.plus(duration));
+
+            try {
+                mongoOperations.upsert(query, update, Lease.class);
+                return new Lock(name, holder);
+            } catch (DuplicateKeyException e) {
+                log.trace("Lock {} is held by someone else.", name);
+            }
+
+            if (System.nanoTime() >= deadline) {
+                return null;
+            }
+
+            try {
+                Thread.sleep(LOCK_RETRY_INTERVAL);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for lock " + name + "!");
+            }
+        }
+    }
+
+    /**
+     * Lock of a resource. Closing it unlocks the resource, unless the lock has expired and has been acquired by someone else.
+     */
+    public final class Lock implements AutoCloseable {
+
+        private final String name;
+        private final String holder;
+
+        private Lock(String name, String holder) {
+            this.name = name;
+            this.holder = holder;
+        }
+
+        @Override
+        public void close() {
+            mongoOperations.remove(Query.query(Criteria.where("_id").is(name).and("owner").is(holder)), Lease.class);
+        }
+    }
+}
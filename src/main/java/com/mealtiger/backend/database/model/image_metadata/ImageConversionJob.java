@@ -0,0 +1,83 @@
+package com.mealtiger.backend.database.model.image_metadata;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.PersistenceCreator;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * This class serves as a model for the state of images that are converted in the background.
+ * Its id is the id of the image.
+ */
+@Document(collection = "image-conversion-jobs")
+public class ImageConversionJob {
+
+    /**
+     * States of a conversion job.
+     */
+    public enum Status {
+        PROCESSING,
+        DONE,
+        FAILED
+    }
+
+    @Id
+    private String id;
+
+    private Status status;
+
+    /**
+     * Media type of the original upload, which is served until all formats are converted.
+     */
+    private String originalMediaType;
+
+    @PersistenceCreator
+    public ImageConversionJob(String id, Status status, String originalMediaType) {
+        this.id = id;
+        this.status = status;
+        this.originalMediaType = originalMediaType;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public String getOriginalMediaType() {
+        return originalMediaType;
+    }
+
+    public void setOriginalMediaType(String originalMediaType) {
+        this.originalMediaType = originalMediaType;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        ImageConversionJob that = (ImageConversionJob) o;
+
+        if (!getId().equals(that.getId())) return false;
+        if (getStatus() != that.getStatus()) return false;
+        return getOriginalMediaType() != null ? getOriginalMediaType().equals(that.getOriginalMediaType()) : that.getOriginalMediaType() == null;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = getId().hashCode();
+        result = 31 * result + (getStatus() != null ? getStatus().hashCode() : 0);
+        result = 31 * result + (getOriginalMediaType() != null ? getOriginalMediaType().hashCode() : 0);
+        return result;
+    }
+}
@@ -1,12 +1,19 @@
 package com.mealtiger.backend.database.model.image_metadata;
 
+import com.mealtiger.backend.rest.model.QueriedObject;
+import com.mealtiger.backend.rest.model.Response;
+import com.mealtiger.backend.rest.model.image.ImageMetadataResponse;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.PersistenceCreator;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import java.time.Instant;
+import java.util.Map;
+import java.util.Objects;
+
 @Document(collection = "image-metadata")
-public class ImageMetadata {
+public class ImageMetadata implements QueriedObject {
 
     @Id
     String id;
@@ -14,10 +21,58 @@ public class ImageMetadata {
     @Indexed
     String userId;
 
-    @PersistenceCreator
+    /**
+     * SHA-256 hash of the uploaded file. Null for images which have not been uploaded as a file.
+     */
+    @Indexed
+    String contentHash;
+
+    /**
+     * ID of the image whose directory holds the converted files. Identical uploads share one file set.
+     */
+    @Indexed
+    String fileSetId;
+
+    /**
+     * Time the image has been saved at. Null for images saved before it has been recorded.
+     */
+    Instant createdAt;
+
+    /**
+     * Sizes of the full size files in bytes, mapped by format. Null for images whose files have not been sized.
+     */
+    Map<String, Long> fileSizes;
+
+    /**
+     * Width of the full size image in pixels. Null for images saved before it has been recorded.
+     */
+    Integer width;
+
+    /**
+     * Height of the full size image in pixels. Null for images saved before it has been recorded.
+     */
+    Integer height;
+
+    /**
+     * BlurHash of the image, shown by clients while the image is loading. Null for images saved before it has been recorded.
+     */
+    String placeholder;
+
     public ImageMetadata(String id, String userId) {
+        this(id, userId, null, id);
+    }
+
+    public ImageMetadata(String id, String userId, String contentHash, String fileSetId) {
+        this(id, userId, contentHash, fileSetId, Instant.now());
+    }
+
+    @PersistenceCreator
+    public ImageMetadata(String id, String userId, String contentHash, String fileSetId, Instant createdAt) {
         this.id = id;
         this.userId = userId;
+        this.contentHash = contentHash;
+        this.fileSetId = fileSetId;
+        this.createdAt = createdAt;
     }
 
     public String getId() {
@@ -36,6 +91,73 @@ public class ImageMetadata {
         this.userId = userId;
     }
 
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    /**
+     * @return ID of the image whose directory holds the converted files. Images saved before files were shared hold their own files.
+     */
+    public String getFileSetId() {
+        return fileSetId == null ? id : fileSetId;
+    }
+
+    public void setFileSetId(String fileSetId) {
+        this.fileSetId = fileSetId;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    /**
+     * @return Sizes of the full size files in bytes, mapped by format. Empty if they have not been recorded.
+     */
+    public Map<String, Long> getFileSizes() {
+        return fileSizes == null ? Map.of() : fileSizes;
+    }
+
+    public void setFileSizes(Map<String, Long> fileSizes) {
+        this.fileSizes = fileSizes;
+    }
+
+    public Integer getWidth() {
+        return width;
+    }
+
+    public void setWidth(Integer width) {
+        this.width = width;
+    }
+
+    public Integer getHeight() {
+        return height;
+    }
+
+    public void setHeight(Integer height) {
+        this.height = height;
+    }
+
+    public String getPlaceholder() {
+        return placeholder;
+    }
+
+    public void setPlaceholder(String placeholder) {
+        this.placeholder = placeholder;
+    }
+
+    @Override
+    public Response toResponse() {
+        return new ImageMetadataResponse(getId(), getContentHash(), getWidth(), getHeight(), getFileSizes(), getPlaceholder());
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -44,13 +166,17 @@ public class ImageMetadata {
         ImageMetadata that = (ImageMetadata) o;
 
         if (!getId().equals(that.getId())) return false;
-        return getUserId().equals(that.getUserId());
+        if (!getUserId().equals(that.getUserId())) return false;
+        if (!Objects.equals(getContentHash(), that.getContentHash())) return false;
+        return Objects.equals(getFileSetId(), that.getFileSetId());
     }
 
     @Override
     public int hashCode() {
         int result = getId().hashCode();
         result = 31 * result + getUserId().hashCode();
+        result = 31 * result + Objects.hashCode(getContentHash());
+        result = 31 * result + Objects.hashCode(getFileSetId());
         return result;
     }
 }
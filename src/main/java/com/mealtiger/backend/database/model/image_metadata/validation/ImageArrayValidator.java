@@ -1,11 +1,9 @@
 package com.mealtiger.backend.database.model.image_metadata.validation;
 
-import com.mealtiger.backend.configuration.Configurator;
-
 import jakarta.validation.ConstraintValidator;
 import jakarta.validation.ConstraintValidatorContext;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import org.springframework.beans.factory.annotation.Autowired;
+import java.util.Arrays;
 import java.util.UUID;
 
 /**
@@ -13,18 +11,11 @@ import java.util.UUID;
  */
 public class ImageArrayValidator implements ConstraintValidator<ImagesExist, UUID[]> {
 
-    private final Configurator configurator;
-
-    @SuppressWarnings("unused")
-    public ImageArrayValidator() {
-        this.configurator = new Configurator();
-    }
+    private final ImageExistenceCache imageExistenceCache;
 
-    /**
-     * Package-local constructor for unit tests.
-     */
-    ImageArrayValidator(Configurator configurator) {
-        this.configurator = configurator;
+    @Autowired
+    public ImageArrayValidator(ImageExistenceCache imageExistenceCache) {
+        this.imageExistenceCache = imageExistenceCache;
     }
 
     @Override
@@ -33,7 +24,7 @@ public class ImageArrayValidator implements ConstraintValidator<ImagesExist, UUI
     }
 
     /**
-     * Checks if the images of given UUIDs exist.
+     * Checks if the images of given UUIDs exist. All images are looked up at once.
      * @param value object to validate
      * @param context context in which the constraint is evaluated
      *
@@ -43,13 +34,6 @@ public class ImageArrayValidator implements ConstraintValidator<ImagesExist, UUI
     public boolean isValid(UUID[] value, ConstraintValidatorContext context) {
         if (value == null) return true;
 
-        for (UUID imageUUID : value) {
-            String imagePath = configurator.getString("Image.imagePath");
-
-            if (!Files.exists(Path.of(imagePath, imageUUID.toString()))) {
-                return false;
-            }
-        }
-        return true;
+        return imageExistenceCache.existAll(Arrays.stream(value).map(UUID::toString).toList());
     }
 }
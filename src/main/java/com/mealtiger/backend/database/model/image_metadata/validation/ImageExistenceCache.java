@@ -0,0 +1,126 @@
+package com.mealtiger.backend.database.model.image_metadata.validation;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mealtiger.backend.configuration.Configurator;
+import com.mealtiger.backend.database.model.image_metadata.ImageMetadata;
+import com.mealtiger.backend.database.repository.ImageMetadataRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class checks whether images exist by their metadata, so that validating the images of a recipe does not touch the image store.
+ * All images of a request are looked up in one query. Images which exist are remembered in a bounded cache,
+ * images which do not exist are always looked up again, since they may be uploaded any time.
+ * Deleted images have to be invalidated.
+ */
+@Component
+public class ImageExistenceCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageExistenceCache.class);
+
+    private final ImageMetadataRepository imageMetadataRepository;
+
+    /**
+     * IDs of images known to exist, null if the cache is disabled.
+     */
+    private final Cache<String, Boolean> existingImages;
+
+    /**
+     * Counts invalidations, so that lookups running concurrently with a deletion do not cache the deleted image.
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    @Autowired
+    public ImageExistenceCache(ImageMetadataRepository imageMetadataRepository, Configurator configurator) {
+        this(imageMetadataRepository, configurator.getInteger("Image.Cache.existingImages"));
+    }
+
+    /**
+     * Package-local constructor for unit tests.
+     */
+    ImageExistenceCache(ImageMetadataRepository imageMetadataRepository, long maxSize) {
+        this.imageMetadataRepository = imageMetadataRepository;
+
+        if (maxSize <= 0) {
+            log.debug("Image existence cache is disabled.");
+            existingImages = null;
+            return;
+        }
+
+        existingImages = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .executor(Runnable::run)
+                .build();
+    }
+
+    /**
+     * @param id ID of the image.
+     * @return True if the image exists, false if not.
+     */
+    public boolean exists(String id) {
+        return existAll(List.of(id));
+    }
+
+    /**
+     * @param ids IDs of the images.
+     * @return True if all images exist, false if at least one does not exist.
+     */
+    public boolean existAll(Collection<String> ids) {
+        Set<String> uncachedIds = new HashSet<>(ids);
+
+        if (existingImages != null) {
+            uncachedIds.removeIf(id -> existingImages.getIfPresent(id) != null);
+        }
+
+        if (uncachedIds.isEmpty()) {
+            return true;
+        }
+
+        long invalidationsBeforeLookup = invalidations.get();
+
+        List<String> foundIds = imageMetadataRepository.findIdsByIdIn(uncachedIds).stream()
+                .map(ImageMetadata::getId)
+                .toList();
+
+        if (existingImages != null && invalidations.get() == invalidationsBeforeLookup) {
+            foundIds.forEach(id -> existingImages.put(id, Boolean.TRUE));
+
+            // An image may have been deleted while the found images were put.
+            if (invalidations.get() != invalidationsBeforeLookup) {
+                foundIds.forEach(existingImages::invalidate);
+            }
+        }
+
+        return foundIds.size() == uncachedIds.size();
+    }
+
+    /**
+     * Forgets that an image exists. Has to be called once the image has been deleted.
+     * @param id ID of the image.
+     */
+    public void invalidate(String id) {
+        if (existingImages != null) {
+            invalidations.incrementAndGet();
+            existingImages.invalidate(id);
+        }
+    }
+
+    /**
+     * Forgets all images. Has to be called once images have been deleted without invalidating them one by one.
+     */
+    public void invalidateAll() {
+        if (existingImages != null) {
+            invalidations.incrementAndGet();
+            existingImages.invalidateAll();
+        }
+    }
+}
@@ -1,29 +1,22 @@
 package com.mealtiger.backend.database.model.image_metadata.validation;
 
-import com.mealtiger.backend.configuration.Configurator;
-
 import jakarta.validation.ConstraintValidator;
 import jakarta.validation.ConstraintValidatorContext;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import org.springframework.beans.factory.annotation.Autowired;
 
 /**
  * This Validator is used to validate whether a single image exists yet or not.
  */
 public class ImageValidator implements ConstraintValidator<ImageExists, String> {
 
-    private final Configurator configurator;
-
-    @SuppressWarnings("unused")
-    public ImageValidator() {
-        this.configurator = new Configurator();
-    }
+    private final ImageExistenceCache imageExistenceCache;
 
     /**
-     * Package-local constructor for unit tests.
+     * Validators are created by Spring, which injects the image existence cache.
      */
-    ImageValidator(Configurator configurator) {
-        this.configurator = configurator;
+    @Autowired
+    public ImageValidator(ImageExistenceCache imageExistenceCache) {
+        this.imageExistenceCache = imageExistenceCache;
     }
 
     @Override
@@ -42,9 +35,7 @@ public class ImageValidator implements ConstraintValidator<ImageExists, String>
     public boolean isValid(String value, ConstraintValidatorContext context) {
         if (value == null || value.length() == 0) return true;
 
-        String imagePath = configurator.getString("Image.imagePath");
-
-        return Files.exists(Path.of(imagePath, value));
+        return imageExistenceCache.exists(value);
     }
 
 }
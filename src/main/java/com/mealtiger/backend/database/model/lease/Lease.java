@@ -0,0 +1,45 @@
+package com.mealtiger.backend.database.model.lease;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * This class serves as a model for leases stored in database. A lease grants one backend node the right to run a task
+ * until it expires.
+ */
+@Document(collection = "leases")
+public class Lease {
+
+    /**
+     * Name of the task the lease is held for.
+     */
+    @Id
+    private final String name;
+
+    /**
+     * ID of the backend node holding the lease.
+     */
+    private final String owner;
+
+    private final Instant expiresAt;
+
+    public Lease(String name, String owner, Instant expiresAt) {
+        this.name = name;
+        this.owner = owner;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+}
@@ -31,6 +31,7 @@ public class Recipe implements QueriedObject {
     private double difficulty;
     private Rating[] ratings;
     private int time;
+    @Indexed
     private UUID[] images;
 
     @PersistenceCreator
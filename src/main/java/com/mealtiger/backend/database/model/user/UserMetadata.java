@@ -5,6 +5,7 @@ import com.mealtiger.backend.rest.model.Response;
 import com.mealtiger.backend.rest.model.user.UserInformationResponse;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.PersistenceCreator;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Document(collection = "usermetadata")
@@ -13,6 +14,7 @@ public class UserMetadata implements QueriedObject {
         @Id
         private String userId;
         private final String username;
+        @Indexed
         private final String profilePictureId;
 
     @PersistenceCreator
@@ -0,0 +1,13 @@
+package com.mealtiger.backend.database.repository;
+
+import com.mealtiger.backend.database.model.image_metadata.ImageConversionJob;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * This interface serves as a MongoRepository for the state of images converted in the background.
+ */
+@Repository
+public interface ImageConversionJobRepository extends MongoRepository<ImageConversionJob, String> {
+
+}
@@ -2,9 +2,16 @@ package com.mealtiger.backend.database.repository;
 
 import com.mealtiger.backend.database.model.image_metadata.ImageMetadata;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.Update;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface ImageMetadataRepository extends MongoRepository<ImageMetadata, String> {
@@ -13,4 +20,59 @@ public interface ImageMetadataRepository extends MongoRepository<ImageMetadata,
      * Find ImageMetadata by its user id.
      */
     List<ImageMetadata> findImageMetadatasByUserId(String userId);
+
+    /**
+     * Find any ImageMetadata of an uploaded file by the hash of its content.
+     */
+    Optional<ImageMetadata> findFirstByContentHash(String contentHash);
+
+    /**
+     * Find all ImageMetadata sharing the converted files of an image.
+     */
+    List<ImageMetadata> findByFileSetId(String fileSetId);
+
+    /**
+     * Find all ImageMetadata with one of the given ids in one query.
+     */
+    List<ImageMetadata> findByIdIn(Collection<String> ids);
+
+    /**
+     * Find all ImageMetadata with one of the given ids in one query. Only the ids are read.
+     */
+    @Query(value = "{ '_id': { $in: ?0 } }", fields = "{ '_id': 1 }")
+    List<ImageMetadata> findIdsByIdIn(Collection<String> ids);
+
+    /**
+     * Stream all ImageMetadata. Only the ids are read.
+     */
+    @Query(value = "{}", fields = "{ '_id': 1 }")
+    Stream<ImageMetadata> streamAllIds();
+
+    /**
+     * Stream all ImageMetadata. Only the ids, file sets and creation times are read.
+     */
+    @Query(value = "{}", fields = "{ '_id': 1, 'fileSetId': 1, 'createdAt': 1 }")
+    Stream<ImageMetadata> streamAllFileSets();
+
+    /**
+     * Find all ImageMetadata referencing one of the given file sets in one query. Only the ids and file sets are read.
+     * Images saved before files were shared reference the file set named after their id.
+     */
+    @Query(value = "{ $or: [ { 'fileSetId': { $in: ?0 } }, { '_id': { $in: ?0 }, 'fileSetId': null } ] }",
+            fields = "{ '_id': 1, 'fileSetId': 1 }")
+    List<ImageMetadata> findFileSetIdsByFileSetIdIn(Collection<String> fileSetIds);
+
+    /**
+     * Set the creation time of all ImageMetadata with one of the given ids which have none yet.
+     */
+    @Query("{ '_id': { $in: ?0 }, 'createdAt': null }")
+    @Update("{ '$set': { 'createdAt': ?1 } }")
+    long updateMissingCreatedAtByIdIn(Collection<String> ids, Instant createdAt);
+
+    /**
+     * Set the sizes of the full size files of the ImageMetadata with the given id, mapped by format.
+     */
+    @Query("{ '_id': ?0 }")
+    @Update("{ '$set': { 'fileSizes': ?1 } }")
+    long updateFileSizesById(String id, Map<String, Long> fileSizes);
 }
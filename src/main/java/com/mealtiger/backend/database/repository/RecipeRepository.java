@@ -4,8 +4,14 @@ import com.mealtiger.backend.database.model.recipe.Recipe;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
 /**
  * This interface serves as a MongoRepository for storing data in the mongoDB database specified in MongoClientConfiguration
  */
@@ -31,4 +37,22 @@ public interface RecipeRepository extends MongoRepository<Recipe, String> {
      * Finds all recipes created by the same user.
      */
     Page<Recipe> findRecipesByUserId(String userId, Pageable pageable);
+
+    /**
+     * Streams all recipes. Only the ids are read.
+     */
+    @Query(value = "{}", fields = "{ '_id': 1 }")
+    Stream<Recipe> streamAllIds();
+
+    /**
+     * Finds all recipes referencing one of the given images. Only the images are read.
+     */
+    @Query(value = "{ 'images': { $in: ?0 } }", fields = "{ 'images': 1 }")
+    List<Recipe> findImagesByImagesIn(Collection<UUID> images);
+
+    /**
+     * Checks whether any recipe references the given image.
+     */
+    @Query(value = "{ 'images': ?0 }", exists = true)
+    boolean existsByImage(UUID image);
 }
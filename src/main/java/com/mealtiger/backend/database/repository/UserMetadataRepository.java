@@ -2,7 +2,21 @@ package com.mealtiger.backend.database.repository;
 
 import com.mealtiger.backend.database.model.user.UserMetadata;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+
+import java.util.Collection;
+import java.util.List;
 
 public interface UserMetadataRepository extends MongoRepository<UserMetadata, String> {
 
+    /**
+     * Finds all users whose profile picture is one of the given images. Only the profile pictures are read.
+     */
+    @Query(value = "{ 'profilePictureId': { $in: ?0 } }", fields = "{ 'profilePictureId': 1 }")
+    List<UserMetadata> findProfilePicturesByProfilePictureIdIn(Collection<String> imageIds);
+
+    /**
+     * Checks whether any user has the given image as profile picture.
+     */
+    boolean existsByProfilePictureId(String imageId);
 }
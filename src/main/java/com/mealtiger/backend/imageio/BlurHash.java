@@ -0,0 +1,135 @@
+package com.mealtiger.backend.imageio;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * This class encodes images as BlurHash, a placeholder of about 30 characters which clients decode into a blurred preview
+ * of the image while the image itself is loading. See https://blurha.sh for the algorithm and decoders.
+ * The image is scaled down before it is encoded, since a BlurHash only holds its lowest frequencies anyway.
+ */
+public final class BlurHash {
+
+    private static final String BASE83_CHARACTERS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz#$%*+,-.:;=?@[]^_{|}~";
+
+    /**
+     * Maximum width and height of the image the components are calculated from.
+     */
+    private static final int MAX_SAMPLED_DIMENSION = 32;
+
+    /**
+     * Number of components along the longer side of the image. The shorter side gets one component less.
+     */
+    private static final int COMPONENTS = 4;
+
+    private BlurHash() {
+    }
+
+    /**
+     * Encodes an image as BlurHash.
+     * @param image Image to be encoded.
+     * @return BlurHash of the image.
+     */
+    public static String encode(BufferedImage image) {
+        BufferedImage sampledImage = ImageScaler.scaleDown(image, MAX_SAMPLED_DIMENSION);
+
+        int width = sampledImage.getWidth();
+        int height = sampledImage.getHeight();
+        int componentsX = width >= height ? COMPONENTS : COMPONENTS - 1;
+        int componentsY = width >= height ? COMPONENTS - 1 : COMPONENTS;
+
+        int[] pixels = sampledImage.getRGB(0, 0, width, height, null, 0, width);
+        double[][] linearPixels = new double[pixels.length][];
+
+        for (int i = 0; i < pixels.length; i++) {
+            linearPixels[i] = new double[]{
+                    toLinear((pixels[i] >> 16) & 0xFF),
+                    toLinear((pixels[i] >> 8) & 0xFF),
+                    toLinear(pixels[i] & 0xFF)
+            };
+        }
+
+        double[][] factors = new double[componentsX * componentsY][];
+
+        for (int j = 0; j < componentsY; j++) {
+            for (int i = 0; i < componentsX; i++) {
+                factors[j * componentsX + i] = calculateFactor(linearPixels, width, height, i, j);
+            }
+        }
+
+        StringBuilder hash = new StringBuilder();
+        encodeBase83((componentsX - 1) + (componentsY - 1) * 9, 1, hash);
+
+        double maximumValue = 0;
+        for (int i = 1; i < factors.length; i++) {
+            for (double component : factors[i]) {
+                maximumValue = Math.max(maximumValue, Math.abs(component));
+            }
+        }
+
+        int quantisedMaximumValue = (int) Math.max(0, Math.min(82, Math.floor(maximumValue * 166 - 0.5)));
+        maximumValue = (quantisedMaximumValue + 1) / 166.0;
+        encodeBase83(quantisedMaximumValue, 1, hash);
+
+        encodeBase83((toSRGB(factors[0][0]) << 16) + (toSRGB(factors[0][1]) << 8) + toSRGB(factors[0][2]), 4, hash);
+
+        for (int i = 1; i < factors.length; i++) {
+            encodeBase83(quantise(factors[i][0], maximumValue) * 19 * 19
+                    + quantise(factors[i][1], maximumValue) * 19
+                    + quantise(factors[i][2], maximumValue), 2, hash);
+        }
+
+        return hash.toString();
+    }
+
+    /**
+     * Calculates the average color of an image weighted by a cosine of the given frequencies.
+     */
+    private static double[] calculateFactor(double[][] linearPixels, int width, int height, int frequencyX, int frequencyY) {
+        double[] factor = new double[3];
+
+        for (int y = 0; y < height; y++) {
+            double basisY = Math.cos(Math.PI * frequencyY * y / height);
+
+            for (int x = 0; x < width; x++) {
+                double basis = Math.cos(Math.PI * frequencyX * x / width) * basisY;
+                double[] pixel = linearPixels[y * width + x];
+
+                factor[0] += basis * pixel[0];
+                factor[1] += basis * pixel[1];
+                factor[2] += basis * pixel[2];
+            }
+        }
+
+        double scale = (frequencyX == 0 && frequencyY == 0 ? 1.0 : 2.0) / (width * height);
+
+        factor[0] *= scale;
+        factor[1] *= scale;
+        factor[2] *= scale;
+
+        return factor;
+    }
+
+    private static int quantise(double value, double maximumValue) {
+        double normalised = value / maximumValue;
+        return (int) Math.max(0, Math.min(18, Math.floor(Math.copySign(Math.sqrt(Math.abs(normalised)), normalised) * 9 + 9.5)));
+    }
+
+    private static double toLinear(int value) {
+        double normalised = value / 255.0;
+        return normalised <= 0.04045 ? normalised / 12.92 : Math.pow((normalised + 0.055) / 1.055, 2.4);
+    }
+
+    private static int toSRGB(double value) {
+        double clamped = Math.max(0, Math.min(1, value));
+        return clamped <= 0.0031308
+                ? (int) (clamped * 12.92 * 255 + 0.5)
+                : (int) ((1.055 * Math.pow(clamped, 1 / 2.4) - 0.055) * 255 + 0.5);
+    }
+
+    private static void encodeBase83(int value, int length, StringBuilder hash) {
+        for (int i = length - 1; i >= 0; i--) {
+            int digit = (int) (value / Math.pow(83, i)) % 83;
+            hash.append(BASE83_CHARACTERS.charAt(digit));
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.mealtiger.backend.imageio;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * An uploaded image after decoding.
+ * It holds the memory reserved for the image until it is closed, which has to be done once its conversions are done.
+ *
+ * @param image Decoded raster of the image.
+ * @param mimeType MIME type of the format the image was uploaded in.
+ * @param reservation Memory reserved for the image, null if the decoder has no memory budget.
+ */
+public record DecodedImage(BufferedImage image, String mimeType, ImageMemoryBudget.Reservation reservation) implements AutoCloseable {
+
+    /**
+     * Returns the memory reserved for the image to the budget.
+     */
+    @Override
+    public void close() {
+        if (reservation != null) {
+            reservation.close();
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.mealtiger.backend.imageio;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mealtiger.backend.configuration.Configurator;
+import com.mealtiger.backend.imageio.store.ImageFile;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * This class caches frequently requested image files in memory, so that they are not read from the image store on every request.
+ * Files are cached by their file set and name, i.e. by image and format. The cache is bounded by the size of the cached files.
+ * Entries are evicted by Caffeine's W-TinyLFU policy, which keeps frequently requested images even if many images
+ * are requested only once in between.
+ * Cached files are held in direct buffers outside the heap, so that they do not prolong garbage collection pauses.
+ */
+@Component
+public class ImageCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageCache.class);
+
+    private static final String CACHE_NAME = "images";
+
+    private final Cache<CacheKey, CachedImage> cache;
+    private final long maxEntrySize;
+
+    @Autowired
+    public ImageCache(Configurator configurator, MeterRegistry meterRegistry) {
+        this(DataSize.parse(configurator.getString("Image.Cache.maxSize")).toBytes(),
+                DataSize.parse(configurator.getString("Image.Cache.maxEntrySize")).toBytes());
+
+        if (cache != null) {
+            CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+            Gauge.builder("cache.resident", this, ImageCache::getResidentBytes)
+                    .tag("cache", CACHE_NAME)
+                    .baseUnit(BaseUnits.BYTES)
+                    .description("Size of the image files held in the cache")
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Package-local constructor for unit tests.
+     */
+    ImageCache(long maxSize, long maxEntrySize) {
+        this.maxEntrySize = Math.min(maxEntrySize, Integer.MAX_VALUE);
+
+        if (maxSize <= 0) {
+            log.debug("Image cache is disabled.");
+            cache = null;
+            return;
+        }
+
+        log.debug("Caching image files of up to {} bytes in {} bytes of memory.", this.maxEntrySize, maxSize);
+
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maxSize)
+                .weigher((CacheKey key, CachedImage cachedImage) -> cachedImage.content().capacity())
+                .recordStats()
+                // Evicted buffers only have to be dropped, which is cheap enough to be done by the calling thread.
+                .executor(Runnable::run)
+                .build();
+    }
+
+    /**
+     * @param fileSetId ID of the file set of the image file.
+     * @param fileName Name of the image file.
+     * @return Cached image file, null if it is not cached.
+     */
+    public CachedImage get(String fileSetId, String fileName) {
+        return cache == null ? null : cache.getIfPresent(new CacheKey(fileSetId, fileName));
+    }
+
+    /**
+     * Reads an image file into the cache. Concurrent requests for the same file read it only once.
+     * @param fileSetId ID of the file set of the image file.
+     * @param imageFile Image file.
+     * @param eTag ETag of the image file.
+     * @return Cached image file, null if it is too large to be cached.
+     * @throws IOException Whenever the file cannot be read.
+     */
+    public CachedImage load(String fileSetId, ImageFile imageFile, String eTag) throws IOException {
+        if (cache == null || imageFile.size() > maxEntrySize) {
+            return null;
+        }
+
+        CacheKey cacheKey = new CacheKey(fileSetId, imageFile.name());
+        CachedImage cachedImage;
+
+        try {
+            cachedImage = cache.get(cacheKey, key -> {
+                try {
+                    return new CachedImage(read(imageFile), eTag);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        // The image may have been deleted while it was read.
+        if (!imageFile.content().exists()) {
+            cache.invalidate(cacheKey);
+        }
+
+        return cachedImage;
+    }
+
+    /**
+     * Removes all files of an image from the cache.
+     * @param fileSetId ID of the file set of the image.
+     */
+    public void invalidate(String fileSetId) {
+        if (cache != null) {
+            cache.asMap().keySet().removeIf(key -> key.fileSetId().equals(fileSetId));
+        }
+    }
+
+    /**
+     * @return Size of all cached files in bytes.
+     */
+    public long getResidentBytes() {
+        if (cache == null) {
+            return 0;
+        }
+
+        return cache.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0))
+                .orElse(0L);
+    }
+
+    /**
+     * Reads a file into a direct buffer.
+     */
+    private static ByteBuffer read(ImageFile imageFile) throws IOException {
+        ByteBuffer content = ByteBuffer.allocateDirect((int) imageFile.size());
+
+        try (ReadableByteChannel channel = imageFile.content().readableChannel()) {
+            while (content.hasRemaining()) {
+                if (channel.read(content) < 0) {
+                    break;
+                }
+            }
+        }
+
+        return content.flip().asReadOnlyBuffer();
+    }
+
+    /**
+     * Key of a cached image file.
+     */
+    private record CacheKey(String fileSetId, String fileName) {
+    }
+
+    /**
+     * A cached image file.
+     * @param content Content of the file. Read-only, it is shared by all requests.
+     * @param eTag ETag of the file.
+     */
+    public record CachedImage(ByteBuffer content, String eTag) {
+
+        /**
+         * @return Resource reading the cached content.
+         */
+        public Resource asResource() {
+            return new AbstractResource() {
+                @Override
+                public String getDescription() {
+                    return "Cached image " + eTag;
+                }
+
+                @Override
+                public long contentLength() {
+                    return content.remaining();
+                }
+
+                @Override
+                public InputStream getInputStream() {
+                    return new ByteBufferInputStream(content.duplicate());
+                }
+            };
+        }
+    }
+
+    /**
+     * Input stream reading a byte buffer.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public long skip(long count) {
+            int skipped = (int) Math.max(0, Math.min(count, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
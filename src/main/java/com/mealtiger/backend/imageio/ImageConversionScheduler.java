@@ -0,0 +1,185 @@
+package com.mealtiger.backend.imageio;
+
+import com.mealtiger.backend.configuration.Configurator;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class provides one application-wide pool of worker threads for image conversions.
+ * Queued conversions are ordered by their priority, so that interactive uploads overtake bulk and background work.
+ * The queue is bounded. Whenever it is full, new conversions are rejected instead of being queued.
+ */
+@Component
+public class ImageConversionScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageConversionScheduler.class);
+
+    /**
+     * Priority lanes of the scheduler. Conversions of a lane are only started when there are no conversions
+     * of a lane with higher priority waiting.
+     */
+    public enum Priority {
+        /**
+         * Single uploads a user is waiting for.
+         */
+        INTERACTIVE(1.0),
+        /**
+         * Uploads of multiple images at once.
+         */
+        BULK(0.75),
+        /**
+         * Work no request is waiting for.
+         */
+        BACKGROUND(0.5);
+
+        /**
+         * Share of the queue capacity this lane may fill. Thus, lower lanes are rejected earlier than higher lanes.
+         */
+        private final double queueShare;
+
+        Priority(double queueShare) {
+            this.queueShare = queueShare;
+        }
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final int queueCapacity;
+    private final int retryAfter;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Autowired
+    public ImageConversionScheduler(Configurator configurator) {
+        this(configurator.getInteger("Image.Processing.parallelism"),
+                configurator.getInteger("Image.Processing.queueCapacity"),
+                configurator.getInteger("Image.Processing.retryAfter"));
+    }
+
+    /**
+     * Package-local constructor for unit tests.
+     */
+    ImageConversionScheduler(int parallelism, int queueCapacity, int retryAfter) {
+        if (parallelism <= 0) {
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+
+        this.queueCapacity = queueCapacity;
+        this.retryAfter = retryAfter;
+
+        log.debug("Starting image conversion scheduler with {} threads and a queue capacity of {}.", parallelism, queueCapacity);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(),
+                runnable -> new Thread(runnable, "image-conversion-" + threadNumber.incrementAndGet()));
+    }
+
+    /**
+     * Submits a single conversion.
+     * @param task Conversion to be run.
+     * @param priority Priority lane of the conversion.
+     * @return Future of the conversion result.
+     * @throws RejectedExecutionException Whenever the queue of the priority lane is full.
+     */
+    public <T> Future<T> submit(Callable<T> task, Priority priority) throws RejectedExecutionException {
+        return submitAll(Map.of(task, task), priority).get(task);
+    }
+
+    /**
+     * Submits multiple conversions belonging together. Either all of them are queued or none of them is.
+     * @param tasks Conversions to be run, mapped by a key of the caller's choice.
+     * @param priority Priority lane of the conversions.
+     * @return Futures of the conversion results, mapped by the keys of the given tasks.
+     * @throws RejectedExecutionException Whenever the queue of the priority lane cannot take all conversions.
+     */
+    public <K, T> Map<K, Future<T>> submitAll(Map<K, Callable<T>> tasks, Priority priority) throws RejectedExecutionException {
+        return submitAll(tasks, priority, null);
+    }
+
+    /**
+     * Submits multiple conversions belonging together. Either all of them are queued or none of them is.
+     * Each future is added to the completion queue as soon as its conversion has completed, so that the results
+     * can be processed in the order they become available instead of the order they have been submitted in.
+     * @param tasks Conversions to be run, mapped by a key of the caller's choice.
+     * @param priority Priority lane of the conversions.
+     * @param completionQueue Queue the futures are added to on completion, null if not needed.
+     * @return Futures of the conversion results, mapped by the keys of the given tasks.
+     * @throws RejectedExecutionException Whenever the queue of the priority lane cannot take all conversions.
+     */
+    public synchronized <K, T> Map<K, Future<T>> submitAll(Map<K, Callable<T>> tasks, Priority priority,
+                                                           BlockingQueue<Future<T>> completionQueue) throws RejectedExecutionException {
+        int queued = executor.getQueue().size();
+
+        if (executor.isShutdown() || queued + tasks.size() > queueCapacity * priority.queueShare) {
+            log.warn("Rejecting {} image conversions of priority {}. Conversions queued: {}", tasks.size(), priority, queued);
+            throw new RejectedExecutionException("Image conversion queue is full!");
+        }
+
+        Map<K, Future<T>> futures = new LinkedHashMap<>();
+
+        for (Map.Entry<K, Callable<T>> entry : tasks.entrySet()) {
+            PrioritizedTask<T> prioritizedTask = new PrioritizedTask<>(entry.getValue(), priority, sequence.getAndIncrement(), completionQueue);
+            executor.execute(prioritizedTask);
+            futures.put(entry.getKey(), prioritizedTask);
+        }
+
+        log.trace("Submitted {} image conversions of priority {}.", tasks.size(), priority);
+
+        return futures;
+    }
+
+    /**
+     * @return Seconds a client should wait before retrying a rejected request.
+     */
+    public int getRetryAfter() {
+        return retryAfter;
+    }
+
+    /**
+     * Stops accepting new conversions and interrupts running ones. Called by Spring on shutdown.
+     */
+    @PreDestroy
+    public void shutdown() {
+        log.debug("Shutting down image conversion scheduler.");
+        executor.shutdownNow();
+    }
+
+    /**
+     * Future of a conversion which is ordered by priority first and by submission order second.
+     */
+    private static class PrioritizedTask<T> extends FutureTask<T> implements Comparable<PrioritizedTask<?>> {
+
+        private final Priority priority;
+        private final long sequenceNumber;
+        private final BlockingQueue<Future<T>> completionQueue;
+
+        PrioritizedTask(Callable<T> callable, Priority priority, long sequenceNumber, BlockingQueue<Future<T>> completionQueue) {
+            super(callable);
+            this.priority = priority;
+            this.sequenceNumber = sequenceNumber;
+            this.completionQueue = completionQueue;
+        }
+
+        @Override
+        protected void done() {
+            if (completionQueue != null) {
+                completionQueue.add(this);
+            }
+        }
+
+        @Override
+        public int compareTo(PrioritizedTask<?> other) {
+            int priorityComparison = priority.compareTo(other.priority);
+            return priorityComparison != 0 ? priorityComparison : Long.compare(sequenceNumber, other.sequenceNumber);
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package com.mealtiger.backend.imageio;
+
+import com.mealtiger.backend.configuration.Configurator;
+import com.mealtiger.backend.rest.error_handling.exceptions.ImageTooLargeException;
+import com.mealtiger.backend.rest.error_handling.exceptions.InvalidRequestFormatException;
+import com.mealtiger.backend.rest.error_handling.exceptions.ServiceUnavailableException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * This class decodes uploaded images.
+ * Before an image is decoded, its header is read to check its dimensions against the configured limits.
+ * Thus, images which would take up too much memory are rejected before their raster is allocated.
+ * Images larger than the configured maximum dimension are subsampled while being decoded
+ * and scaled down to the maximum dimension afterwards.
+ * The format of an image is recognized by the signature at the start of its file. Images are decoded by readers
+ * resolved once per format and reused afterwards. Formats without signature or reader are rejected before any reader is created.
+ * The memory an image takes up until its conversions are done is reserved from the ImageMemoryBudget before it is decoded.
+ */
+@Component
+public class ImageDecoder {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageDecoder.class);
+
+    /**
+     * Bytes per pixel assumed whenever a reader cannot tell the type of the decoded image in advance.
+     */
+    private static final int DEFAULT_BYTES_PER_PIXEL = 4;
+
+    /**
+     * Bytes per pixel of the copies the image adapters make while the formats of an image are encoded at the same time:
+     * RGB copies for JPEG and bitmap, indexed copies for GIF and PNG-8 and the ARGB copy scrimage hands to the WebP encoder.
+     */
+    private static final int ENCODING_BYTES_PER_PIXEL = 4 + 4 + 1 + 1 + 4;
+
+    /**
+     * Bytes per pixel of the ARGB rasters scrimage works on while scaling an image down.
+     */
+    private static final int SCALING_BYTES_PER_PIXEL = 4;
+
+    private final long maxPixels;
+    private final long maxDecodeMemory;
+    private final int maxDimension;
+    private final ImageMemoryBudget memoryBudget;
+
+    private final Map<ImageFormat, ImageReaderPool> readerPools = new EnumMap<>(ImageFormat.class);
+
+    @Autowired
+    public ImageDecoder(Configurator configurator, ImageMemoryBudget memoryBudget) {
+        this(configurator.getInteger("Image.Limits.maxPixels"),
+                DataSize.parse(configurator.getString("Image.Limits.maxDecodeMemory")).toBytes(),
+                configurator.getInteger("Image.Processing.maxDimension"),
+                configurator.getInteger("Image.Processing.parallelism"),
+                memoryBudget);
+    }
+
+    /**
+     * Package-local constructor for unit tests.
+     */
+    ImageDecoder(long maxPixels, long maxDecodeMemory, int maxDimension) {
+        this(maxPixels, maxDecodeMemory, maxDimension, 0, null);
+    }
+
+    /**
+     * Package-local constructor for unit tests.
+     * @param readerPoolCapacity Maximum number of idle readers kept per format. 0 uses the number of available processors.
+     * @param memoryBudget Budget the memory of decoded images is reserved from, null for none.
+     */
+    ImageDecoder(long maxPixels, long maxDecodeMemory, int maxDimension, int readerPoolCapacity, ImageMemoryBudget memoryBudget) {
+        this.maxPixels = maxPixels;
+        this.maxDecodeMemory = maxDecodeMemory;
+        this.maxDimension = maxDimension;
+        this.memoryBudget = memoryBudget;
+
+        ImageIO.setUseCache(false);
+
+        for (ImageFormat format : ImageFormat.values()) {
+            Iterator<ImageReader> readers = ImageIO.getImageReadersByFormatName(format.getFormatName());
+
+            if (!readers.hasNext()) {
+                log.warn("No ImageReader for {} images found. They are rejected.", format.getFormatName());
+                continue;
+            }
+
+            // The first reader is the one ImageIO would have picked as well. It is the first one kept in the pool.
+            ImageReader reader = readers.next();
+            ImageReaderPool readerPool = new ImageReaderPool(reader.getOriginatingProvider(), readerPoolCapacity);
+            readerPool.release(reader);
+            readerPools.put(format, readerPool);
+        }
+    }
+
+    /**
+     * Decodes an image from a stream. The stream is read while decoding, it is not buffered as a whole in advance.
+     * @param inputStream Stream of the image file.
+     * @return Decoded image and the MIME type of its format. It has to be closed once its conversions are done.
+     * @throws InvalidRequestFormatException Whenever the image format is unknown.
+     * @throws ImageTooLargeException Whenever the image exceeds the configured limits.
+     * @throws ServiceUnavailableException Whenever the memory budget stays used up by other images.
+     */
+    public DecodedImage decode(InputStream inputStream) throws IOException {
+        try (ImageInputStream imageInputStream = ImageIO.createImageInputStream(inputStream)) {
+            return decode(imageInputStream, true);
+        }
+    }
+
+    /**
+     * Decodes an image from a stream if its memory is available right away. Conversion workers decode with it,
+     * so that they are not blocked while other images hold the memory budget.
+     * @param inputStream Stream of the image file.
+     * @return Decoded image and the MIME type of its format. It has to be closed once its conversions are done.
+     * Null if the memory budget is used up by other images at the moment.
+     * @throws InvalidRequestFormatException Whenever the image format is unknown.
+     * @throws ImageTooLargeException Whenever the image exceeds the configured limits.
+     */
+    public DecodedImage tryDecode(InputStream inputStream) throws IOException {
+        try (ImageInputStream imageInputStream = ImageIO.createImageInputStream(inputStream)) {
+            return decode(imageInputStream, false);
+        }
+    }
+
+    /**
+     * Decodes an image file.
+     * @param path Path of the image file.
+     * @return Decoded image and the MIME type of its format. It has to be closed once its conversions are done.
+     * @throws InvalidRequestFormatException Whenever the image format is unknown.
+     * @throws ImageTooLargeException Whenever the image exceeds the configured limits.
+     * @throws ServiceUnavailableException Whenever the memory budget stays used up by other images.
+     */
+    public DecodedImage decode(Path path) throws IOException {
+        try (ImageInputStream imageInputStream = ImageIO.createImageInputStream(path.toFile())) {
+            return decode(imageInputStream, true);
+        }
+    }
+
+    /**
+     * Reads the header of an image, checks it against the limits, reserves its memory and decodes the image afterwards.
+     * @param imageInputStream Stream of the image file.
+     * @param waitForMemory Whether to wait for the memory budget instead of giving up right away.
+     * @return Decoded image and the MIME type of its format, null if the memory has not been reserved.
+     */
+    private DecodedImage decode(ImageInputStream imageInputStream, boolean waitForMemory) throws IOException {
+        if (imageInputStream == null) {
+            throw new InvalidRequestFormatException("Unknown image format!");
+        }
+
+        ImageFormat format = recognizeFormat(imageInputStream);
+        ImageReaderPool readerPool = format == null ? null : readerPools.get(format);
+
+        if (readerPool == null) {
+            throw new InvalidRequestFormatException("Unknown image format!");
+        }
+
+        ImageReader reader = readerPool.borrow();
+        boolean succeeded = false;
+        ImageMemoryBudget.Reservation reservation = null;
+        BufferedImage image;
+        String mimeType;
+
+        try {
+            reader.setInput(imageInputStream, true, true);
+
+            int width = reader.getWidth(0);
+            int height = reader.getHeight(0);
+
+            log.trace("Read header of {} image with {}x{} pixels.", reader.getFormatName(), width, height);
+
+            int subsampling = getSubsampling(width, height);
+            int decodedWidth = (width + subsampling - 1) / subsampling;
+            int decodedHeight = (height + subsampling - 1) / subsampling;
+            long decodedMemory = (long) decodedWidth * decodedHeight * getBytesPerPixel(reader);
+
+            checkLimits(width, height, decodedMemory);
+
+            if (memoryBudget != null) {
+                long estimatedMemory = estimateMemory(decodedWidth, decodedHeight, decodedMemory);
+                reservation = waitForMemory ? memoryBudget.reserve(estimatedMemory) : memoryBudget.tryReserve(estimatedMemory);
+
+                if (reservation == null) {
+                    log.trace("Not decoding image, since the memory budget is used up.");
+                    succeeded = true;
+                    return null;
+                }
+            }
+
+            ImageReadParam readParam = reader.getDefaultReadParam();
+
+            if (subsampling > 1) {
+                log.trace("Decoding image with subsampling factor {} at {}x{} pixels.", subsampling, decodedWidth, decodedHeight);
+                readParam.setSourceSubsampling(subsampling, subsampling, 0, 0);
+            }
+
+            image = reader.read(0, readParam);
+            mimeType = getMimeType(reader);
+            succeeded = true;
+        } finally {
+            if (succeeded) {
+                readerPool.release(reader);
+            } else {
+                readerPool.discard(reader);
+
+                if (reservation != null) {
+                    reservation.close();
+                }
+            }
+        }
+
+        try {
+            return new DecodedImage(ImageScaler.scaleDown(image, maxDimension), mimeType, reservation);
+        } catch (RuntimeException e) {
+            if (reservation != null) {
+                reservation.close();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Estimates the memory an image takes up from decoding until its conversions are done.
+     * Besides the decoded raster, this includes the rasters of scaling the image down and the copies made while encoding it.
+     * @param decodedWidth Width of the image when decoded with subsampling.
+     * @param decodedHeight Height of the image when decoded with subsampling.
+     * @param decodedMemory Bytes the decoded raster takes up.
+     * @return Estimated bytes.
+     */
+    private long estimateMemory(int decodedWidth, int decodedHeight, long decodedMemory) {
+        long decodedPixels = (long) decodedWidth * decodedHeight;
+        long pixels = decodedPixels;
+        long memory = decodedMemory;
+
+        if (maxDimension > 0 && Math.max(decodedWidth, decodedHeight) > maxDimension) {
+            double scale = (double) maxDimension / Math.max(decodedWidth, decodedHeight);
+            pixels = Math.max(1, Math.round(decodedWidth * scale)) * Math.max(1, Math.round(decodedHeight * scale));
+            memory += (decodedPixels + pixels) * SCALING_BYTES_PER_PIXEL;
+        }
+
+        return memory + pixels * ENCODING_BYTES_PER_PIXEL;
+    }
+
+    /**
+     * @param format Image format.
+     * @return Number of idle readers of the format. Used by unit tests.
+     */
+    int getIdleReaderCount(ImageFormat format) {
+        return readerPools.get(format).getIdleReaderCount();
+    }
+
+    /**
+     * Recognizes the format of an image by the signature at the start of its file. The stream is reset to the start afterwards.
+     * @param imageInputStream Stream of the image file.
+     * @return Format of the image, null if it is unknown.
+     */
+    private static ImageFormat recognizeFormat(ImageInputStream imageInputStream) throws IOException {
+        byte[] header = new byte[ImageFormat.SIGNATURE_LENGTH];
+        int length = 0;
+
+        imageInputStream.mark();
+
+        try {
+            int read;
+            while (length < header.length && (read = imageInputStream.read(header, length, header.length - length)) > 0) {
+                length += read;
+            }
+        } finally {
+            imageInputStream.reset();
+        }
+
+        return ImageFormat.recognize(header, length);
+    }
+
+    /**
+     * Calculates the subsampling factor an image is decoded with. The image is decoded at the smallest resolution
+     * that is still at least as large as the maximum dimension, so that it can be scaled down in high quality afterwards.
+     * @param width Width of the image.
+     * @param height Height of the image.
+     * @return Subsampling factor, 1 if the image is decoded at full resolution.
+     */
+    private int getSubsampling(int width, int height) {
+        if (maxDimension <= 0) {
+            return 1;
+        }
+
+        return Math.max(1, Math.max(width, height) / maxDimension);
+    }
+
+    /**
+     * Checks the dimensions of an image against the configured limits.
+     * @param width Width of the image.
+     * @param height Height of the image.
+     * @param memory Bytes the image takes up when decoded with subsampling.
+     * @throws ImageTooLargeException Whenever the image exceeds the configured limits.
+     */
+    private void checkLimits(int width, int height, long memory) {
+        long pixels = (long) width * height;
+
+        if (pixels > maxPixels) {
+            log.debug("Rejecting image with {}x{} pixels.", width, height);
+            throw new ImageTooLargeException("Image must not have more than " + maxPixels + " pixels! Uploaded image has " + pixels + " pixels.");
+        }
+
+        if (memory > maxDecodeMemory) {
+            log.debug("Rejecting image with {}x{} pixels taking up {} bytes when decoded.", width, height, memory);
+            throw new ImageTooLargeException("Image is too large to be processed!");
+        }
+    }
+
+    /**
+     * @param reader ImageReader which has read the header of an image.
+     * @return Bytes a pixel of the decoded image takes up.
+     */
+    private int getBytesPerPixel(ImageReader reader) throws IOException {
+        ImageTypeSpecifier rawImageType = reader.getRawImageType(0);
+
+        if (rawImageType == null) {
+            return DEFAULT_BYTES_PER_PIXEL;
+        }
+
+        return Math.max(1, (rawImageType.getColorModel().getPixelSize() + 7) / 8);
+    }
+
+    /**
+     * @param reader ImageReader which has read an image.
+     * @return MIME type of the format the reader reads.
+     */
+    private String getMimeType(ImageReader reader) throws IOException {
+        if (reader.getOriginatingProvider() != null) {
+            String[] mimeTypes = reader.getOriginatingProvider().getMIMETypes();
+            if (mimeTypes != null && mimeTypes.length > 0) {
+                return mimeTypes[0];
+            }
+        }
+        return "image/" + reader.getFormatName().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,84 @@
+package com.mealtiger.backend.imageio;
+
+import java.util.Arrays;
+
+/**
+ * This enum lists the image formats uploads are decoded from and recognizes them by the signature at the start of their files.
+ * Thus, the format of an upload is known without asking every ImageReader registered with ImageIO whether it can decode it.
+ */
+enum ImageFormat {
+
+    JPEG("jpeg", new int[]{0xFF, 0xD8, 0xFF}),
+    PNG("png", new int[]{0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'}),
+    GIF("gif", signature("GIF87a"), signature("GIF89a")),
+    BMP("bmp", signature("BM")),
+    // RIFF container, followed by the size of the file and the WEBP form type.
+    WEBP("webp", signature("RIFF????WEBP")),
+    // Little and big endian byte order, each as classic TIFF and BigTIFF.
+    TIFF("tiff", new int[]{'I', 'I', 42, 0}, new int[]{'M', 'M', 0, 42}, new int[]{'I', 'I', 43, 0}, new int[]{'M', 'M', 0, 43});
+
+    /**
+     * Number of bytes at the start of a file needed to recognize every format.
+     */
+    static final int SIGNATURE_LENGTH = 12;
+
+    /**
+     * Placeholder for a byte of a signature which may have any value.
+     */
+    private static final int ANY_BYTE = -1;
+
+    private final String formatName;
+    private final int[][] signatures;
+
+    ImageFormat(String formatName, int[]... signatures) {
+        this.formatName = formatName;
+        this.signatures = signatures;
+    }
+
+    /**
+     * @return Informal name of the format, as accepted by ImageIO.getImageReadersByFormatName.
+     */
+    String getFormatName() {
+        return formatName;
+    }
+
+    /**
+     * Recognizes the format of an image file.
+     * @param header Bytes at the start of the file.
+     * @param length Number of bytes read into the header. Shorter files are recognized as long as their signature is complete.
+     * @return Format of the file, null if it is none of the known formats.
+     */
+    static ImageFormat recognize(byte[] header, int length) {
+        for (ImageFormat format : values()) {
+            if (Arrays.stream(format.signatures).anyMatch(signature -> matches(signature, header, length))) {
+                return format;
+            }
+        }
+
+        return null;
+    }
+
+    private static boolean matches(int[] signature, byte[] header, int length) {
+        if (length < signature.length) {
+            return false;
+        }
+
+        for (int i = 0; i < signature.length; i++) {
+            if (signature[i] != ANY_BYTE && signature[i] != (header[i] & 0xFF)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @param signature ASCII signature, ? stands for any byte.
+     * @return Bytes of the signature.
+     */
+    private static int[] signature(String signature) {
+        return signature.chars()
+                .map(character -> character == '?' ? ANY_BYTE : character)
+                .toArray();
+    }
+}
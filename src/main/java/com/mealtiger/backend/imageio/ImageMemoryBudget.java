@@ -0,0 +1,211 @@
+package com.mealtiger.backend.imageio;
+
+import com.mealtiger.backend.configuration.Configurator;
+import com.mealtiger.backend.rest.error_handling.exceptions.ImageTooLargeException;
+import com.mealtiger.backend.rest.error_handling.exceptions.ServiceUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class bounds the heap taken up by all images which are decoded and encoded at the same time.
+ * Before an image is decoded, the memory it takes up until its conversions are done is estimated from its header
+ * and reserved from a budget shared by all uploads and conversions. Whenever the budget is used up, the reservation waits
+ * until other images are done. If the memory cannot be reserved within the configured timeout, the request is rejected.
+ * Thus, a few concurrent uploads of large images cannot exhaust the heap.
+ * The budget is a fraction of the maximum heap size. 0 or less disables it.
+ */
+@Component
+public class ImageMemoryBudget {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageMemoryBudget.class);
+
+    /**
+     * Bytes per permit of the semaphore, so that budgets of more than 2 GB fit into its int permits.
+     */
+    private static final int BYTES_PER_PERMIT = 1024;
+
+    private final long budget;
+    private final long timeout;
+    private final int retryAfter;
+
+    private final Semaphore semaphore;
+    private final int budgetPermits;
+    private final AtomicLong usedBytes = new AtomicLong();
+
+    private final Timer waitTimer;
+    private final Counter rejectionCounter;
+
+    @Autowired
+    public ImageMemoryBudget(Configurator configurator, MeterRegistry meterRegistry) {
+        this((long) (Runtime.getRuntime().maxMemory() * configurator.getDouble("Image.Limits.memoryBudget")),
+                configurator.getInteger("Image.Limits.memoryBudgetTimeout"),
+                configurator.getInteger("Image.Processing.retryAfter"),
+                meterRegistry);
+    }
+
+    /**
+     * Package-local constructor for unit tests.
+     * @param budget Bytes all images may take up at the same time. 0 or less disables the budget.
+     * @param timeout Milliseconds a reservation waits for memory to become available.
+     * @param retryAfter Seconds clients are asked to wait before retrying a rejected request.
+     */
+    ImageMemoryBudget(long budget, long timeout, int retryAfter, MeterRegistry meterRegistry) {
+        this.budget = Math.max(0, budget);
+        this.timeout = timeout;
+        this.retryAfter = retryAfter;
+
+        if (this.budget > 0) {
+            log.debug("Limiting images being processed to {} bytes of memory.", this.budget);
+            budgetPermits = (int) Math.min(Integer.MAX_VALUE, this.budget / BYTES_PER_PERMIT);
+            semaphore = new Semaphore(budgetPermits, true);
+        } else {
+            log.debug("Memory budget of images being processed is disabled.");
+            budgetPermits = 0;
+            semaphore = null;
+        }
+
+        Gauge.builder("image.memory.budget.used", usedBytes, AtomicLong::get)
+                .baseUnit(BaseUnits.BYTES)
+                .description("Memory reserved by images being decoded and encoded")
+                .register(meterRegistry);
+        Gauge.builder("image.memory.budget.max", this, ImageMemoryBudget::getBudget)
+                .baseUnit(BaseUnits.BYTES)
+                .description("Memory all images being decoded and encoded may take up at the same time")
+                .register(meterRegistry);
+        waitTimer = Timer.builder("image.memory.budget.wait")
+                .description("Time images have waited for memory to become available")
+                .register(meterRegistry);
+        rejectionCounter = Counter.builder("image.memory.budget.rejections")
+                .description("Images rejected since their memory could not be reserved")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Reserves memory for an image. Waits until the memory is available, at most for the configured timeout.
+     * @param bytes Estimated memory the image takes up until its conversions are done.
+     * @return Reservation, which has to be closed once the image is not needed anymore.
+     * @throws ImageTooLargeException Whenever the image takes up more memory than the whole budget.
+     * @throws ServiceUnavailableException Whenever the memory is not available within the timeout.
+     */
+    public Reservation reserve(long bytes) throws InterruptedIOException {
+        Reservation reservation = reserve(bytes, timeout);
+
+        if (reservation == null) {
+            log.debug("Rejecting image taking up {} bytes, since {} of {} bytes are in use.", bytes, usedBytes.get(), budget);
+            rejectionCounter.increment();
+            throw new ServiceUnavailableException("Too many images are being processed at the moment. Please try again later!", retryAfter);
+        }
+
+        return reservation;
+    }
+
+    /**
+     * Reserves memory for an image if it is available right away. Threads which must not be blocked by other images,
+     * e.g. conversion workers, use it instead of waiting for memory.
+     * @param bytes Estimated memory the image takes up until its conversions are done.
+     * @return Reservation, which has to be closed once the image is not needed anymore. Null if the memory is not available.
+     * @throws ImageTooLargeException Whenever the image takes up more memory than the whole budget.
+     */
+    public Reservation tryReserve(long bytes) throws InterruptedIOException {
+        return reserve(bytes, 0);
+    }
+
+    /**
+     * Reserves memory for an image.
+     * @param bytes Estimated memory the image takes up until its conversions are done.
+     * @param timeout Milliseconds to wait for the memory to become available.
+     * @return Reservation, null if the memory is not available within the timeout.
+     */
+    private Reservation reserve(long bytes, long timeout) throws InterruptedIOException {
+        if (semaphore == null) {
+            return new Reservation(0, 0);
+        }
+
+        int permits = (int) Math.min(Integer.MAX_VALUE, (bytes + BYTES_PER_PERMIT - 1) / BYTES_PER_PERMIT);
+
+        if (permits > budgetPermits) {
+            log.debug("Rejecting image taking up {} bytes, which exceeds the memory budget of {} bytes.", bytes, budget);
+            rejectionCounter.increment();
+            throw new ImageTooLargeException("Image is too large to be processed!");
+        }
+
+        boolean acquired;
+        long start = System.nanoTime();
+
+        try {
+            // Waiting images are served first, even if no time is left to wait.
+            acquired = semaphore.tryAcquire(permits, timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for memory to process an image!");
+        } finally {
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        if (!acquired) {
+            return null;
+        }
+
+        usedBytes.addAndGet(bytes);
+        return new Reservation(bytes, permits);
+    }
+
+    /**
+     * @return Bytes all images may take up at the same time, 0 if the budget is disabled.
+     */
+    public long getBudget() {
+        return budget;
+    }
+
+    /**
+     * @return Bytes currently reserved.
+     */
+    public long getUsedBytes() {
+        return usedBytes.get();
+    }
+
+    /**
+     * Memory reserved for an image. Closing it returns the memory to the budget. Closing it more than once has no effect.
+     */
+    public final class Reservation implements AutoCloseable {
+
+        private final long bytes;
+        private final int permits;
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        private Reservation(long bytes, int permits) {
+            this.bytes = bytes;
+            this.permits = permits;
+        }
+
+        /**
+         * @return Reserved bytes.
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        @Override
+        public void close() {
+            if (semaphore == null || released.getAndSet(true)) {
+                return;
+            }
+
+            usedBytes.addAndGet(-bytes);
+            semaphore.release(permits);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.mealtiger.backend.imageio;
+
+import javax.imageio.ImageReader;
+import javax.imageio.spi.ImageReaderSpi;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * This class provides ImageReaders of one format to the ImageDecoder, which is used by multiple threads at once.
+ * Readers are created by the provider resolved once for the format, instead of looking it up in the IIORegistry for every image.
+ * An ImageReader is not thread-safe, thus each decode borrows a reader of its own and returns it afterwards.
+ * Whenever no idle reader is left, a new one is created instead of waiting for another decode to finish.
+ * At most as many idle readers as the pool's capacity are kept, the others are disposed.
+ */
+class ImageReaderPool {
+
+    private final ImageReaderSpi readerSpi;
+    private final BlockingQueue<ImageReader> idleReaders;
+
+    /**
+     * @param readerSpi Provider the readers are created by.
+     * @param capacity Maximum number of idle readers kept. 0 or less uses the number of available processors.
+     */
+    ImageReaderPool(ImageReaderSpi readerSpi, int capacity) {
+        if (capacity <= 0) {
+            capacity = Runtime.getRuntime().availableProcessors();
+        }
+
+        this.readerSpi = readerSpi;
+        this.idleReaders = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * @return An idle reader, or a new one if none is left.
+     */
+    ImageReader borrow() {
+        ImageReader reader = idleReaders.poll();
+
+        if (reader != null) {
+            return reader;
+        }
+
+        try {
+            return readerSpi.createReaderInstance();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns a reader which has decoded an image successfully. Its input is released, so that it holds no stream anymore.
+     * @param reader Reader borrowed from this pool.
+     */
+    void release(ImageReader reader) {
+        reader.reset();
+        if (!idleReaders.offer(reader)) {
+            reader.dispose();
+        }
+    }
+
+    /**
+     * Disposes a reader which has failed, since it may be left in an undefined state.
+     * @param reader Reader borrowed from this pool.
+     */
+    void discard(ImageReader reader) {
+        reader.dispose();
+    }
+
+    /**
+     * @return Number of idle readers. Used by unit tests.
+     */
+    int getIdleReaderCount() {
+        return idleReaders.size();
+    }
+}
@@ -0,0 +1,39 @@
+package com.mealtiger.backend.imageio;
+
+import com.sksamuel.scrimage.ImmutableImage;
+import com.sksamuel.scrimage.ScaleMethod;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * This class scales images down in high quality.
+ */
+public final class ImageScaler {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageScaler.class);
+
+    private ImageScaler() {
+    }
+
+    /**
+     * Scales an image down to a maximum dimension while keeping its aspect ratio.
+     * @param image Image to be scaled.
+     * @param maxDimension Maximum width and height of the scaled image. 0 or less disables scaling.
+     * @return Scaled image, the given image if it does not exceed the maximum dimension.
+     */
+    public static BufferedImage scaleDown(BufferedImage image, int maxDimension) {
+        if (image == null || maxDimension <= 0 || Math.max(image.getWidth(), image.getHeight()) <= maxDimension) {
+            return image;
+        }
+
+        double scale = (double) maxDimension / Math.max(image.getWidth(), image.getHeight());
+        int scaledWidth = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int scaledHeight = Math.max(1, (int) Math.round(image.getHeight() * scale));
+
+        log.trace("Scaling image down from {}x{} to {}x{} pixels.", image.getWidth(), image.getHeight(), scaledWidth, scaledHeight);
+
+        return ImmutableImage.fromAwt(image).scaleTo(scaledWidth, scaledHeight, ScaleMethod.Lanczos3).awt();
+    }
+}
@@ -0,0 +1,89 @@
+package com.mealtiger.backend.imageio;
+
+import com.mealtiger.backend.rest.error_handling.exceptions.ImageTooLargeException;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * This class limits the number of bytes read from an upload which is streamed instead of being buffered in advance.
+ * The limit is checked while reading, thus an upload exceeding it is rejected as soon as the limit is exceeded
+ * instead of after it has been received as a whole.
+ */
+public class SizeLimitedInputStream extends FilterInputStream {
+
+    private final long maxSize;
+    private long size;
+
+    /**
+     * @param inputStream Stream of the upload.
+     * @param maxSize Maximum number of bytes which may be read.
+     */
+    public SizeLimitedInputStream(InputStream inputStream, long maxSize) {
+        super(inputStream);
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int read = super.read();
+
+        if (read != -1) {
+            count(1);
+        }
+
+        return read;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = super.read(b, off, len);
+
+        if (read > 0) {
+            count(read);
+        }
+
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        count(skipped);
+        return skipped;
+    }
+
+    /**
+     * Marking is not supported, since bytes read again would be counted twice.
+     */
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+        // Not supported.
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("Mark and reset are not supported!");
+    }
+
+    /**
+     * @return Number of bytes read so far.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    private void count(long bytes) {
+        size += bytes;
+
+        if (size > maxSize) {
+            throw new ImageTooLargeException("Image must not be larger than " + maxSize + " bytes!");
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.mealtiger.backend.imageio.adapters;
+
+import com.mealtiger.backend.configuration.exceptions.InvalidConfigPropertyException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class encodes images to WebP with an installed cwebp binary.
+ * The binary and the scratch directory are resolved once and reused by every encoding.
+ * Images are handed to cwebp as uncompressed PAM files, which are far cheaper to write than the PNG files
+ * scrimage uses. If available, the scratch directory is located in memory (/dev/shm), so that these files never hit the disk.
+ * Instances are thread-safe, each encoding uses scratch files of its own.
+ */
+public class CWebPEncoder {
+
+    private static final Logger log = LoggerFactory.getLogger(CWebPEncoder.class);
+
+    private static final Path RAM_DIRECTORY = Path.of("/dev/shm");
+    private static final String SCRATCH_DIRECTORY_NAME = "meal-tiger-webp";
+    private static final int ROWS_PER_READ = 16;
+
+    private final Path binary;
+    private final Path scratchDirectory;
+    private final List<String> arguments;
+    private final Duration timeout;
+
+    /**
+     * @param binary Path of the cwebp binary.
+     * @param scratchDirectory Directory input and output files are written to. Created if it does not exist.
+     * @param arguments Encoding options passed to cwebp, e.g. -q 75.
+     * @param timeout Time cwebp may take to encode an image before it is killed.
+     * @throws InvalidConfigPropertyException Whenever the binary is not executable.
+     */
+    public CWebPEncoder(Path binary, Path scratchDirectory, List<String> arguments, Duration timeout) throws IOException {
+        if (!Files.isExecutable(binary)) {
+            throw new InvalidConfigPropertyException("Image.WebP.encoderPath",
+                    "WebP encoder " + binary + " does not exist or is not executable!");
+        }
+
+        this.binary = binary;
+        this.scratchDirectory = Files.createDirectories(scratchDirectory);
+        this.arguments = List.copyOf(arguments);
+        this.timeout = timeout;
+
+        log.debug("Encoding WebP images with {} {} in scratch directory {}.", binary, this.arguments, this.scratchDirectory);
+    }
+
+    /**
+     * @return Scratch directory in memory if available, in the temporary directory otherwise.
+     */
+    public static Path getDefaultScratchDirectory() {
+        if (Files.isDirectory(RAM_DIRECTORY) && Files.isWritable(RAM_DIRECTORY)) {
+            return RAM_DIRECTORY.resolve(SCRATCH_DIRECTORY_NAME);
+        }
+        return Path.of(System.getProperty("java.io.tmpdir"), SCRATCH_DIRECTORY_NAME);
+    }
+
+    /**
+     * Encodes an image. The output of cwebp is written to a scratch file, so that a hanging cwebp cannot block
+     * the encoding thread beyond the timeout. cwebp is killed whenever it times out or the thread is interrupted.
+     * @param image Image to be encoded.
+     * @return Encoded WebP image.
+     * @throws IOException Whenever cwebp fails or does not finish in time.
+     */
+    public byte[] encode(BufferedImage image) throws IOException {
+        Path input = Files.createTempFile(scratchDirectory, "input", ".pam");
+        Path output = scratchDirectory.resolve(input.getFileName() + ".webp");
+        Path processOutput = scratchDirectory.resolve(input.getFileName() + ".log");
+
+        try {
+            writePAM(image, input);
+
+            List<String> command = new ArrayList<>();
+            command.add(binary.toString());
+            command.addAll(arguments);
+            command.addAll(List.of("-quiet", input.toString(), "-o", output.toString()));
+
+            Process process = new ProcessBuilder(command)
+                    .redirectErrorStream(true)
+                    .redirectOutput(processOutput.toFile())
+                    .start();
+
+            try {
+                if (!process.waitFor(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                    throw new IOException("cwebp did not finish within " + timeout.toMillis() + " ms!");
+                }
+            } finally {
+                if (process.isAlive()) {
+                    process.destroyForcibly();
+                }
+            }
+
+            if (process.exitValue() != 0) {
+                throw new IOException("cwebp failed with exit code " + process.exitValue() + ": "
+                        + Files.readString(processOutput, StandardCharsets.UTF_8).strip());
+            }
+
+            return Files.readAllBytes(output);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while encoding WebP image!");
+        } finally {
+            Files.deleteIfExists(input);
+            Files.deleteIfExists(output);
+            Files.deleteIfExists(processOutput);
+        }
+    }
+
+    /**
+     * Writes an image as uncompressed PAM file. The alpha channel is only written if the image has one.
+     */
+    private static void writePAM(BufferedImage image, Path path) throws IOException {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        boolean alpha = image.getColorModel().hasAlpha();
+        int depth = alpha ? 4 : 3;
+
+        String header = "P7\nWIDTH " + width + "\nHEIGHT " + height + "\nDEPTH " + depth
+                + "\nMAXVAL 255\nTUPLTYPE " + (alpha ? "RGB_ALPHA" : "RGB") + "\nENDHDR\n";
+
+        int[] pixels = new int[width * ROWS_PER_READ];
+        byte[] samples = new byte[width * ROWS_PER_READ * depth];
+
+        try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(path))) {
+            outputStream.write(header.getBytes(StandardCharsets.US_ASCII));
+
+            for (int y = 0; y < height; y += ROWS_PER_READ) {
+                int rows = Math.min(ROWS_PER_READ, height - y);
+                image.getRGB(0, y, width, rows, pixels, 0, width);
+
+                int j = 0;
+                for (int i = 0; i < width * rows; i++) {
+                    int argb = pixels[i];
+                    samples[j++] = (byte) (argb >> 16);
+                    samples[j++] = (byte) (argb >> 8);
+                    samples[j++] = (byte) argb;
+                    if (alpha) {
+                        samples[j++] = (byte) (argb >>> 24);
+                    }
+                }
+
+                outputStream.write(samples, 0, j);
+            }
+        }
+    }
+}
@@ -2,14 +2,11 @@ package com.mealtiger.backend.imageio.adapters;
 
 import com.mealtiger.backend.configuration.Configurator;
 import com.mealtiger.backend.configuration.exceptions.InvalidConfigPropertyException;
+import com.mealtiger.backend.imageio.quantization.ColorQuantizer;
+import com.mealtiger.backend.imageio.quantization.ColorQuantizerFactory;
 
-import javax.imageio.IIOImage;
-import javax.imageio.ImageIO;
 import javax.imageio.ImageWriteParam;
-import javax.imageio.ImageWriter;
-import javax.imageio.stream.ImageOutputStream;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 
 /**
@@ -18,13 +15,13 @@ import java.io.IOException;
  * @author Sebastian Maier, Lucca Greschner
  */
 public class GIFAdapter implements ImageAdapter{
-    private final ImageWriter imageWriter;
+    private final ImageWriterPool imageWriterPool;
     private final ImageWriteParam params;
+    private final ColorQuantizer quantizer;
 
     public GIFAdapter() {
-        imageWriter = ImageIO.getImageWritersByFormatName("gif").next();
-
         Configurator configurator = new Configurator();
+        imageWriterPool = new ImageWriterPool("gif", configurator.getInteger("Image.Processing.parallelism"));
         double compressionQuality = configurator.getDouble("Image.GIF.compressionQuality");
 
         if (compressionQuality > 100 || compressionQuality <= 0){
@@ -32,21 +29,17 @@ public class GIFAdapter implements ImageAdapter{
                     "Compression quality cannot be higher than 100 or lower than 1! Current value is " + compressionQuality);
         }
 
-        params = imageWriter.getDefaultWriteParam();
+        params = imageWriterPool.getDefaultWriteParam();
         params.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
         params.setCompressionType("LZW");
         params.setCompressionQuality(((float) compressionQuality)/100);
+
+        quantizer = ColorQuantizerFactory.getQuantizer(configurator);
     }
 
     @Override
     public byte[] convert(BufferedImage input) throws IllegalStateException, IllegalArgumentException, IOException{
-        try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
-            ImageOutputStream imageOutputStream = ImageIO.createImageOutputStream(outputStream);
-            imageWriter.setOutput(imageOutputStream);
-            imageWriter.write(null, new IIOImage(input, null, null), params);
-            imageOutputStream.close();
-            return outputStream.toByteArray();
-        }
+        return imageWriterPool.write(quantizer.quantize(input), params);
     }
 }
 
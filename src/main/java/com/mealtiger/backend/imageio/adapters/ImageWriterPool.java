@@ -0,0 +1,96 @@
+package com.mealtiger.backend.imageio.adapters;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * This class provides ImageWriters of one format to adapters which are used by multiple threads at once.
+ * An ImageWriter is not thread-safe, thus each write borrows a writer of its own and returns it afterwards.
+ * Whenever no idle writer is left, a new one is created instead of waiting for another write to finish.
+ * At most as many idle writers as the pool's capacity are kept, the others are disposed.
+ */
+class ImageWriterPool {
+
+    private final String formatName;
+    private final BlockingQueue<ImageWriter> idleWriters;
+
+    /**
+     * @param formatName Informal name of the format, as accepted by ImageIO.getImageWritersByFormatName.
+     * @param capacity Maximum number of idle writers kept. 0 or less uses the number of available processors.
+     */
+    ImageWriterPool(String formatName, int capacity) {
+        if (capacity <= 0) {
+            capacity = Runtime.getRuntime().availableProcessors();
+        }
+
+        this.formatName = formatName;
+        this.idleWriters = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * @return Default parameters of the writers of this pool. They must not be modified once writes have started.
+     */
+    ImageWriteParam getDefaultWriteParam() {
+        ImageWriter writer = borrow();
+        try {
+            return writer.getDefaultWriteParam();
+        } finally {
+            release(writer);
+        }
+    }
+
+    /**
+     * Encodes an image.
+     * @param image Image to be encoded.
+     * @param params Parameters the image is encoded with.
+     * @return Encoded image.
+     */
+    byte[] write(BufferedImage image, ImageWriteParam params) throws IOException {
+        ImageWriter writer = borrow();
+        boolean succeeded = false;
+
+        try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
+            // The image stream must be closed before the bytes are read, since it flushes its buffer on close.
+            try (ImageOutputStream imageOutputStream = ImageIO.createImageOutputStream(outputStream)) {
+                writer.setOutput(imageOutputStream);
+                writer.write(null, new IIOImage(image, null, null), params);
+            }
+            succeeded = true;
+            return outputStream.toByteArray();
+        } finally {
+            if (succeeded) {
+                release(writer);
+            } else {
+                // A writer which failed may be left in an undefined state.
+                writer.dispose();
+            }
+        }
+    }
+
+    /**
+     * @return Number of idle writers. Used by unit tests.
+     */
+    int getIdleWriterCount() {
+        return idleWriters.size();
+    }
+
+    private ImageWriter borrow() {
+        ImageWriter writer = idleWriters.poll();
+        return writer != null ? writer : ImageIO.getImageWritersByFormatName(formatName).next();
+    }
+
+    private void release(ImageWriter writer) {
+        writer.reset();
+        if (!idleWriters.offer(writer)) {
+            writer.dispose();
+        }
+    }
+}
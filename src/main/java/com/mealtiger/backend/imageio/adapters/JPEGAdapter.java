@@ -3,14 +3,9 @@ package com.mealtiger.backend.imageio.adapters;
 import com.mealtiger.backend.configuration.Configurator;
 import com.mealtiger.backend.configuration.exceptions.InvalidConfigPropertyException;
 
-import javax.imageio.IIOImage;
-import javax.imageio.ImageIO;
 import javax.imageio.ImageWriteParam;
-import javax.imageio.ImageWriter;
-import javax.imageio.stream.ImageOutputStream;
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 
 /**
@@ -19,13 +14,12 @@ import java.io.IOException;
  * @author Sebastian Maier, Lucca Greschner
  */
 public class JPEGAdapter implements ImageAdapter {
-    private final ImageWriter imageWriter;
+    private final ImageWriterPool imageWriterPool;
     private final ImageWriteParam params;
 
     public JPEGAdapter() {
-        imageWriter = ImageIO.getImageWritersByFormatName("jpg").next();
-
         Configurator configurator = new Configurator();
+        imageWriterPool = new ImageWriterPool("jpg", configurator.getInteger("Image.Processing.parallelism"));
         double compressionQuality = configurator.getDouble("Image.JPEG.compressionQuality");
 
         if (compressionQuality > 100 || compressionQuality <= 0) {
@@ -33,7 +27,7 @@ public class JPEGAdapter implements ImageAdapter {
                     "Compression quality cannot be higher than 100 or lower than 1! Current value is " + compressionQuality);
         }
 
-        params = imageWriter.getDefaultWriteParam();
+        params = imageWriterPool.getDefaultWriteParam();
         params.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
         params.setCompressionQuality(((float) compressionQuality)/100);
     }
@@ -43,7 +37,7 @@ public class JPEGAdapter implements ImageAdapter {
         BufferedImage input;
         if (image.getColorModel().hasAlpha()) {
             // Remove alpha channel
-            BufferedImage newImage = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_BYTE_INDEXED);
+            BufferedImage newImage = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
             Graphics2D graphics2D = newImage.createGraphics();
             graphics2D.fillRect(0,0, image.getWidth(), image.getHeight());
             graphics2D.drawImage(image, 0, 0, null);
@@ -54,11 +48,6 @@ public class JPEGAdapter implements ImageAdapter {
             input = image;
         }
 
-        try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-             ImageOutputStream imageOutputStream = ImageIO.createImageOutputStream(outputStream)) {
-            imageWriter.setOutput(imageOutputStream);
-            imageWriter.write(null, new IIOImage(input, null, null), params);
-            return outputStream.toByteArray();
-        }
+        return imageWriterPool.write(input, params);
     }
 }
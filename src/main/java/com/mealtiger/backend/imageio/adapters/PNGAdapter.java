@@ -2,14 +2,11 @@ package com.mealtiger.backend.imageio.adapters;
 
 import com.mealtiger.backend.configuration.Configurator;
 import com.mealtiger.backend.configuration.exceptions.InvalidConfigPropertyException;
+import com.mealtiger.backend.imageio.quantization.ColorQuantizer;
+import com.mealtiger.backend.imageio.quantization.ColorQuantizerFactory;
 
-import javax.imageio.IIOImage;
-import javax.imageio.ImageIO;
 import javax.imageio.ImageWriteParam;
-import javax.imageio.ImageWriter;
-import javax.imageio.stream.ImageOutputStream;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 
 /**
@@ -18,14 +15,13 @@ import java.io.IOException;
  * @author Sebastian Maier, Lucca Greschner
  */
 public class PNGAdapter implements ImageAdapter {
-    private final ImageWriter imageWriter;
+    private final ImageWriterPool imageWriterPool;
     private final ImageWriteParam params;
+    private final ColorQuantizer quantizer;
 
     public PNGAdapter() {
-        imageWriter = ImageIO.getImageWritersByFormatName("png").next();
-
-
         Configurator configurator = new Configurator();
+        imageWriterPool = new ImageWriterPool("png", configurator.getInteger("Image.Processing.parallelism"));
         double compressionQuality = configurator.getDouble("Image.PNG.compressionQuality");
 
         if (compressionQuality > 100 || compressionQuality <= 0) {
@@ -33,18 +29,18 @@ public class PNGAdapter implements ImageAdapter {
                     "Compression quality cannot be higher than 100 or lower than 1! Current value is " + compressionQuality);
         }
 
-        params = imageWriter.getDefaultWriteParam();
+        params = imageWriterPool.getDefaultWriteParam();
         params.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
         params.setCompressionQuality(((float) compressionQuality) / 100);
+
+        // Images are only reduced to a palette if PNG-8 is enabled.
+        quantizer = configurator.getBoolean("Image.PNG.palette") ? ColorQuantizerFactory.getQuantizer(configurator) : null;
     }
 
     @Override
-    public byte[] convert(BufferedImage input) throws IllegalStateException, IllegalArgumentException, IOException {
-        try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-             ImageOutputStream imageOutputStream = ImageIO.createImageOutputStream(outputStream)) {
-            imageWriter.setOutput(imageOutputStream);
-            imageWriter.write(null, new IIOImage(input, null, null), params);
-            return outputStream.toByteArray();
-        }
+    public byte[] convert(BufferedImage image) throws IllegalStateException, IllegalArgumentException, IOException {
+        BufferedImage input = quantizer != null ? quantizer.quantize(image) : image;
+
+        return imageWriterPool.write(input, params);
     }
 }
@@ -1,49 +1,117 @@
 package com.mealtiger.backend.imageio.adapters;
 
 import com.mealtiger.backend.configuration.Configurator;
+import com.mealtiger.backend.configuration.exceptions.InvalidConfigPropertyException;
 import com.sksamuel.scrimage.ImmutableImage;
 import com.sksamuel.scrimage.webp.WebpWriter;
 
 import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
 
 /**
  * This is a Java class which converts BufferedImages to WebP.
+ * The encoding profile is compiled once from the config. If a cwebp binary is configured, images are encoded
+ * with it directly. Otherwise, they are encoded with scrimage.
  *
  * @author Sebastian Maier, Lucca Greschner, Kay Knöpfle
  */
 public class WebPAdapter implements ImageAdapter {
+    private final WebpWriter writer;
+    private final CWebPEncoder encoder;
+
+    public WebPAdapter() {
+        Configurator configurator = new Configurator();
+        String compressionType = configurator.getString("Image.WebP.compressionType");
+
+        List<String> arguments;
+
+        switch (compressionType) {
+            case "DEFAULT" -> {
+                writer = WebpWriter.DEFAULT;
+                arguments = List.of();
+            }
+            case "LOSSLESS" -> {
+                writer = WebpWriter.MAX_LOSSLESS_COMPRESSION;
+                arguments = List.of("-z", "9");
+            }
+            case "CUSTOM" -> {
+                int compressionFactor = getCompressionFactor(configurator);
+                int compressionMethod = getCompressionMethod(configurator);
+                writer = WebpWriter.DEFAULT
+                        .withQ(compressionFactor)
+                        .withM(compressionMethod);
+                arguments = List.of("-q", String.valueOf(compressionFactor), "-m", String.valueOf(compressionMethod));
+            }
+            case "CUSTOM_LOSSLESS" -> {
+                int compressionFactor = getCompressionFactor(configurator);
+                int compressionMethod = getCompressionMethod(configurator);
+                int losslessSpeedFactor = configurator.getInteger("Image.WebP.losslessSpeedFactor");
+
+                if (losslessSpeedFactor > 9 || losslessSpeedFactor < 0) {
+                    throw new InvalidConfigPropertyException("Image.WebP.losslessSpeedFactor",
+                            "Lossless speed factor cannot be higher than 9 or lower than 0! Current value is " + losslessSpeedFactor);
+                }
+
+                writer = WebpWriter.MAX_LOSSLESS_COMPRESSION
+                        .withZ(losslessSpeedFactor)
+                        .withQ(compressionFactor)
+                        .withM(compressionMethod);
+                arguments = List.of("-z", String.valueOf(losslessSpeedFactor),
+                        "-q", String.valueOf(compressionFactor), "-m", String.valueOf(compressionMethod));
+            }
+            default -> throw new InvalidConfigPropertyException("Image.WebP.compressionType",
+                    "No such compressionType as " + compressionType + "!");
+        }
+
+        String encoderPath = configurator.getString("Image.WebP.encoderPath");
+
+        if (encoderPath == null || encoderPath.isBlank()) {
+            encoder = null;
+        } else {
+            String scratchDirectory = configurator.getString("Image.WebP.scratchDirectory");
+            try {
+                encoder = new CWebPEncoder(Path.of(encoderPath),
+                        scratchDirectory == null || scratchDirectory.isBlank() ? CWebPEncoder.getDefaultScratchDirectory() : Path.of(scratchDirectory),
+                        arguments,
+                        Duration.ofMillis(configurator.getInteger("Image.WebP.encoderTimeout")));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not create WebP scratch directory!", e);
+            }
+        }
+    }
 
     @Override
     public byte[] convert(BufferedImage input) throws IllegalStateException, IllegalArgumentException, IOException {
-        ImmutableImage image = ImmutableImage.fromAwt(input);
+        if (encoder != null) {
+            return encoder.encode(input);
+        }
 
-        Configurator configurator = new Configurator();
-        String compressionType = configurator.getString("Image.WebP.compressionType");
+        return ImmutableImage.fromAwt(input).bytes(writer);
+    }
+
+    private static int getCompressionFactor(Configurator configurator) {
+        int compressionFactor = configurator.getInteger("Image.WebP.compressionFactor");
 
-        if ("DEFAULT".equals(compressionType)) {
-            return image.bytes(WebpWriter.DEFAULT);
-        } else if ("LOSSLESS".equals(compressionType)) {
-            return image.bytes(WebpWriter.MAX_LOSSLESS_COMPRESSION);
-        } else if ("CUSTOM".equals(compressionType)) {
-            int compressionFactor = configurator.getInteger("Image.WebP.compressionFactor");
-            int compressionMethod = configurator.getInteger("Image.WebP.compressionMethod");
-            return image.bytes(WebpWriter.DEFAULT
-                    .withQ(compressionFactor)
-                    .withM(compressionMethod)
-            );
-        } else if ("CUSTOM_LOSSLESS".equals(compressionType)) {
-            int compressionFactor = configurator.getInteger("Image.WebP.compressionFactor");
-            int compressionMethod = configurator.getInteger("Image.WebP.compressionMethod");
-            int losslessSpeedFactor = configurator.getInteger("Image.WebP.losslessSpeedFactor");
-            return image.bytes(WebpWriter.MAX_LOSSLESS_COMPRESSION
-                    .withZ(losslessSpeedFactor)
-                    .withQ(compressionFactor)
-                    .withM(compressionMethod)
-            );
+        if (compressionFactor > 100 || compressionFactor < 0) {
+            throw new InvalidConfigPropertyException("Image.WebP.compressionFactor",
+                    "Compression factor cannot be higher than 100 or lower than 0! Current value is " + compressionFactor);
         }
-        else {
-            throw new IllegalArgumentException("No such compressionType as " + compressionType + "!");
+
+        return compressionFactor;
+    }
+
+    private static int getCompressionMethod(Configurator configurator) {
+        int compressionMethod = configurator.getInteger("Image.WebP.compressionMethod");
+
+        if (compressionMethod > 6 || compressionMethod < 0) {
+            throw new InvalidConfigPropertyException("Image.WebP.compressionMethod",
+                    "Compression method cannot be higher than 6 or lower than 0! Current value is " + compressionMethod);
         }
+
+        return compressionMethod;
     }
 }
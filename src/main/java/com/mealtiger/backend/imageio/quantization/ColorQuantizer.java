@@ -0,0 +1,18 @@
+package com.mealtiger.backend.imageio.quantization;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * A color quantizer reduces the colors of an image to a palette.
+ * It is used by adapters of palette-based image formats only, e.g. GIF.
+ */
+public interface ColorQuantizer {
+
+    /**
+     * Reduces the colors of an image to a palette.
+     * @param image True-color image.
+     * @return Image of type BufferedImage.TYPE_BYTE_INDEXED.
+     */
+    BufferedImage quantize(BufferedImage image);
+
+}
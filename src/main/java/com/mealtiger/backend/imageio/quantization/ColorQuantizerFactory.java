@@ -0,0 +1,29 @@
+package com.mealtiger.backend.imageio.quantization;
+
+import com.mealtiger.backend.configuration.Configurator;
+import com.mealtiger.backend.configuration.exceptions.InvalidConfigPropertyException;
+
+/**
+ * This class creates the color quantizer configured in the image config.
+ */
+public final class ColorQuantizerFactory {
+
+    private ColorQuantizerFactory() {
+    }
+
+    /**
+     * @param configurator Configurator to read the quantization config with.
+     * @return Configured color quantizer.
+     * @throws InvalidConfigPropertyException Whenever the configured algorithm is unknown.
+     */
+    public static ColorQuantizer getQuantizer(Configurator configurator) {
+        String algorithm = configurator.getString("Image.Quantization.algorithm");
+
+        return switch (algorithm) {
+            case "octree" -> new OctreeQuantizer(OctreeQuantizer.MAX_COLORS, configurator.getInteger("Image.Quantization.parallelism"));
+            case "java2d" -> new Java2DQuantizer();
+            default -> throw new InvalidConfigPropertyException("Image.Quantization.algorithm",
+                    "Valid algorithms are octree and java2d! Current value is " + algorithm);
+        };
+    }
+}
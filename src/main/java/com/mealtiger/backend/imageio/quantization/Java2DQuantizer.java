@@ -0,0 +1,20 @@
+package com.mealtiger.backend.imageio.quantization;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * This color quantizer maps images to the fixed default palette of Java2D.
+ * It is fast on small images, but slow on large ones and reproduces colors rather poorly.
+ */
+public class Java2DQuantizer implements ColorQuantizer {
+
+    @Override
+    public BufferedImage quantize(BufferedImage image) {
+        BufferedImage indexedImage = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_BYTE_INDEXED);
+        Graphics2D graphics2D = indexedImage.createGraphics();
+        graphics2D.drawImage(image, 0, 0, null);
+        graphics2D.dispose();
+        return indexedImage;
+    }
+}
@@ -0,0 +1,349 @@
+package com.mealtiger.backend.imageio.quantization;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * This color quantizer builds an adaptive palette of an image with an octree.
+ * Colors are collected in a histogram of 5 bits per channel first, so that the octree only needs to be built from
+ * the distinct histogram entries instead of every pixel. The histogram and the mapping of pixels to the palette
+ * may be split into bands of rows which are processed in parallel.
+ * Pixels which are mostly transparent are mapped to a transparent palette entry.
+ */
+public class OctreeQuantizer implements ColorQuantizer {
+
+    /**
+     * Maximum number of colors of palette-based formats.
+     */
+    public static final int MAX_COLORS = 256;
+
+    private static final int CHANNEL_BITS = 5;
+    private static final int HISTOGRAM_SIZE = 1 << (3 * CHANNEL_BITS);
+    private static final int ALPHA_THRESHOLD = 128;
+    private static final int ROWS_PER_READ = 16;
+    private static final char TRANSPARENT = HISTOGRAM_SIZE;
+
+    private final int maxColors;
+    private final int parallelism;
+
+    /**
+     * @param maxColors Maximum number of colors of the palette, including the transparent color.
+     * @param parallelism Number of bands an image is split into to be processed in parallel. 1 processes images sequentially.
+     */
+    public OctreeQuantizer(int maxColors, int parallelism) {
+        if (maxColors < 2 || maxColors > MAX_COLORS) {
+            throw new IllegalArgumentException("Palette must have between 2 and " + MAX_COLORS + " colors!");
+        }
+
+        this.maxColors = maxColors;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    @Override
+    public BufferedImage quantize(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int bands = Math.min(parallelism, height);
+
+        // Histogram entry of every pixel, so that the image only needs to be read once.
+        char[] pixelColors = new char[width * height];
+
+        Histogram histogram = inBands(bands)
+                .mapToObj(band -> buildHistogram(image, pixelColors, bandStart(band, bands, height), bandStart(band + 1, bands, height)))
+                .reduce(Histogram::merge)
+                .orElseGet(Histogram::new);
+
+        boolean transparent = histogram.transparentPixels > 0;
+
+        Octree octree = new Octree();
+        for (int color = 0; color < HISTOGRAM_SIZE; color++) {
+            int bin = color * Histogram.BIN_SIZE;
+            if (histogram.bins[bin] > 0) {
+                octree.add(color, histogram.bins[bin], histogram.bins[bin + 1], histogram.bins[bin + 2], histogram.bins[bin + 3]);
+            }
+        }
+        octree.reduce(transparent ? maxColors - 1 : maxColors);
+
+        int paletteSize = octree.leafCount + (transparent ? 1 : 0);
+        byte[] red = new byte[paletteSize];
+        byte[] green = new byte[paletteSize];
+        byte[] blue = new byte[paletteSize];
+        octree.fillPalette(red, green, blue);
+
+        int transparentIndex = transparent ? paletteSize - 1 : -1;
+
+        byte[] lookupTable = new byte[HISTOGRAM_SIZE + 1];
+        for (int color = 0; color < HISTOGRAM_SIZE; color++) {
+            if (histogram.bins[color * Histogram.BIN_SIZE] > 0) {
+                lookupTable[color] = (byte) octree.indexOf(color);
+            }
+        }
+        lookupTable[TRANSPARENT] = (byte) transparentIndex;
+
+        IndexColorModel colorModel = new IndexColorModel(8, paletteSize, red, green, blue, transparentIndex);
+        BufferedImage indexedImage = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_INDEXED, colorModel);
+        byte[] indices = ((DataBufferByte) indexedImage.getRaster().getDataBuffer()).getData();
+
+        inBands(bands).forEach(band -> {
+            int end = bandStart(band + 1, bands, height) * width;
+            for (int i = bandStart(band, bands, height) * width; i < end; i++) {
+                indices[i] = lookupTable[pixelColors[i]];
+            }
+        });
+
+        return indexedImage;
+    }
+
+    private static IntStream inBands(int bands) {
+        IntStream stream = IntStream.range(0, bands);
+        return bands > 1 ? stream.parallel() : stream;
+    }
+
+    private static int bandStart(int band, int bands, int height) {
+        return (int) ((long) band * height / bands);
+    }
+
+    /**
+     * Collects the colors of a band of rows.
+     * @param pixelColors Array the histogram entry of each pixel is written to.
+     */
+    private static Histogram buildHistogram(BufferedImage image, char[] pixelColors, int startRow, int endRow) {
+        Histogram histogram = new Histogram();
+        int width = image.getWidth();
+        int[] pixels = new int[width * ROWS_PER_READ];
+        Object buffer = null;
+
+        for (int y = startRow; y < endRow; y += ROWS_PER_READ) {
+            int rows = Math.min(ROWS_PER_READ, endRow - y);
+            buffer = readPixels(image, y, rows, pixels, buffer);
+
+            int offset = y * width;
+            for (int i = 0; i < width * rows; i++) {
+                int argb = pixels[i];
+
+                if ((argb >>> 24) < ALPHA_THRESHOLD) {
+                    histogram.transparentPixels++;
+                    pixelColors[offset + i] = TRANSPARENT;
+                    continue;
+                }
+
+                int color = toHistogramIndex(argb);
+                pixelColors[offset + i] = (char) color;
+
+                int bin = color * Histogram.BIN_SIZE;
+                histogram.bins[bin]++;
+                histogram.bins[bin + 1] += (argb >> 16) & 0xFF;
+                histogram.bins[bin + 2] += (argb >> 8) & 0xFF;
+                histogram.bins[bin + 3] += argb & 0xFF;
+            }
+        }
+
+        return histogram;
+    }
+
+    /**
+     * Reads rows of an image as ARGB pixels. The raster of the image types decoders usually return is read directly,
+     * since BufferedImage.getRGB converts every pixel through the color model of the image.
+     * @param pixels Array the pixels are written to.
+     * @param buffer Buffer returned by the previous call, may be null.
+     * @return Buffer to be passed to the next call.
+     */
+    private static Object readPixels(BufferedImage image, int y, int rows, int[] pixels, Object buffer) {
+        int width = image.getWidth();
+        int length = width * rows;
+
+        switch (image.getType()) {
+            case BufferedImage.TYPE_INT_RGB -> {
+                image.getRaster().getDataElements(0, y, width, rows, pixels);
+                for (int i = 0; i < length; i++) {
+                    pixels[i] |= 0xFF000000;
+                }
+            }
+            case BufferedImage.TYPE_INT_ARGB -> image.getRaster().getDataElements(0, y, width, rows, pixels);
+            case BufferedImage.TYPE_3BYTE_BGR -> {
+                // Data elements are returned in the order of the bands, i.e. RGB.
+                byte[] samples = (byte[]) image.getRaster().getDataElements(0, y, width, rows, buffer);
+                for (int i = 0, j = 0; i < length; i++, j += 3) {
+                    pixels[i] = 0xFF000000 | (samples[j] & 0xFF) << 16 | (samples[j + 1] & 0xFF) << 8 | (samples[j + 2] & 0xFF);
+                }
+                return samples;
+            }
+            case BufferedImage.TYPE_4BYTE_ABGR -> {
+                byte[] samples = (byte[]) image.getRaster().getDataElements(0, y, width, rows, buffer);
+                for (int i = 0, j = 0; i < length; i++, j += 4) {
+                    pixels[i] = (samples[j + 3] & 0xFF) << 24 | (samples[j] & 0xFF) << 16 | (samples[j + 1] & 0xFF) << 8 | (samples[j + 2] & 0xFF);
+                }
+                return samples;
+            }
+            case BufferedImage.TYPE_BYTE_GRAY -> {
+                byte[] samples = (byte[]) image.getRaster().getDataElements(0, y, width, rows, buffer);
+                for (int i = 0; i < length; i++) {
+                    int gray = samples[i] & 0xFF;
+                    pixels[i] = 0xFF000000 | gray << 16 | gray << 8 | gray;
+                }
+                return samples;
+            }
+            default -> image.getRGB(0, y, width, rows, pixels, 0, width);
+        }
+
+        return buffer;
+    }
+
+    private static int toHistogramIndex(int argb) {
+        int red = (argb >> (16 + 8 - CHANNEL_BITS)) & 0x1F;
+        int green = (argb >> (8 + 8 - CHANNEL_BITS)) & 0x1F;
+        int blue = (argb >> (8 - CHANNEL_BITS)) & 0x1F;
+        return (red << (2 * CHANNEL_BITS)) | (green << CHANNEL_BITS) | blue;
+    }
+
+    /**
+     * Colors of an image reduced to 5 bits per channel, along with the sums of their exact channel values.
+     * The pixel count and the sums of a color are stored next to each other.
+     */
+    private static class Histogram {
+        private static final int BIN_SIZE = 4;
+
+        private final long[] bins = new long[HISTOGRAM_SIZE * BIN_SIZE];
+        private long transparentPixels;
+
+        private Histogram merge(Histogram other) {
+            for (int i = 0; i < bins.length; i++) {
+                bins[i] += other.bins[i];
+            }
+            transparentPixels += other.transparentPixels;
+            return this;
+        }
+    }
+
+    /**
+     * Octree of the histogram colors. Each level splits the colors by one more bit per channel.
+     */
+    private static class Octree {
+        private final Node root = new Node();
+        private final List<List<Node>> reducibleNodes = new ArrayList<>();
+        private int leafCount;
+
+        private Octree() {
+            for (int level = 0; level < CHANNEL_BITS; level++) {
+                reducibleNodes.add(new ArrayList<>());
+            }
+        }
+
+        private void add(int color, long count, long sumRed, long sumGreen, long sumBlue) {
+            Node node = root;
+            node.pixelCount += count;
+
+            for (int level = 0; level < CHANNEL_BITS; level++) {
+                if (node.children == null) {
+                    node.children = new Node[8];
+                    reducibleNodes.get(level).add(node);
+                }
+
+                int childIndex = getChildIndex(color, level);
+                Node child = node.children[childIndex];
+
+                if (child == null) {
+                    child = new Node();
+                    node.children[childIndex] = child;
+                    if (level == CHANNEL_BITS - 1) {
+                        child.leaf = true;
+                        leafCount++;
+                    }
+                }
+
+                node = child;
+                node.pixelCount += count;
+            }
+
+            node.sumRed += sumRed;
+            node.sumGreen += sumGreen;
+            node.sumBlue += sumBlue;
+        }
+
+        /**
+         * Merges the least used nodes of the deepest levels into their parents until the octree has few enough leaves.
+         */
+        private void reduce(int maxLeaves) {
+            for (int level = CHANNEL_BITS - 1; level >= 0 && leafCount > maxLeaves; level--) {
+                List<Node> nodes = reducibleNodes.get(level);
+                nodes.sort(Comparator.comparingLong(node -> node.pixelCount));
+
+                for (int i = 0; i < nodes.size() && leafCount > maxLeaves; i++) {
+                    merge(nodes.get(i));
+                }
+            }
+        }
+
+        private void merge(Node node) {
+            int children = 0;
+
+            for (Node child : node.children) {
+                if (child != null) {
+                    node.sumRed += child.sumRed;
+                    node.sumGreen += child.sumGreen;
+                    node.sumBlue += child.sumBlue;
+                    children++;
+                }
+            }
+
+            node.children = null;
+            node.leaf = true;
+            leafCount -= children - 1;
+        }
+
+        private void fillPalette(byte[] red, byte[] green, byte[] blue) {
+            fillPalette(root, red, green, blue, new int[1]);
+        }
+
+        private void fillPalette(Node node, byte[] red, byte[] green, byte[] blue, int[] nextIndex) {
+            if (node.leaf) {
+                node.paletteIndex = nextIndex[0]++;
+                red[node.paletteIndex] = (byte) (node.sumRed / node.pixelCount);
+                green[node.paletteIndex] = (byte) (node.sumGreen / node.pixelCount);
+                blue[node.paletteIndex] = (byte) (node.sumBlue / node.pixelCount);
+                return;
+            }
+
+            if (node.children != null) {
+                for (Node child : node.children) {
+                    if (child != null) {
+                        fillPalette(child, red, green, blue, nextIndex);
+                    }
+                }
+            }
+        }
+
+        private int indexOf(int color) {
+            Node node = root;
+
+            for (int level = 0; !node.leaf; level++) {
+                node = node.children[getChildIndex(color, level)];
+            }
+
+            return node.paletteIndex;
+        }
+
+        private static int getChildIndex(int color, int level) {
+            int shift = CHANNEL_BITS - 1 - level;
+            int red = (color >> (2 * CHANNEL_BITS + shift)) & 1;
+            int green = (color >> (CHANNEL_BITS + shift)) & 1;
+            int blue = (color >> shift) & 1;
+            return (red << 2) | (green << 1) | blue;
+        }
+    }
+
+    private static class Node {
+        private Node[] children;
+        private boolean leaf;
+        private long pixelCount;
+        private long sumRed;
+        private long sumGreen;
+        private long sumBlue;
+        private int paletteIndex;
+    }
+}
@@ -0,0 +1,62 @@
+package com.mealtiger.backend.imageio.store;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A file set in the image store, i.e. all files of an image.
+ * @param id ID of the file set.
+ * @param size Size of all files in bytes.
+ * @param lastModified Time the latest file has been written at, in milliseconds since the epoch.
+ */
+public record FileSet(String id, long size, long lastModified) {
+
+    /**
+     * Merges the files of each file set into one file set.
+     * @param files Single files as file sets, ordered by the ID of their file set.
+     * @return File sets. They are merged lazily while the stream is consumed.
+     */
+    static Stream<FileSet> merge(Iterator<FileSet> files) {
+        Iterator<FileSet> fileSets = new Iterator<>() {
+
+            /**
+             * First file of the next file set, which has been read while merging the previous one.
+             */
+            private FileSet pending;
+
+            @Override
+            public boolean hasNext() {
+                return pending != null || files.hasNext();
+            }
+
+            @Override
+            public FileSet next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                FileSet fileSet = pending != null ? pending : files.next();
+                pending = null;
+
+                while (files.hasNext()) {
+                    FileSet file = files.next();
+
+                    if (!file.id().equals(fileSet.id())) {
+                        pending = file;
+                        break;
+                    }
+
+                    fileSet = new FileSet(fileSet.id(), fileSet.size() + file.size(), Math.max(fileSet.lastModified(), file.lastModified()));
+                }
+
+                return fileSet;
+            }
+        };
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(fileSets, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+}
@@ -0,0 +1,173 @@
+package com.mealtiger.backend.imageio.store;
+
+import com.mealtiger.backend.configuration.Configurator;
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * This class stores the files of images in directories on the local file system.
+ * Every file set is a directory, placed in the image path according to the ImageStoreLayout.
+ */
+public class FileSystemImageStore implements ImageStore {
+
+    private final ImageStoreLayout layout;
+
+    public FileSystemImageStore(Configurator configurator) {
+        this(new ImageStoreLayout(configurator));
+    }
+
+    public FileSystemImageStore(ImageStoreLayout layout) {
+        this.layout = layout;
+    }
+
+    /**
+     * @return Layout of the image directories.
+     */
+    public ImageStoreLayout getLayout() {
+        return layout;
+    }
+
+    @Override
+    public boolean exists(String fileSetId) {
+        return Files.isDirectory(layout.locate(fileSetId));
+    }
+
+    @Override
+    public boolean exists(String fileSetId, String fileName) {
+        return Files.exists(layout.locate(fileSetId).resolve(fileName));
+    }
+
+    @Override
+    public ImageFile read(String fileSetId, String fileName) throws IOException {
+        Path path = layout.locate(fileSetId).resolve(fileName);
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+
+        return new ImageFile(fileName, attributes.size(), attributes.lastModifiedTime().toMillis(), new FileSystemResource(path));
+    }
+
+    /**
+     * Writes a file. The file is written under a temporary name first and renamed afterwards.
+     */
+    @Override
+    public void write(String fileSetId, String fileName, InputStream content, long size) throws IOException {
+        Path directory = layout.locate(fileSetId);
+        Files.createDirectories(directory);
+
+        Path temporaryPath = Files.createTempFile(directory, fileName, ".tmp");
+
+        try {
+            Files.copy(content, temporaryPath, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temporaryPath, directory.resolve(fileName), StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporaryPath);
+        }
+    }
+
+    @Override
+    public void delete(String fileSetId, String fileName) throws IOException {
+        Files.deleteIfExists(layout.locate(fileSetId).resolve(fileName));
+    }
+
+    @Override
+    public void deleteAll(String fileSetId) throws IOException {
+        Files.walkFileTree(layout.locate(fileSetId),
+                new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult postVisitDirectory(
+                            Path dir, IOException exc) throws IOException {
+                        Files.delete(dir);
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFile(
+                            Path file, BasicFileAttributes attrs)
+                            throws IOException {
+                        Files.delete(file);
+                        return FileVisitResult.CONTINUE;
+                    }
+                }
+        );
+    }
+
+    /**
+     * Moves all files of a file set. The directory is renamed, thus the files are moved at once.
+     */
+    @Override
+    public void move(String fileSetId, String newFileSetId) throws IOException {
+        Path newDirectory = layout.resolve(newFileSetId);
+        Files.createDirectories(newDirectory.getParent());
+        Files.move(layout.locate(fileSetId), newDirectory, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Lists the directories of all file sets, in the configured layout as well as in the flat layout.
+     */
+    @Override
+    public Stream<FileSet> list() throws IOException {
+        if (!Files.isDirectory(layout.getRoot())) {
+            return Stream.empty();
+        }
+
+        return Files.find(layout.getRoot(), layout.getFanOutLevels() + 1,
+                        (path, attributes) -> attributes.isDirectory() && layout.isImageDirectory(path))
+                .map(this::readFileSet)
+                .filter(Objects::nonNull);
+    }
+
+    /**
+     * Moves the directory of a file set from the flat layout to the configured layout.
+     * @param fileSetId ID of the file set.
+     * @return True if the directory has been moved, false if it is not saved in the flat layout.
+     */
+    public boolean migrate(String fileSetId) throws IOException {
+        Path flatDirectory = layout.resolveFlat(fileSetId);
+        Path directory = layout.resolve(fileSetId);
+
+        if (flatDirectory.equals(directory) || !Files.isDirectory(flatDirectory)) {
+            return false;
+        }
+
+        Files.createDirectories(directory.getParent());
+        Files.move(flatDirectory, directory, StandardCopyOption.ATOMIC_MOVE);
+        return true;
+    }
+
+    /**
+     * Reads the size and modification time of an image directory.
+     * @param directory Image directory.
+     * @return File set of the directory, null if it has been deleted in the meantime.
+     */
+    private FileSet readFileSet(Path directory) {
+        long size = 0;
+        long lastModified;
+
+        try (Stream<Path> files = Files.list(directory)) {
+            lastModified = Files.getLastModifiedTime(directory).toMillis();
+
+            for (Path file : files.toList()) {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                size += attributes.size();
+                lastModified = Math.max(lastModified, attributes.lastModifiedTime().toMillis());
+            }
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return new FileSet(directory.getFileName().toString(), size, lastModified);
+    }
+}
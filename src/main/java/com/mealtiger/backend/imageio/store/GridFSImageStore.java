@@ -0,0 +1,227 @@
+package com.mealtiger.backend.imageio.store;
+
+import com.mealtiger.backend.configuration.Configurator;
+import com.mongodb.MongoGridFSException;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.gridfs.GridFSBucket;
+import com.mongodb.client.gridfs.GridFSBuckets;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Sorts;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.util.unit.DataSize;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * This class stores the files of images in MongoDB using GridFS, so that all backend nodes share the same files.
+ * Files are named {fileSetId}/{fileName}. Since GridFS files are immutable, a file is replaced by uploading
+ * a new revision and deleting the older ones afterwards. Readers always get the latest revision.
+ */
+public class GridFSImageStore implements ImageStore {
+
+    private static final Logger log = LoggerFactory.getLogger(GridFSImageStore.class);
+
+    private static final String FILENAME = "filename";
+
+    private final GridFSBucket bucket;
+
+    public GridFSImageStore(MongoDatabase database, Configurator configurator) {
+        this(GridFSBuckets.create(database, configurator.getString("Image.Storage.GridFS.bucket"))
+                .withChunkSizeBytes((int) DataSize.parse(configurator.getString("Image.Storage.GridFS.chunkSize")).toBytes()));
+    }
+
+    public GridFSImageStore(GridFSBucket bucket) {
+        this.bucket = bucket;
+
+        log.debug("Storing images in GridFS bucket {} in chunks of {} bytes.", bucket.getBucketName(), bucket.getChunkSizeBytes());
+    }
+
+    @Override
+    public boolean exists(String fileSetId) {
+        return bucket.find(inFileSet(fileSetId)).limit(1).first() != null;
+    }
+
+    @Override
+    public boolean exists(String fileSetId, String fileName) {
+        return findLatest(fileSetId, fileName) != null;
+    }
+
+    @Override
+    public ImageFile read(String fileSetId, String fileName) throws IOException {
+        GridFSFile file = findLatest(fileSetId, fileName);
+
+        if (file == null) {
+            throw new NoSuchFileException(getFilename(fileSetId, fileName));
+        }
+
+        return new ImageFile(fileName, file.getLength(), file.getUploadDate().getTime(), new GridFSFileResource(bucket, file, fileName));
+    }
+
+    /**
+     * Writes a file. GridFS makes the file visible once all of its chunks have been uploaded.
+     */
+    @Override
+    public void write(String fileSetId, String fileName, InputStream content, long size) throws IOException {
+        String filename = getFilename(fileSetId, fileName);
+
+        try {
+            ObjectId id = bucket.uploadFromStream(filename, content);
+
+            for (GridFSFile revision : bucket.find(Filters.and(Filters.eq(FILENAME, filename), Filters.ne("_id", id)))) {
+                bucket.delete(revision.getObjectId());
+            }
+        } catch (MongoGridFSException e) {
+            throw new IOException("Could not write file " + filename + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void delete(String fileSetId, String fileName) {
+        for (GridFSFile file : bucket.find(Filters.eq(FILENAME, getFilename(fileSetId, fileName)))) {
+            deleteIfExists(file);
+        }
+    }
+
+    @Override
+    public void deleteAll(String fileSetId) throws IOException {
+        List<GridFSFile> files = findFileSet(fileSetId);
+
+        if (files.isEmpty()) {
+            throw new NoSuchFileException(fileSetId);
+        }
+
+        files.forEach(this::deleteIfExists);
+    }
+
+    /**
+     * Moves all files of a file set. Each file is renamed on its own, so that readers may see both file sets for a moment.
+     */
+    @Override
+    public void move(String fileSetId, String newFileSetId) throws IOException {
+        List<GridFSFile> files = findFileSet(fileSetId);
+
+        if (files.isEmpty()) {
+            throw new NoSuchFileException(fileSetId);
+        }
+
+        for (GridFSFile file : files) {
+            String fileName = file.getFilename().substring(fileSetId.length() + 1);
+            bucket.rename(file.getObjectId(), getFilename(newFileSetId, fileName));
+        }
+    }
+
+    /**
+     * Lists all file sets. Files are read ordered by their name, which is answered by the index GridFS creates on it.
+     */
+    @Override
+    public Stream<FileSet> list() {
+        MongoCursor<GridFSFile> cursor = bucket.find().sort(Sorts.ascending(FILENAME)).iterator();
+
+        Stream<FileSet> files = StreamSupport.stream(Spliterators.spliteratorUnknownSize(cursor, Spliterator.ORDERED), false)
+                // Files not named {fileSetId}/{fileName} do not belong to any file set.
+                .filter(file -> file.getFilename().indexOf('/') > 0)
+                .map(file -> new FileSet(file.getFilename().substring(0, file.getFilename().indexOf('/')),
+                        file.getLength(), file.getUploadDate().getTime()));
+
+        return FileSet.merge(files.iterator()).onClose(cursor::close);
+    }
+
+    // HELPER METHODS
+
+    private GridFSFile findLatest(String fileSetId, String fileName) {
+        return bucket.find(Filters.eq(FILENAME, getFilename(fileSetId, fileName)))
+                .sort(Sorts.descending("uploadDate"))
+                .limit(1)
+                .first();
+    }
+
+    private List<GridFSFile> findFileSet(String fileSetId) {
+        return bucket.find(inFileSet(fileSetId)).into(new ArrayList<>());
+    }
+
+    private void deleteIfExists(GridFSFile file) {
+        try {
+            bucket.delete(file.getObjectId());
+        } catch (MongoGridFSException e) {
+            // The file has been deleted concurrently.
+            log.trace("File {} has already been deleted.", file.getFilename());
+        }
+    }
+
+    /**
+     * @return Filter matching all files of a file set. The prefix match is answered by the index on the file name.
+     */
+    private static Bson inFileSet(String fileSetId) {
+        return Filters.regex(FILENAME, "^" + Pattern.quote(fileSetId + "/"));
+    }
+
+    private static String getFilename(String fileSetId, String fileName) {
+        return fileSetId + "/" + fileName;
+    }
+
+    /**
+     * Content of a GridFS file. Every read opens a new download stream.
+     */
+    private static final class GridFSFileResource extends AbstractResource {
+
+        private final GridFSBucket bucket;
+        private final GridFSFile file;
+        private final String fileName;
+
+        private GridFSFileResource(GridFSBucket bucket, GridFSFile file, String fileName) {
+            this.bucket = bucket;
+            this.file = file;
+            this.fileName = fileName;
+        }
+
+        @Override
+        public String getDescription() {
+            return "GridFS file [" + file.getFilename() + "]";
+        }
+
+        @Override
+        public String getFilename() {
+            return fileName;
+        }
+
+        @Override
+        public boolean exists() {
+            return bucket.find(Filters.eq("_id", file.getObjectId())).first() != null;
+        }
+
+        @Override
+        public long contentLength() {
+            return file.getLength();
+        }
+
+        @Override
+        public long lastModified() {
+            return file.getUploadDate().getTime();
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            try {
+                return bucket.openDownloadStream(file.getObjectId());
+            } catch (MongoGridFSException e) {
+                throw new FileNotFoundException(getDescription() + " does not exist anymore");
+            }
+        }
+    }
+}
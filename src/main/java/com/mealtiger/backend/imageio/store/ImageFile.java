@@ -0,0 +1,13 @@
+package com.mealtiger.backend.imageio.store;
+
+import org.springframework.core.io.Resource;
+
+/**
+ * A file of an image in the image store.
+ * @param name Name of the file, e.g. image.webp.
+ * @param size Size of the file in bytes.
+ * @param lastModified Time the file has been written at, in milliseconds since the epoch.
+ * @param content Content of the file. It is streamed from the image store whenever it is read.
+ */
+public record ImageFile(String name, long size, long lastModified, Resource content) {
+}
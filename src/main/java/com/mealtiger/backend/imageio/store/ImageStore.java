@@ -0,0 +1,75 @@
+package com.mealtiger.backend.imageio.store;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.stream.Stream;
+
+/**
+ * This interface describes where the files of images are stored.
+ * Every image owns a file set, i.e. the original upload and its converted formats, identified by the ID of the image.
+ * Images identical to an earlier upload reference the file set of that upload instead.
+ */
+public interface ImageStore {
+
+    /**
+     * @param fileSetId ID of the file set.
+     * @return True if the file set contains at least one file.
+     */
+    boolean exists(String fileSetId);
+
+    /**
+     * @param fileSetId ID of the file set.
+     * @param fileName Name of the file.
+     * @return True if the file exists.
+     */
+    boolean exists(String fileSetId, String fileName);
+
+    /**
+     * Looks up a file. Its content is not read until it is requested from the returned file.
+     * @param fileSetId ID of the file set.
+     * @param fileName Name of the file.
+     * @return File of the image.
+     * @throws java.nio.file.NoSuchFileException Whenever the file does not exist.
+     */
+    ImageFile read(String fileSetId, String fileName) throws IOException;
+
+    /**
+     * Writes a file. The file becomes visible once it has been written completely, thus a partially written file is never read.
+     * An existing file of the same name is replaced.
+     * @param fileSetId ID of the file set.
+     * @param fileName Name of the file.
+     * @param content Content of the file. It is streamed to the image store, the caller closes it.
+     * @param size Size of the content in bytes.
+     */
+    void write(String fileSetId, String fileName, InputStream content, long size) throws IOException;
+
+    /**
+     * Deletes a file if it exists.
+     * @param fileSetId ID of the file set.
+     * @param fileName Name of the file.
+     */
+    void delete(String fileSetId, String fileName) throws IOException;
+
+    /**
+     * Deletes all files of a file set.
+     * @param fileSetId ID of the file set.
+     * @throws java.nio.file.NoSuchFileException Whenever the file set does not exist.
+     */
+    void deleteAll(String fileSetId) throws IOException;
+
+    /**
+     * Moves all files of a file set to another file set.
+     * @param fileSetId ID of the file set.
+     * @param newFileSetId ID of the file set the files are moved to.
+     * @throws java.nio.file.NoSuchFileException Whenever the file set does not exist.
+     */
+    void move(String fileSetId, String newFileSetId) throws IOException;
+
+    /**
+     * Lists all file sets. They are read lazily while the stream is consumed, thus the stream has to be closed.
+     * File sets written or deleted in the meantime may or may not be listed.
+     * @return File sets of the image store.
+     * @throws java.io.UncheckedIOException Whenever the file sets cannot be read while the stream is consumed.
+     */
+    Stream<FileSet> list() throws IOException;
+}
@@ -0,0 +1,34 @@
+package com.mealtiger.backend.imageio.store;
+
+import com.mealtiger.backend.configuration.Configurator;
+import com.mealtiger.backend.configuration.exceptions.InvalidConfigPropertyException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+
+/**
+ * This bean creates the image store configured in the image config.
+ */
+@Configuration
+public class ImageStoreConfiguration {
+
+    /**
+     * @param configurator Configurator to read the storage config with.
+     * @param mongoDatabaseFactory Factory of the database GridFS files are stored in.
+     * @return Configured image store.
+     * @throws InvalidConfigPropertyException Whenever the configured backend is unknown.
+     */
+    @Bean
+    public ImageStore imageStore(Configurator configurator, ObjectProvider<MongoDatabaseFactory> mongoDatabaseFactory) {
+        String backend = configurator.getString("Image.Storage.backend");
+
+        return switch (backend) {
+            case "filesystem" -> new FileSystemImageStore(configurator);
+            case "gridfs" -> new GridFSImageStore(mongoDatabaseFactory.getObject().getMongoDatabase(), configurator);
+            case "s3" -> new S3ImageStore(configurator);
+            default -> throw new InvalidConfigPropertyException("Image.Storage.backend",
+                    "Valid backends are filesystem, gridfs and s3! Current value is " + backend);
+        };
+    }
+}
@@ -0,0 +1,143 @@
+package com.mealtiger.backend.imageio.store;
+
+import com.mealtiger.backend.configuration.Configurator;
+import com.mealtiger.backend.configuration.exceptions.InvalidConfigPropertyException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.regex.Pattern;
+
+/**
+ * This class maps images to their directories in the image store.
+ * Instead of keeping all image directories in one directory, they are fanned out into nested shard directories,
+ * e.g. imagePath/3f/a1/{uuid}/. Shard directories are named after the hash of the image ID, so that images are
+ * spread evenly. With Image.Storage.fanOutLevels set to 0, image directories are kept directly in the image path.
+ * Images saved in the flat layout remain readable, so that they can be migrated while the store is in use.
+ */
+public class ImageStoreLayout {
+
+    private static final int MAX_FAN_OUT_LEVELS = 4;
+
+    private static final Pattern SHARD_DIRECTORY_NAME = Pattern.compile("[0-9a-f]{2}");
+
+    private final Path root;
+    private final int fanOutLevels;
+
+    public ImageStoreLayout(Configurator configurator) {
+        this(Path.of(configurator.getString("Image.imagePath")), configurator.getInteger("Image.Storage.fanOutLevels"));
+    }
+
+    public ImageStoreLayout(Path root, int fanOutLevels) {
+        if (fanOutLevels < 0 || fanOutLevels > MAX_FAN_OUT_LEVELS) {
+            throw new InvalidConfigPropertyException("Image.Storage.fanOutLevels",
+                    "Has to be between 0 and " + MAX_FAN_OUT_LEVELS + "!");
+        }
+
+        this.root = root;
+        this.fanOutLevels = fanOutLevels;
+    }
+
+    /**
+     * @return Directory containing all images.
+     */
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * @return Number of nested shard directories.
+     */
+    public int getFanOutLevels() {
+        return fanOutLevels;
+    }
+
+    /**
+     * @return True if image directories are kept directly in the root.
+     */
+    public boolean isFlat() {
+        return fanOutLevels == 0;
+    }
+
+    /**
+     * Resolves the directory an image is saved in. New images are always saved there.
+     * @param id ID of the image's file set.
+     * @return Directory of the image in the configured layout.
+     */
+    public Path resolve(String id) {
+        if (isFlat()) {
+            return resolveFlat(id);
+        }
+
+        // String.hashCode is specified, thus shards are stable across restarts.
+        String hash = String.format("%08x", id.hashCode());
+        Path directory = root;
+
+        for (int level = 0; level < fanOutLevels; level++) {
+            directory = directory.resolve(hash.substring(level * 2, level * 2 + 2));
+        }
+
+        return directory.resolve(id);
+    }
+
+    /**
+     * Resolves the directory an image is saved in in the flat layout, i.e. directly in the root.
+     * @param id ID of the image's file set.
+     * @return Directory of the image in the flat layout.
+     */
+    public Path resolveFlat(String id) {
+        return root.resolve(id);
+    }
+
+    /**
+     * Locates the directory of an existing image. Images which have not been migrated yet are found in the flat layout.
+     * @param id ID of the image's file set.
+     * @return Directory of the image. The directory in the configured layout if the image does not exist.
+     */
+    public Path locate(String id) {
+        Path directory = resolve(id);
+
+        if (isFlat() || Files.isDirectory(directory)) {
+            return directory;
+        }
+
+        Path flatDirectory = resolveFlat(id);
+        return Files.isDirectory(flatDirectory) ? flatDirectory : directory;
+    }
+
+    /**
+     * @param name Name of a directory in the root.
+     * @return True if the directory is a shard directory instead of an image directory in the flat layout.
+     */
+    public boolean isShardDirectory(String name) {
+        return !isFlat() && SHARD_DIRECTORY_NAME.matcher(name).matches();
+    }
+
+    /**
+     * @param directory Directory within the root.
+     * @return True if the directory is an image directory, either in the configured layout or in the flat layout.
+     */
+    public boolean isImageDirectory(Path directory) {
+        Path relativePath = root.relativize(directory);
+        int depth = relativePath.getNameCount();
+
+        if (relativePath.toString().isEmpty()) {
+            return false;
+        }
+
+        if (depth == 1) {
+            return !isShardDirectory(relativePath.toString());
+        }
+
+        if (depth != fanOutLevels + 1) {
+            return false;
+        }
+
+        for (int level = 0; level < fanOutLevels; level++) {
+            if (!isShardDirectory(relativePath.getName(level).toString())) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
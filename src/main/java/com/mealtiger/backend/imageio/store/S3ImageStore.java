@@ -0,0 +1,367 @@
+package com.mealtiger.backend.imageio.store;
+
+import com.mealtiger.backend.configuration.Configurator;
+import com.mealtiger.backend.configuration.exceptions.InvalidConfigPropertyException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.AbstractResource;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.exception.AbortedException;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.NoSuchFileException;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * This class stores the files of images in a bucket of an S3-compatible object storage, e.g. Amazon S3 or MinIO,
+ * so that all backend nodes share the same files. Files are stored under the key {fileSetId}/{fileName}.
+ * Requests are made by the AWS SDK. Buckets are addressed path-style.
+ */
+public class S3ImageStore implements ImageStore, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(S3ImageStore.class);
+
+    private static final int HTTP_NOT_FOUND = 404;
+
+    /**
+     * Maximum number of objects deleted by one request.
+     */
+    private static final int MAX_DELETED_OBJECTS = 1000;
+
+    private final S3Client s3Client;
+    private final String bucket;
+
+    public S3ImageStore(Configurator configurator) {
+        this(getEndpoint(configurator),
+                configurator.getString("Image.Storage.S3.region"),
+                configurator.getString("Image.Storage.S3.bucket"),
+                configurator.getString("Image.Storage.S3.accessKey"),
+                configurator.getString("Image.Storage.S3.secretKey"),
+                Duration.ofMillis(configurator.getInteger("Image.Storage.S3.requestTimeout")));
+    }
+
+    public S3ImageStore(URI endpoint, String region, String bucket, String accessKey, String secretKey, Duration requestTimeout) {
+        this.bucket = bucket;
+        this.s3Client = S3Client.builder()
+                .endpointOverride(endpoint)
+                .region(Region.of(region))
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey)))
+                .forcePathStyle(true)
+                .httpClientBuilder(ApacheHttpClient.builder()
+                        .connectionTimeout(requestTimeout)
+                        .socketTimeout(requestTimeout))
+                .build();
+
+        log.debug("Storing images in bucket {} at {}.", bucket, endpoint);
+    }
+
+    @Override
+    public boolean exists(String fileSetId) {
+        try {
+            return !request("list objects of file set " + fileSetId, () -> s3Client.listObjectsV2(request -> request
+                    .bucket(bucket)
+                    .prefix(fileSetId + "/")
+                    .maxKeys(1))
+                    .contents()
+                    .isEmpty());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public boolean exists(String fileSetId, String fileName) {
+        try {
+            return head(getKey(fileSetId, fileName)) != null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public ImageFile read(String fileSetId, String fileName) throws IOException {
+        String key = getKey(fileSetId, fileName);
+        HeadObjectResponse object = head(key);
+
+        if (object == null) {
+            throw new NoSuchFileException(key);
+        }
+
+        long lastModified = object.lastModified().toEpochMilli();
+        return new ImageFile(fileName, object.contentLength(), lastModified, new S3ObjectResource(key, object.contentLength(), lastModified));
+    }
+
+    /**
+     * Writes a file. S3 makes the object visible once it has been uploaded completely.
+     */
+    @Override
+    public void write(String fileSetId, String fileName, InputStream content, long size) throws IOException {
+        String key = getKey(fileSetId, fileName);
+        request("upload object " + key, () -> s3Client.putObject(request -> request.bucket(bucket).key(key),
+                RequestBody.fromInputStream(content, size)));
+    }
+
+    @Override
+    public void delete(String fileSetId, String fileName) throws IOException {
+        String key = getKey(fileSetId, fileName);
+        // Deleting an object which does not exist succeeds as well.
+        request("delete object " + key, () -> s3Client.deleteObject(request -> request.bucket(bucket).key(key)));
+    }
+
+    /**
+     * Deletes all files of a file set. The objects are deleted in batches instead of one request per object.
+     */
+    @Override
+    public void deleteAll(String fileSetId) throws IOException {
+        List<ObjectIdentifier> objects = listKeys(fileSetId).stream()
+                .map(key -> ObjectIdentifier.builder().key(key).build())
+                .toList();
+
+        if (objects.isEmpty()) {
+            throw new NoSuchFileException(fileSetId);
+        }
+
+        for (int i = 0; i < objects.size(); i += MAX_DELETED_OBJECTS) {
+            List<ObjectIdentifier> batch = objects.subList(i, Math.min(i + MAX_DELETED_OBJECTS, objects.size()));
+            DeleteObjectsResponse response = request("delete objects of file set " + fileSetId, () -> s3Client.deleteObjects(request -> request
+                    .bucket(bucket)
+                    .delete(delete -> delete.objects(batch).quiet(true))));
+
+            // Quiet deletions only report the objects which could not be deleted.
+            if (response.hasErrors()) {
+                throw new IOException("Could not delete objects of file set " + fileSetId + ": " + response.errors().get(0).message());
+            }
+        }
+    }
+
+    /**
+     * Moves all files of a file set. S3 cannot rename objects, thus each object is copied and deleted afterwards.
+     */
+    @Override
+    public void move(String fileSetId, String newFileSetId) throws IOException {
+        List<String> keys = listKeys(fileSetId);
+
+        if (keys.isEmpty()) {
+            throw new NoSuchFileException(fileSetId);
+        }
+
+        for (String key : keys) {
+            String newKey = getKey(newFileSetId, key.substring(fileSetId.length() + 1));
+
+            request("copy object " + key + " to " + newKey, () -> s3Client.copyObject(request -> request
+                    .sourceBucket(bucket)
+                    .sourceKey(key)
+                    .destinationBucket(bucket)
+                    .destinationKey(newKey)));
+            request("delete object " + key, () -> s3Client.deleteObject(request -> request.bucket(bucket).key(key)));
+        }
+    }
+
+    /**
+     * Lists all file sets. Objects are listed page by page, ordered by their key.
+     */
+    @Override
+    public Stream<FileSet> list() {
+        Iterator<S3Object> objects = s3Client.listObjectsV2Paginator(request -> request.bucket(bucket)).contents().iterator();
+
+        Iterator<FileSet> files = new Iterator<>() {
+
+            private FileSet next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && hasNextObject()) {
+                    S3Object object = objects.next();
+                    String key = object.key();
+
+                    // Objects not named {fileSetId}/{fileName} do not belong to any file set.
+                    if (key.indexOf('/') > 0) {
+                        next = new FileSet(key.substring(0, key.indexOf('/')), object.size(), object.lastModified().toEpochMilli());
+                    }
+                }
+
+                return next != null;
+            }
+
+            @Override
+            public FileSet next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                FileSet fileSet = next;
+                next = null;
+                return fileSet;
+            }
+
+            /**
+             * Pages are requested while iterating, thus failed requests are rethrown as unchecked exceptions.
+             */
+            private boolean hasNextObject() {
+                try {
+                    return request("list objects", objects::hasNext);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+
+        return FileSet.merge(files);
+    }
+
+    /**
+     * Closes the HTTP connections to the object storage.
+     */
+    @Override
+    public void close() {
+        s3Client.close();
+    }
+
+    // HELPER METHODS
+
+    /**
+     * Looks up the metadata of an object.
+     * @param key Key of the object.
+     * @return Metadata of the object, null if it does not exist.
+     */
+    private HeadObjectResponse head(String key) throws IOException {
+        try {
+            return request("look up object " + key, () -> s3Client.headObject(request -> request.bucket(bucket).key(key)));
+        } catch (IOException e) {
+            if (isNotFound(e.getCause())) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Lists the keys of all objects of a file set.
+     * @param fileSetId ID of the file set.
+     * @return Keys of the objects.
+     */
+    private List<String> listKeys(String fileSetId) throws IOException {
+        return request("list objects of file set " + fileSetId, () -> s3Client.listObjectsV2Paginator(request -> request
+                        .bucket(bucket)
+                        .prefix(fileSetId + "/"))
+                .contents().stream()
+                .map(S3Object::key)
+                .toList());
+    }
+
+    /**
+     * Sends a request to the object storage. Failed requests are thrown as IOException, like the other image stores do.
+     * @param description Description of the request for the exception message.
+     * @param request Request to send.
+     * @return Response.
+     * @throws InterruptedIOException Whenever the thread has been interrupted while sending the request.
+     * @throws IOException Whenever the request failed.
+     */
+    private static <T> T request(String description, Supplier<T> request) throws IOException {
+        try {
+            return request.get();
+        } catch (AbortedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to " + description);
+        } catch (SdkException e) {
+            throw new IOException("Could not " + description + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static boolean isNotFound(Throwable e) {
+        return e instanceof NoSuchKeyException || (e instanceof S3Exception s3Exception && s3Exception.statusCode() == HTTP_NOT_FOUND);
+    }
+
+    private static String getKey(String fileSetId, String fileName) {
+        return fileSetId + "/" + fileName;
+    }
+
+    private static URI getEndpoint(Configurator configurator) {
+        String endpoint = configurator.getString("Image.Storage.S3.endpoint");
+
+        if (endpoint == null || endpoint.isBlank()) {
+            throw new InvalidConfigPropertyException("Image.Storage.S3.endpoint", "Has to be set to use the s3 backend!");
+        }
+
+        return URI.create(endpoint);
+    }
+
+    /**
+     * Content of an object. Every read downloads the object again.
+     */
+    private final class S3ObjectResource extends AbstractResource {
+
+        private final String key;
+        private final long size;
+        private final long lastModified;
+
+        private S3ObjectResource(String key, long size, long lastModified) {
+            this.key = key;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        @Override
+        public String getDescription() {
+            return "S3 object [" + bucket + "/" + key + "]";
+        }
+
+        @Override
+        public String getFilename() {
+            return key.substring(key.lastIndexOf('/') + 1);
+        }
+
+        @Override
+        public boolean exists() {
+            try {
+                return head(key) != null;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public long contentLength() {
+            return size;
+        }
+
+        @Override
+        public long lastModified() {
+            return lastModified;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            try {
+                return request("download " + getDescription(), () -> s3Client.getObject(request -> request.bucket(bucket).key(key)));
+            } catch (IOException e) {
+                if (isNotFound(e.getCause())) {
+                    throw new FileNotFoundException(getDescription() + " does not exist anymore");
+                }
+                throw e;
+            }
+        }
+    }
+}
@@ -1,26 +1,33 @@
 package com.mealtiger.backend.rest.api;
 
 import com.mealtiger.backend.configuration.Configurator;
+import com.mealtiger.backend.imageio.ImageConversionScheduler;
 import com.mealtiger.backend.rest.controller.ImageIOController;
 import com.mealtiger.backend.rest.error_handling.exceptions.EntityNotFoundException;
+import com.mealtiger.backend.rest.error_handling.exceptions.ImageTooLargeException;
 import com.mealtiger.backend.rest.error_handling.exceptions.InvalidRequestFormatException;
+import com.mealtiger.backend.rest.error_handling.exceptions.ServiceUnavailableException;
 import com.mealtiger.backend.rest.error_handling.exceptions.UploadException;
+import com.mealtiger.backend.rest.model.Response;
+import com.mealtiger.backend.rest.model.image.ImageUploadResponse;
+import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.HttpMediaTypeNotAcceptableException;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
 
@@ -33,6 +40,12 @@ import java.util.UUID;
 public class ImageAPI {
 
     private static final Logger log = LoggerFactory.getLogger(ImageAPI.class);
+
+    /**
+     * Maximum number of images whose metadata can be requested at once.
+     */
+    private static final int MAX_METADATA_IDS = 100;
+
     private final ImageIOController controller;
     private final Configurator configurator;
 
@@ -42,44 +55,24 @@ public class ImageAPI {
     }
 
     /**
-     * Post multiple images to be saved.
+     * Post multiple images to be saved. The images are converted in parallel and saved on their own,
+     * thus a rejected file does not prevent the other files from being saved.
      * @param files Images to be saved.
-     * @return ResponseEntity with UUID of newly created Image.
-     * @throws UploadException Whenever a problem while uploading occurs.
+     * @return ResponseEntity with the result of every file, in the order of the files. It holds the UUID of the newly created image
+     * or the status and reason the file has been rejected with. The status is 201 if all files have been saved, 207 otherwise.
      */
     @PostMapping(value = "/images")
-    public ResponseEntity<List<UUID>> postMultipleImages(@RequestParam("files") MultipartFile[] files) throws UploadException {
+    public ResponseEntity<List<ImageUploadResponse>> postMultipleImages(@RequestParam("files") MultipartFile[] files) {
         log.debug("Uploading multiple images!");
 
         String userId = SecurityContextHolder.getContext().getAuthentication().getName();
 
-        List<UUID> uuids = new ArrayList<>();
-
-        for(MultipartFile file : files) {
-            UUID uuid = UUID.randomUUID();
-            try {
-                log.trace("Reading uploaded image!");
-                BufferedImage image = controller.readImage(file);
-                if (image == null) {
-                    // Image format is not supported!
-                    log.error("Error occured when reading image. Possibly, the image format is not supported! Aborting!");
-                    for (UUID alreadySavedUUID : uuids) {
-                        deleteImage(alreadySavedUUID.toString());
-                    }
-                    throw new InvalidRequestFormatException("Image format not supported!");
-                }
-                log.trace("Saving uploaded image!");
-                controller.saveImage(image, String.valueOf(uuid), userId);
-            } catch (IOException e) {
-                throw new UploadException("Could not open uploaded file " + file.getName() + ". Reason: " + e.getMessage());
-            } finally {
-                uuids.add(uuid);
-            }
-        }
+        List<ImageUploadResponse> results = controller.saveImages(Arrays.asList(files), userId, ImageConversionScheduler.Priority.BULK);
 
         // Location header cannot be set because there are multiple locations.
         // Ideally, one would use a new bulk endpoint, but this is too complicated for this use case.
-        return ResponseEntity.status(HttpStatus.CREATED).body(uuids);
+        boolean allSaved = results.stream().allMatch(result -> result.getStatus() == HttpStatus.CREATED.value());
+        return ResponseEntity.status(allSaved ? HttpStatus.CREATED : HttpStatus.MULTI_STATUS).body(results);
     }
 
     /**
@@ -87,6 +80,7 @@ public class ImageAPI {
      * @param file Image to be saved.
      * @return ResponseEntity with UUID of newly created Image.
      * @throws UploadException Whenever a problem while uploading occurs.
+     * @throws ServiceUnavailableException Whenever too many images are being processed at the moment.
      */
     @PostMapping(value = "/image")
     public ResponseEntity<UUID> postImage(@RequestParam("file") MultipartFile file) throws UploadException {
@@ -97,12 +91,11 @@ public class ImageAPI {
         UUID uuid = UUID.randomUUID();
 
         try {
-            BufferedImage image = controller.readImage(file);
-            if (image == null) {
-                // Image format is not supported!
-                throw new InvalidRequestFormatException("Image format not supported!");
+            if (controller.isLazyConversionEnabled()) {
+                controller.saveOriginalImage(file, String.valueOf(uuid), userId);
+                return ResponseEntity.created(URI.create("/images/" + uuid)).body(uuid);
             }
-            controller.saveImage(image, String.valueOf(uuid), userId);
+            controller.saveImage(file, String.valueOf(uuid), userId, ImageConversionScheduler.Priority.INTERACTIVE);
         } catch (IOException e) {
             throw new UploadException("Could not open uploaded file " + file.getName() + ". Reason: " + e.getMessage());
         }
@@ -110,17 +103,131 @@ public class ImageAPI {
         return ResponseEntity.created(URI.create("/images/" + uuid)).body(uuid);
     }
 
+    /**
+     * Post image to be saved as raw request body instead of as multipart file, e.g. by mobile clients.
+     * The body is not buffered in memory or in a temporary file before it is processed, it is decoded while it is received.
+     * The size of the body is limited to Image.maxFileSize while it is read. If lazy conversion is enabled,
+     * the body is streamed to the image store and requires a Content-Length header.
+     * @param request Request with the image as body.
+     * @return ResponseEntity with UUID of newly created Image.
+     * @throws UploadException Whenever a problem while uploading occurs.
+     * @throws ImageTooLargeException Whenever the body exceeds Image.maxFileSize.
+     * @throws ServiceUnavailableException Whenever too many images are being processed at the moment.
+     */
+    @PostMapping(value = "/image/raw", consumes = "image/*")
+    public ResponseEntity<UUID> postRawImage(HttpServletRequest request) throws UploadException {
+        log.debug("Uploading a single image as raw body!");
+
+        long maxFileSize = DataSize.parse(configurator.getString("Image.maxFileSize")).toBytes();
+
+        // Bodies announcing a larger size are rejected before they are read.
+        if (request.getContentLengthLong() > maxFileSize) {
+            throw new ImageTooLargeException("Image must not be larger than " + maxFileSize + " bytes!");
+        }
+
+        String userId = SecurityContextHolder.getContext().getAuthentication().getName();
+
+        UUID uuid = UUID.randomUUID();
+
+        try (InputStream inputStream = request.getInputStream()) {
+            if (controller.isLazyConversionEnabled()) {
+                controller.saveOriginalImage(inputStream, request.getContentLengthLong(), String.valueOf(uuid), userId);
+            } else {
+                controller.saveImage(inputStream, String.valueOf(uuid), userId, ImageConversionScheduler.Priority.INTERACTIVE);
+            }
+        } catch (IOException e) {
+            throw new UploadException("Could not read uploaded image. Reason: " + e.getMessage());
+        }
+
+        return ResponseEntity.created(URI.create("/images/" + uuid)).body(uuid);
+    }
+
+    /**
+     * Post multiple images to be saved asynchronously. The images are converted in the background.
+     * Like with synchronous uploads, every file is accepted on its own, thus a rejected file does not prevent the other files from being accepted.
+     * @param files Images to be saved.
+     * @return ResponseEntity with the result of every file, in the order of the files. It holds the UUID of the newly created image,
+     * whose conversion state is available at /image/{uuid}/status, or the status and reason the file has been rejected with.
+     * The status is 202 if all files have been accepted, 207 otherwise.
+     */
+    @PostMapping(value = "/images", params = "async=true")
+    public ResponseEntity<List<ImageUploadResponse>> postMultipleImagesAsync(@RequestParam("files") MultipartFile[] files) {
+        log.debug("Uploading multiple images asynchronously!");
+
+        String userId = SecurityContextHolder.getContext().getAuthentication().getName();
+
+        List<ImageUploadResponse> results = controller.acceptImages(Arrays.asList(files), userId, ImageConversionScheduler.Priority.BULK);
+
+        boolean allAccepted = results.stream().allMatch(result -> result.getStatus() == HttpStatus.ACCEPTED.value());
+        return ResponseEntity.status(allAccepted ? HttpStatus.ACCEPTED : HttpStatus.MULTI_STATUS).body(results);
+    }
+
+    /**
+     * Post image to be saved asynchronously. The image is converted in the background.
+     * Until then, the original upload is served.
+     * @param file Image to be saved.
+     * @return ResponseEntity with the conversion state of the newly created image.
+     * @throws UploadException Whenever a problem while uploading occurs.
+     * @throws ServiceUnavailableException Whenever too many images are being processed at the moment.
+     */
+    @PostMapping(value = "/image", params = "async=true")
+    public ResponseEntity<Response> postImageAsync(@RequestParam("file") MultipartFile file) throws UploadException {
+        log.debug("Uploading a single image asynchronously!");
+
+        String userId = SecurityContextHolder.getContext().getAuthentication().getName();
+
+        UUID uuid = UUID.randomUUID();
+
+        try {
+            Response conversionState = controller.acceptImage(file, String.valueOf(uuid), userId, ImageConversionScheduler.Priority.INTERACTIVE);
+            return ResponseEntity.accepted().location(URI.create("/image/" + uuid + "/status")).body(conversionState);
+        } catch (IOException e) {
+            throw new UploadException("Could not open uploaded file " + file.getName() + ". Reason: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Gets the conversion state of an image.
+     * @param uuid UUID of the requested image
+     * @return ResponseEntity with the conversion state as payload.
+     */
+    @GetMapping(value = "/image/{uuid}/status")
+    public ResponseEntity<Response> getImageStatus(@PathVariable(value = "uuid") String uuid) {
+        return ResponseEntity.ok(controller.getConversionStatus(uuid));
+    }
+
     /**
      * Gets a saved image with the correct media type.
      * @param uuid UUID of the requested image
      * @param acceptHeader Accept header of the request
+     * @param variant Name of the requested variant, e.g. thumb. The full size is served if neither variant nor width is given.
+     * @param width Requested width in pixels. The smallest variant at least as wide is served.
      * @return ResponseEntity with the Resource as payload.
      * @throws HttpMediaTypeNotAcceptableException Whenever a suitable image media type cannot be served.
      */
     @GetMapping(value = "/image/{uuid}")
-    public ResponseEntity<Resource> getImage(@PathVariable(value = "uuid") String uuid, @RequestHeader(HttpHeaders.ACCEPT) String acceptHeader) throws HttpMediaTypeNotAcceptableException {
-        List<MediaType> acceptedMediaTypeList = MediaType.parseMediaTypes(acceptHeader);
-        return controller.getBestSuitedImage(uuid, acceptedMediaTypeList);
+    public ResponseEntity<Resource> getImage(@PathVariable(value = "uuid") String uuid,
+                                             @RequestHeader(HttpHeaders.ACCEPT) String acceptHeader,
+                                             @RequestParam(value = "variant", required = false) String variant,
+                                             @RequestParam(value = "w", required = false) Integer width) throws HttpMediaTypeNotAcceptableException {
+        return controller.getBestSuitedImage(uuid, acceptHeader, controller.resolveVariant(variant, width));
+    }
+
+    /**
+     * Gets the metadata of several images at once, e.g. to lay out a page before its images are loaded.
+     * @param ids UUIDs of the requested images, separated by commas. Unknown images are left out of the response.
+     * @return ResponseEntity with the metadata of the images as payload, in the order they have been requested.
+     * @throws InvalidRequestFormatException Whenever more than 100 images are requested.
+     */
+    @GetMapping(value = "/images/metadata")
+    public ResponseEntity<List<Response>> getImageMetadata(@RequestParam(value = "ids") List<UUID> ids) {
+        if (ids.size() > MAX_METADATA_IDS) {
+            throw new InvalidRequestFormatException("The metadata of at most " + MAX_METADATA_IDS + " images can be requested at once!");
+        }
+
+        List<String> uuids = ids.stream().map(UUID::toString).toList();
+
+        return ResponseEntity.ok(new ArrayList<>(controller.getImageMetadata(uuids).values()));
     }
 
     /**
@@ -1,6 +1,7 @@
 package com.mealtiger.backend.rest.api;
 
 import com.mealtiger.backend.configuration.Configurator;
+import com.mealtiger.backend.rest.controller.ImageIOController;
 import com.mealtiger.backend.rest.controller.RecipeController;
 import com.mealtiger.backend.rest.model.Response;
 import com.mealtiger.backend.rest.model.recipe.RecipeRequest;
@@ -14,6 +15,7 @@ import org.springframework.web.bind.annotation.*;
 
 import jakarta.validation.Valid;
 import java.net.URI;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -26,16 +28,19 @@ public class RecipeAPI {
 
     private static final Logger log = LoggerFactory.getLogger(RecipeAPI.class);
     private final RecipeController recipeController;
+    private final ImageIOController imageIOController;
     private final Configurator configurator;
 
     /**
      * This constructor is called by the Spring Boot Framework to inject dependencies.
      *
      * @param recipeController Automatically injected.
+     * @param imageIOController Automatically injected.
      */
-    public RecipeAPI(RecipeController recipeController, Configurator configurator) {
+    public RecipeAPI(RecipeController recipeController, ImageIOController imageIOController, Configurator configurator) {
         this.configurator = configurator;
         this.recipeController = recipeController;
+        this.imageIOController = imageIOController;
     }
 
     /**
@@ -45,6 +50,7 @@ public class RecipeAPI {
      * @param size  page size, default is 3.
      * @param sort  string to sort after, default is title.
      * @param query string to search after.
+     * @param embed "images" to embed the metadata of the recipes' images, looked up at once for the whole page.
      * @return HTTP Status 200 if getting recipes was successful, HTTP Status 404 if it was not found and HTTP Status 500 on error/exception.
      */
     @GetMapping(value = "/recipes")
@@ -52,7 +58,8 @@ public class RecipeAPI {
             @RequestParam(value = "sort", defaultValue = "title") String sort,
             @RequestParam(value = "page", defaultValue = "0") int page,
             @RequestParam(value = "size", defaultValue = "3") int size,
-            @RequestParam(value = "q", required = false) String query) {
+            @RequestParam(value = "q", required = false) String query,
+            @RequestParam(value = "embed", required = false) String embed) {
 
         log.debug("Sorting after: {}", sort);
         log.debug("Page is: {}", page);
@@ -67,6 +74,8 @@ public class RecipeAPI {
             returnValue = recipeController.getRecipePage(page, size, sort);
         }
 
+        imageIOController.embedImageMetadata(embed, (List<?>) returnValue.get("recipes"));
+
         return ResponseEntity.ok(returnValue);
     }
 
@@ -91,13 +100,16 @@ public class RecipeAPI {
      * Sends requested recipe to user.
      *
      * @param id ID of the requested recipe.
+     * @param embed "images" to embed the metadata of the recipe's images.
      * @return HTTP Status 200 if getting recipes was successful, HTTP Status 404 if it was not found and HTTP Status 500 on error/exception.
      */
     @GetMapping("/recipes/{id}")
-    public ResponseEntity<Response> getSingleRecipe(@PathVariable(value = "id") String id) {
+    public ResponseEntity<Response> getSingleRecipe(@PathVariable(value = "id") String id,
+                                                    @RequestParam(value = "embed", required = false) String embed) {
         log.debug("Getting recipe with id {}!", id);
 
         Response returnValue = recipeController.getRecipe(id);
+        imageIOController.embedImageMetadata(embed, List.of(returnValue));
 
         return ResponseEntity.ok(returnValue);
     }
@@ -1,5 +1,6 @@
 package com.mealtiger.backend.rest.api;
 
+import com.mealtiger.backend.rest.controller.ImageIOController;
 import com.mealtiger.backend.rest.controller.UserController;
 import com.mealtiger.backend.rest.model.Response;
 import com.mealtiger.backend.rest.model.user.UserInformationRequest;
@@ -16,20 +17,26 @@ import java.util.Map;
 public class UserAPI {
 
     private final UserController userController;
+    private final ImageIOController imageIOController;
 
-    public UserAPI(UserController userController) {
+    public UserAPI(UserController userController, ImageIOController imageIOController) {
         this.userController = userController;
+        this.imageIOController = imageIOController;
     }
 
     /**
      * Gets own user information.
+     * @param embed "images" to embed the metadata of the profile picture.
      * @return Response Entity (Status code 200) with the response in its body.
      */
     @GetMapping("/user")
-    public ResponseEntity<Response> getOwnUserInformation() {
+    public ResponseEntity<Response> getOwnUserInformation(@RequestParam(value = "embed", required = false) String embed) {
         String userId = SecurityContextHolder.getContext().getAuthentication().getName();
 
-        return ResponseEntity.ok(userController.getUserInformation(userId));
+        Response userInformation = userController.getUserInformation(userId);
+        imageIOController.embedImageMetadata(embed, List.of(userInformation));
+
+        return ResponseEntity.ok(userInformation);
     }
 
     /**
@@ -65,15 +72,20 @@ public class UserAPI {
      * @param page  # of current page, default is 0.
      * @param size  page size, default is 3.
      * @param sort  string to sort after, default is title.
+     * @param embed "images" to embed the metadata of the recipes' images, looked up at once for the whole page.
      * @return Response Entity (Status code 200) with the response map in its body.
      */
     @GetMapping("/user/recipes")
     public ResponseEntity<Map<String, Object>> getOwnRecipes(@RequestParam(value = "sort", defaultValue = "title") String sort,
                                                              @RequestParam(value = "page", defaultValue = "0") int page,
-                                                             @RequestParam(value = "size", defaultValue = "3") int size){
+                                                             @RequestParam(value = "size", defaultValue = "3") int size,
+                                                             @RequestParam(value = "embed", required = false) String embed){
         String userId = SecurityContextHolder.getContext().getAuthentication().getName();
 
-        return ResponseEntity.ok(userController.getRecipesByUserId(userId, sort, size, page));
+        Map<String, Object> recipes = userController.getRecipesByUserId(userId, sort, size, page);
+        imageIOController.embedImageMetadata(embed, (List<?>) recipes.get("recipes"));
+
+        return ResponseEntity.ok(recipes);
     }
 
     /**
@@ -90,11 +102,16 @@ public class UserAPI {
     /**
      * Gets information about a user.
      * @param userId Id of a user.
+     * @param embed "images" to embed the metadata of the profile picture.
      * @return Response Entity (Status code 200) with the response in its body.
      */
     @GetMapping("/user/{userid}")
-    public ResponseEntity<Response> getUserInformation(@PathVariable(value = "userid") String userId){
-        return ResponseEntity.ok(userController.getUserInformation(userId));
+    public ResponseEntity<Response> getUserInformation(@PathVariable(value = "userid") String userId,
+                                                       @RequestParam(value = "embed", required = false) String embed){
+        Response userInformation = userController.getUserInformation(userId);
+        imageIOController.embedImageMetadata(embed, List.of(userInformation));
+
+        return ResponseEntity.ok(userInformation);
     }
 
     /**
@@ -103,14 +120,19 @@ public class UserAPI {
      * @param page  # of current page, default is 0.
      * @param size  page size, default is 3.
      * @param sort  string to sort after, default is title.
+     * @param embed "images" to embed the metadata of the recipes' images, looked up at once for the whole page.
      * @return Response Entity (Status code 200) with the response map in its body.
      */
     @GetMapping("/user/{userid}/recipes")
     public ResponseEntity<Map<String, Object>> getUserRecipes(@PathVariable(value = "userid") String userId,
                                                    @RequestParam(value = "sort", defaultValue = "title") String sort,
                                                    @RequestParam(value = "page", defaultValue = "0") int page,
-                                                   @RequestParam(value = "size", defaultValue = "3") int size){
-        return ResponseEntity.ok(userController.getRecipesByUserId(userId, sort, size, page));
+                                                   @RequestParam(value = "size", defaultValue = "3") int size,
+                                                   @RequestParam(value = "embed", required = false) String embed){
+        Map<String, Object> recipes = userController.getRecipesByUserId(userId, sort, size, page);
+        imageIOController.embedImageMetadata(embed, (List<?>) recipes.get("recipes"));
+
+        return ResponseEntity.ok(recipes);
     }
 
     /**
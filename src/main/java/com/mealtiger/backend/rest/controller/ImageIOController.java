@@ -1,41 +1,77 @@
 package com.mealtiger.backend.rest.controller;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.mealtiger.backend.configuration.Configurator;
+import com.mealtiger.backend.database.filter.ExistenceFilter;
+import com.mealtiger.backend.database.lease.LeaseManager;
+import com.mealtiger.backend.database.model.image_metadata.ImageConversionJob;
 import com.mealtiger.backend.database.model.image_metadata.ImageMetadata;
+import com.mealtiger.backend.database.model.image_metadata.validation.ImageExistenceCache;
+import com.mealtiger.backend.database.repository.ImageConversionJobRepository;
 import com.mealtiger.backend.database.repository.ImageMetadataRepository;
+import com.mealtiger.backend.imageio.BlurHash;
+import com.mealtiger.backend.imageio.DecodedImage;
+import com.mealtiger.backend.imageio.ImageCache;
+import com.mealtiger.backend.imageio.ImageConversionScheduler;
+import com.mealtiger.backend.imageio.ImageDecoder;
+import com.mealtiger.backend.imageio.ImageScaler;
+import com.mealtiger.backend.imageio.SizeLimitedInputStream;
 import com.mealtiger.backend.imageio.adapters.ImageAdapter;
+import com.mealtiger.backend.imageio.store.FileSystemImageStore;
+import com.mealtiger.backend.imageio.store.ImageFile;
+import com.mealtiger.backend.imageio.store.ImageStore;
 import com.mealtiger.backend.rest.error_handling.exceptions.EntityNotFoundException;
 import com.mealtiger.backend.rest.error_handling.exceptions.ImageFormatNotServedException;
+import com.mealtiger.backend.rest.error_handling.exceptions.ImageTooLargeException;
 import com.mealtiger.backend.rest.error_handling.exceptions.InvalidRequestFormatException;
+import com.mealtiger.backend.rest.error_handling.exceptions.ServiceUnavailableException;
 import com.mealtiger.backend.rest.error_handling.exceptions.UploadException;
-import com.twelvemonkeys.imageio.stream.ByteArrayImageInputStream;
+import com.mealtiger.backend.rest.model.ImageReferencingResponse;
+import com.mealtiger.backend.rest.model.Response;
+import com.mealtiger.backend.rest.model.image.ImageConversionJobResponse;
+import com.mealtiger.backend.rest.model.image.ImageUploadResponse;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.util.MimeType;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.HttpMediaTypeNotAcceptableException;
 import org.springframework.web.multipart.MultipartFile;
 
-import javax.imageio.ImageIO;
-import javax.imageio.ImageReader;
-import javax.imageio.stream.ImageInputStream;
-import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.io.File;
+import java.io.ByteArrayInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.nio.file.*;
-import java.nio.file.attribute.BasicFileAttributes;
-import java.util.Iterator;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.NoSuchFileException;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class provides a facade to the ImageIO implementation.
@@ -53,9 +89,72 @@ public class ImageIOController {
     private static final MediaType IMAGE_GIF = new MediaType("image", "gif");
     private static final MediaType IMAGE_BMP = new MediaType("image", "bmp");
 
+    /**
+     * File extensions of the served media types, ordered by the preference used when a client accepts several of them equally
+     * and the sizes of the image's files are unknown.
+     */
+    private static final Map<MediaType, String> FILE_EXTENSIONS = new LinkedHashMap<>();
+
+    static {
+        FILE_EXTENSIONS.put(IMAGE_WEBP, "webp");
+        FILE_EXTENSIONS.put(IMAGE_PNG, "png");
+        FILE_EXTENSIONS.put(IMAGE_JPEG, "jpeg");
+        FILE_EXTENSIONS.put(IMAGE_GIF, "gif");
+        FILE_EXTENSIONS.put(IMAGE_BMP, "bmp");
+    }
+
+    /**
+     * Name of the file the original upload is kept in while an image is converted in the background.
+     */
+    private static final String ORIGINAL_FILE_NAME = "image.original";
+
+    /**
+     * Cache-Control header of image files which never change once they have been saved.
+     */
+    private static final String IMMUTABLE_CACHE_CONTROL = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().getHeaderValue() + ", immutable";
+
+    /**
+     * Cache-Control header of responses which change as soon as the conversion of their image finishes.
+     */
+    private static final String REVALIDATED_CACHE_CONTROL = CacheControl.noCache().getHeaderValue();
+
+    /**
+     * Name of the variant an image is saved in at its processed resolution.
+     */
+    private static final String FULL_VARIANT = "full";
+
+    /**
+     * Value of the embed parameter which embeds the metadata of referenced images into responses.
+     */
+    private static final String EMBEDDED_IMAGES = "images";
+
+    /**
+     * Maximum number of images whose file set and file sizes are held in memory for serving.
+     */
+    private static final int MAX_CACHED_STORED_IMAGES = 10_000;
+
+    /**
+     * Time after which a cached file set and file sizes are looked up again, so that sizes recorded and files handed over on other nodes are picked up.
+     */
+    private static final Duration STORED_IMAGE_LIFETIME = Duration.ofMinutes(10);
+
+    /**
+     * Milliseconds between two submissions of a lazy conversion whose memory has not been available.
+     */
+    private static final long LAZY_CONVERSION_RETRY_INTERVAL = 25;
+
+    /**
+     * File sets are locked on all nodes while they are shared with identical uploads, deleted or moved.
+     * Locks expire after the duration in case the node holding them crashes.
+     */
+    private static final String FILE_SET_LOCK_PREFIX = "file-set/";
+    private static final Duration FILE_SET_LOCK_DURATION = Duration.ofMinutes(1);
+    private static final Duration FILE_SET_LOCK_TIMEOUT = Duration.ofSeconds(10);
+
     private final Configurator configurator;
 
     private final ImageMetadataRepository imageMetadataRepository;
+    private final ImageConversionJobRepository imageConversionJobRepository;
 
     private final ImageAdapter bitmapAdapter;
     private final ImageAdapter gifAdapter;
@@ -63,7 +162,40 @@ public class ImageIOController {
     private final ImageAdapter pngAdapter;
     private final ImageAdapter webPAdapter;
 
-    private final Path imageRootPath;
+    private final ImageConversionScheduler conversionScheduler;
+    private final ImageDecoder imageDecoder;
+    private final ImageCache imageCache;
+    private final ImageExistenceCache imageExistenceCache;
+    private final ExistenceFilter existenceFilter;
+    private final ImageMediaTypeNegotiator mediaTypeNegotiator;
+
+    /**
+     * Conversions of lazily converted images which are currently running, mapped by the file set and name of the converted file.
+     * Concurrent requests for the same image and format wait for the same conversion.
+     */
+    private final Map<String, Future<String>> runningLazyConversions = new ConcurrentHashMap<>();
+
+    /**
+     * File sets and file sizes of images, mapped by image ID. Serving an image does not need to look up its metadata or probe the image store
+     * as long as it is cached.
+     */
+    private final Cache<String, StoredImage> storedImageCache = Caffeine.newBuilder()
+            .maximumSize(MAX_CACHED_STORED_IMAGES)
+            .expireAfterWrite(STORED_IMAGE_LIFETIME)
+            .build();
+
+    /**
+     * Saves the originals of batch uploads in lazy conversion mode. Threads are only kept while batches are uploaded,
+     * the number of originals saved at the same time is limited per batch.
+     */
+    private final ExecutorService uploadExecutor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "image-upload");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ImageStore imageStore;
+    private final LeaseManager leaseManager;
 
     public ImageIOController(ImageAdapter bitmapAdapter,
                              ImageAdapter gifAdapter,
@@ -71,7 +203,15 @@ public class ImageIOController {
                              ImageAdapter pngAdapter,
                              ImageAdapter webPAdapter,
                              Configurator configurator,
-                             ImageMetadataRepository imageMetadataRepository) {
+                             ImageMetadataRepository imageMetadataRepository,
+                             ImageConversionJobRepository imageConversionJobRepository,
+                             ImageConversionScheduler conversionScheduler,
+                             ImageDecoder imageDecoder,
+                             ImageCache imageCache,
+                             ImageExistenceCache imageExistenceCache,
+                             ExistenceFilter existenceFilter,
+                             ImageStore imageStore,
+                             LeaseManager leaseManager) {
         this.bitmapAdapter = bitmapAdapter;
         this.gifAdapter = gifAdapter;
         this.jpegAdapter = jpegAdapter;
@@ -80,37 +220,112 @@ public class ImageIOController {
 
         this.configurator = configurator;
         this.imageMetadataRepository = imageMetadataRepository;
-        this.imageRootPath = Path.of(configurator.getString("Image.imagePath"));
+        this.imageConversionJobRepository = imageConversionJobRepository;
+        this.conversionScheduler = conversionScheduler;
+        this.imageDecoder = imageDecoder;
+        this.imageCache = imageCache;
+        this.imageExistenceCache = imageExistenceCache;
+        this.existenceFilter = existenceFilter;
+        this.mediaTypeNegotiator = new ImageMediaTypeNegotiator(configurator);
+        this.imageStore = imageStore;
+        this.leaseManager = leaseManager;
+    }
+
+    /**
+     * Stops saving originals of batch uploads.
+     */
+    @PreDestroy
+    public void shutdown() {
+        uploadExecutor.shutdownNow();
+    }
+
+    /**
+     * Decodes an uploaded file. Its memory stays reserved until the returned image is closed.
+     * @param file Uploaded file.
+     * @return Decoded image.
+     * @throws InvalidRequestFormatException Whenever the image format is not supported.
+     */
+    private DecodedImage decodeImage(MultipartFile file) throws IOException {
+        DecodedImage decodedImage;
+
+        try (InputStream inputStream = file.getInputStream()) {
+            decodedImage = imageDecoder.decode(inputStream);
+        }
+
+        if (decodedImage.image() == null) {
+            decodedImage.close();
+            throw new InvalidRequestFormatException("Image format not supported!");
+        }
+
+        return decodedImage;
     }
 
     /**
-     * Reads in a MultipartFile as a BufferedImage
-     * @param file Uploaded file
-     * @return BufferedImage
+     * Saves an uploaded image. If the same file has been uploaded before, the image references its converted files
+     * and nothing is converted.
+     * @param file Uploaded file.
+     * @param uuid ID of the image.
+     * @param userId ID of the user.
+     * @param priority Priority the conversions of the image are scheduled with.
+     * @throws InvalidRequestFormatException Whenever the image format is not supported.
+     * @throws ServiceUnavailableException Whenever the conversion queue is full.
      */
-    public BufferedImage readImage(MultipartFile file) throws IOException {
-        BufferedImage image;
+    public void saveImage(MultipartFile file, String uuid, String userId, ImageConversionScheduler.Priority priority) throws IOException, UploadException {
+        String contentHash = hashContent(file);
 
-        try (ImageInputStream imageInputStream = new ByteArrayImageInputStream(file.getBytes())) {
-            ImageIO.setUseCache(false);
+        if (saveDuplicate(contentHash, uuid, userId)) {
+            return;
+        }
+
+        // The memory of the image is reserved until all its formats are written.
+        try (DecodedImage decodedImage = decodeImage(file)) {
+            saveImage(decodedImage.image(), uuid, userId, priority, contentHash);
+        }
+    }
 
-            Iterator<ImageReader> readers = ImageIO.getImageReaders(imageInputStream);
+    /**
+     * Saves an image uploaded as raw request body. The body is decoded while it is received, it is neither buffered
+     * as a multipart file nor read twice. Its hash is calculated while decoding, thus an identical upload is detected
+     * after decoding. It references the converted files of the first upload nonetheless and nothing is converted.
+     * @param content Request body. At most Image.maxFileSize bytes are read.
+     * @param uuid ID of the image.
+     * @param userId ID of the user.
+     * @param priority Priority the conversions of the image are scheduled with.
+     * @throws InvalidRequestFormatException Whenever the image format is not supported.
+     * @throws ImageTooLargeException Whenever the body exceeds Image.maxFileSize.
+     * @throws ServiceUnavailableException Whenever the conversion queue is full.
+     */
+    public void saveImage(InputStream content, String uuid, String userId, ImageConversionScheduler.Priority priority) throws IOException, UploadException {
+        MessageDigest digest = createDigest();
+        InputStream inputStream = new DigestInputStream(limitSize(content), digest);
 
-            if (!readers.hasNext()) {
-                throw new InvalidRequestFormatException("Unknown image format!");
+        try (DecodedImage decodedImage = imageDecoder.decode(inputStream)) {
+            if (decodedImage.image() == null) {
+                throw new InvalidRequestFormatException("Image format not supported!");
             }
 
-            ImageReader reader = readers.next();
+            // Readers stop at the end of the image. Trailing bytes belong to the upload nonetheless.
+            inputStream.transferTo(OutputStream.nullOutputStream());
+            String contentHash = HexFormat.of().formatHex(digest.digest());
 
-            try {
-                reader.setInput(imageInputStream);
-                image = reader.read(0);
-            } finally {
-                reader.dispose();
+            if (saveDuplicate(contentHash, uuid, userId)) {
+                return;
             }
+
+            saveImage(decodedImage.image(), uuid, userId, priority, contentHash);
         }
+    }
 
-        return image;
+    /**
+     * Saves Image.
+     * @param image the image.
+     * @param uuid ID of the image.
+     * @param userId ID of the user.
+     * @param priority Priority the conversions of the image are scheduled with.
+     * @throws ServiceUnavailableException Whenever the conversion queue is full.
+     */
+    public void saveImage(BufferedImage image, String uuid, String userId, ImageConversionScheduler.Priority priority) throws IOException, UploadException {
+        saveImage(image, uuid, userId, priority, null);
     }
 
     /**
@@ -118,267 +333,1611 @@ public class ImageIOController {
      * @param image the image.
      * @param uuid ID of the image.
      * @param userId ID of the user.
+     * @param priority Priority the conversions of the image are scheduled with.
+     * @param contentHash Hash of the uploaded file, null if unknown.
+     * @throws ServiceUnavailableException Whenever the conversion queue is full.
      */
-    public void saveImage(BufferedImage image, String uuid, String userId) throws IOException, UploadException {
+    private void saveImage(BufferedImage image, String uuid, String userId, ImageConversionScheduler.Priority priority, String contentHash) throws IOException, UploadException {
         log.trace("Saving image with uuid {}, uploaded by user {}", uuid, userId);
 
-        String servedFormats = configurator.getString("Image.servedImageFormats");
-        List<String> servedFormatsSplitted = List.of(servedFormats.split(","));
-
-        String path = configurator.getString("Image.imagePath");
+        PendingImage pendingImage = startSavingImage(image, null, uuid, priority);
+        awaitSavingImage(pendingImage);
 
-        File filePath = new File(path + uuid);
+        log.trace("Saving metadata of image {} to database!", uuid);
+        ImageMetadata imageMetadata = new ImageMetadata(uuid, userId, contentHash, uuid);
+        imageMetadata.setFileSizes(pendingImage.fileSizes());
+        describeImage(imageMetadata, image);
+        imageMetadataRepository.save(imageMetadata);
+    }
 
-        File parent = filePath.getParentFile();
-        if (parent != null && !parent.exists() && !parent.mkdirs()) {
-            throw new IllegalStateException("Couldn't create directory: " + parent);
+    /**
+     * Saves multiple uploaded images. Up to Image.Processing.batchParallelism images are converted at the same time.
+     * The next file is decoded once fewer images are being converted, so that its memory is not reserved
+     * while the images of the same batch still hold the budget. The metadata of all converted images is saved at once.
+     * Every file is saved on its own, thus a rejected file does not affect the other files of the batch.
+     * @param files Uploaded files.
+     * @param userId ID of the user.
+     * @param priority Priority the conversions of the images are scheduled with.
+     * @return Results of the files, in the order of the files.
+     */
+    public List<ImageUploadResponse> saveImages(List<MultipartFile> files, String userId, ImageConversionScheduler.Priority priority) {
+        int batchParallelism = Math.max(1, configurator.getInteger("Image.Processing.batchParallelism"));
 
+        if (isLazyConversionEnabled()) {
+            return saveOriginalImages(files, userId, batchParallelism);
         }
 
-        if (!filePath.exists() && !filePath.mkdir()) {
-            throw new IllegalStateException("Couldn't create directory: " + filePath);
-        }
+        log.trace("Saving {} images uploaded by user {}, converting {} at a time.", files.size(), userId, batchParallelism);
 
-        log.trace("Converting image to type byte_indexed!");
+        String[] uuids = new String[files.size()];
+        Exception[] failures = new Exception[files.size()];
+        ImageMetadata[] convertedImages = new ImageMetadata[files.size()];
+        Map<Integer, PendingImage> startedImages = new HashMap<>();
+        Deque<Integer> pendingImages = new ArrayDeque<>();
+        // Identical files within the batch share the files of the first one, just like identical uploads do.
+        Map<String, Integer> batchFileSets = new HashMap<>();
+        Map<Integer, Integer> batchReferences = new HashMap<>();
 
-        // Convert the image type to a byte indexed image to drastically improve performance.
-        BufferedImage indexedImage = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_BYTE_INDEXED);
-        Graphics2D graphics2D = indexedImage.createGraphics();
-        graphics2D.drawImage(image, 0, 0, null);
-        image = indexedImage;
+        for (int i = 0; i < files.size(); i++) {
+            MultipartFile file = files.get(i);
+            uuids[i] = UUID.randomUUID().toString();
 
-        int threadCount = Runtime.getRuntime().availableProcessors();
+            try {
+                String contentHash = hashContent(file);
+                Integer identicalFile = batchFileSets.get(contentHash);
 
-        log.trace("Starting executor service for image conversion. Thread count: {}", threadCount);
-        ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+                if (identicalFile != null) {
+                    convertedImages[i] = referenceFileSet(uuids[i], userId, contentHash, convertedImages[identicalFile]);
+                    batchReferences.put(i, identicalFile);
+                    continue;
+                }
 
-        BufferedImage finalImage = image;
+                if (saveDuplicate(contentHash, uuids[i], userId)) {
+                    continue;
+                }
 
-        Callable<byte[]> bitmapConversion = () -> bitmapAdapter.convert(finalImage);
-        Callable<byte[]> jpegConversion = () -> jpegAdapter.convert(finalImage);
-        Callable<byte[]> gifConversion = () -> gifAdapter.convert(finalImage);
-        Callable<byte[]> pngConversion = () -> pngAdapter.convert(finalImage);
-        Callable<byte[]> webPConversion = () -> webPAdapter.convert(finalImage);
+                if (pendingImages.size() >= batchParallelism) {
+                    int pendingFile = pendingImages.poll();
+                    failures[pendingFile] = awaitBatchImage(startedImages.get(pendingFile));
+                }
 
-        Map<String, Future<byte[]>> imageByteMap = new ConcurrentHashMap<>();
+                DecodedImage decodedImage = decodeImage(file);
+                PendingImage pendingImage;
 
-        for (String format : servedFormatsSplitted) {
-            switch (format) {
-                case "bmp" -> {
-                    log.trace("Submitting conversion to format bitmap!");
-                    imageByteMap.put("bmp", executorService.submit(bitmapConversion));
-                }
-                case "jpeg" -> {
-                    log.trace("Submitting conversion to format jpeg!");
-                    imageByteMap.put("jpeg", executorService.submit(jpegConversion));
+                try {
+                    pendingImage = startSavingImage(decodedImage.image(), decodedImage, uuids[i], priority);
+                } catch (RuntimeException | IOException e) {
+                    decodedImage.close();
+                    throw e;
                 }
-                case "gif" -> {
-                    log.trace("Submitting conversion to format gif!");
-                    imageByteMap.put("gif", executorService.submit(gifConversion));
-                }
-                case "png" -> {
-                    log.trace("Submitting conversion to format png!");
-                    imageByteMap.put("png", executorService.submit(pngConversion));
-                }
-                case "webp" -> {
-                    log.trace("Submitting conversion to format webp!");
-                    imageByteMap.put("webp", executorService.submit(webPConversion));
-                }
-                default -> {
-                    log.error("Image format of name {} unknown!", format);
-                    throw new IllegalArgumentException("Image format unknown: " + format);
+
+                startedImages.put(i, pendingImage);
+                pendingImages.add(i);
+
+                // The file sizes are recorded by the conversions, which are done once the metadata is saved.
+                ImageMetadata imageMetadata = new ImageMetadata(uuids[i], userId, contentHash, uuids[i]);
+                imageMetadata.setFileSizes(pendingImage.fileSizes());
+                describeImage(imageMetadata, decodedImage.image());
+                batchFileSets.put(contentHash, i);
+                convertedImages[i] = imageMetadata;
+            } catch (RuntimeException | IOException e) {
+                failures[i] = e;
+            }
+        }
+
+        while (!pendingImages.isEmpty()) {
+            int pendingFile = pendingImages.poll();
+            failures[pendingFile] = awaitBatchImage(startedImages.get(pendingFile));
+        }
+
+        // Files referencing a file which could not be saved have nothing to reference.
+        batchReferences.forEach((reference, identicalFile) -> {
+            if (failures[identicalFile] != null) {
+                failures[reference] = failures[identicalFile];
+            }
+        });
+
+        List<Integer> convertedFiles = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            if (convertedImages[i] != null && failures[i] == null) {
+                convertedFiles.add(i);
+            }
+        }
+
+        try {
+            log.trace("Saving metadata of {} images to database!", convertedFiles.size());
+            imageMetadataRepository.saveAll(convertedFiles.stream().map(i -> convertedImages[i]).toList());
+        } catch (RuntimeException e) {
+            log.error("Could not save metadata of {} images: {}", convertedFiles.size(), e.getMessage());
+
+            for (int convertedFile : convertedFiles) {
+                failures[convertedFile] = e;
+
+                if (startedImages.containsKey(convertedFile)) {
+                    abortSavingImage(startedImages.get(convertedFile));
                 }
             }
         }
 
-        for (Map.Entry<String, Future<byte[]>> entry : imageByteMap.entrySet()) {
-            byte[] imageBytes;
-            String format = entry.getKey();
+        List<ImageUploadResponse> results = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            results.add(createUploadResponse(i, uuids[i], failures[i], HttpStatus.CREATED));
+        }
+        return results;
+    }
+
+    /**
+     * Saves only multiple uploaded images. Up to Image.Processing.batchParallelism originals are saved at the same time.
+     * Every file is saved on its own, thus a rejected file does not affect the other files of the batch.
+     * @param files Uploaded files.
+     * @param userId ID of the user.
+     * @param batchParallelism Maximum number of originals saved at the same time.
+     * @return Results of the files, in the order of the files.
+     */
+    private List<ImageUploadResponse> saveOriginalImages(List<MultipartFile> files, String userId, int batchParallelism) {
+        log.trace("Saving originals of {} images uploaded by user {}, {} at a time.", files.size(), userId, batchParallelism);
+
+        Semaphore uploadSlots = new Semaphore(batchParallelism);
+        List<String> uuids = new ArrayList<>();
+        List<Future<?>> uploads = new ArrayList<>();
+
+        for (MultipartFile file : files) {
+            String uuid = UUID.randomUUID().toString();
+            uuids.add(uuid);
 
             try {
-                log.trace("Trying to retrieve image bytes of type {}!", format);
-                imageBytes = entry.getValue().get();
-            } catch (InterruptedException | ExecutionException e) {
+                uploadSlots.acquire();
+                uploads.add(uploadExecutor.submit(() -> {
+                    try {
+                        saveOriginalImage(file, uuid, userId);
+                        return null;
+                    } finally {
+                        uploadSlots.release();
+                    }
+                }));
+            } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
-                throw new UploadException(e.getMessage());
+                uploads.add(CompletableFuture.failedFuture(new UploadException("Interrupted while waiting to save the image!")));
+            } catch (RejectedExecutionException e) {
+                uploadSlots.release();
+                uploads.add(CompletableFuture.failedFuture(new ServiceUnavailableException("The server is shutting down. Please try again later!",
+                        configurator.getInteger("Image.Processing.retryAfter"))));
             }
+        }
 
-            String imagePath = path + uuid + "/image." + format;
-            log.trace("Saving image of format {} on path {}.", format, imagePath);
-            File file = new File(imagePath);
-            if (!file.createNewFile()) {
-                throw new IllegalStateException("Couldn't create file: " + file);
-            }
+        List<ImageUploadResponse> results = new ArrayList<>();
+
+        for (int i = 0; i < files.size(); i++) {
+            Exception failure = null;
 
-            try (FileOutputStream fileOutputStream = new FileOutputStream(file)) {
-                fileOutputStream.write(imageBytes);
+            try {
+                uploads.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure = new UploadException("Interrupted while waiting to save the image!");
+            } catch (ExecutionException e) {
+                failure = e.getCause() instanceof Exception cause ? cause : e;
             }
+
+            results.add(createUploadResponse(i, uuids.get(i), failure, HttpStatus.CREATED));
         }
 
-        log.trace("Saving metadata of image {} to database!", uuid);
-        imageMetadataRepository.save(new ImageMetadata(uuid, userId));
+        return results;
     }
 
     /**
-     * Checks what image media type is best suited.
-     * @param uuid ID of image.
-     * @param acceptedMediaTypes What media type is allowed.
-     * @return Best suited media type.
+     * Waits until all formats of an image of a batch have been written.
+     * @param pendingImage Image whose conversions are running.
+     * @return Reason the image could not be saved, null if it has been saved.
+     */
+    private Exception awaitBatchImage(PendingImage pendingImage) {
+        try {
+            awaitSavingImage(pendingImage);
+            return null;
+        } catch (UploadException e) {
+            return e;
+        }
+    }
+
+    /**
+     * Creates the result of a file of a batch upload. The status of a rejected file is the one it would have been answered with
+     * if it had been uploaded on its own.
+     * @param index Index of the file within the batch.
+     * @param uuid ID of the image.
+     * @param failure Reason the file has been rejected, null if the image has been saved.
+     * @param successStatus Status of a file which has been saved or accepted.
+     * @return Result of the file.
      */
-    public ResponseEntity<Resource> getBestSuitedImage(String uuid, List<MediaType> acceptedMediaTypes) throws HttpMediaTypeNotAcceptableException {
-        List<MediaType> servedMediaTypeList = MediaType.parseMediaTypes(configurator.getString("Image.servedImageMediaTypes"));
+    private ImageUploadResponse createUploadResponse(int index, String uuid, Exception failure, HttpStatus successStatus) {
+        if (failure == null) {
+            return new ImageUploadResponse(uuid, successStatus.value(), null);
+        }
 
-        MediaType bestSuitedMediaType = findBestMatch(acceptedMediaTypes, servedMediaTypeList);
+        HttpStatus status;
 
-        if (bestSuitedMediaType == null) {
-            throw new HttpMediaTypeNotAcceptableException("Only the following image types are served: "
-                    + servedMediaTypeList.stream().map(MimeType::getSubtype).reduce((a,b) -> a + ", " + b).orElse(null));
+        if (failure instanceof InvalidRequestFormatException) {
+            status = HttpStatus.BAD_REQUEST;
+        } else if (failure instanceof ImageTooLargeException) {
+            status = HttpStatus.PAYLOAD_TOO_LARGE;
+        } else if (failure instanceof ServiceUnavailableException) {
+            status = HttpStatus.SERVICE_UNAVAILABLE;
+        } else {
+            status = HttpStatus.INTERNAL_SERVER_ERROR;
         }
 
-        if (bestSuitedMediaType.isCompatibleWith(IMAGE_WEBP)) {
-            return getImageFromDisk(imageRootPath.resolve(uuid).resolve("image.webp"), IMAGE_WEBP);
+        log.debug("File {} of the batch has been rejected with status {}: {}", index, status.value(), failure.getMessage());
+
+        return new ImageUploadResponse(null, status.value(), failure.getMessage());
+    }
+
+    /**
+     * Submits the conversions of an image. Every format is written by the worker which has converted it,
+     * as soon as it is converted.
+     * @param image the image.
+     * @param decodedImage Decoded upload holding the memory of the image, closed once the image is saved or aborted. Null if none.
+     * @param uuid ID of the image.
+     * @param priority Priority the conversions of the image are scheduled with.
+     * @return Image whose conversions are running.
+     * @throws ServiceUnavailableException Whenever the conversion queue is full.
+     */
+    private PendingImage startSavingImage(BufferedImage image, DecodedImage decodedImage, String uuid, ImageConversionScheduler.Priority priority) throws IOException {
+        Map<String, Callable<byte[]>> conversions = createConversions(image);
+        AtomicBoolean aborted = new AtomicBoolean(false);
+        Map<String, Long> fileSizes = new ConcurrentHashMap<>();
+
+        Map<String, Callable<String>> persistingConversions = new LinkedHashMap<>();
+
+        for (Map.Entry<String, Callable<byte[]>> entry : conversions.entrySet()) {
+            String fileName = "image." + entry.getKey();
+            Callable<String> conversion = () -> {
+                recordFileSize(fileSizes, entry.getKey(), writeImageFile(uuid, fileName, entry.getValue().call()));
+
+                // The upload may have been aborted while the file was written.
+                if (aborted.get()) {
+                    imageStore.delete(uuid, fileName);
+                }
+                return fileName;
+            };
+            persistingConversions.put(entry.getKey(), conversion);
         }
 
-        if (bestSuitedMediaType.isCompatibleWith(IMAGE_PNG)) {
-            return getImageFromDisk(imageRootPath.resolve(uuid).resolve("image.png"), IMAGE_PNG);
+        log.trace("Submitting conversions to formats {} with priority {}!", conversions.keySet(), priority);
+
+        BlockingQueue<Future<String>> completedConversions = new LinkedBlockingQueue<>();
+        Map<String, Future<String>> imageFileMap;
+        try {
+            imageFileMap = conversionScheduler.submitAll(persistingConversions, priority, completedConversions);
+        } catch (RejectedExecutionException e) {
+            throw new ServiceUnavailableException("Too many images are being processed at the moment. Please try again later!",
+                    conversionScheduler.getRetryAfter());
         }
 
-        if (bestSuitedMediaType.isCompatibleWith(IMAGE_JPEG)) {
-            return getImageFromDisk(imageRootPath.resolve(uuid).resolve("image.jpeg"), IMAGE_JPEG);
+        return new PendingImage(uuid, imageFileMap, completedConversions, aborted, fileSizes, decodedImage);
+    }
+
+    /**
+     * Waits until all formats of an image have been written. If a format fails, the image is aborted.
+     * @param pendingImage Image whose conversions are running.
+     * @throws UploadException Whenever a format cannot be converted or written.
+     */
+    private void awaitSavingImage(PendingImage pendingImage) throws UploadException {
+        boolean saved = false;
+
+        try {
+            for (int i = 0; i < pendingImage.conversions().size(); i++) {
+                // Conversions are awaited in the order they complete, so that a failure is noticed immediately.
+                String fileName = pendingImage.completedConversions().take().get();
+                log.trace("Saved image file {} of image {}.", fileName, pendingImage.fileSetId());
+            }
+            saved = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UploadException(e.getMessage());
+        } catch (ExecutionException e) {
+            throw new UploadException(e.getMessage());
+        } finally {
+            if (!saved) {
+                abortSavingImage(pendingImage);
+            }
+            pendingImage.release();
         }
 
-        if (bestSuitedMediaType.isCompatibleWith(IMAGE_GIF)) {
-            return getImageFromDisk(imageRootPath.resolve(uuid).resolve("image.gif"), IMAGE_GIF);
+        imageCache.invalidate(pendingImage.fileSetId());
+    }
+
+    /**
+     * Saves only the uploaded image. It is converted to a served format when this format is requested for the first time.
+     * If the same file has been uploaded before, the image references its files instead.
+     * @param file Uploaded file.
+     * @param uuid ID of the image.
+     * @param userId ID of the user.
+     * @throws InvalidRequestFormatException Whenever the image format is not supported.
+     */
+    public void saveOriginalImage(MultipartFile file, String uuid, String userId) throws IOException {
+        log.trace("Saving original of image with uuid {}, uploaded by user {}", uuid, userId);
+
+        String contentHash = hashContent(file);
+
+        if (saveDuplicate(contentHash, uuid, userId)) {
+            return;
         }
 
-        if (bestSuitedMediaType.isCompatibleWith(IMAGE_BMP)) {
-            return getImageFromDisk(imageRootPath.resolve(uuid).resolve("image.bmp"), IMAGE_BMP);
+        ImageMetadata imageMetadata = new ImageMetadata(uuid, userId, contentHash, uuid);
+
+        // The upload is only decoded to validate and describe it, thus its memory is returned right away.
+        try (DecodedImage decodedImage = saveOriginal(file, uuid)) {
+            describeImage(imageMetadata, decodedImage.image());
         }
+        imageCache.invalidate(uuid);
 
-        // Never reached
-        throw new ImageFormatNotServedException("Only the following image types are served: "
-                + servedMediaTypeList.stream().map(MimeType::getSubtype).reduce((a,b) -> a + ", " + b).orElse(null));
+        imageMetadataRepository.save(imageMetadata);
     }
 
     /**
-     * Deletes Image.
-     * @param uuid ID of Image.
-     * @param userId ID of user.
-     * @param isAdmin If true it is a admin.
-     * @return Empty Response Entity.
+     * Saves only an image uploaded as raw request body. The body is streamed to the image store while it is received
+     * and decoded from there to validate it. If the same file has been uploaded before, the image references its files instead.
+     * @param content Request body. At most Image.maxFileSize bytes are read.
+     * @param size Size of the body as given by its Content-Length header.
+     * @param uuid ID of the image.
+     * @param userId ID of the user.
+     * @throws InvalidRequestFormatException Whenever the image format is not supported or the size of the body is unknown.
+     * @throws ImageTooLargeException Whenever the body exceeds Image.maxFileSize.
      */
-    public ResponseEntity<Void> deleteImage(String uuid, String userId, boolean isAdmin) {
+    public void saveOriginalImage(InputStream content, long size, String uuid, String userId) throws IOException {
+        log.trace("Saving original of image with uuid {}, uploaded by user {} as raw body", uuid, userId);
 
-        ImageMetadata imageMetadata = imageMetadataRepository.findById(uuid).orElse(null);
+        // Object storages need to know the size of a file before it is written.
+        if (size < 0) {
+            throw new InvalidRequestFormatException("Content-Length header is required!");
+        }
 
-        if (imageMetadata == null) {
-            return ResponseEntity.internalServerError().build();
+        MessageDigest digest = createDigest();
+
+        try (InputStream inputStream = new DigestInputStream(limitSize(content), digest)) {
+            imageStore.write(uuid, ORIGINAL_FILE_NAME, inputStream, size);
+        } catch (RuntimeException | IOException e) {
+            // The image store may have created the directory of the file set before the body turned out to be too large.
+            try {
+                imageStore.deleteAll(uuid);
+            } catch (IOException deleteException) {
+                log.trace("No files of rejected image {} have been written.", uuid);
+            }
+            throw e;
         }
 
-        if (!imageMetadata.getUserId().equals(userId) && !isAdmin) {
-            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        String contentHash = HexFormat.of().formatHex(digest.digest());
+
+        if (saveDuplicate(contentHash, uuid, userId)) {
+            imageStore.deleteAll(uuid);
+            return;
         }
 
-        Path path = imageRootPath.resolve(uuid);
-        try {
-            deleteFile(path);
-        } catch (FileNotFoundException | NoSuchFileException e) {
-            throw new EntityNotFoundException("Image with id " + uuid + " not found!");
-        } catch (IOException e) {
-            return ResponseEntity.internalServerError().build();
+        ImageMetadata imageMetadata = new ImageMetadata(uuid, userId, contentHash, uuid);
+
+        // The upload is only decoded to validate and describe it, thus its memory is returned right away.
+        try (InputStream inputStream = imageStore.read(uuid, ORIGINAL_FILE_NAME).content().getInputStream();
+             DecodedImage decodedImage = imageDecoder.decode(inputStream)) {
+            if (decodedImage.image() == null) {
+                throw new InvalidRequestFormatException("Image format not supported!");
+            }
+            describeImage(imageMetadata, decodedImage.image());
+        } catch (RuntimeException | IOException e) {
+            imageStore.deleteAll(uuid);
+            throw e;
         }
 
-        imageMetadataRepository.deleteById(uuid);
+        imageCache.invalidate(uuid);
 
-        return ResponseEntity.noContent().build();
+        imageMetadataRepository.save(imageMetadata);
     }
 
     /**
-     * @param uuid UUID of the image to be looked up.
-     * @return True if the image exists in the database, false if not.
+     * @return Whether images are converted when they are requested instead of when they are uploaded.
      */
-    public boolean doesImageExist(String uuid) {
-        return imageMetadataRepository.existsById(uuid);
+    public boolean isLazyConversionEnabled() {
+        return configurator.getBoolean("Image.Processing.lazyConversion");
     }
 
-    // HELPER METHODS
+    /**
+     * Saves an image asynchronously. The upload is decoded and validated, the original is persisted and
+     * the conversions are scheduled. They finish in the background while the original is served.
+     * If the same file has been uploaded before, the image references its converted files and nothing is converted.
+     * @param file Uploaded file.
+     * @param uuid ID of the image.
+     * @param userId ID of the user.
+     * @param priority Priority the conversions of the image are scheduled with.
+     * @return Response describing the conversion state of the image.
+     * @throws InvalidRequestFormatException Whenever the image format is not supported.
+     * @throws ServiceUnavailableException Whenever the conversion queue is full.
+     */
+    public Response acceptImage(MultipartFile file, String uuid, String userId, ImageConversionScheduler.Priority priority) throws IOException {
+        log.trace("Accepting image with uuid {}, uploaded by user {}", uuid, userId);
+
+        if (isLazyConversionEnabled()) {
+            // There is nothing to be converted in the background.
+            saveOriginalImage(file, uuid, userId);
+            return getConversionStatus(uuid);
+        }
+
+        String contentHash = hashContent(file);
+
+        if (saveDuplicate(contentHash, uuid, userId)) {
+            return getConversionStatus(uuid);
+        }
+
+        DecodedImage decodedImage = saveOriginal(file, uuid);
+        // The memory of the image is reserved until its last background conversion is done.
+        boolean submitted = false;
+
+        try {
+            imageCache.invalidate(uuid);
+
+            Map<String, Callable<byte[]>> conversions = createConversions(decodedImage.image());
+
+            ImageConversionJob job = new ImageConversionJob(uuid, ImageConversionJob.Status.PROCESSING, decodedImage.mimeType());
+            imageConversionJobRepository.save(job);
+            ImageMetadata imageMetadata = new ImageMetadata(uuid, userId, contentHash, uuid);
+            describeImage(imageMetadata, decodedImage.image());
+            imageMetadataRepository.save(imageMetadata);
+
+            if (conversions.isEmpty()) {
+                finishConversionJob(job, false, Map.of());
+                return getConversionStatus(uuid);
+            }
+
+            AtomicInteger remainingConversions = new AtomicInteger(conversions.size());
+            AtomicBoolean failed = new AtomicBoolean(false);
+            Map<String, Long> fileSizes = new ConcurrentHashMap<>();
+
+            Map<String, Callable<Void>> persistingConversions = new LinkedHashMap<>();
+
+            for (Map.Entry<String, Callable<byte[]>> entry : conversions.entrySet()) {
+                String format = entry.getKey();
+                Callable<byte[]> conversion = entry.getValue();
+
+                persistingConversions.put(format, () -> {
+                    try {
+                        // Images deleted while their conversions are queued are not encoded anymore.
+                        if (imageMetadataRepository.existsById(uuid)) {
+                            recordFileSize(fileSizes, format, writeImageFile(uuid, "image." + format, conversion.call()));
+                        }
+                    } catch (Exception e) {
+                        log.error("Conversion of image {} to format {} failed: {}", uuid, format, e.getMessage());
+                        failed.set(true);
+                    } finally {
+                        if (remainingConversions.decrementAndGet() == 0) {
+                            decodedImage.close();
+                            finishConversionJob(job, failed.get(), fileSizes);
+                        }
+                    }
+                    return null;
+                });
+            }
+
+            log.trace("Submitting background conversions of image {} to formats {} with priority {}!", uuid, conversions.keySet(), priority);
+
+            try {
+                conversionScheduler.submitAll(persistingConversions, priority);
+                submitted = true;
+            } catch (RejectedExecutionException e) {
+                throw new ServiceUnavailableException("Too many images are being processed at the moment. Please try again later!",
+                        conversionScheduler.getRetryAfter());
+            }
+
+            return new ImageConversionJobResponse(uuid, job.getStatus().toString(), Collections.emptyList());
+        } catch (RuntimeException e) {
+            if (!submitted) {
+                discardAcceptedImage(uuid, e);
+            }
+            throw e;
+        } finally {
+            if (!submitted) {
+                decodedImage.close();
+            }
+        }
+    }
 
     /**
-     * Retrieves an image from disk by its media type
-     * @param path Path to the image directory.
-     * @param type Type of the image to retrieve.
-     * @return ResponseEntity ready to be served.
+     * Deletes the original, the job and the metadata of an image which could not be accepted.
+     * Failures are attached to the exception the image has been rejected with, so that they do not hide it.
+     * @param uuid ID of the image.
+     * @param cause Exception the image has been rejected with.
      */
-    private ResponseEntity<Resource> getImageFromDisk(Path path, MediaType type) {
+    private void discardAcceptedImage(String uuid, Exception cause) {
         try {
-            ByteArrayResource resource = new ByteArrayResource(Files.readAllBytes(path));
-            log.trace("Successfully retrieved file {}!", path);
-            return ResponseEntity.ok()
-                    .contentLength(path.toFile().length())
-                    .contentType(type)
-                    .body(resource);
-        } catch (FileNotFoundException | NoSuchFileException e) {
-            log.debug("File {} not found!", path);
-            throw new EntityNotFoundException("Image of MediaType " + type + " not found!");
-        } catch (IOException e) {
-            log.error("Error upon downloading file {}: {}", imageRootPath, e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+            deleteImageMetadata(uuid);
+            imageStore.deleteAll(uuid);
+        } catch (NoSuchFileException e) {
+            log.trace("Original of image {} has already been deleted.", uuid);
+        } catch (RuntimeException | IOException e) {
+            log.error("Could not delete rejected image {}: {}", uuid, e.getMessage());
+            cause.addSuppressed(e);
         }
     }
 
     /**
-     * Finds the best match between those media types the client accepts and those the server serves.
-     * @param acceptedTypes List of types the client accepts
-     * @param servedTypes List of types the server serves
-     * @return MediaType to be served.
+     * Saves multiple uploaded images asynchronously. Every file is accepted on its own like by saveImages,
+     * thus a rejected file does not affect the other files of the batch.
+     * @param files Uploaded files.
+     * @param userId ID of the user.
+     * @param priority Priority the conversions of the images are scheduled with.
+     * @return Results of the files, in the order of the files. Accepted images have the status 202,
+     * their conversion state is available at /image/{uuid}/status.
      */
-    private MediaType findBestMatch(List<MediaType> acceptedTypes, List<MediaType> servedTypes) {
-        MediaType bestSuitedMediaType = null;
-        double clientSatisfaction = 0;
-        double serverSatisfaction = 0;
+    public List<ImageUploadResponse> acceptImages(List<MultipartFile> files, String userId, ImageConversionScheduler.Priority priority) {
+        List<ImageUploadResponse> results = new ArrayList<>();
 
-        for (MediaType acceptedType : acceptedTypes) {
-            for (MediaType servedType : servedTypes) {
-                if (acceptedType.isCompatibleWith(servedType) && (bestSuitedMediaType == null
-                        || clientSatisfaction < acceptedType.getQualityValue()
-                        || serverSatisfaction < servedType.getQualityValue())) {
-                    bestSuitedMediaType = new MediaType(servedType.getType(),
-                            servedType.getSubtype());
-                    clientSatisfaction = acceptedType.getQualityValue();
-                    serverSatisfaction = servedType.getQualityValue();
-                }
+        for (int i = 0; i < files.size(); i++) {
+            String uuid = UUID.randomUUID().toString();
+            Exception failure = null;
+
+            try {
+                acceptImage(files.get(i), uuid, userId, priority);
+            } catch (RuntimeException | IOException e) {
+                failure = e;
             }
+
+            results.add(createUploadResponse(i, uuid, failure, HttpStatus.ACCEPTED));
+        }
+
+        return results;
+    }
+
+    /**
+     * Gets the conversion state of an image.
+     * @param uuid ID of the image.
+     * @return Response describing the conversion state of the image.
+     * @throws EntityNotFoundException Whenever the image does not exist.
+     */
+    public Response getConversionStatus(String uuid) {
+        if (!existenceFilter.mightExist(ExistenceFilter.Entity.IMAGES, uuid)) {
+            throw new EntityNotFoundException("Image " + uuid + " does not exist!");
         }
 
+        ImageConversionJob.Status status = imageConversionJobRepository.findById(uuid)
+                .map(ImageConversionJob::getStatus)
+                .orElseGet(() -> {
+                    if (!imageMetadataRepository.existsById(uuid)) {
+                        throw new EntityNotFoundException("Image " + uuid + " does not exist!");
+                    }
+                    // Images without a job have been converted synchronously or their job has finished.
+                    return ImageConversionJob.Status.DONE;
+                });
+
+        String fileSetId = getStoredImage(uuid).fileSetId();
 
-        log.trace("Found best match of media types {}", bestSuitedMediaType);
+        List<String> availableFormats = FILE_EXTENSIONS.values().stream()
+                .filter(format -> imageStore.exists(fileSetId, "image." + format))
+                .toList();
 
-        return bestSuitedMediaType;
+        return new ImageConversionJobResponse(uuid, status.toString(), availableFormats);
     }
 
     /**
-     * Deletes a file. If the given path is a directory it is deleted recursively.
-     * @param path Path to be deleted.
-     * @throws IOException Thrown whenever a file cannot be deleted.
+     * Checks what image media type is best suited and serves the given variant of the image in it.
+     * Negotiations are memoized per Accept header, so that recurring Accept headers are not parsed again.
+     * @param uuid ID of image.
+     * @param acceptHeader Accept header of the request.
+     * @param variant Variant of the image, null for the full size.
+     * @return Best suited media type.
      */
-    private void deleteFile(Path path) throws IOException {
-        Files.walkFileTree(path,
-                new SimpleFileVisitor<>() {
-                    @Override
-                    public FileVisitResult postVisitDirectory(
-                            Path dir, IOException exc) throws IOException {
-                        Files.delete(dir);
-                        return FileVisitResult.CONTINUE;
-                    }
+    public ResponseEntity<Resource> getBestSuitedImage(String uuid, String acceptHeader, String variant) throws HttpMediaTypeNotAcceptableException {
+        return serveImage(uuid, mediaTypeNegotiator.getNegotiation(acceptHeader), variant);
+    }
 
-                    @Override
-                    public FileVisitResult visitFile(
-                            Path file, BasicFileAttributes attrs)
-                            throws IOException {
-                        Files.delete(file);
-                        return FileVisitResult.CONTINUE;
-                    }
-                }
-        );
+    /**
+     * Serves the given variant of an image in the best suited of the negotiated media types.
+     * Of those media types the client accepts equally, the one whose file is the smallest relative to its server-side
+     * quality value is served.
+     * @param uuid ID of image.
+     * @param negotiation Negotiation of the served media types the client accepts.
+     * @param variant Variant of the image, null for the full size.
+     * @return ResponseEntity ready to be served.
+     */
+    private ResponseEntity<Resource> serveImage(String uuid, ImageMediaTypeNegotiator.Negotiation negotiation, String variant) throws HttpMediaTypeNotAcceptableException {
+        List<MediaType> negotiatedMediaTypes = negotiation.mediaTypes();
+
+        if (negotiatedMediaTypes.isEmpty()) {
+            throw new HttpMediaTypeNotAcceptableException("Only the following image types are served: "
+                    + mediaTypeNegotiator.getServedSubtypes());
+        }
+
+        MediaType bestSuitedMediaType = negotiatedMediaTypes.get(0);
+        String fileExtension = FILE_EXTENSIONS.get(bestSuitedMediaType);
+
+        if (fileExtension == null) {
+            throw new ImageFormatNotServedException("Only the following image types are served: "
+                    + mediaTypeNegotiator.getServedSubtypes());
+        }
+
+        if (!existenceFilter.mightExist(ExistenceFilter.Entity.IMAGES, uuid)) {
+            throw new EntityNotFoundException("Image " + uuid + " does not exist!");
+        }
+
+        StoredImage storedImage = storedImageCache.getIfPresent(uuid);
+        boolean cached = storedImage != null;
+
+        if (!cached) {
+            storedImage = loadStoredImage(uuid);
+        }
+
+        if (!negotiation.sizeWeights().isEmpty()) {
+            negotiatedMediaTypes = negotiation.orderBySize(storedImage.fileSizes());
+            bestSuitedMediaType = negotiatedMediaTypes.get(0);
+            fileExtension = FILE_EXTENSIONS.get(bestSuitedMediaType);
+        }
+
+        String fileSetId = storedImage.fileSetId();
+        String fileName = getImageFileName(variant, fileExtension);
+        boolean exists = imageStore.exists(fileSetId, fileName);
+
+        if (!exists && cached) {
+            // The files may have been handed over to another image since the file set has been cached.
+            String currentFileSetId = loadStoredImage(uuid).fileSetId();
+
+            if (!currentFileSetId.equals(fileSetId)) {
+                fileSetId = currentFileSetId;
+                exists = imageStore.exists(fileSetId, fileName);
+            }
+        }
+
+        if (!exists) {
+            Optional<ImageConversionJob> job = imageConversionJobRepository.findById(uuid);
+
+            if (job.isPresent() && job.get().getStatus() != ImageConversionJob.Status.DONE) {
+                return getPartiallyConvertedImage(job.get(), negotiatedMediaTypes, variant);
+            }
+
+            if (imageStore.exists(fileSetId, ORIGINAL_FILE_NAME)) {
+                return getLazilyConvertedImage(uuid, fileSetId, variant, fileExtension, bestSuitedMediaType);
+            }
+
+            if (variant != null) {
+                // The image has been saved before the variant was configured.
+                log.trace("Variant {} of image {} does not exist. Serving full size!", variant, uuid);
+                fileName = getImageFileName(null, fileExtension);
+            }
+        }
+
+        return getImageFromStore(fileSetId, fileName, bestSuitedMediaType, true);
+    }
+
+    /**
+     * Picks the variant of an image to be served.
+     * @param variant Name of the requested variant, may be null.
+     * @param width Requested width in pixels, may be null. The smallest variant at least as large is picked.
+     * @return Name of the variant, null for the full size.
+     * @throws InvalidRequestFormatException Whenever the variant is unknown or the width is invalid.
+     */
+    public String resolveVariant(String variant, Integer width) {
+        Map<String, Integer> servedVariants = getServedVariants();
+
+        if (variant != null) {
+            if (variant.equals(FULL_VARIANT)) {
+                return null;
+            }
+            if (!servedVariants.containsKey(variant)) {
+                throw new InvalidRequestFormatException("Unknown image variant " + variant + "! Served variants are: "
+                        + FULL_VARIANT + servedVariants.keySet().stream().map(name -> ", " + name).reduce("", String::concat));
+            }
+            return variant;
+        }
+
+        if (width != null) {
+            if (width <= 0) {
+                throw new InvalidRequestFormatException("Requested width must be positive!");
+            }
+
+            return servedVariants.entrySet().stream()
+                    .filter(servedVariant -> servedVariant.getValue() >= width)
+                    .min(Map.Entry.comparingByValue())
+                    .map(Map.Entry::getKey)
+                    .orElse(null);
+        }
+
+        return null;
+    }
+
+    /**
+     * Deletes Image. Files shared with identical uploads are only deleted together with the last image referencing them.
+     * @param uuid ID of Image.
+     * @param userId ID of user.
+     * @param isAdmin If true it is a admin.
+     * @return Empty Response Entity.
+     */
+    public ResponseEntity<Void> deleteImage(String uuid, String userId, boolean isAdmin) {
+
+        ImageMetadata imageMetadata = imageMetadataRepository.findById(uuid).orElse(null);
+
+        if (imageMetadata == null) {
+            return ResponseEntity.internalServerError().build();
+        }
+
+        if (!imageMetadata.getUserId().equals(userId) && !isAdmin) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        try {
+            deleteImage(imageMetadata);
+        } catch (FileNotFoundException | NoSuchFileException e) {
+            throw new EntityNotFoundException("Image with id " + uuid + " not found!");
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError().build();
+        }
+
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Deletes an image no recipe or user references anymore. Its metadata is deleted even if its files are missing.
+     * @param uuid ID of the image.
+     * @return True if the image has been deleted, false if it does not exist anymore.
+     * @throws IOException Whenever the files of the image cannot be deleted.
+     */
+    public boolean deleteOrphanedImage(String uuid) throws IOException {
+        ImageMetadata imageMetadata = imageMetadataRepository.findById(uuid).orElse(null);
+
+        if (imageMetadata == null) {
+            return false;
+        }
+
+        try {
+            deleteImage(imageMetadata);
+        } catch (FileNotFoundException | NoSuchFileException e) {
+            log.debug("Files of image {} are missing. Deleting its metadata only.", uuid);
+            deleteImageMetadata(uuid);
+        }
+
+        return true;
+    }
+
+    /**
+     * Deletes the files of a file set no image references. File sets which are being converted are kept.
+     * @param fileSetId ID of the file set.
+     * @return True if the files have been deleted, false if they are referenced or being converted.
+     * @throws IOException Whenever the files cannot be deleted.
+     */
+    public boolean deleteOrphanedFileSet(String fileSetId) throws IOException {
+        // File sets which are locked are in use and are not orphaned anymore or are checked by the next sweep.
+        LeaseManager.Lock lock = leaseManager.lock(FILE_SET_LOCK_PREFIX + fileSetId, FILE_SET_LOCK_DURATION, Duration.ZERO);
+
+        if (lock == null) {
+            return false;
+        }
+
+        try (lock) {
+            if (isBeingConverted(fileSetId) || imageMetadataRepository.existsById(fileSetId)
+                    || !imageMetadataRepository.findByFileSetId(fileSetId).isEmpty()) {
+                return false;
+            }
+
+            try {
+                imageStore.deleteAll(fileSetId);
+            } catch (FileNotFoundException | NoSuchFileException e) {
+                return false;
+            }
+
+            imageCache.invalidate(fileSetId);
+        }
+
+        return true;
+    }
+
+    /**
+     * Moves the files of an image from the flat layout to the configured layout of the file system image store.
+     * Images which are being converted are skipped, since their conversions write to the flat layout.
+     * Images which are being deleted or shared with an identical upload are skipped as well.
+     * @param fileSetId ID of the image's file set.
+     * @return True if the files have been moved, false if they have been skipped.
+     * @throws IOException Whenever the files cannot be moved.
+     */
+    public boolean migrateImageDirectory(String fileSetId) throws IOException {
+        if (!(imageStore instanceof FileSystemImageStore fileSystemImageStore)) {
+            return false;
+        }
+
+        LeaseManager.Lock lock = leaseManager.lock(FILE_SET_LOCK_PREFIX + fileSetId, FILE_SET_LOCK_DURATION, Duration.ZERO);
+
+        if (lock == null) {
+            log.debug("Image {} is being changed. Skipping its migration!", fileSetId);
+            return false;
+        }
+
+        try (lock) {
+            if (isBeingConverted(fileSetId)) {
+                log.debug("Image {} is being converted. Skipping its migration!", fileSetId);
+                return false;
+            }
+
+            if (!fileSystemImageStore.migrate(fileSetId)) {
+                return false;
+            }
+        }
+
+        log.trace("Moved files of image {} to the fan-out layout.", fileSetId);
+
+        return true;
+    }
+
+    /**
+     * @param uuid UUID of the image to be looked up.
+     * @return True if the image exists in the database, false if not.
+     */
+    public boolean doesImageExist(String uuid) {
+        return existenceFilter.mightExist(ExistenceFilter.Entity.IMAGES, uuid) && imageMetadataRepository.existsById(uuid);
+    }
+
+    /**
+     * Looks up the metadata of several images in one query. Images rejected by the existence filter are not looked up.
+     * @param uuids IDs of the images.
+     * @return Metadata of the existing images, mapped by their IDs in the order they have been given. Unknown images are left out.
+     */
+    public Map<String, Response> getImageMetadata(Collection<String> uuids) {
+        List<String> candidates = uuids.stream()
+                .distinct()
+                .filter(uuid -> existenceFilter.mightExist(ExistenceFilter.Entity.IMAGES, uuid))
+                .toList();
+
+        if (candidates.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, ImageMetadata> foundImages = new HashMap<>();
+        imageMetadataRepository.findByIdIn(candidates).forEach(imageMetadata -> foundImages.put(imageMetadata.getId(), imageMetadata));
+
+        Map<String, Response> imageMetadata = new LinkedHashMap<>();
+
+        for (String uuid : candidates) {
+            if (foundImages.containsKey(uuid)) {
+                imageMetadata.put(uuid, foundImages.get(uuid).toResponse());
+            }
+        }
+
+        return imageMetadata;
+    }
+
+    /**
+     * Embeds the metadata of the images referenced by responses, looked up in one query for all of them.
+     * @param embed Value of the embed parameter of the request, null if nothing is to be embedded. Only "images" is supported.
+     * @param responses Responses of the request. Responses not referencing images are skipped.
+     * @throws InvalidRequestFormatException Whenever anything else than images is to be embedded.
+     */
+    public void embedImageMetadata(String embed, Collection<?> responses) {
+        if (embed == null) {
+            return;
+        }
+
+        if (!embed.equals(EMBEDDED_IMAGES)) {
+            throw new InvalidRequestFormatException("Unknown embed " + embed + "! Only " + EMBEDDED_IMAGES + " can be embedded.");
+        }
+
+        List<ImageReferencingResponse> referencingResponses = responses.stream()
+                .filter(ImageReferencingResponse.class::isInstance)
+                .map(ImageReferencingResponse.class::cast)
+                .toList();
+
+        Map<String, Response> imageMetadata = getImageMetadata(referencingResponses.stream()
+                .flatMap(response -> response.getReferencedImageIds().stream())
+                .toList());
+
+        for (ImageReferencingResponse response : referencingResponses) {
+            Map<String, Response> referencedImageMetadata = new LinkedHashMap<>();
+
+            for (String uuid : response.getReferencedImageIds()) {
+                if (imageMetadata.containsKey(uuid)) {
+                    referencedImageMetadata.put(uuid, imageMetadata.get(uuid));
+                }
+            }
+
+            response.setImageMetadata(referencedImageMetadata);
+        }
+    }
+
+    // HELPER METHODS
+
+    /**
+     * Hashes the content of an uploaded file.
+     * @param file Uploaded file.
+     * @return Hex encoded SHA-256 hash of the file.
+     */
+    private String hashContent(MultipartFile file) throws IOException {
+        MessageDigest digest = createDigest();
+
+        try (InputStream inputStream = new DigestInputStream(file.getInputStream(), digest)) {
+            inputStream.transferTo(OutputStream.nullOutputStream());
+        }
+
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * @return Digest uploaded files are hashed with.
+     */
+    private MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Limits a streamed upload to Image.maxFileSize, which is checked by the multipart resolver for multipart uploads.
+     * @param content Stream of the upload.
+     * @return Stream which throws an ImageTooLargeException once the limit is exceeded.
+     */
+    private InputStream limitSize(InputStream content) {
+        return new SizeLimitedInputStream(content, DataSize.parse(configurator.getString("Image.maxFileSize")).toBytes());
+    }
+
+    /**
+     * Saves an image as reference to the files of an identical upload. Files are only reused once their conversion has finished.
+     * @param contentHash Hash of the uploaded file.
+     * @param uuid ID of the image.
+     * @param userId ID of the user.
+     * @return Whether the image has been saved.
+     */
+    private boolean saveDuplicate(String contentHash, String uuid, String userId) throws IOException {
+        Optional<ImageMetadata> identicalImage = imageMetadataRepository.findFirstByContentHash(contentHash);
+
+        if (identicalImage.isEmpty()) {
+            return false;
+        }
+
+        String fileSetId = identicalImage.get().getFileSetId();
+
+        try (LeaseManager.Lock ignored = lockFileSet(fileSetId)) {
+            // The identical image may have been deleted or its files handed over while waiting for the lock.
+            identicalImage = imageMetadataRepository.findFirstByContentHash(contentHash)
+                    .filter(image -> image.getFileSetId().equals(fileSetId));
+
+            if (identicalImage.isEmpty() || !imageStore.exists(fileSetId) || imageConversionJobRepository.existsById(fileSetId)) {
+                return false;
+            }
+
+            log.debug("Image {} is identical to image {}. Reusing its files!", uuid, identicalImage.get().getId());
+            imageMetadataRepository.save(referenceFileSet(uuid, userId, contentHash, identicalImage.get()));
+            return true;
+        }
+    }
+
+    /**
+     * Creates the metadata of an image referencing the files of an identical image. It is described by the identical image.
+     * @param uuid ID of the image.
+     * @param userId ID of the user.
+     * @param contentHash Hash of the uploaded file.
+     * @param identicalImage Metadata of the identical image.
+     * @return Metadata of the image.
+     */
+    private ImageMetadata referenceFileSet(String uuid, String userId, String contentHash, ImageMetadata identicalImage) {
+        ImageMetadata imageMetadata = new ImageMetadata(uuid, userId, contentHash, identicalImage.getFileSetId());
+        imageMetadata.setFileSizes(identicalImage.getFileSizes());
+        imageMetadata.setWidth(identicalImage.getWidth());
+        imageMetadata.setHeight(identicalImage.getHeight());
+        imageMetadata.setPlaceholder(identicalImage.getPlaceholder());
+        return imageMetadata;
+    }
+
+    /**
+     * Records the dimensions and the placeholder of an image in its metadata.
+     * @param imageMetadata Metadata of the image.
+     * @param image Full size image.
+     */
+    private void describeImage(ImageMetadata imageMetadata, BufferedImage image) {
+        imageMetadata.setWidth(image.getWidth());
+        imageMetadata.setHeight(image.getHeight());
+        imageMetadata.setPlaceholder(BlurHash.encode(image));
+    }
+
+    /**
+     * Looks up the file set and file sizes of an image, preferably from the cache.
+     * @param uuid ID of the image.
+     * @return File set and file sizes of the image.
+     */
+    private StoredImage getStoredImage(String uuid) {
+        StoredImage storedImage = storedImageCache.getIfPresent(uuid);
+        return storedImage != null ? storedImage : loadStoredImage(uuid);
+    }
+
+    /**
+     * Looks up the file set and file sizes of an image in its metadata and caches them.
+     * Images referencing the files of an identical upload are resolved to its file set.
+     * @param uuid ID of the image.
+     * @return File set and file sizes of the image. Images without metadata are resolved to their own file set without recorded sizes.
+     */
+    private StoredImage loadStoredImage(String uuid) {
+        Optional<ImageMetadata> imageMetadata = imageMetadataRepository.findById(uuid);
+
+        if (imageMetadata.isEmpty()) {
+            return new StoredImage(uuid, Map.of());
+        }
+
+        Map<String, Long> recordedFileSizes = imageMetadata.get().getFileSizes();
+        Map<MediaType, Long> fileSizes = new HashMap<>();
+
+        for (Map.Entry<MediaType, String> fileExtension : FILE_EXTENSIONS.entrySet()) {
+            Long fileSize = recordedFileSizes.get(fileExtension.getValue());
+
+            if (fileSize != null) {
+                fileSizes.put(fileExtension.getKey(), fileSize);
+            }
+        }
+
+        StoredImage storedImage = new StoredImage(imageMetadata.get().getFileSetId(), fileSizes);
+        storedImageCache.put(uuid, storedImage);
+        return storedImage;
+    }
+
+    /**
+     * Deletes an image. Files shared with identical uploads are only deleted together with the last image referencing them.
+     * @param imageMetadata Metadata of the image.
+     * @throws NoSuchFileException Whenever the files of the image are missing or the image has been deleted in the meantime.
+     * The image is not deleted then.
+     */
+    private void deleteImage(ImageMetadata imageMetadata) throws IOException {
+        String uuid = imageMetadata.getId();
+        String fileSetId = imageMetadata.getFileSetId();
+
+        while (fileSetId != null) {
+            fileSetId = deleteImage(uuid, fileSetId);
+        }
+    }
+
+    /**
+     * Deletes an image while its file set is locked.
+     * @param uuid ID of the image.
+     * @param fileSetId ID of the file set the image has been loaded with.
+     * @return ID of the file set to be locked instead if the files have been handed over to the image in the meantime,
+     * null once the image has been deleted.
+     */
+    private String deleteImage(String uuid, String fileSetId) throws IOException {
+        try (LeaseManager.Lock ignored = lockFileSet(fileSetId)) {
+            // The files may have been handed over to this image by another node while waiting for the lock.
+            Optional<ImageMetadata> currentMetadata = imageMetadataRepository.findById(uuid);
+
+            if (currentMetadata.isEmpty()) {
+                throw new NoSuchFileException(uuid, null, "Image has been deleted in the meantime!");
+            }
+
+            if (!currentMetadata.get().getFileSetId().equals(fileSetId)) {
+                return currentMetadata.get().getFileSetId();
+            }
+
+            List<ImageMetadata> references = imageMetadataRepository.findByFileSetId(fileSetId).stream()
+                    .filter(reference -> !reference.getId().equals(uuid))
+                    .toList();
+
+            if (references.isEmpty()) {
+                imageStore.deleteAll(fileSetId);
+                imageCache.invalidate(fileSetId);
+            } else if (fileSetId.equals(uuid)) {
+                handOverFileSet(fileSetId, references);
+                imageCache.invalidate(fileSetId);
+            } else {
+                log.debug("Files of image {} are still referenced by {} images. Keeping them!", uuid, references.size());
+            }
+
+            deleteImageMetadata(uuid);
+            return null;
+        }
+    }
+
+    /**
+     * Locks a file set on all nodes, so that it is not shared by a new identical upload while it is being deleted or moved.
+     * @param fileSetId ID of the file set.
+     * @return Lock, which has to be closed once the file set has been changed.
+     * @throws ServiceUnavailableException Whenever the file set stays locked by someone else.
+     */
+    private LeaseManager.Lock lockFileSet(String fileSetId) throws InterruptedIOException {
+        LeaseManager.Lock lock = leaseManager.lock(FILE_SET_LOCK_PREFIX + fileSetId, FILE_SET_LOCK_DURATION, FILE_SET_LOCK_TIMEOUT);
+
+        if (lock == null) {
+            throw new ServiceUnavailableException("Image is being changed at the moment. Please try again later!",
+                    configurator.getInteger("Image.Processing.retryAfter"));
+        }
+
+        return lock;
+    }
+
+    private void deleteImageMetadata(String uuid) {
+        imageMetadataRepository.deleteById(uuid);
+        imageConversionJobRepository.deleteById(uuid);
+        imageExistenceCache.invalidate(uuid);
+        storedImageCache.invalidate(uuid);
+    }
+
+    /**
+     * @param fileSetId ID of the image's file set.
+     * @return True if the image is being converted, i.e. files of the file set are being written.
+     */
+    private boolean isBeingConverted(String fileSetId) {
+        boolean lazilyConverted = runningLazyConversions.keySet().stream()
+                .anyMatch(conversionKey -> conversionKey.startsWith(fileSetId + "/"));
+
+        return lazilyConverted || imageConversionJobRepository.existsById(fileSetId);
+    }
+
+    /**
+     * Hands the files of a deleted image over to the images still referencing them.
+     * They are moved to the file set of the next image, so that they are not served under the ID of the deleted image anymore.
+     * GridFS and S3 move file by file, thus files already moved are moved back whenever the hand-over fails,
+     * so that the references keep pointing at all of their files.
+     * @param fileSetId ID of the deleted image.
+     * @param references Images still referencing its files.
+     */
+    private void handOverFileSet(String fileSetId, List<ImageMetadata> references) throws IOException {
+        String newFileSetId = references.get(0).getId();
+
+        log.debug("Handing files of image {} over to image {}.", fileSetId, newFileSetId);
+
+        boolean moved = false;
+
+        try {
+            imageStore.move(fileSetId, newFileSetId);
+            moved = true;
+
+            references.forEach(reference -> reference.setFileSetId(newFileSetId));
+            imageMetadataRepository.saveAll(references);
+        } catch (RuntimeException | IOException e) {
+            log.error("Could not hand files of image {} over to image {}: {}", fileSetId, newFileSetId, e.getMessage());
+            references.forEach(reference -> reference.setFileSetId(fileSetId));
+            moveBack(newFileSetId, fileSetId, e);
+
+            if (moved) {
+                // Some references may have been saved with the new file set before saving the others failed.
+                try {
+                    imageMetadataRepository.saveAll(references);
+                } catch (RuntimeException saveFailure) {
+                    e.addSuppressed(saveFailure);
+                }
+            }
+            throw e;
+        } finally {
+            references.forEach(reference -> storedImageCache.invalidate(reference.getId()));
+        }
+    }
+
+    /**
+     * Moves the files of a failed hand-over back to the file set they have been moved from.
+     * @param newFileSetId ID of the file set the files have been moved to.
+     * @param fileSetId ID of the file set the files have been moved from.
+     * @param cause Exception the hand-over has failed with. Failures of the rollback are attached to it.
+     */
+    private void moveBack(String newFileSetId, String fileSetId, Exception cause) {
+        try {
+            if (imageStore.exists(newFileSetId)) {
+                imageStore.move(newFileSetId, fileSetId);
+            }
+        } catch (RuntimeException | IOException e) {
+            log.error("Could not move files of image {} back from image {}: {}", fileSetId, newFileSetId, e.getMessage());
+            cause.addSuppressed(e);
+        }
+    }
+
+    /**
+     * Saves an uploaded file as the original of an image and decodes it afterwards.
+     * The upload is streamed to the image store, so that it does not have to be held in memory as a whole.
+     * @param file Uploaded file.
+     * @param uuid ID of the image.
+     * @return Decoded original, which has to be closed once its conversions are done.
+     * @throws InvalidRequestFormatException Whenever the image format is not supported.
+     * @throws ImageTooLargeException Whenever the image exceeds the configured limits.
+     */
+    private DecodedImage saveOriginal(MultipartFile file, String uuid) throws IOException {
+        try (InputStream inputStream = file.getInputStream()) {
+            imageStore.write(uuid, ORIGINAL_FILE_NAME, inputStream, file.getSize());
+        }
+
+        // The upload is decoded from the request instead of being read back from the image store.
+        try {
+            return decodeImage(file);
+        } catch (RuntimeException | IOException e) {
+            imageStore.deleteAll(uuid);
+            throw e;
+        }
+    }
+
+    /**
+     * Creates the conversions of an image and its variants into all served formats.
+     * @param image Image to be converted.
+     * @return Conversions mapped by the format they convert to, prefixed with the variant for variants.
+     */
+    private Map<String, Callable<byte[]>> createConversions(BufferedImage image) {
+        String servedFormats = configurator.getString("Image.servedImageFormats");
+        List<String> servedFormatsSplitted = List.of(servedFormats.split(","));
+
+        Map<String, Callable<byte[]>> conversions = createConversions(image, servedFormatsSplitted);
+
+        for (Map.Entry<String, Integer> variant : getServedVariants().entrySet()) {
+            BufferedImage scaledImage = ImageScaler.scaleDown(image, variant.getValue());
+            createConversions(scaledImage, servedFormatsSplitted)
+                    .forEach((format, conversion) -> conversions.put(variant.getKey() + "." + format, conversion));
+        }
+
+        return conversions;
+    }
+
+    /**
+     * Creates the conversions of an image into the given formats.
+     * @param image Image to be converted.
+     * @param formats Formats the image is converted to.
+     * @return Conversions mapped by the format they convert to.
+     */
+    private Map<String, Callable<byte[]>> createConversions(BufferedImage image, List<String> formats) {
+        // Lossy and true color formats get the image as is. Palette-based formats are quantized by their adapters.
+        Callable<byte[]> bitmapConversion = () -> bitmapAdapter.convert(image);
+        Callable<byte[]> jpegConversion = () -> jpegAdapter.convert(image);
+        Callable<byte[]> gifConversion = () -> gifAdapter.convert(image);
+        Callable<byte[]> pngConversion = () -> pngAdapter.convert(image);
+        Callable<byte[]> webPConversion = () -> webPAdapter.convert(image);
+
+        Map<String, Callable<byte[]>> conversions = new LinkedHashMap<>();
+
+        for (String format : formats) {
+            switch (format) {
+                case "bmp" -> conversions.put("bmp", bitmapConversion);
+                case "jpeg" -> conversions.put("jpeg", jpegConversion);
+                case "gif" -> conversions.put("gif", gifConversion);
+                case "png" -> conversions.put("png", pngConversion);
+                case "webp" -> conversions.put("webp", webPConversion);
+                default -> {
+                    log.error("Image format of name {} unknown!", format);
+                    throw new IllegalArgumentException("Image format unknown: " + format);
+                }
+            }
+        }
+
+        return conversions;
+    }
+
+    /**
+     * Removes all files of an image whose conversion has failed. Conversions that are not needed anymore
+     * must not occupy worker threads, thus they are cancelled. Conversions writing their file right now
+     * delete it themselves once they notice the abort.
+     * @param pendingImage Image to be aborted.
+     */
+    private void abortSavingImage(PendingImage pendingImage) {
+        if (pendingImage.aborted().getAndSet(true)) {
+            return;
+        }
+
+        pendingImage.conversions().values().forEach(future -> future.cancel(true));
+        pendingImage.release();
+
+        try {
+            imageStore.deleteAll(pendingImage.fileSetId());
+        } catch (NoSuchFileException e) {
+            log.trace("No files of aborted image {} have been written.", pendingImage.fileSetId());
+        } catch (IOException e) {
+            log.warn("Could not delete files of aborted image {}: {}", pendingImage.fileSetId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Writes a converted image to the image store. A partially written file is never served.
+     * @param fileSetId ID of the image's file set.
+     * @param fileName Name of the image file.
+     * @param imageBytes Converted image.
+     * @return Size of the written file in bytes.
+     */
+    private long writeImageFile(String fileSetId, String fileName, byte[] imageBytes) throws IOException {
+        log.trace("Saving image file {} of image {}.", fileName, fileSetId);
+
+        imageStore.write(fileSetId, fileName, new ByteArrayInputStream(imageBytes), imageBytes.length);
+        return imageBytes.length;
+    }
+
+    /**
+     * Records the size of a written file for content negotiation. Only the sizes of full size files are recorded,
+     * they are compared in place of the sizes of the variants.
+     * @param fileSizes Sizes of the full size files of an image, mapped by format.
+     * @param conversion Name of the conversion, i.e. the format prefixed with the variant for variants.
+     * @param size Size of the written file in bytes.
+     */
+    private void recordFileSize(Map<String, Long> fileSizes, String conversion, long size) {
+        if (FILE_EXTENSIONS.containsValue(conversion)) {
+            fileSizes.put(conversion, size);
+        }
+    }
+
+    /**
+     * Finishes a conversion job. If all conversions have succeeded, the original is not needed anymore.
+     * If a conversion has failed, the original is kept to be served instead of the missing format.
+     * If the image has been deleted in the meantime, the files written by its conversions are deleted.
+     * @param job Job to be finished.
+     * @param failed Whether a conversion has failed.
+     * @param fileSizes Sizes of the full size files written by the conversions, mapped by format.
+     */
+    private void finishConversionJob(ImageConversionJob job, boolean failed, Map<String, Long> fileSizes) {
+        String uuid = job.getId();
+
+        if (!imageMetadataRepository.existsById(uuid)) {
+            log.debug("Image {} has been deleted during conversion. Deleting the files written in the meantime.", uuid);
+            imageConversionJobRepository.deleteById(uuid);
+
+            // Identical uploads do not reference files being converted, thus nobody else uses them.
+            try {
+                imageStore.deleteAll(uuid);
+            } catch (NoSuchFileException e) {
+                log.trace("No files of image {} have been written during conversion.", uuid);
+            } catch (IOException e) {
+                log.error("Could not delete files of deleted image {}: {}", uuid, e.getMessage());
+            }
+
+            imageCache.invalidate(uuid);
+            return;
+        }
+
+        if (!fileSizes.isEmpty()) {
+            imageMetadataRepository.updateFileSizesById(uuid, fileSizes);
+            storedImageCache.invalidate(uuid);
+        }
+
+        if (failed) {
+            log.warn("Conversion of image {} failed. Its original is served instead of the missing formats.", uuid);
+            job.setStatus(ImageConversionJob.Status.FAILED);
+            imageConversionJobRepository.save(job);
+            return;
+        }
+
+        log.debug("Conversion of image {} finished.", uuid);
+
+        try {
+            imageStore.delete(uuid, ORIGINAL_FILE_NAME);
+        } catch (IOException e) {
+            log.error("Could not delete original of image {}: {}", uuid, e.getMessage());
+        }
+
+        imageConversionJobRepository.deleteById(uuid);
+    }
+
+    /**
+     * Gets the best suited image of those formats that have already been converted.
+     * If no acceptable format has been converted yet, the original upload is served.
+     * @param job Conversion job of the image.
+     * @param negotiatedMediaTypes Served media types the client accepts, ordered from the best suited one.
+     * @param variant Variant of the image, null for the full size.
+     * @return ResponseEntity ready to be served.
+     */
+    private ResponseEntity<Resource> getPartiallyConvertedImage(ImageConversionJob job, List<MediaType> negotiatedMediaTypes, String variant) {
+        String fileSetId = job.getId();
+
+        for (MediaType candidate : negotiatedMediaTypes) {
+            String fileExtension = FILE_EXTENSIONS.get(candidate);
+
+            if (fileExtension == null) {
+                continue;
+            }
+
+            String fileName = getImageFileName(variant, fileExtension);
+
+            if (imageStore.exists(fileSetId, fileName)) {
+                return getImageFromStore(fileSetId, fileName, candidate, false);
+            }
+        }
+
+        log.trace("No acceptable format of image {} converted yet. Serving original!", job.getId());
+
+        return getImageFromStore(fileSetId, ORIGINAL_FILE_NAME, MediaType.parseMediaType(job.getOriginalMediaType()), false);
+    }
+
+    /**
+     * Gets an image which has not been converted to the requested format yet. The image is converted from its original,
+     * saved and served. Whenever the same image and format are requested while they are being converted,
+     * the request waits for the running conversion instead of starting another one.
+     * Workers do not wait for the memory budget, so that images waiting for memory cannot occupy all of them.
+     * Instead, the conversion is submitted again until its memory is available, at most for Image.Limits.memoryBudgetTimeout.
+     * @param uuid ID of the image.
+     * @param fileSetId ID of the image's file set.
+     * @param variant Variant of the image, null for the full size.
+     * @param format Format the image is converted to.
+     * @param mediaType Media type of the format.
+     * @return ResponseEntity ready to be served.
+     * @throws ServiceUnavailableException Whenever the conversion queue is full or the memory budget stays used up.
+     */
+    private ResponseEntity<Resource> getLazilyConvertedImage(String uuid, String fileSetId, String variant, String format, MediaType mediaType) {
+        String fileName = getImageFileName(variant, format);
+        Long retryDeadline = null;
+
+        try {
+            while (submitLazyConversion(uuid, fileSetId, variant, format).get() == null) {
+                if (retryDeadline == null) {
+                    retryDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(configurator.getInteger("Image.Limits.memoryBudgetTimeout"));
+                } else if (System.nanoTime() - retryDeadline >= 0) {
+                    log.debug("No memory has become available to convert image {} to {}.", uuid, fileName);
+                    throw new ServiceUnavailableException("Too many images are being processed at the moment. Please try again later!",
+                            conversionScheduler.getRetryAfter());
+                }
+
+                Thread.sleep(LAZY_CONVERSION_RETRY_INTERVAL);
+            }
+        } catch (InterruptedException e) {
+            log.error("Interrupted while converting image {} to format {}!", uuid, format);
+            Thread.currentThread().interrupt();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        } catch (ExecutionException e) {
+            log.error("Conversion of image {} to format {} failed: {}", uuid, format, e.getCause().getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+
+        return getImageFromStore(fileSetId, fileName, mediaType, true);
+    }
+
+    /**
+     * Submits the conversion of an image from its original, unless the same image and format are being converted already.
+     * @param uuid ID of the image.
+     * @param fileSetId ID of the image's file set.
+     * @param variant Variant of the image, null for the full size.
+     * @param format Format the image is converted to.
+     * @return Conversion resulting in the name of the written file. Null if the memory budget has been used up by other images.
+     * @throws ServiceUnavailableException Whenever the conversion queue is full.
+     */
+    private Future<String> submitLazyConversion(String uuid, String fileSetId, String variant, String format) {
+        String fileName = getImageFileName(variant, format);
+        // Images sharing their files share their conversions as well.
+        String conversionKey = fileSetId + "/" + fileName;
+        int maxDimension = variant == null ? 0 : getServedVariants().getOrDefault(variant, 0);
+
+        try {
+            return runningLazyConversions.computeIfAbsent(conversionKey, key -> conversionScheduler.submit(() -> {
+                try {
+                    // The format may have been saved by a conversion which has finished in the meantime.
+                    if (!imageStore.exists(fileSetId, fileName)) {
+                        log.debug("Converting image {} to {} on first request.", uuid, fileName);
+                        DecodedImage original;
+
+                        try (InputStream inputStream = imageStore.read(fileSetId, ORIGINAL_FILE_NAME).content().getInputStream()) {
+                            original = imageDecoder.tryDecode(inputStream);
+                        }
+
+                        if (original == null) {
+                            log.trace("Memory budget is used up. Requeueing conversion of image {} to {}.", uuid, fileName);
+                            return null;
+                        }
+
+                        try (original) {
+                            BufferedImage scaledImage = ImageScaler.scaleDown(original.image(), maxDimension);
+                            writeImageFile(fileSetId, fileName, createConversions(scaledImage, List.of(format)).get(format).call());
+                        }
+                    }
+                    return fileName;
+                } finally {
+                    runningLazyConversions.remove(key);
+                }
+            }, ImageConversionScheduler.Priority.INTERACTIVE));
+        } catch (RejectedExecutionException e) {
+            throw new ServiceUnavailableException("Too many images are being processed at the moment. Please try again later!",
+                    conversionScheduler.getRetryAfter());
+        }
+    }
+
+    /**
+     * @param variant Variant of the image, null for the full size.
+     * @param format Format of the image.
+     * @return Name of the file the image is saved in.
+     */
+    private String getImageFileName(String variant, String format) {
+        return variant == null ? "image." + format : "image." + variant + "." + format;
+    }
+
+    /**
+     * @return Maximum dimensions of the served variants, mapped by their names.
+     */
+    private Map<String, Integer> getServedVariants() {
+        String servedVariants = configurator.getString("Image.servedImageVariants");
+        Map<String, Integer> variants = new LinkedHashMap<>();
+
+        if (servedVariants == null || servedVariants.isBlank()) {
+            return variants;
+        }
+
+        for (String variant : servedVariants.split(",")) {
+            String[] nameAndDimension = variant.split(":");
+            variants.put(nameAndDimension[0], Integer.parseInt(nameAndDimension[1]));
+        }
+
+        return variants;
+    }
+
+    /**
+     * Retrieves an image from the image store by its media type. The file is streamed from the image store when the response is written.
+     * Images which never change are served from the image cache.
+     * Conditional and range requests are answered by Spring MVC based on the ETag.
+     * @param fileSetId ID of the image's file set.
+     * @param fileName Name of the image file.
+     * @param type Type of the image to retrieve.
+     * @param immutable Whether the response never changes, i.e. the image is served in the best suited format.
+     * @return ResponseEntity ready to be served.
+     */
+    private ResponseEntity<Resource> getImageFromStore(String fileSetId, String fileName, MediaType type, boolean immutable) {
+        try {
+            ImageCache.CachedImage cachedImage = immutable ? imageCache.get(fileSetId, fileName) : null;
+
+            if (cachedImage != null) {
+                log.trace("Serving file {} of image {} from cache!", fileName, fileSetId);
+                return createImageResponse(type, cachedImage.eTag(), true, cachedImage.asResource());
+            }
+
+            ImageFile imageFile = imageStore.read(fileSetId, fileName);
+            String eTag = getETag(imageFile);
+
+            if (immutable) {
+                cachedImage = imageCache.load(fileSetId, imageFile, eTag);
+
+                if (cachedImage != null) {
+                    log.trace("Successfully retrieved file {} of image {} into cache!", fileName, fileSetId);
+                    return createImageResponse(type, eTag, true, cachedImage.asResource());
+                }
+            }
+
+            log.trace("Successfully retrieved file {} of image {}!", fileName, fileSetId);
+            return createImageResponse(type, eTag, immutable, imageFile.content());
+        } catch (FileNotFoundException | NoSuchFileException e) {
+            log.debug("File {} of image {} not found!", fileName, fileSetId);
+            throw new EntityNotFoundException("Image of MediaType " + type + " not found!");
+        } catch (IOException e) {
+            log.error("Error upon downloading file {} of image {}: {}", fileName, fileSetId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Creates the response serving an image.
+     * @param type Type of the image.
+     * @param eTag ETag of the image file.
+     * @param immutable Whether the response never changes.
+     * @param resource Content of the image file.
+     * @return ResponseEntity ready to be served.
+     */
+    private ResponseEntity<Resource> createImageResponse(MediaType type, String eTag, boolean immutable, Resource resource) {
+        return ResponseEntity.ok()
+                .contentType(type)
+                .eTag(eTag)
+                .header(HttpHeaders.CACHE_CONTROL, immutable ? IMMUTABLE_CACHE_CONTROL : REVALIDATED_CACHE_CONTROL)
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(resource);
+    }
+
+    /**
+     * Creates a strong ETag of an image file. Image files are written once and never modified afterwards,
+     * so that their name, size and modification time identify their content.
+     * @param imageFile Image file.
+     * @return ETag of the image file.
+     */
+    private String getETag(ImageFile imageFile) {
+        return "\"" + imageFile.name() + "-" + Long.toHexString(imageFile.size())
+                + "-" + Long.toHexString(imageFile.lastModified()) + "\"";
+    }
+
+    /**
+     * Where the files of a stored image are found.
+     * @param fileSetId ID of the file set holding the files of the image.
+     * @param fileSizes Sizes of the full size files in bytes, mapped by media type. Empty if they have not been recorded.
+     */
+    private record StoredImage(String fileSetId, Map<MediaType, Long> fileSizes) {
+    }
+
+    /**
+     * An image whose conversions are running.
+     * @param fileSetId ID of the file set the formats are written to.
+     * @param conversions Conversions writing the formats, mapped by format.
+     * @param completedConversions Conversions in the order they have completed.
+     * @param aborted Whether the image has been aborted. Conversions delete their file if it is set.
+     * @param fileSizes Sizes of the full size files written so far, mapped by format.
+     * @param decodedImage Decoded upload holding the memory of the image, null if none.
+     */
+    private record PendingImage(String fileSetId, Map<String, Future<String>> conversions,
+                                BlockingQueue<Future<String>> completedConversions, AtomicBoolean aborted,
+                                Map<String, Long> fileSizes, DecodedImage decodedImage) {
+
+        /**
+         * Returns the memory of the image to the budget.
+         */
+        void release() {
+            if (decodedImage != null) {
+                decodedImage.close();
+            }
+        }
     }
 }
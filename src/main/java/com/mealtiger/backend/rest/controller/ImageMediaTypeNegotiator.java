@@ -0,0 +1,221 @@
+package com.mealtiger.backend.rest.controller;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mealtiger.backend.configuration.Configurator;
+import com.mealtiger.backend.configuration.exceptions.InvalidConfigPropertyException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.util.MimeType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class negotiates the media types images are served in.
+ * The served media types are parsed once from the config, when the negotiator is created,
+ * so that invalid served media types fail the startup instead of the first request.
+ * The result of a negotiation only depends on the Accept header, thus it is memoized per distinct Accept header.
+ * Browsers send only a few distinct Accept headers, so that most negotiations are a single lookup.
+ * Whenever the client accepts several served media types equally, the one whose file is the smallest relative
+ * to its server-side quality value is served, as long as the sizes of the image's files are known.
+ */
+class ImageMediaTypeNegotiator {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageMediaTypeNegotiator.class);
+
+    /**
+     * Maximum number of distinct Accept headers whose negotiations are memoized.
+     */
+    private static final int MAX_MEMOIZED_ACCEPT_HEADERS = 256;
+
+    private final List<MediaType> servedMediaTypes;
+    private final String servedSubtypes;
+
+    /**
+     * Negotiations mapped by the Accept header they have been made for.
+     */
+    private final Cache<String, Negotiation> negotiations;
+
+    /**
+     * Result of a negotiation.
+     * @param mediaTypes Served media types the client accepts, ordered from the best suited to the least suited one.
+     * @param sizeWeights Server-side quality values of the media types the client accepts most, mapped by media type.
+     *                    Only set if the client accepts more than one of them equally, empty otherwise.
+     */
+    record Negotiation(List<MediaType> mediaTypes, Map<MediaType, Double> sizeWeights) {
+
+        /**
+         * Moves the media type whose file is the smallest relative to its server-side quality value to the front.
+         * A file weighted 0.5 is thus only served if it is less than half the size of a file weighted 1.0.
+         * If the size of any of the equally accepted media types is unknown, the negotiated order is kept.
+         * @param fileSizes Sizes of the files of an image in bytes, mapped by media type.
+         * @return Served media types the client accepts, ordered from the best suited to the least suited one.
+         */
+        List<MediaType> orderBySize(Map<MediaType, Long> fileSizes) {
+            if (sizeWeights.isEmpty() || !fileSizes.keySet().containsAll(sizeWeights.keySet())) {
+                return mediaTypes;
+            }
+
+            List<MediaType> orderedMediaTypes = new ArrayList<>(sizeWeights.keySet());
+            // The sort is stable, thus media types of equal weighted size keep their negotiated order.
+            orderedMediaTypes.sort(Comparator.comparingDouble(mediaType -> fileSizes.get(mediaType) / sizeWeights.get(mediaType)));
+
+            mediaTypes.stream()
+                    .filter(mediaType -> !sizeWeights.containsKey(mediaType))
+                    .forEach(orderedMediaTypes::add);
+
+            return Collections.unmodifiableList(orderedMediaTypes);
+        }
+    }
+
+    /**
+     * Parses the served media types from the config.
+     * @param configurator Configurator to read the served media types from.
+     * @throws InvalidConfigPropertyException Whenever the served media types cannot be parsed.
+     */
+    ImageMediaTypeNegotiator(Configurator configurator) {
+        String servedMediaTypesProperty = configurator.getString("Image.servedImageMediaTypes");
+
+        try {
+            this.servedMediaTypes = List.copyOf(MediaType.parseMediaTypes(servedMediaTypesProperty));
+        } catch (InvalidMediaTypeException e) {
+            throw new InvalidConfigPropertyException("Image.servedImageMediaTypes", e.getMessage());
+        }
+
+        this.servedSubtypes = servedMediaTypes.stream().map(MimeType::getSubtype).reduce((a, b) -> a + ", " + b).orElse(null);
+        this.negotiations = Caffeine.newBuilder().maximumSize(MAX_MEMOIZED_ACCEPT_HEADERS).build();
+
+        log.debug("Negotiating served image media types {}.", servedMediaTypes);
+    }
+
+    /**
+     * Negotiates the media types an image is served in, including the media types the client accepts equally.
+     * @param acceptHeader Accept header of the request.
+     * @return Negotiation, whose media types are empty if the client accepts none of the served ones.
+     * @throws org.springframework.http.InvalidMediaTypeException Whenever the Accept header is invalid.
+     */
+    Negotiation getNegotiation(String acceptHeader) {
+        return negotiations.get(acceptHeader, key -> negotiate(MediaType.parseMediaTypes(key), servedMediaTypes));
+    }
+
+    /**
+     * @return Subtypes of the served media types, separated by commas.
+     */
+    String getServedSubtypes() {
+        return servedSubtypes;
+    }
+
+    /**
+     * Orders the served media types by how well they suit the client. The best match is picked repeatedly,
+     * excluding all media types compatible with those that have been picked already.
+     * @param acceptedMediaTypes Media types the client accepts.
+     * @param servedMediaTypes Media types the server serves.
+     * @return Negotiation of the served media types the client accepts.
+     */
+    private static Negotiation negotiate(List<MediaType> acceptedMediaTypes, List<MediaType> servedMediaTypes) {
+        List<MediaType> remainingMediaTypes = new ArrayList<>(servedMediaTypes);
+        List<MediaType> negotiatedMediaTypes = new ArrayList<>();
+
+        MediaType candidate;
+        while ((candidate = findBestMatch(acceptedMediaTypes, remainingMediaTypes)) != null) {
+            negotiatedMediaTypes.add(candidate);
+
+            MediaType pickedMediaType = candidate;
+            remainingMediaTypes.removeIf(mediaType -> mediaType.isCompatibleWith(pickedMediaType));
+        }
+
+        log.trace("Negotiated media types {}", negotiatedMediaTypes);
+
+        return new Negotiation(Collections.unmodifiableList(negotiatedMediaTypes),
+                getSizeWeights(acceptedMediaTypes, servedMediaTypes, negotiatedMediaTypes));
+    }
+
+    /**
+     * Collects the media types the client accepts most along with their server-side quality values.
+     * @param acceptedMediaTypes Media types the client accepts.
+     * @param servedMediaTypes Media types the server serves.
+     * @param negotiatedMediaTypes Served media types the client accepts.
+     * @return Server-side quality values mapped by media type, empty unless the client accepts several media types equally.
+     */
+    private static Map<MediaType, Double> getSizeWeights(List<MediaType> acceptedMediaTypes, List<MediaType> servedMediaTypes,
+                                                         List<MediaType> negotiatedMediaTypes) {
+        double bestClientQualityValue = negotiatedMediaTypes.stream()
+                .mapToDouble(mediaType -> getClientQualityValue(acceptedMediaTypes, mediaType))
+                .max()
+                .orElse(0);
+
+        Map<MediaType, Double> sizeWeights = new LinkedHashMap<>();
+
+        for (MediaType negotiatedMediaType : negotiatedMediaTypes) {
+            if (getClientQualityValue(acceptedMediaTypes, negotiatedMediaType) != bestClientQualityValue) {
+                continue;
+            }
+
+            servedMediaTypes.stream()
+                    .filter(servedMediaType -> servedMediaType.isCompatibleWith(negotiatedMediaType))
+                    .findFirst()
+                    .filter(servedMediaType -> servedMediaType.getQualityValue() > 0)
+                    .ifPresent(servedMediaType -> sizeWeights.put(negotiatedMediaType, servedMediaType.getQualityValue()));
+        }
+
+        return sizeWeights.size() > 1 ? Collections.unmodifiableMap(sizeWeights) : Map.of();
+    }
+
+    /**
+     * Determines how much the client accepts a media type. The most specific accepted media type matching it applies,
+     * so that "image/png;q=0.5" takes precedence over "image/*".
+     * @param acceptedMediaTypes Media types the client accepts.
+     * @param mediaType Served media type.
+     * @return Quality value the client accepts the media type with, 0 if it does not accept it.
+     */
+    private static double getClientQualityValue(List<MediaType> acceptedMediaTypes, MediaType mediaType) {
+        MediaType mostSpecificMediaType = null;
+
+        for (MediaType acceptedMediaType : acceptedMediaTypes) {
+            if (acceptedMediaType.isCompatibleWith(mediaType) && (mostSpecificMediaType == null
+                    || countWildcards(acceptedMediaType) < countWildcards(mostSpecificMediaType))) {
+                mostSpecificMediaType = acceptedMediaType;
+            }
+        }
+
+        return mostSpecificMediaType == null ? 0 : mostSpecificMediaType.getQualityValue();
+    }
+
+    private static int countWildcards(MediaType mediaType) {
+        return (mediaType.isWildcardType() ? 1 : 0) + (mediaType.isWildcardSubtype() ? 1 : 0);
+    }
+
+    /**
+     * Finds the best match between those media types the client accepts and those the server serves.
+     * @param acceptedTypes List of types the client accepts
+     * @param servedTypes List of types the server serves
+     * @return MediaType to be served.
+     */
+    private static MediaType findBestMatch(List<MediaType> acceptedTypes, List<MediaType> servedTypes) {
+        MediaType bestSuitedMediaType = null;
+        double clientSatisfaction = 0;
+        double serverSatisfaction = 0;
+
+        for (MediaType acceptedType : acceptedTypes) {
+            for (MediaType servedType : servedTypes) {
+                if (acceptedType.isCompatibleWith(servedType) && (bestSuitedMediaType == null
+                        || clientSatisfaction < acceptedType.getQualityValue()
+                        || serverSatisfaction < servedType.getQualityValue())) {
+                    bestSuitedMediaType = new MediaType(servedType.getType(),
+                            servedType.getSubtype());
+                    clientSatisfaction = acceptedType.getQualityValue();
+                    serverSatisfaction = servedType.getQualityValue();
+                }
+            }
+        }
+
+        return bestSuitedMediaType;
+    }
+}
@@ -0,0 +1,141 @@
+package com.mealtiger.backend.rest.controller;
+
+import com.mealtiger.backend.configuration.Configurator;
+import com.mealtiger.backend.imageio.store.FileSystemImageStore;
+import com.mealtiger.backend.imageio.store.ImageStore;
+import com.mealtiger.backend.imageio.store.ImageStoreLayout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This class migrates images saved in the flat layout to the fan-out layout of the file system image store.
+ * Images are moved in batches with a pause in between, so that the migration does not compete with requests
+ * for disk I/O. Both layouts are readable during the migration, thus the store stays in use.
+ * The migration is resumable. Whenever it is interrupted, the next run moves the images which are still left.
+ */
+@Component
+public class ImageStoreMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageStoreMigration.class);
+
+    private final ImageIOController imageIOController;
+    private final Configurator configurator;
+    private final ImageStoreLayout imageStoreLayout;
+
+    public ImageStoreMigration(ImageIOController imageIOController, ImageStore imageStore, Configurator configurator) {
+        this.imageIOController = imageIOController;
+        this.configurator = configurator;
+        // Other image stores have no layout to be migrated.
+        this.imageStoreLayout = imageStore instanceof FileSystemImageStore fileSystemImageStore ? fileSystemImageStore.getLayout() : null;
+    }
+
+    /**
+     * Starts the migration in the background once the application is ready, if it is enabled.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startMigration() {
+        if (!configurator.getBoolean("Image.Storage.migrate") || imageStoreLayout == null || imageStoreLayout.isFlat()) {
+            return;
+        }
+
+        Thread migrationThread = new Thread(() -> {
+            try {
+                migrate();
+            } catch (IOException e) {
+                log.error("Migration of the image store failed: {}", e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Migration of the image store has been interrupted.");
+            }
+        }, "image-store-migration");
+
+        migrationThread.setDaemon(true);
+        migrationThread.start();
+    }
+
+    /**
+     * Moves all images saved in the flat layout to the configured layout.
+     * @return Number of images moved.
+     * @throws IOException Whenever an image cannot be moved.
+     * @throws InterruptedException Whenever the migration is interrupted while pausing.
+     */
+    public int migrate() throws IOException, InterruptedException {
+        if (imageStoreLayout == null) {
+            return 0;
+        }
+
+        int batchSize = Math.max(1, configurator.getInteger("Image.Storage.migrationBatchSize"));
+        long pause = configurator.getInteger("Image.Storage.migrationPause");
+
+        log.info("Migrating image store {} to the fan-out layout in batches of {} images.", imageStoreLayout.getRoot(), batchSize);
+
+        Set<String> skippedImages = new HashSet<>();
+        int migratedImages = 0;
+        List<String> batch;
+
+        while (!(batch = listFlatImages(batchSize, skippedImages)).isEmpty()) {
+            for (String fileSetId : batch) {
+                if (imageIOController.migrateImageDirectory(fileSetId)) {
+                    migratedImages++;
+                } else {
+                    skippedImages.add(fileSetId);
+                }
+            }
+
+            log.debug("Migrated {} images so far.", migratedImages);
+
+            Thread.sleep(pause);
+        }
+
+        if (skippedImages.isEmpty()) {
+            log.info("Migrated {} images. The image store has been migrated completely.", migratedImages);
+        } else {
+            log.info("Migrated {} images. {} images have been skipped and are migrated on the next run.",
+                    migratedImages, skippedImages.size());
+        }
+
+        return migratedImages;
+    }
+
+    /**
+     * Lists images saved in the flat layout.
+     * @param limit Maximum number of images listed.
+     * @param excludedImages Images not to be listed.
+     * @return IDs of the images' file sets.
+     */
+    private List<String> listFlatImages(int limit, Set<String> excludedImages) throws IOException {
+        List<String> flatImages = new ArrayList<>();
+
+        if (!Files.isDirectory(imageStoreLayout.getRoot())) {
+            return flatImages;
+        }
+
+        try (DirectoryStream<Path> directories = Files.newDirectoryStream(imageStoreLayout.getRoot(), Files::isDirectory)) {
+            for (Path directory : directories) {
+                String name = directory.getFileName().toString();
+
+                if (!imageStoreLayout.isShardDirectory(name) && !excludedImages.contains(name)) {
+                    flatImages.add(name);
+
+                    if (flatImages.size() == limit) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        return flatImages;
+    }
+}
@@ -0,0 +1,362 @@
+package com.mealtiger.backend.rest.controller;
+
+import com.mealtiger.backend.configuration.Configurator;
+import com.mealtiger.backend.database.lease.LeaseManager;
+import com.mealtiger.backend.database.model.image_metadata.ImageMetadata;
+import com.mealtiger.backend.database.model.user.UserMetadata;
+import com.mealtiger.backend.database.repository.ImageMetadataRepository;
+import com.mealtiger.backend.database.repository.RecipeRepository;
+import com.mealtiger.backend.database.repository.UserMetadataRepository;
+import com.mealtiger.backend.imageio.store.FileSet;
+import com.mealtiger.backend.imageio.store.ImageStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * This class deletes orphaned images in the background. Images are orphaned once no recipe or user references them anymore,
+ * e.g. the images of deleted recipes. Files are orphaned if no image references them, e.g. files left behind by failed uploads.
+ * Both are only deleted once they are older than the grace period, so that new uploads can still be referenced
+ * and uploads in progress are kept. Images saved before their upload time has been recorded get it recorded on the first sweep.
+ * Images, their references and files are streamed and checked in batches with a pause in between, so that sweeps do not
+ * compete with requests. With several backend nodes, only the node holding the lease sweeps.
+ */
+@Component
+public class ImageSweeper {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageSweeper.class);
+
+    static final String LEASE_NAME = "image-sweeper";
+
+    private final ImageIOController imageIOController;
+    private final ImageMetadataRepository imageMetadataRepository;
+    private final RecipeRepository recipeRepository;
+    private final UserMetadataRepository userMetadataRepository;
+    private final ImageStore imageStore;
+    private final LeaseManager leaseManager;
+    private final Configurator configurator;
+
+    private final Counter deletedImagesCounter;
+    private final Counter deletedFileSetsCounter;
+    private final Counter reclaimedBytesCounter;
+
+    private ScheduledExecutorService sweepExecutor;
+
+    public ImageSweeper(ImageIOController imageIOController,
+                        ImageMetadataRepository imageMetadataRepository,
+                        RecipeRepository recipeRepository,
+                        UserMetadataRepository userMetadataRepository,
+                        ImageStore imageStore,
+                        LeaseManager leaseManager,
+                        Configurator configurator,
+                        MeterRegistry meterRegistry) {
+        this.imageIOController = imageIOController;
+        this.imageMetadataRepository = imageMetadataRepository;
+        this.recipeRepository = recipeRepository;
+        this.userMetadataRepository = userMetadataRepository;
+        this.imageStore = imageStore;
+        this.leaseManager = leaseManager;
+        this.configurator = configurator;
+
+        this.deletedImagesCounter = Counter.builder("image.sweeper.deleted.images")
+                .description("Orphaned images deleted by the sweeper")
+                .register(meterRegistry);
+        this.deletedFileSetsCounter = Counter.builder("image.sweeper.deleted.file.sets")
+                .description("Orphaned files of images deleted by the sweeper")
+                .register(meterRegistry);
+        this.reclaimedBytesCounter = Counter.builder("image.sweeper.reclaimed")
+                .baseUnit(BaseUnits.BYTES)
+                .description("Storage reclaimed by deleting orphaned files")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Schedules the sweeps in the background once the application is ready, if they are enabled.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startSweeping() {
+        if (!configurator.getBoolean("Image.Sweeper.enabled")) {
+            return;
+        }
+
+        long interval = Math.max(1, configurator.getInteger("Image.Sweeper.interval"));
+
+        sweepExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread sweepThread = new Thread(runnable, "image-sweeper");
+            sweepThread.setDaemon(true);
+            return sweepThread;
+        });
+        sweepExecutor.scheduleWithFixedDelay(this::sweepIfLeased, interval, interval, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Stops the sweeps and releases the lease, so that another node takes over right away.
+     */
+    @PreDestroy
+    public void stopSweeping() {
+        if (sweepExecutor == null) {
+            return;
+        }
+
+        sweepExecutor.shutdownNow();
+        leaseManager.release(LEASE_NAME);
+    }
+
+    /**
+     * Deletes orphaned images and files of images, if this node holds the lease or acquires it.
+     * Afterwards, the lease is held until the next sweep is due, so that other nodes skip their sweeps in the meantime.
+     * @return Report of what has been deleted, null if another node holds the lease.
+     * @throws IOException Whenever images cannot be listed or deleted.
+     * @throws InterruptedException Whenever the sweep is interrupted while pausing.
+     */
+    public SweepReport sweep() throws IOException, InterruptedException {
+        if (!extendLease()) {
+            log.debug("Orphaned images are swept by another node.");
+            return null;
+        }
+
+        Instant now = Instant.now();
+        Sweep sweep = new Sweep(now, now.minus(Duration.ofMinutes(configurator.getInteger("Image.Sweeper.gracePeriod"))));
+
+        log.info("Sweeping orphaned images older than {}.", sweep.createdBefore);
+
+        forEachBatch(imageMetadataRepository.streamAllFileSets(), batch -> sweepImages(batch, sweep));
+        forEachBatch(imageStore.list(), batch -> sweepFileSets(batch, sweep));
+
+        leaseManager.acquire(LEASE_NAME, Duration.ofMinutes(configurator.getInteger("Image.Sweeper.interval")));
+
+        SweepReport report = new SweepReport(sweep.deletedImages, sweep.deletedFileSets, sweep.reclaimedBytes, sweep.missingFileSets);
+
+        log.info("Deleted {} orphaned images and {} orphaned file sets, reclaiming {} bytes. Files of {} referenced images are missing.",
+                report.deletedImages(), report.deletedFileSets(), report.reclaimedBytes(), report.missingFileSets());
+
+        return report;
+    }
+
+    // HELPER METHODS
+
+    /**
+     * Runs a sweep. Scheduled tasks are cancelled by exceptions, thus they are logged instead.
+     */
+    private void sweepIfLeased() {
+        try {
+            sweep();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Sweeping orphaned images has been interrupted.");
+        } catch (IOException | RuntimeException e) {
+            log.error("Sweeping orphaned images failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Deletes the images of a batch no recipe or user references. Images without upload time get it recorded.
+     * @param batch Images with their file sets and upload times.
+     * @param sweep Current sweep.
+     */
+    private void sweepImages(List<ImageMetadata> batch, Sweep sweep) throws IOException {
+        Set<String> referencedImages = findReferencedImages(batch.stream().map(ImageMetadata::getId).toList());
+        List<String> imagesWithoutUploadTime = new ArrayList<>();
+
+        for (ImageMetadata image : batch) {
+            if (referencedImages.contains(image.getId())) {
+                continue;
+            }
+
+            if (image.getCreatedAt() == null) {
+                imagesWithoutUploadTime.add(image.getId());
+            } else if (image.getCreatedAt().isBefore(sweep.createdBefore) && !isReferenced(image.getId())
+                    && imageIOController.deleteOrphanedImage(image.getId())) {
+                log.trace("Deleted orphaned image {}.", image.getId());
+                sweep.deletedImages++;
+                deletedImagesCounter.increment();
+            }
+        }
+
+        if (!imagesWithoutUploadTime.isEmpty()) {
+            imageMetadataRepository.updateMissingCreatedAtByIdIn(imagesWithoutUploadTime, sweep.startedAt);
+        }
+
+        List<String> missingFileSets = batch.stream()
+                .filter(image -> referencedImages.contains(image.getId()))
+                .map(ImageMetadata::getFileSetId)
+                .distinct()
+                .filter(fileSetId -> !imageStore.exists(fileSetId))
+                .toList();
+
+        if (!missingFileSets.isEmpty()) {
+            log.warn("Files of referenced images are missing: {}", missingFileSets);
+            sweep.missingFileSets += missingFileSets.size();
+        }
+    }
+
+    /**
+     * Deletes the file sets of a batch no image references.
+     * @param batch File sets.
+     * @param sweep Current sweep.
+     */
+    private void sweepFileSets(List<FileSet> batch, Sweep sweep) throws IOException {
+        Set<String> referencedFileSets = imageMetadataRepository.findFileSetIdsByFileSetIdIn(batch.stream().map(FileSet::id).toList()).stream()
+                .map(ImageMetadata::getFileSetId)
+                .collect(Collectors.toSet());
+
+        for (FileSet fileSet : batch) {
+            if (referencedFileSets.contains(fileSet.id()) || fileSet.lastModified() >= sweep.createdBefore.toEpochMilli()) {
+                continue;
+            }
+
+            if (imageIOController.deleteOrphanedFileSet(fileSet.id())) {
+                log.trace("Deleted orphaned file set {} of {} bytes.", fileSet.id(), fileSet.size());
+                sweep.deletedFileSets++;
+                sweep.reclaimedBytes += fileSet.size();
+                deletedFileSetsCounter.increment();
+                reclaimedBytesCounter.increment(fileSet.size());
+            }
+        }
+    }
+
+    /**
+     * Looks up which images of a batch are referenced, in one query per collection.
+     * @param imageIds IDs of the images.
+     * @return IDs of the images referenced by recipes or users.
+     */
+    private Set<String> findReferencedImages(List<String> imageIds) {
+        List<UUID> imageUUIDs = imageIds.stream()
+                .map(ImageSweeper::parseUUID)
+                .filter(Objects::nonNull)
+                .toList();
+
+        Set<String> referencedImages = new HashSet<>();
+
+        if (!imageUUIDs.isEmpty()) {
+            recipeRepository.findImagesByImagesIn(imageUUIDs)
+                    .forEach(recipe -> Arrays.stream(recipe.getImages()).map(UUID::toString).forEach(referencedImages::add));
+        }
+
+        userMetadataRepository.findProfilePicturesByProfilePictureIdIn(imageIds).stream()
+                .map(UserMetadata::getProfilePictureId)
+                .forEach(referencedImages::add);
+
+        return referencedImages;
+    }
+
+    /**
+     * Checks again whether an image is referenced right before it is deleted, since it may have been referenced in the meantime.
+     * @param imageId ID of the image.
+     * @return True if a recipe or user references the image.
+     */
+    private boolean isReferenced(String imageId) {
+        UUID imageUUID = parseUUID(imageId);
+
+        return (imageUUID != null && recipeRepository.existsByImage(imageUUID))
+                || userMetadataRepository.existsByProfilePictureId(imageId);
+    }
+
+    /**
+     * Extends the lease for the duration of one batch.
+     * @return True if this node holds the lease.
+     */
+    private boolean extendLease() {
+        return leaseManager.acquire(LEASE_NAME, Duration.ofMinutes(configurator.getInteger("Image.Sweeper.leaseDuration")));
+    }
+
+    /**
+     * Hands the elements of a stream over in batches, pausing in between. The lease is extended after every batch.
+     * @param elements Elements. The stream is closed afterwards.
+     * @param batchHandler Handler of a batch.
+     */
+    private <T> void forEachBatch(Stream<T> elements, BatchHandler<T> batchHandler) throws IOException, InterruptedException {
+        int batchSize = Math.max(1, configurator.getInteger("Image.Sweeper.batchSize"));
+        long pause = configurator.getInteger("Image.Sweeper.pause");
+
+        try (elements) {
+            Iterator<T> iterator = elements.iterator();
+            List<T> batch = new ArrayList<>(batchSize);
+
+            while (iterator.hasNext()) {
+                batch.add(iterator.next());
+
+                if (batch.size() == batchSize || !iterator.hasNext()) {
+                    batchHandler.handle(batch);
+                    batch.clear();
+
+                    if (!extendLease()) {
+                        throw new IllegalStateException("Lease " + LEASE_NAME + " has been taken over by another node!");
+                    }
+
+                    Thread.sleep(pause);
+                }
+            }
+        }
+    }
+
+    private static UUID parseUUID(String id) {
+        try {
+            return UUID.fromString(id);
+        } catch (IllegalArgumentException e) {
+            // Recipes only reference images by UUID.
+            return null;
+        }
+    }
+
+    @FunctionalInterface
+    private interface BatchHandler<T> {
+        void handle(List<T> batch) throws IOException;
+    }
+
+    /**
+     * State of a running sweep.
+     */
+    private static final class Sweep {
+
+        private final Instant startedAt;
+
+        /**
+         * Images and files saved at or after this time are kept.
+         */
+        private final Instant createdBefore;
+
+        private int deletedImages;
+        private int deletedFileSets;
+        private long reclaimedBytes;
+        private int missingFileSets;
+
+        private Sweep(Instant startedAt, Instant createdBefore) {
+            this.startedAt = startedAt;
+            this.createdBefore = createdBefore;
+        }
+    }
+
+    /**
+     * Report of a sweep.
+     * @param deletedImages Number of orphaned images deleted.
+     * @param deletedFileSets Number of orphaned file sets deleted.
+     * @param reclaimedBytes Size of the orphaned file sets deleted in bytes.
+     * @param missingFileSets Number of file sets of referenced images which are missing.
+     */
+    public record SweepReport(int deletedImages, int deletedFileSets, long reclaimedBytes, int missingFileSets) {
+    }
+}
@@ -1,5 +1,6 @@
 package com.mealtiger.backend.rest.controller;
 
+import com.mealtiger.backend.database.filter.ExistenceFilter;
 import com.mealtiger.backend.database.model.recipe.Rating;
 import com.mealtiger.backend.database.model.recipe.Recipe;
 import com.mealtiger.backend.database.repository.RecipeRepository;
@@ -28,14 +29,17 @@ public class RecipeController {
     private static final Logger log = LoggerFactory.getLogger(RecipeController.class);
 
     private final RecipeRepository recipeRepository;
+    private final ExistenceFilter existenceFilter;
 
     /**
      * This constructor is called by the Spring Boot Framework to inject dependencies.
      *
      * @param recipeRepository Automatically injected.
+     * @param existenceFilter Automatically injected.
      */
-    public RecipeController(RecipeRepository recipeRepository) {
+    public RecipeController(RecipeRepository recipeRepository, ExistenceFilter existenceFilter) {
         this.recipeRepository = recipeRepository;
+        this.existenceFilter = existenceFilter;
     }
 
     /**
@@ -138,7 +142,7 @@ public class RecipeController {
      * This method Returns whether the Recipe does exit or not.
      */
     public boolean doesRecipeExist(String id) {
-        return recipeRepository.existsById(id);
+        return existenceFilter.mightExist(ExistenceFilter.Entity.RECIPES, id) && recipeRepository.existsById(id);
     }
 
     /**
@@ -147,7 +151,7 @@ public class RecipeController {
      * @param id ID of the requested recipe.
      */
     public void deleteRecipe(String id) {
-        boolean returnValue = recipeRepository.existsById(id);
+        boolean returnValue = doesRecipeExist(id);
 
         if (returnValue) {
             recipeRepository.deleteById(id);
@@ -290,6 +294,10 @@ public class RecipeController {
      * @return Recipe
      */
     private Recipe getRecipeFromRepository(String recipeId) {
+        if (!existenceFilter.mightExist(ExistenceFilter.Entity.RECIPES, recipeId)) {
+            throw new EntityNotFoundException("Recipe " + recipeId + " does not exist!");
+        }
+
         return recipeRepository.findById(recipeId).orElseThrow(() -> new EntityNotFoundException("Recipe " + recipeId + " does not exist!"));
     }
 
@@ -1,8 +1,10 @@
 package com.mealtiger.backend.rest.error_handling;
 
 import com.mealtiger.backend.rest.error_handling.exceptions.EntityNotFoundException;
+import com.mealtiger.backend.rest.error_handling.exceptions.ImageTooLargeException;
 import com.mealtiger.backend.rest.error_handling.exceptions.InvalidRequestFormatException;
 import com.mealtiger.backend.rest.error_handling.exceptions.RatingException;
+import com.mealtiger.backend.rest.error_handling.exceptions.ServiceUnavailableException;
 import org.springframework.context.support.DefaultMessageSourceResolvable;
 import org.springframework.http.*;
 import org.springframework.web.HttpMediaTypeNotAcceptableException;
@@ -70,7 +72,7 @@ public class CustomResponseEntityExceptionHandler extends ResponseEntityExceptio
 
     @Override
     protected ResponseEntity<Object> handleExceptionInternal(Exception ex, Object body, HttpHeaders headers, HttpStatusCode status, WebRequest request) {
-        return ResponseEntity.status(status).contentType(MediaType.APPLICATION_JSON).body(body);
+        return ResponseEntity.status(status).headers(headers).contentType(MediaType.APPLICATION_JSON).body(body);
     }
 
     // CUSTOM EXCEPTIONS
@@ -129,6 +131,33 @@ public class CustomResponseEntityExceptionHandler extends ResponseEntityExceptio
         return handleExceptionInternal(e, errorMessage, headers, HttpStatus.BAD_REQUEST, request);
     }
 
+    /**
+     * Handles uploaded images exceeding the configured limits.
+     * @param e the exception thrown by the api.
+     * @param request the current request.
+     * @return ResponseEntity to be sent to the client.
+     */
+    @ExceptionHandler(value = { ImageTooLargeException.class })
+    protected ResponseEntity<Object> handleImageTooLarge(RuntimeException e, WebRequest request) {
+        String uri = getRequestURI(request);
+
+        HttpHeaders headers = HttpHeaders.EMPTY;
+
+        Map<String, String> errorMessage = e.getMessage() == null ?
+                createErrorMessage(
+                        413,
+                        "Image is too large!",
+                        uri
+                ) :
+                createErrorMessage(
+                        413,
+                        e.getMessage(),
+                        uri
+                );
+
+        return handleExceptionInternal(e, errorMessage, headers, HttpStatus.PAYLOAD_TOO_LARGE, request);
+    }
+
     /**
      * This exception handler handles the RatingOwnRecipeException.
      * It is thrown whenever a user tries to rate their own recipe.
@@ -157,6 +186,35 @@ public class CustomResponseEntityExceptionHandler extends ResponseEntityExceptio
         return handleExceptionInternal(e, errorMessage, headers, HttpStatus.FORBIDDEN, request);
     }
 
+    /**
+     * Handles requests that cannot be processed because the server is overloaded.
+     * The Retry-After header tells the client when to try again.
+     * @param e the exception thrown by the api.
+     * @param request the current request.
+     * @return ResponseEntity to be sent to the client.
+     */
+    @ExceptionHandler(value = { ServiceUnavailableException.class })
+    protected ResponseEntity<Object> handleServiceUnavailable(ServiceUnavailableException e, WebRequest request) {
+        String uri = getRequestURI(request);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfter()));
+
+        Map<String, String> errorMessage = e.getMessage() == null ?
+                createErrorMessage(
+                        503,
+                        "The server is busy. Please try again later!",
+                        uri
+                ) :
+                createErrorMessage(
+                        503,
+                        e.getMessage(),
+                        uri
+                );
+
+        return handleExceptionInternal(e, errorMessage, headers, HttpStatus.SERVICE_UNAVAILABLE, request);
+    }
+
     // HELPER METHOD
 
     /**
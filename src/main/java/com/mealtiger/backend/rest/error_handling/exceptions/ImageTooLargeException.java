@@ -0,0 +1,11 @@
+package com.mealtiger.backend.rest.error_handling.exceptions;
+
+/**
+ * Thrown whenever an uploaded image exceeds the configured dimension or memory limits.
+ */
+public class ImageTooLargeException extends RuntimeException {
+
+    public ImageTooLargeException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,22 @@
+package com.mealtiger.backend.rest.error_handling.exceptions;
+
+/**
+ * Thrown whenever a request cannot be processed at the moment because the server is overloaded.
+ */
+public class ServiceUnavailableException extends RuntimeException {
+
+    private final int retryAfter;
+
+    /**
+     * @param message Error message.
+     * @param retryAfter Seconds the client should wait before retrying the request.
+     */
+    public ServiceUnavailableException(String message, int retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public int getRetryAfter() {
+        return retryAfter;
+    }
+}
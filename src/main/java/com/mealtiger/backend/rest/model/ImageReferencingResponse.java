@@ -0,0 +1,21 @@
+package com.mealtiger.backend.rest.model;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This interface marks responses referencing images, whose metadata may be embedded into them.
+ */
+public interface ImageReferencingResponse extends Response {
+
+    /**
+     * @return IDs of the referenced images.
+     */
+    List<String> getReferencedImageIds();
+
+    /**
+     * Embeds the metadata of the referenced images.
+     * @param imageMetadata Metadata of the referenced images, mapped by their IDs.
+     */
+    void setImageMetadata(Map<String, Response> imageMetadata);
+}
@@ -0,0 +1,38 @@
+package com.mealtiger.backend.rest.model.image;
+
+import com.mealtiger.backend.rest.model.Response;
+
+import java.util.List;
+
+/**
+ * Response describing the conversion state of an uploaded image.
+ */
+@SuppressWarnings("unused")
+public class ImageConversionJobResponse implements Response {
+
+    private final String id;
+    private final String status;
+    private final List<String> availableFormats;
+
+    public ImageConversionJobResponse(String id, String status, List<String> availableFormats) {
+        this.id = id;
+        this.status = status;
+        this.availableFormats = availableFormats;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public List<String> getAvailableFormats() {
+        return availableFormats;
+    }
+
+    public String getStatusUrl() {
+        return "/image/" + id + "/status";
+    }
+}
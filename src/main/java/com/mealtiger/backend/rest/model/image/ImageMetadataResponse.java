@@ -0,0 +1,53 @@
+package com.mealtiger.backend.rest.model.image;
+
+import com.mealtiger.backend.rest.model.Response;
+
+import java.util.Map;
+
+/**
+ * Response describing a saved image, so that clients can lay out and preview it before it is loaded.
+ * Values which have not been recorded for an image are null.
+ */
+@SuppressWarnings("unused")
+public class ImageMetadataResponse implements Response {
+
+    private final String id;
+    private final String contentHash;
+    private final Integer width;
+    private final Integer height;
+    private final Map<String, Long> fileSizes;
+    private final String placeholder;
+
+    public ImageMetadataResponse(String id, String contentHash, Integer width, Integer height, Map<String, Long> fileSizes, String placeholder) {
+        this.id = id;
+        this.contentHash = contentHash;
+        this.width = width;
+        this.height = height;
+        this.fileSizes = fileSizes;
+        this.placeholder = placeholder;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public Integer getWidth() {
+        return width;
+    }
+
+    public Integer getHeight() {
+        return height;
+    }
+
+    public Map<String, Long> getFileSizes() {
+        return fileSizes;
+    }
+
+    public String getPlaceholder() {
+        return placeholder;
+    }
+}
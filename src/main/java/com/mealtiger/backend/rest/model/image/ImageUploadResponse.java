@@ -0,0 +1,44 @@
+package com.mealtiger.backend.rest.model.image;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.mealtiger.backend.rest.model.Response;
+
+/**
+ * Response describing the result of one file of a batch upload. Either the image has been saved or the file has been rejected.
+ */
+@SuppressWarnings("unused")
+public class ImageUploadResponse implements Response {
+
+    private final String id;
+    private final int status;
+    private final String error;
+
+    public ImageUploadResponse(String id, int status, String error) {
+        this.id = id;
+        this.status = status;
+        this.error = error;
+    }
+
+    /**
+     * @return ID of the saved image. Null if the file has been rejected.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return HTTP status the file would have been answered with if it had been uploaded on its own.
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * @return Reason the file has been rejected. Null if the image has been saved.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public String getError() {
+        return error;
+    }
+}
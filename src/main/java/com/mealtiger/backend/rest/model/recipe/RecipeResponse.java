@@ -1,8 +1,15 @@
 package com.mealtiger.backend.rest.model.recipe;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.mealtiger.backend.database.model.recipe.Ingredient;
+import com.mealtiger.backend.rest.model.ImageReferencingResponse;
 import com.mealtiger.backend.rest.model.Response;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
 
 /**
@@ -12,7 +19,7 @@ import java.util.UUID;
  * of a recipe to the representation of a recipe used in the API documentation.
  */
 @SuppressWarnings("unused")
-public class RecipeResponse implements Response {
+public class RecipeResponse implements ImageReferencingResponse {
 
     private final String id;
     private final String title;
@@ -22,6 +29,7 @@ public class RecipeResponse implements Response {
     private final double difficulty;
     private final int time;
     private final UUID[] images;
+    private Map<String, Response> imageMetadata;
 
     public RecipeResponse(String id, String title, String userId, Ingredient[] ingredients, String description, double difficulty, int time, UUID[] images) {
         this.id = id;
@@ -65,4 +73,23 @@ public class RecipeResponse implements Response {
     public UUID[] getImages() {
         return images;
     }
+
+    /**
+     * @return Metadata of the images, mapped by their IDs. Null unless it has been requested.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public Map<String, Response> getImageMetadata() {
+        return imageMetadata;
+    }
+
+    @Override
+    public void setImageMetadata(Map<String, Response> imageMetadata) {
+        this.imageMetadata = imageMetadata;
+    }
+
+    @Override
+    @JsonIgnore
+    public List<String> getReferencedImageIds() {
+        return images == null ? List.of() : Arrays.stream(images).filter(Objects::nonNull).map(UUID::toString).toList();
+    }
 }
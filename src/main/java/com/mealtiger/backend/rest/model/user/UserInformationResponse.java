@@ -1,8 +1,14 @@
 package com.mealtiger.backend.rest.model.user;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.mealtiger.backend.rest.model.ImageReferencingResponse;
 import com.mealtiger.backend.rest.model.Response;
 
-public class UserInformationResponse implements Response {
+import java.util.List;
+import java.util.Map;
+
+public class UserInformationResponse implements ImageReferencingResponse {
 
     private final String userId;
 
@@ -10,6 +16,8 @@ public class UserInformationResponse implements Response {
 
     private final String profilePictureId;
 
+    private Map<String, Response> imageMetadata;
+
     public UserInformationResponse(String userId, String username, String profilePictureId) {
         this.userId = userId;
         this.username = username;
@@ -27,4 +35,23 @@ public class UserInformationResponse implements Response {
     public String getProfilePictureId() {
         return profilePictureId;
     }
+
+    /**
+     * @return Metadata of the profile picture, mapped by its ID. Null unless it has been requested.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public Map<String, Response> getImageMetadata() {
+        return imageMetadata;
+    }
+
+    @Override
+    public void setImageMetadata(Map<String, Response> imageMetadata) {
+        this.imageMetadata = imageMetadata;
+    }
+
+    @Override
+    @JsonIgnore
+    public List<String> getReferencedImageIds() {
+        return profilePictureId == null ? List.of() : List.of(profilePictureId);
+    }
 }
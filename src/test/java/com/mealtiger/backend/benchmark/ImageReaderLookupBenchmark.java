@@ -0,0 +1,83 @@
+package com.mealtiger.backend.benchmark;
+
+import com.mealtiger.backend.configuration.Configurator;
+import com.mealtiger.backend.imageio.DecodedImage;
+import com.mealtiger.backend.imageio.ImageDecoder;
+import com.mealtiger.backend.imageio.ImageMemoryBudget;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark shows the per-image overhead of finding a reader for an upload.
+ * registry asks every ImageReader registered with ImageIO whether it can decode the image and creates a new reader for it,
+ * as the ImageDecoder used to. sniffed recognizes the format by its signature and borrows a pooled reader via the ImageDecoder.
+ * Both decode the whole image, so that the overhead is shown in relation to decoding.
+ * Run via the main method from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageReaderLookupBenchmark {
+
+    @Param({"registry", "sniffed"})
+    private String path;
+
+    @Param({"TestImage.jpg", "TestImage.png", "TestImage.webp", "TestImage.tiff"})
+    private String testImage;
+
+    private byte[] imageBytes;
+    private ImageDecoder imageDecoder;
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ImageReaderLookupBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        try (InputStream inputStream = Objects.requireNonNull(ImageReaderLookupBenchmark.class.getClassLoader()
+                .getResourceAsStream("com/mealtiger/backend/imageio/testImages/DefaultTestImage/" + testImage))) {
+            imageBytes = inputStream.readAllBytes();
+        }
+
+        imageDecoder = new ImageDecoder(new Configurator(), new ImageMemoryBudget(new Configurator(), new SimpleMeterRegistry()));
+        ImageIO.setUseCache(false);
+    }
+
+    @Benchmark
+    public BufferedImage decode() throws IOException {
+        if ("sniffed".equals(path)) {
+            try (DecodedImage decodedImage = imageDecoder.decode(new ByteArrayInputStream(imageBytes))) {
+                return decodedImage.image();
+            }
+        }
+
+        try (ImageInputStream imageInputStream = ImageIO.createImageInputStream(new ByteArrayInputStream(imageBytes))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(imageInputStream);
+            ImageReader reader = readers.next();
+
+            try {
+                reader.setInput(imageInputStream, true, true);
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+}
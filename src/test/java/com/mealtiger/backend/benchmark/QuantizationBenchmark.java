@@ -0,0 +1,95 @@
+package com.mealtiger.backend.benchmark;
+
+import com.mealtiger.backend.imageio.quantization.ColorQuantizer;
+import com.mealtiger.backend.imageio.quantization.Java2DQuantizer;
+import com.mealtiger.backend.imageio.quantization.OctreeQuantizer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark compares the color quantizers by throughput, GIF output size and color error.
+ * Sizes and errors are printed once per trial, since they do not change between iterations.
+ * Run via the main method from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QuantizationBenchmark {
+
+    @Param({"octree", "octree-parallel", "java2d"})
+    private String algorithm;
+
+    @Param({"Flower", "PiggyBank"})
+    private String testImage;
+
+    private ColorQuantizer quantizer;
+    private BufferedImage image;
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(QuantizationBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        quantizer = switch (algorithm) {
+            case "octree" -> new OctreeQuantizer(OctreeQuantizer.MAX_COLORS, 1);
+            case "octree-parallel" -> new OctreeQuantizer(OctreeQuantizer.MAX_COLORS, Runtime.getRuntime().availableProcessors());
+            default -> new Java2DQuantizer();
+        };
+
+        image = ImageIO.read(Objects.requireNonNull(QuantizationBenchmark.class.getClassLoader()
+                .getResourceAsStream("com/mealtiger/backend/imageio/testImages/" + testImage + "/TestImage.jpg")));
+
+        BufferedImage quantizedImage = quantizer.quantize(image);
+        System.out.printf("%n%s / %s: GIF size %d bytes, mean color error %.2f%n",
+                algorithm, testImage, encodeGif(quantizedImage).length, getMeanColorError(image, quantizedImage));
+    }
+
+    @Benchmark
+    public BufferedImage quantize() {
+        return quantizer.quantize(image);
+    }
+
+    @Benchmark
+    public byte[] quantizeAndEncodeGif() throws IOException {
+        return encodeGif(quantizer.quantize(image));
+    }
+
+    private static byte[] encodeGif(BufferedImage image) throws IOException {
+        try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
+            ImageIO.write(image, "gif", outputStream);
+            return outputStream.toByteArray();
+        }
+    }
+
+    /**
+     * @return Mean absolute difference per channel between the original and the quantized image.
+     */
+    private static double getMeanColorError(BufferedImage original, BufferedImage quantized) {
+        long error = 0;
+
+        for (int y = 0; y < original.getHeight(); y++) {
+            for (int x = 0; x < original.getWidth(); x++) {
+                int originalRGB = original.getRGB(x, y);
+                int quantizedRGB = quantized.getRGB(x, y);
+                for (int shift = 0; shift <= 16; shift += 8) {
+                    error += Math.abs(((originalRGB >> shift) & 0xFF) - ((quantizedRGB >> shift) & 0xFF));
+                }
+            }
+        }
+
+        return (double) error / ((long) original.getWidth() * original.getHeight() * 3);
+    }
+}
@@ -0,0 +1,78 @@
+package com.mealtiger.backend.benchmark;
+
+import com.mealtiger.backend.configuration.Configurator;
+import com.mealtiger.backend.imageio.adapters.CWebPEncoder;
+import com.sksamuel.scrimage.ImmutableImage;
+import com.sksamuel.scrimage.webp.WebpWriter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark shows the per-image overhead of WebP encoding.
+ * per-call reads the config and builds the writer on every call, as the WebPAdapter used to.
+ * precompiled reuses a writer built once. cwebp encodes with an installed cwebp binary via the CWebPEncoder.
+ * The binary is set with -Dwebp.encoderPath, /usr/bin/cwebp by default.
+ * Small images are included, since the overhead weighs most on thumbnails.
+ * Run via the main method from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WebPEncodingBenchmark {
+
+    @Param({"per-call", "precompiled", "cwebp"})
+    private String path;
+
+    @Param({"DefaultTestImage", "Flower"})
+    private String testImage;
+
+    private BufferedImage image;
+    private WebpWriter writer;
+    private CWebPEncoder encoder;
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(WebPEncodingBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        image = ImageIO.read(Objects.requireNonNull(WebPEncodingBenchmark.class.getClassLoader()
+                .getResourceAsStream("com/mealtiger/backend/imageio/testImages/" + testImage + "/TestImage.png")));
+
+        writer = WebpWriter.DEFAULT.withQ(75).withM(4);
+
+        if ("cwebp".equals(path)) {
+            encoder = new CWebPEncoder(Path.of(System.getProperty("webp.encoderPath", "/usr/bin/cwebp")),
+                    CWebPEncoder.getDefaultScratchDirectory(), List.of("-q", "75", "-m", "4"), Duration.ofMinutes(1));
+        }
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return switch (path) {
+            case "per-call" -> {
+                Configurator configurator = new Configurator();
+                WebpWriter perCallWriter = WebpWriter.DEFAULT
+                        .withQ(configurator.getInteger("Image.WebP.compressionFactor"))
+                        .withM(configurator.getInteger("Image.WebP.compressionMethod"));
+                yield ImmutableImage.fromAwt(image).bytes(perCallWriter);
+            }
+            case "precompiled" -> ImmutableImage.fromAwt(image).bytes(writer);
+            default -> encoder.encode(image);
+        };
+    }
+}
@@ -0,0 +1,182 @@
+package com.mealtiger.backend.database.filter;
+
+import com.mealtiger.backend.configuration.Configurator;
+import com.mealtiger.backend.database.model.image_metadata.ImageMetadata;
+import com.mealtiger.backend.database.model.recipe.Ingredient;
+import com.mealtiger.backend.database.model.recipe.Rating;
+import com.mealtiger.backend.database.model.recipe.Recipe;
+import com.mealtiger.backend.database.repository.ImageMetadataRepository;
+import com.mealtiger.backend.database.repository.RecipeRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * This class tests the ExistenceFilter.
+ */
+@Tag("unit")
+class ExistenceFilterTest {
+
+    private final List<String> imageIds = new CopyOnWriteArrayList<>(List.of("image-1", "image-2"));
+    private final List<String> recipeIds = new CopyOnWriteArrayList<>(List.of("recipe-1"));
+
+    /**
+     * Tests whether stored IDs pass the filter and others do not.
+     */
+    @Test
+    void mightExistTest() throws InterruptedException {
+        ExistenceFilter existenceFilter = createExistenceFilter(true);
+
+        // All IDs pass until the filter has been built.
+        assertTrue(existenceFilter.mightExist(ExistenceFilter.Entity.IMAGES, "image-3"));
+
+        existenceFilter.buildFilters();
+        awaitBuilt(existenceFilter);
+
+        assertTrue(existenceFilter.mightExist(ExistenceFilter.Entity.IMAGES, "image-1"));
+        assertTrue(existenceFilter.mightExist(ExistenceFilter.Entity.RECIPES, "recipe-1"));
+        assertFalse(existenceFilter.mightExist(ExistenceFilter.Entity.IMAGES, "image-3"));
+        assertFalse(existenceFilter.mightExist(ExistenceFilter.Entity.RECIPES, "image-1"));
+
+        existenceFilter.add(ExistenceFilter.Entity.IMAGES, "image-3");
+        assertTrue(existenceFilter.mightExist(ExistenceFilter.Entity.IMAGES, "image-3"));
+    }
+
+    /**
+     * Tests whether saved and deleted entities reported by MongoDB update the filter.
+     */
+    @Test
+    void mongoEventTest() throws InterruptedException {
+        ExistenceFilter existenceFilter = createExistenceFilter(true);
+        existenceFilter.buildFilters();
+        awaitBuilt(existenceFilter);
+
+        Recipe recipe = new Recipe("Title", "user", new Ingredient[]{}, "Description", 1, new Rating[]{}, 10, null);
+        String recipeId = new ObjectId().toHexString();
+        recipe.setId(recipeId);
+
+        existenceFilter.onAfterSave(new AfterSaveEvent<>(new ImageMetadata("image-3", "user"), new Document(), "image-metadata"));
+        existenceFilter.onAfterSave(new AfterSaveEvent<>(recipe, new Document(), "recipe"));
+
+        assertTrue(existenceFilter.mightExist(ExistenceFilter.Entity.IMAGES, "image-3"));
+        assertTrue(existenceFilter.mightExist(ExistenceFilter.Entity.RECIPES, recipeId));
+
+        // Recipe IDs are mapped to ObjectIds in delete queries.
+        recipeIds.remove("recipe-1");
+        existenceFilter.onAfterDelete(new AfterDeleteEvent<>(new Document("_id", new ObjectId(recipeId)), Recipe.class, "recipe"));
+        awaitBuilt(existenceFilter);
+
+        assertFalse(existenceFilter.mightExist(ExistenceFilter.Entity.RECIPES, "recipe-1"));
+    }
+
+    /**
+     * Tests whether the filter is rebuilt without deleted IDs once enough IDs have been deleted.
+     */
+    @Test
+    void removeTest() throws InterruptedException {
+        ExistenceFilter existenceFilter = createExistenceFilter(true);
+        existenceFilter.buildFilters();
+        awaitBuilt(existenceFilter);
+
+        imageIds.remove("image-1");
+        existenceFilter.remove(ExistenceFilter.Entity.IMAGES, "image-1");
+        awaitBuilt(existenceFilter);
+
+        assertFalse(existenceFilter.mightExist(ExistenceFilter.Entity.IMAGES, "image-1"));
+        assertTrue(existenceFilter.mightExist(ExistenceFilter.Entity.IMAGES, "image-2"));
+    }
+
+    /**
+     * Tests whether the filter is rebuilt with a larger size once it holds more IDs than it has been sized for.
+     */
+    @Test
+    void growTest() throws InterruptedException {
+        ExistenceFilter existenceFilter = createExistenceFilter(true);
+        existenceFilter.buildFilters();
+        awaitBuilt(existenceFilter);
+
+        IntStream.range(0, 100).mapToObj(i -> "recipe-new-" + i).forEach(id -> {
+            recipeIds.add(id);
+            existenceFilter.add(ExistenceFilter.Entity.RECIPES, id);
+        });
+        awaitBuilt(existenceFilter);
+
+        for (String id : recipeIds) {
+            assertTrue(existenceFilter.mightExist(ExistenceFilter.Entity.RECIPES, id));
+        }
+    }
+
+    /**
+     * Tests whether all IDs pass a disabled filter.
+     */
+    @Test
+    void disabledTest() {
+        ExistenceFilter existenceFilter = createExistenceFilter(false);
+        existenceFilter.buildFilters();
+
+        assertFalse(existenceFilter.isEnabled());
+        assertTrue(existenceFilter.mightExist(ExistenceFilter.Entity.IMAGES, "image-3"));
+    }
+
+    /**
+     * Tests whether the filter is not started while images are stored in a backend shared by several instances.
+     */
+    @Test
+    void sharedStorageBackendTest() {
+        Configurator configurator = mock(Configurator.class);
+        when(configurator.getBoolean("Database.IdFilter.enabled")).thenReturn(true);
+        when(configurator.getInteger("Database.IdFilter.expectedIds")).thenReturn(10);
+        when(configurator.getDouble("Database.IdFilter.falsePositiveRate")).thenReturn(0.01);
+
+        when(configurator.getString("Image.Storage.backend")).thenReturn("s3");
+        assertFalse(new ExistenceFilter(configurator, mock(ImageMetadataRepository.class), mock(RecipeRepository.class), new SimpleMeterRegistry()).isEnabled());
+
+        when(configurator.getString("Image.Storage.backend")).thenReturn("filesystem");
+        ExistenceFilter existenceFilter = new ExistenceFilter(configurator, mock(ImageMetadataRepository.class), mock(RecipeRepository.class), new SimpleMeterRegistry());
+        assertTrue(existenceFilter.isEnabled());
+        existenceFilter.shutdown();
+    }
+
+    /**
+     * Tests whether no filter is rebuilt after shutdown.
+     */
+    @Test
+    void shutdownTest() {
+        ExistenceFilter existenceFilter = createExistenceFilter(true);
+        existenceFilter.shutdown();
+        existenceFilter.buildFilters();
+
+        assertFalse(existenceFilter.isBuilt(ExistenceFilter.Entity.IMAGES));
+        assertTrue(existenceFilter.mightExist(ExistenceFilter.Entity.IMAGES, "image-3"));
+    }
+
+    private ExistenceFilter createExistenceFilter(boolean enabled) {
+        return new ExistenceFilter(enabled, 10, 0.01, Map.of(
+                ExistenceFilter.Entity.IMAGES, new ExistenceFilter.IdSource(imageIds::size, imageIds::stream),
+                ExistenceFilter.Entity.RECIPES, new ExistenceFilter.IdSource(recipeIds::size, recipeIds::stream)
+        ), new SimpleMeterRegistry());
+    }
+
+    private static void awaitBuilt(ExistenceFilter existenceFilter) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            if (existenceFilter.isBuilt(ExistenceFilter.Entity.IMAGES) && existenceFilter.isBuilt(ExistenceFilter.Entity.RECIPES)) {
+                return;
+            }
+            Thread.sleep(50);
+        }
+        fail("Filters have not been built.");
+    }
+}
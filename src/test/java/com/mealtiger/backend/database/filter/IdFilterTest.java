@@ -0,0 +1,67 @@
+package com.mealtiger.backend.database.filter;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class tests the IdFilter.
+ */
+@Tag("unit")
+class IdFilterTest {
+
+    /**
+     * Tests whether put IDs are always contained.
+     */
+    @Test
+    void putTest() {
+        IdFilter idFilter = new IdFilter(1000, 0.01);
+
+        for (int i = 0; i < 1000; i++) {
+            String id = UUID.nameUUIDFromBytes(new byte[]{(byte) i, (byte) (i >> 8)}).toString();
+            idFilter.put(id);
+            assertTrue(idFilter.mightContain(id));
+        }
+
+        assertEquals(1000, idFilter.getIdCount(), 5);
+    }
+
+    /**
+     * Tests whether the false positive rate stays close to the rate the filter has been sized for.
+     */
+    @Test
+    void falsePositiveRateTest() {
+        IdFilter idFilter = new IdFilter(10000, 0.01);
+
+        for (int i = 0; i < 10000; i++) {
+            idFilter.put("recipe-" + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100000; i++) {
+            if (idFilter.mightContain("missing-" + i)) {
+                falsePositives++;
+            }
+        }
+
+        assertTrue(falsePositives < 2000, falsePositives + " false positives");
+        assertEquals(0.01, idFilter.getFalsePositiveRate(), 0.005);
+        // About 9.6 bits per ID.
+        assertEquals(12000, idFilter.getMemoryBytes(), 500);
+    }
+
+    // NEGATIVE TESTS
+
+    /**
+     * Tests whether invalid sizes are rejected.
+     */
+    @Test
+    void invalidSizeTest() {
+        assertThrows(IllegalArgumentException.class, () -> new IdFilter(0, 0.01));
+        assertThrows(IllegalArgumentException.class, () -> new IdFilter(1000, 0));
+        assertThrows(IllegalArgumentException.class, () -> new IdFilter(1000, 1));
+    }
+}
@@ -0,0 +1,105 @@
+package com.mealtiger.backend.database.lease;
+
+import com.mealtiger.backend.BackendApplication;
+import com.mealtiger.backend.database.model.lease.Lease;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoOperations;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * This class tests the LeaseManager against the test database.
+ */
+@SpringBootTest(classes = {BackendApplication.class})
+@Tag("integration")
+class LeaseManagerTest {
+
+    private static final String LEASE_NAME = "test-lease";
+
+    @Autowired
+    private MongoOperations mongoOperations;
+
+    private LeaseManager firstNode;
+    private LeaseManager secondNode;
+
+    @BeforeEach
+    @AfterEach
+    void beforeAfterEach() {
+        mongoOperations.dropCollection(Lease.class);
+        firstNode = new LeaseManager(mongoOperations, "first-node");
+        secondNode = new LeaseManager(mongoOperations, "second-node");
+    }
+
+    /**
+     * Tests whether a lease is only held by one node at a time.
+     */
+    @Test
+    void acquireTest() {
+        assertTrue(firstNode.acquire(LEASE_NAME, Duration.ofMinutes(1)));
+        assertFalse(secondNode.acquire(LEASE_NAME, Duration.ofMinutes(1)));
+
+        // The node holding the lease extends it.
+        assertTrue(firstNode.acquire(LEASE_NAME, Duration.ofMinutes(1)));
+
+        firstNode.release(LEASE_NAME);
+        assertTrue(secondNode.acquire(LEASE_NAME, Duration.ofMinutes(1)));
+
+        // Leases held by other nodes are not released.
+        firstNode.release(LEASE_NAME);
+        assertFalse(firstNode.acquire(LEASE_NAME, Duration.ofMinutes(1)));
+    }
+
+    /**
+     * Tests whether an expired lease is taken over by another node.
+     */
+    @Test
+    void expiryTest() throws InterruptedException {
+        assertTrue(firstNode.acquire(LEASE_NAME, Duration.ofMillis(10)));
+
+        Thread.sleep(50);
+
+        assertTrue(secondNode.acquire(LEASE_NAME, Duration.ofMinutes(1)));
+        assertFalse(firstNode.acquire(LEASE_NAME, Duration.ofMinutes(1)));
+    }
+
+    /**
+     * Tests whether a lock is only held by one thread at a time, even on the same node.
+     */
+    @Test
+    void lockTest() throws IOException {
+        LeaseManager.Lock lock = firstNode.lock(LEASE_NAME, Duration.ofMinutes(1), Duration.ZERO);
+        assertNotNull(lock);
+
+        assertNull(firstNode.lock(LEASE_NAME, Duration.ofMinutes(1), Duration.ofMillis(100)));
+        assertNull(secondNode.lock(LEASE_NAME, Duration.ofMinutes(1), Duration.ZERO));
+
+        lock.close();
+
+        try (LeaseManager.Lock secondLock = secondNode.lock(LEASE_NAME, Duration.ofMinutes(1), Duration.ZERO)) {
+            assertNotNull(secondLock);
+        }
+    }
+
+    /**
+     * Tests whether an expired lock is taken over.
+     */
+    @Test
+    void lockExpiryTest() throws IOException, InterruptedException {
+        assertNotNull(firstNode.lock(LEASE_NAME, Duration.ofMillis(10), Duration.ZERO));
+
+        Thread.sleep(50);
+
+        assertNotNull(secondNode.lock(LEASE_NAME, Duration.ofMinutes(1), Duration.ZERO));
+    }
+}
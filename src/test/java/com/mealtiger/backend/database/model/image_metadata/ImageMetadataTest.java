@@ -19,13 +19,16 @@ class ImageMetadataTest {
         ImageMetadata reference = new ImageMetadata(SAMPLE_IMAGE_ID, SAMPLE_USER_ID);
         ImageMetadata differentUserID = new ImageMetadata(SAMPLE_IMAGE_ID, SAMPLE_OTHER_USER_ID);
         ImageMetadata differentImageID = new ImageMetadata(SampleSource.getSampleUUIDs().get(0), SAMPLE_USER_ID);
+        ImageMetadata differentFileSetID = new ImageMetadata(SAMPLE_IMAGE_ID, SAMPLE_USER_ID, null, SampleSource.getSampleUUIDs().get(0));
 
         assertEquals(reference, reference);
         assertNotEquals(reference, differentUserID);
         assertNotEquals(reference, differentImageID);
+        assertNotEquals(reference, differentFileSetID);
 
         assertEquals(reference.hashCode(), reference.hashCode());
         assertNotEquals(reference.hashCode(), differentUserID.hashCode());
         assertNotEquals(reference.hashCode(), differentImageID.hashCode());
+        assertNotEquals(reference.hashCode(), differentFileSetID.hashCode());
     }
 }
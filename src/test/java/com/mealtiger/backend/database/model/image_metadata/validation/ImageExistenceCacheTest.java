@@ -0,0 +1,94 @@
+package com.mealtiger.backend.database.model.image_metadata.validation;
+
+import com.mealtiger.backend.database.model.image_metadata.ImageMetadata;
+import com.mealtiger.backend.database.repository.ImageMetadataRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoSettings;
+
+import java.util.List;
+import java.util.Set;
+
+import static com.mealtiger.backend.SampleSource.SAMPLE_IMAGE_ID;
+import static com.mealtiger.backend.SampleSource.SAMPLE_USER_ID;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+/**
+ * This class tests the ImageExistenceCache.
+ */
+@MockitoSettings
+@Tag("unit")
+class ImageExistenceCacheTest {
+
+    private static final String NON_EXISTENT_IMAGE_ID = "f2076c35-e8d1-4d34-82f1-0de7f370efbd";
+
+    @Mock
+    private ImageMetadataRepository imageMetadataRepository;
+
+    /**
+     * Tests whether existing images are only looked up once.
+     */
+    @Test
+    void existsTest() {
+        when(imageMetadataRepository.findIdsByIdIn(Set.of(SAMPLE_IMAGE_ID))).thenReturn(List.of(new ImageMetadata(SAMPLE_IMAGE_ID, SAMPLE_USER_ID)));
+
+        ImageExistenceCache imageExistenceCache = new ImageExistenceCache(imageMetadataRepository, 100);
+
+        assertTrue(imageExistenceCache.exists(SAMPLE_IMAGE_ID));
+        assertTrue(imageExistenceCache.existAll(List.of(SAMPLE_IMAGE_ID, SAMPLE_IMAGE_ID)));
+
+        verify(imageMetadataRepository, times(1)).findIdsByIdIn(any());
+    }
+
+    /**
+     * Tests whether only images which are not cached are looked up.
+     */
+    @Test
+    void existAllTest() {
+        when(imageMetadataRepository.findIdsByIdIn(Set.of(SAMPLE_IMAGE_ID))).thenReturn(List.of(new ImageMetadata(SAMPLE_IMAGE_ID, SAMPLE_USER_ID)));
+        when(imageMetadataRepository.findIdsByIdIn(Set.of(NON_EXISTENT_IMAGE_ID))).thenReturn(List.of());
+
+        ImageExistenceCache imageExistenceCache = new ImageExistenceCache(imageMetadataRepository, 100);
+
+        assertTrue(imageExistenceCache.exists(SAMPLE_IMAGE_ID));
+        assertFalse(imageExistenceCache.existAll(List.of(SAMPLE_IMAGE_ID, NON_EXISTENT_IMAGE_ID)));
+        // Images which do not exist are looked up again.
+        assertFalse(imageExistenceCache.exists(NON_EXISTENT_IMAGE_ID));
+
+        verify(imageMetadataRepository, times(2)).findIdsByIdIn(Set.of(NON_EXISTENT_IMAGE_ID));
+    }
+
+    /**
+     * Tests whether deleted images are looked up again.
+     */
+    @Test
+    void invalidateTest() {
+        when(imageMetadataRepository.findIdsByIdIn(Set.of(SAMPLE_IMAGE_ID)))
+                .thenReturn(List.of(new ImageMetadata(SAMPLE_IMAGE_ID, SAMPLE_USER_ID)))
+                .thenReturn(List.of());
+
+        ImageExistenceCache imageExistenceCache = new ImageExistenceCache(imageMetadataRepository, 100);
+
+        assertTrue(imageExistenceCache.exists(SAMPLE_IMAGE_ID));
+        imageExistenceCache.invalidate(SAMPLE_IMAGE_ID);
+        assertFalse(imageExistenceCache.exists(SAMPLE_IMAGE_ID));
+    }
+
+    /**
+     * Tests whether every lookup queries the database if the cache is disabled.
+     */
+    @Test
+    void disabledTest() {
+        when(imageMetadataRepository.findIdsByIdIn(Set.of(SAMPLE_IMAGE_ID))).thenReturn(List.of(new ImageMetadata(SAMPLE_IMAGE_ID, SAMPLE_USER_ID)));
+
+        ImageExistenceCache imageExistenceCache = new ImageExistenceCache(imageMetadataRepository, 0);
+
+        assertTrue(imageExistenceCache.exists(SAMPLE_IMAGE_ID));
+        assertTrue(imageExistenceCache.exists(SAMPLE_IMAGE_ID));
+
+        verify(imageMetadataRepository, times(2)).findIdsByIdIn(any());
+    }
+}
@@ -1,15 +1,15 @@
 package com.mealtiger.backend.database.model.image_metadata.validation;
 
-import com.mealtiger.backend.configuration.Configurator;
-import com.mealtiger.backend.rest.Helper;
+import com.mealtiger.backend.database.model.image_metadata.ImageMetadata;
+import com.mealtiger.backend.database.repository.ImageMetadataRepository;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
 
 import static com.mealtiger.backend.SampleSource.SAMPLE_IMAGE_ID;
+import static com.mealtiger.backend.SampleSource.SAMPLE_USER_ID;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.mock;
@@ -21,19 +21,15 @@ class ImageValidatorTest {
     private static final String NON_EXISTENT_IMAGE_ID = "f2076c35-e8d1-4d34-82f1-0de7f370efbd";
 
     @Test
-    void imageValidationTest() throws IOException {
-        Configurator configurator = mock(Configurator.class);
-        when(configurator.getString("Image.imagePath")).thenReturn("testImages/");
+    void imageValidationTest() {
+        ImageMetadataRepository imageMetadataRepository = mock(ImageMetadataRepository.class);
+        when(imageMetadataRepository.findIdsByIdIn(Set.of(SAMPLE_IMAGE_ID))).thenReturn(List.of(new ImageMetadata(SAMPLE_IMAGE_ID, SAMPLE_USER_ID)));
 
-        Path imagePath = Path.of("testImages/", SAMPLE_IMAGE_ID);
-        Files.createDirectories(imagePath);
-
-        ImageValidator validator = new ImageValidator(configurator);
+        ImageValidator validator = new ImageValidator(new ImageExistenceCache(imageMetadataRepository, 100));
 
         assertTrue(validator.isValid(SAMPLE_IMAGE_ID, null));
         assertFalse(validator.isValid(NON_EXISTENT_IMAGE_ID, null));
-
-        Helper.deleteFile(imagePath.getParent());
+        assertTrue(validator.isValid("", null));
     }
 
 }
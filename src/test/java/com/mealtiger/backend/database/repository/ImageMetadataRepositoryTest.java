@@ -10,9 +10,14 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import java.time.Instant;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import static com.mealtiger.backend.SampleSource.SAMPLE_IMAGE_ID;
+import static com.mealtiger.backend.SampleSource.SAMPLE_USER_ID;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 @SpringBootTest(
@@ -47,5 +52,65 @@ class ImageMetadataRepositoryTest {
         assertEquals(SAMPLE_IMAGE_ID, imageMetadataRepository.findImageMetadatasByUserId(SampleSource.getSampleUUIDs().get(1)).get(0).getId());
     }
 
+    @Test
+    void findFileSetIdsByFileSetIdInTest() {
+        String duplicateId = SampleSource.getSampleUUIDs().get(0);
+        String legacyId = SampleSource.getSampleUUIDs().get(1);
+        String otherId = SampleSource.getSampleUUIDs().get(2);
+
+        imageMetadataRepository.saveAll(List.of(
+                new ImageMetadata(SAMPLE_IMAGE_ID, SAMPLE_USER_ID),
+                new ImageMetadata(duplicateId, SAMPLE_USER_ID, "hash", SAMPLE_IMAGE_ID),
+                new ImageMetadata(legacyId, SAMPLE_USER_ID, null, null, null),
+                new ImageMetadata(otherId, SAMPLE_USER_ID)
+        ));
+
+        // Images saved before files were shared reference the file set named after their id.
+        Set<String> referencedFileSets = imageMetadataRepository.findFileSetIdsByFileSetIdIn(List.of(SAMPLE_IMAGE_ID, legacyId, duplicateId)).stream()
+                .map(ImageMetadata::getFileSetId)
+                .collect(Collectors.toSet());
+
+        assertEquals(Set.of(SAMPLE_IMAGE_ID, legacyId), referencedFileSets);
+    }
+
+    @Test
+    void updateMissingCreatedAtByIdInTest() {
+        String legacyId = SampleSource.getSampleUUIDs().get(0);
+        Instant createdAt = Instant.parse("2023-01-01T00:00:00Z");
+
+        imageMetadataRepository.saveAll(List.of(
+                new ImageMetadata(SAMPLE_IMAGE_ID, SAMPLE_USER_ID, null, SAMPLE_IMAGE_ID, createdAt),
+                new ImageMetadata(legacyId, SAMPLE_USER_ID, null, legacyId, null)
+        ));
+
+        Instant sweptAt = Instant.parse("2023-02-01T00:00:00Z");
+        assertEquals(1, imageMetadataRepository.updateMissingCreatedAtByIdIn(List.of(SAMPLE_IMAGE_ID, legacyId), sweptAt));
+
+        assertEquals(createdAt, imageMetadataRepository.findById(SAMPLE_IMAGE_ID).orElseThrow().getCreatedAt());
+        assertEquals(sweptAt, imageMetadataRepository.findById(legacyId).orElseThrow().getCreatedAt());
+    }
+
+    @Test
+    void findByIdInTest() {
+        String otherId = SampleSource.getSampleUUIDs().get(0);
+        String unknownId = SampleSource.getSampleUUIDs().get(1);
+
+        ImageMetadata imageMetadata = new ImageMetadata(SAMPLE_IMAGE_ID, SAMPLE_USER_ID, "hash", SAMPLE_IMAGE_ID);
+        imageMetadata.setWidth(800);
+        imageMetadata.setHeight(600);
+        imageMetadata.setPlaceholder("LEHV6nWB2yk8pyo0adR*.7kCMdnj");
+        imageMetadata.setFileSizes(Map.of("webp", 1000L, "jpg", 2000L));
+
+        imageMetadataRepository.saveAll(List.of(imageMetadata, new ImageMetadata(otherId, SAMPLE_USER_ID)));
+
+        List<ImageMetadata> found = imageMetadataRepository.findByIdIn(List.of(SAMPLE_IMAGE_ID, unknownId));
+
+        assertEquals(1, found.size());
+        assertEquals(800, found.get(0).getWidth());
+        assertEquals(600, found.get(0).getHeight());
+        assertEquals("LEHV6nWB2yk8pyo0adR*.7kCMdnj", found.get(0).getPlaceholder());
+        assertEquals(Map.of("webp", 1000L, "jpg", 2000L), found.get(0).getFileSizes());
+    }
+
 
 }
@@ -18,11 +18,14 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 
 import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
 import java.util.stream.Stream;
 
 import static com.mealtiger.backend.SampleSource.*;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SpringBootTest(
@@ -246,6 +249,30 @@ class RecipeRepositoryTest {
         assertEquals(0, foundRecipes.getNumber());
     }
 
+    @Test
+    void findImagesByImagesInTest() {
+        UUID image = UUID.fromString(SAMPLE_IMAGE_ID);
+        UUID otherImage = UUID.randomUUID();
+
+        recipeRepository.save(new Recipe(
+                "Gebrannte Mandeln",
+                SAMPLE_USER_ID,
+                new Ingredient[]{},
+                "TestDescription",
+                3,
+                new Rating[]{},
+                15,
+                new UUID[]{image}
+        ));
+
+        assertEquals(1, recipeRepository.findImagesByImagesIn(List.of(image, otherImage)).size());
+        assertArrayEquals(new UUID[]{image}, recipeRepository.findImagesByImagesIn(List.of(image)).get(0).getImages());
+        assertTrue(recipeRepository.findImagesByImagesIn(List.of(otherImage)).isEmpty());
+
+        assertTrue(recipeRepository.existsByImage(image));
+        assertFalse(recipeRepository.existsByImage(otherImage));
+    }
+
     // VALUE SOURCES
 
     private static Stream<String> randomcasedStrings() {
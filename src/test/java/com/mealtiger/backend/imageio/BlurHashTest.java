@@ -0,0 +1,75 @@
+package com.mealtiger.backend.imageio;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class tests the BlurHash encoder.
+ */
+@Tag("unit")
+class BlurHashTest {
+
+    private static final String BASE83_CHARACTERS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz#$%*+,-.:;=?@[]^_{|}~";
+
+    /**
+     * Tests whether the average color of an image is encoded in its BlurHash.
+     */
+    @Test
+    void encodeTest() {
+        BufferedImage image = createImage(400, 300, new Color(0x3C, 0x8D, 0xBC));
+
+        String hash = BlurHash.encode(image);
+
+        // Header, maximum AC value, DC value and 11 AC values.
+        assertEquals(1 + 1 + 4 + 11 * 2, hash.length());
+        assertEquals(0x3C8DBC, decodeBase83(hash.substring(2, 6)));
+    }
+
+    /**
+     * Tests whether the longer side of the image gets more components.
+     */
+    @Test
+    void componentsTest() {
+        // 4 components horizontally, 3 vertically.
+        assertEquals(3 + 2 * 9, decodeBase83(BlurHash.encode(createImage(200, 100, Color.RED)).substring(0, 1)));
+        // 3 components horizontally, 4 vertically.
+        assertEquals(2 + 3 * 9, decodeBase83(BlurHash.encode(createImage(100, 200, Color.RED)).substring(0, 1)));
+    }
+
+    /**
+     * Tests whether images with details are encoded differently from solid ones.
+     */
+    @Test
+    void detailTest() {
+        BufferedImage image = createImage(200, 200, Color.WHITE);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.BLACK);
+        graphics.fillRect(0, 0, 100, 200);
+        graphics.dispose();
+
+        assertNotEquals(BlurHash.encode(createImage(200, 200, Color.GRAY)).substring(6), BlurHash.encode(image).substring(6));
+    }
+
+    private static BufferedImage createImage(int width, int height, Color color) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(color);
+        graphics.fillRect(0, 0, width, height);
+        graphics.dispose();
+        return image;
+    }
+
+    private static int decodeBase83(String value) {
+        int decoded = 0;
+        for (char character : value.toCharArray()) {
+            decoded = decoded * 83 + BASE83_CHARACTERS.indexOf(character);
+        }
+        return decoded;
+    }
+}
@@ -0,0 +1,160 @@
+package com.mealtiger.backend.imageio;
+
+import com.mealtiger.backend.imageio.store.ImageFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class tests the ImageCache.
+ */
+@Tag("unit")
+class ImageCacheTest {
+
+    private static final String FILE_SET_ID = "image";
+
+    private Path directory;
+
+    @BeforeEach
+    void beforeEach() throws IOException {
+        directory = Files.createTempDirectory("image-cache-test");
+    }
+
+    @AfterEach
+    void afterEach() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /**
+     * Tests whether loaded files are served from the cache.
+     */
+    @Test
+    void loadTest() throws IOException {
+        ImageCache imageCache = new ImageCache(1024, 64);
+        Path path = createFile("image.webp", "WEBP");
+
+        assertNull(imageCache.get(FILE_SET_ID, "image.webp"));
+
+        ImageCache.CachedImage cachedImage = imageCache.load(FILE_SET_ID, createImageFile(path), "\"etag\"");
+        assertEquals("WEBP", readResource(cachedImage));
+        assertEquals("\"etag\"", cachedImage.eTag());
+        assertEquals(4, cachedImage.asResource().contentLength());
+
+        // The file is served from the cache, even if it changes on disk.
+        Files.writeString(path, "CHANGED");
+        assertSame(cachedImage, imageCache.get(FILE_SET_ID, "image.webp"));
+        assertEquals("WEBP", readResource(imageCache.get(FILE_SET_ID, "image.webp")));
+        assertEquals(4, imageCache.getResidentBytes());
+    }
+
+    /**
+     * Tests whether files too large to be cached are not cached.
+     */
+    @Test
+    void maxEntrySizeTest() throws IOException {
+        ImageCache imageCache = new ImageCache(1024, 2);
+        Path path = createFile("image.webp", "WEBP");
+
+        assertNull(imageCache.load(FILE_SET_ID, createImageFile(path), "\"etag\""));
+        assertNull(imageCache.get(FILE_SET_ID, "image.webp"));
+    }
+
+    /**
+     * Tests whether the size of the cached files is bounded.
+     */
+    @Test
+    void maxSizeTest() throws IOException {
+        ImageCache imageCache = new ImageCache(10, 10);
+
+        for (int i = 0; i < 10; i++) {
+            Path path = createFile("image" + i + ".webp", "WEBP");
+            assertNotNull(imageCache.load(FILE_SET_ID, createImageFile(path), "\"etag\""));
+        }
+
+        assertTrue(imageCache.getResidentBytes() <= 10, imageCache.getResidentBytes() + " bytes are cached");
+    }
+
+    /**
+     * Tests whether all files of an image are removed from the cache.
+     */
+    @Test
+    void invalidateTest() throws IOException {
+        ImageCache imageCache = new ImageCache(1024, 64);
+        Path webPPath = createFile("image.webp", "WEBP");
+        Path pngPath = createFile("image.png", "PNG");
+        Path otherPath = createFile("other/image.webp", "OTHER");
+
+        imageCache.load(FILE_SET_ID, createImageFile(webPPath), "\"webp\"");
+        imageCache.load(FILE_SET_ID, createImageFile(pngPath), "\"png\"");
+        imageCache.load("other", createImageFile(otherPath), "\"other\"");
+
+        imageCache.invalidate(FILE_SET_ID);
+
+        assertNull(imageCache.get(FILE_SET_ID, "image.webp"));
+        assertNull(imageCache.get(FILE_SET_ID, "image.png"));
+        assertNotNull(imageCache.get("other", "image.webp"));
+    }
+
+    /**
+     * Tests whether nothing is cached if the cache is disabled.
+     */
+    @Test
+    void disabledTest() throws IOException {
+        ImageCache imageCache = new ImageCache(0, 64);
+        Path path = createFile("image.webp", "WEBP");
+
+        assertNull(imageCache.load(FILE_SET_ID, createImageFile(path), "\"etag\""));
+        assertNull(imageCache.get(FILE_SET_ID, "image.webp"));
+        assertEquals(0, imageCache.getResidentBytes());
+    }
+
+    /**
+     * Tests whether the cached content can be read partially, as done for range requests.
+     */
+    @Test
+    void resourceSkipTest() throws IOException {
+        ImageCache imageCache = new ImageCache(1024, 64);
+        Path path = createFile("image.webp", "0123456789");
+
+        ImageCache.CachedImage cachedImage = imageCache.load(FILE_SET_ID, createImageFile(path), "\"etag\"");
+
+        try (InputStream inputStream = cachedImage.asResource().getInputStream()) {
+            assertEquals(4, inputStream.skip(4));
+            assertEquals("456", new String(inputStream.readNBytes(3)));
+        }
+
+        // Every request reads the content from its start.
+        assertEquals("0123456789", readResource(cachedImage));
+    }
+
+    private Path createFile(String name, String content) throws IOException {
+        Path path = directory.resolve(name);
+        Files.createDirectories(path.getParent());
+        return Files.writeString(path, content);
+    }
+
+    private ImageFile createImageFile(Path path) throws IOException {
+        return new ImageFile(path.getFileName().toString(), Files.size(path), 0, new FileSystemResource(path));
+    }
+
+    private String readResource(ImageCache.CachedImage cachedImage) throws IOException {
+        try (InputStream inputStream = cachedImage.asResource().getInputStream()) {
+            return new String(inputStream.readAllBytes());
+        }
+    }
+}
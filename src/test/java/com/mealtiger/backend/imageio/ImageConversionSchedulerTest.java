@@ -0,0 +1,116 @@
+package com.mealtiger.backend.imageio;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class tests the ImageConversionScheduler.
+ */
+@Tag("unit")
+class ImageConversionSchedulerTest {
+
+    private ImageConversionScheduler scheduler;
+
+    @BeforeEach
+    void beforeEach() {
+        scheduler = new ImageConversionScheduler(1, 4, 7);
+    }
+
+    @AfterEach
+    void afterEach() {
+        scheduler.shutdown();
+    }
+
+    /**
+     * Tests whether results of submitted conversions are returned.
+     */
+    @Test
+    void submitTest() throws ExecutionException, InterruptedException {
+        Future<String> future = scheduler.submit(() -> "converted", ImageConversionScheduler.Priority.INTERACTIVE);
+        assertEquals("converted", future.get());
+
+        Map<String, Future<Integer>> futures = scheduler.submitAll(Map.of("one", () -> 1, "two", () -> 2), ImageConversionScheduler.Priority.BULK);
+        assertEquals(1, futures.get("one").get());
+        assertEquals(2, futures.get("two").get());
+    }
+
+    /**
+     * Tests whether queued conversions are run in the order of their priority lanes.
+     */
+    @Test
+    void priorityTest() throws ExecutionException, InterruptedException {
+        CountDownLatch blocker = new CountDownLatch(1);
+        List<ImageConversionScheduler.Priority> executionOrder = new CopyOnWriteArrayList<>();
+
+        // Occupies the only worker thread, so that the following conversions are queued.
+        Future<Boolean> blockingFuture = scheduler.submit(() -> blocker.await(10, TimeUnit.SECONDS), ImageConversionScheduler.Priority.INTERACTIVE);
+
+        Future<Boolean> background = scheduler.submit(() -> executionOrder.add(ImageConversionScheduler.Priority.BACKGROUND), ImageConversionScheduler.Priority.BACKGROUND);
+        Future<Boolean> bulk = scheduler.submit(() -> executionOrder.add(ImageConversionScheduler.Priority.BULK), ImageConversionScheduler.Priority.BULK);
+        Future<Boolean> interactive = scheduler.submit(() -> executionOrder.add(ImageConversionScheduler.Priority.INTERACTIVE), ImageConversionScheduler.Priority.INTERACTIVE);
+
+        blocker.countDown();
+
+        assertTrue(blockingFuture.get());
+        background.get();
+        bulk.get();
+        interactive.get();
+
+        assertEquals(List.of(ImageConversionScheduler.Priority.INTERACTIVE,
+                ImageConversionScheduler.Priority.BULK,
+                ImageConversionScheduler.Priority.BACKGROUND), executionOrder);
+    }
+
+    // NEGATIVE TESTS
+
+    /**
+     * Tests whether conversions are rejected when the queue is full and lower lanes are rejected first.
+     */
+    @Test
+    void queueFullTest() throws ExecutionException, InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch blocker = new CountDownLatch(1);
+
+        Future<Boolean> blockingFuture = scheduler.submit(() -> {
+            started.countDown();
+            return blocker.await(10, TimeUnit.SECONDS);
+        }, ImageConversionScheduler.Priority.INTERACTIVE);
+
+        // Wait for the worker thread to take the blocking conversion from the queue.
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        // Two of four queue slots are used, so background conversions (half of the queue) are rejected.
+        scheduler.submitAll(Map.of("a", () -> true, "b", () -> true), ImageConversionScheduler.Priority.INTERACTIVE);
+        assertThrows(RejectedExecutionException.class, () -> scheduler.submit(() -> true, ImageConversionScheduler.Priority.BACKGROUND));
+
+        // A batch exceeding the capacity is rejected entirely.
+        assertThrows(RejectedExecutionException.class, () -> scheduler.submitAll(Map.of("c", () -> true, "d", () -> true, "e", () -> true), ImageConversionScheduler.Priority.INTERACTIVE));
+
+        // Interactive conversions may use the whole queue.
+        assertDoesNotThrow(() -> scheduler.submitAll(Map.of("c", () -> true, "d", () -> true), ImageConversionScheduler.Priority.INTERACTIVE));
+
+        blocker.countDown();
+        assertTrue(blockingFuture.get());
+
+        assertEquals(7, scheduler.getRetryAfter());
+    }
+
+    /**
+     * Tests whether conversions are rejected after shutdown.
+     */
+    @Test
+    void shutdownTest() {
+        scheduler.shutdown();
+        assertThrows(RejectedExecutionException.class, () -> scheduler.submitAll(Collections.emptyMap(), ImageConversionScheduler.Priority.INTERACTIVE));
+    }
+
+}
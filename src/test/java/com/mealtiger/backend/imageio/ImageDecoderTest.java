@@ -0,0 +1,241 @@
+package com.mealtiger.backend.imageio;
+
+import com.mealtiger.backend.rest.error_handling.exceptions.ImageTooLargeException;
+import com.mealtiger.backend.rest.error_handling.exceptions.InvalidRequestFormatException;
+import com.mealtiger.backend.rest.error_handling.exceptions.ServiceUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class tests the ImageDecoder.
+ */
+@Tag("unit")
+class ImageDecoderTest {
+
+    private static final String TEST_IMAGE = "com/mealtiger/backend/imageio/testImages/DefaultTestImage/TestImage.jpg";
+    private static final String TEST_IMAGE_DIRECTORY = "com/mealtiger/backend/imageio/testImages/DefaultTestImage/";
+
+    /**
+     * Tests decoding images within the limits.
+     */
+    @Test
+    void decodeTest() throws IOException {
+        ImageDecoder imageDecoder = new ImageDecoder(Integer.MAX_VALUE, Long.MAX_VALUE, 0);
+
+        try (InputStream inputStream = getTestImage()) {
+            DecodedImage decodedImage = imageDecoder.decode(inputStream);
+
+            assertNotNull(decodedImage.image());
+            assertNotEquals(0, decodedImage.image().getWidth());
+            assertNotEquals(0, decodedImage.image().getHeight());
+            assertEquals("image/jpeg", decodedImage.mimeType());
+        }
+    }
+
+    /**
+     * Tests decoding images of all supported formats.
+     */
+    @Test
+    void formatsTest() throws IOException {
+        ImageDecoder imageDecoder = new ImageDecoder(Integer.MAX_VALUE, Long.MAX_VALUE, 0);
+
+        Map<String, String> mimeTypes = Map.of(
+                "TestImage.jpg", "image/jpeg",
+                "TestImage.png", "image/png",
+                "TestImage.gif", "image/gif",
+                "TestImage.bmp", "image/bmp",
+                "TestImage.webp", "image/webp",
+                "TestImage.lossless.webp", "image/webp",
+                "TestImage.tiff", "image/tiff"
+        );
+
+        for (Map.Entry<String, String> mimeType : mimeTypes.entrySet()) {
+            try (InputStream inputStream = getTestImage(mimeType.getKey())) {
+                DecodedImage decodedImage = imageDecoder.decode(inputStream);
+
+                assertEquals(512, decodedImage.image().getWidth(), mimeType.getKey());
+                assertEquals(mimeType.getValue(), decodedImage.mimeType(), mimeType.getKey());
+            }
+        }
+    }
+
+    /**
+     * Tests whether readers are reused once an image is decoded.
+     */
+    @Test
+    void readerReuseTest() throws IOException {
+        ImageDecoder imageDecoder = new ImageDecoder(Integer.MAX_VALUE, Long.MAX_VALUE, 0, 2, null);
+
+        // The reader resolved at startup is kept idle.
+        assertEquals(1, imageDecoder.getIdleReaderCount(ImageFormat.JPEG));
+
+        for (int i = 0; i < 3; i++) {
+            try (InputStream inputStream = getTestImage()) {
+                imageDecoder.decode(inputStream);
+            }
+
+            assertEquals(1, imageDecoder.getIdleReaderCount(ImageFormat.JPEG));
+        }
+
+        // Failed readers are not returned to the pool.
+        ImageDecoder limitedImageDecoder = new ImageDecoder(100, Long.MAX_VALUE, 0, 2, null);
+
+        try (InputStream inputStream = getTestImage()) {
+            assertThrows(ImageTooLargeException.class, () -> limitedImageDecoder.decode(inputStream));
+        }
+
+        assertEquals(0, limitedImageDecoder.getIdleReaderCount(ImageFormat.JPEG));
+    }
+
+    /**
+     * Tests whether images larger than the maximum dimension are scaled down while keeping their aspect ratio.
+     */
+    @Test
+    void maxDimensionTest() throws IOException {
+        // The test image has 512x512 pixels.
+        ImageDecoder imageDecoder = new ImageDecoder(Integer.MAX_VALUE, Long.MAX_VALUE, 200);
+
+        try (InputStream inputStream = getTestImage()) {
+            DecodedImage decodedImage = imageDecoder.decode(inputStream);
+
+            assertEquals(200, decodedImage.image().getWidth());
+            assertEquals(200, decodedImage.image().getHeight());
+        }
+
+        // Images smaller than the maximum dimension are not scaled.
+        imageDecoder = new ImageDecoder(Integer.MAX_VALUE, Long.MAX_VALUE, 1024);
+
+        try (InputStream inputStream = getTestImage()) {
+            assertEquals(512, imageDecoder.decode(inputStream).image().getWidth());
+        }
+    }
+
+    /**
+     * Tests whether the memory limit applies to the subsampled image.
+     */
+    @Test
+    void subsampledMemoryTest() throws IOException {
+        // Decoded at full resolution, the image takes up 786432 bytes. Subsampled by factor 2, it takes up a quarter.
+        ImageDecoder imageDecoder = new ImageDecoder(Integer.MAX_VALUE, 200000, 256);
+
+        try (InputStream inputStream = getTestImage()) {
+            assertEquals(256, imageDecoder.decode(inputStream).image().getWidth());
+        }
+    }
+
+    /**
+     * Tests whether the memory of a decoded image is reserved until it is closed.
+     */
+    @Test
+    void memoryBudgetTest() throws IOException {
+        ImageMemoryBudget memoryBudget = new ImageMemoryBudget(Long.MAX_VALUE, 0, 5, new SimpleMeterRegistry());
+        ImageDecoder imageDecoder = new ImageDecoder(Integer.MAX_VALUE, Long.MAX_VALUE, 0, 0, memoryBudget);
+
+        try (InputStream inputStream = getTestImage(); DecodedImage decodedImage = imageDecoder.decode(inputStream)) {
+            // The decoded raster of 512x512 pixels and the copies made while encoding it.
+            assertTrue(memoryBudget.getUsedBytes() >= 512L * 512 * 3);
+            assertEquals(memoryBudget.getUsedBytes(), decodedImage.reservation().getBytes());
+        }
+
+        assertEquals(0, memoryBudget.getUsedBytes());
+    }
+
+    // NEGATIVE TESTS
+
+    /**
+     * Tests whether images with too many pixels are rejected.
+     */
+    @Test
+    void tooManyPixelsTest() throws IOException {
+        ImageDecoder imageDecoder = new ImageDecoder(100, Long.MAX_VALUE, 0);
+
+        try (InputStream inputStream = getTestImage()) {
+            assertThrows(ImageTooLargeException.class, () -> imageDecoder.decode(inputStream));
+        }
+    }
+
+    /**
+     * Tests whether images taking up too much memory when decoded are rejected.
+     */
+    @Test
+    void tooMuchMemoryTest() throws IOException {
+        ImageDecoder imageDecoder = new ImageDecoder(Integer.MAX_VALUE, 100, 0);
+
+        try (InputStream inputStream = getTestImage()) {
+            assertThrows(ImageTooLargeException.class, () -> imageDecoder.decode(inputStream));
+        }
+    }
+
+    /**
+     * Tests whether unknown formats are rejected.
+     */
+    @Test
+    void unknownFormatTest() throws IOException {
+        ImageDecoder imageDecoder = new ImageDecoder(Integer.MAX_VALUE, Long.MAX_VALUE, 0);
+
+        assertThrows(InvalidRequestFormatException.class, () -> imageDecoder.decode(new ByteArrayInputStream("No image".getBytes())));
+        assertThrows(InvalidRequestFormatException.class, () -> imageDecoder.decode(new ByteArrayInputStream(new byte[0])));
+
+        try (InputStream inputStream = getTestImage("TestImage.pdf")) {
+            assertThrows(InvalidRequestFormatException.class, () -> imageDecoder.decode(inputStream));
+        }
+    }
+
+    /**
+     * Tests whether images are rejected while the memory budget is used up, without holding on to any memory.
+     */
+    @Test
+    void memoryBudgetExhaustedTest() throws IOException {
+        ImageMemoryBudget memoryBudget = new ImageMemoryBudget(20L * 1024 * 1024, 0, 5, new SimpleMeterRegistry());
+        ImageDecoder imageDecoder = new ImageDecoder(Integer.MAX_VALUE, Long.MAX_VALUE, 0, 0, memoryBudget);
+
+        ImageMemoryBudget.Reservation reservation = memoryBudget.reserve(18L * 1024 * 1024);
+
+        try (InputStream inputStream = getTestImage()) {
+            assertThrows(ServiceUnavailableException.class, () -> imageDecoder.decode(inputStream));
+        }
+
+        reservation.close();
+        assertEquals(0, memoryBudget.getUsedBytes());
+    }
+
+    /**
+     * Tests whether images are not decoded while the memory budget is used up, if decoding must not wait for memory.
+     */
+    @Test
+    void tryDecodeMemoryBudgetExhaustedTest() throws IOException {
+        ImageMemoryBudget memoryBudget = new ImageMemoryBudget(20L * 1024 * 1024, 10000, 5, new SimpleMeterRegistry());
+        ImageDecoder imageDecoder = new ImageDecoder(Integer.MAX_VALUE, Long.MAX_VALUE, 0, 0, memoryBudget);
+
+        ImageMemoryBudget.Reservation reservation = memoryBudget.reserve(18L * 1024 * 1024);
+
+        try (InputStream inputStream = getTestImage()) {
+            assertNull(imageDecoder.tryDecode(inputStream));
+        }
+
+        reservation.close();
+
+        try (InputStream inputStream = getTestImage(); DecodedImage decodedImage = imageDecoder.tryDecode(inputStream)) {
+            assertNotNull(decodedImage.image());
+        }
+
+        assertEquals(0, memoryBudget.getUsedBytes());
+    }
+
+    private InputStream getTestImage() {
+        return this.getClass().getClassLoader().getResourceAsStream(TEST_IMAGE);
+    }
+
+    private InputStream getTestImage(String fileName) {
+        return this.getClass().getClassLoader().getResourceAsStream(TEST_IMAGE_DIRECTORY + fileName);
+    }
+
+}
@@ -0,0 +1,98 @@
+package com.mealtiger.backend.imageio;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * This class tests the recognition of image formats by their signature.
+ */
+@Tag("unit")
+class ImageFormatTest {
+
+    private static final String TEST_IMAGE_DIRECTORY = "com/mealtiger/backend/imageio/testImages/";
+
+    private static final Map<String, ImageFormat> FORMATS = Map.of(
+            "TestImage.jpg", ImageFormat.JPEG,
+            "TestImage.png", ImageFormat.PNG,
+            "TestImage.gif", ImageFormat.GIF,
+            "TestImage.bmp", ImageFormat.BMP,
+            "TestImage.webp", ImageFormat.WEBP,
+            "TestImage.lossless.webp", ImageFormat.WEBP,
+            "TestImage.tiff", ImageFormat.TIFF
+    );
+
+    /**
+     * Tests whether the formats of all test images are recognized.
+     */
+    @Test
+    void recognizeTest() throws IOException {
+        for (String testImage : new String[]{"DefaultTestImage", "Flower", "PiggyBank", "TransparentTestImage"}) {
+            for (Map.Entry<String, ImageFormat> format : FORMATS.entrySet()) {
+                // The transparent test image has no JPEG version.
+                if (testImage.equals("TransparentTestImage") && format.getValue() == ImageFormat.JPEG) {
+                    continue;
+                }
+
+                byte[] header = readHeader(testImage + "/" + format.getKey());
+
+                assertEquals(format.getValue(), ImageFormat.recognize(header, header.length), testImage + "/" + format.getKey());
+            }
+        }
+    }
+
+    /**
+     * Tests whether both byte orders of TIFF are recognized.
+     */
+    @Test
+    void tiffByteOrderTest() {
+        byte[] littleEndian = {'I', 'I', 42, 0, 8, 0, 0, 0};
+        byte[] bigEndian = {'M', 'M', 0, 42, 0, 0, 0, 8};
+
+        assertEquals(ImageFormat.TIFF, ImageFormat.recognize(littleEndian, littleEndian.length));
+        assertEquals(ImageFormat.TIFF, ImageFormat.recognize(bigEndian, bigEndian.length));
+    }
+
+    // NEGATIVE TESTS
+
+    /**
+     * Tests whether files of other formats are not recognized.
+     */
+    @Test
+    void unknownFormatTest() throws IOException {
+        byte[] pdf = readHeader("DefaultTestImage/TestImage.pdf");
+        byte[] text = "No image".getBytes();
+        byte[] riff = "RIFF\0\0\0\0WAVE".getBytes();
+
+        assertNull(ImageFormat.recognize(pdf, pdf.length));
+        assertNull(ImageFormat.recognize(text, text.length));
+        assertNull(ImageFormat.recognize(riff, riff.length));
+        assertNull(ImageFormat.recognize(new byte[0], 0));
+    }
+
+    /**
+     * Tests whether incomplete signatures are not recognized.
+     */
+    @Test
+    void truncatedSignatureTest() throws IOException {
+        byte[] png = readHeader("DefaultTestImage/TestImage.png");
+        byte[] webp = readHeader("DefaultTestImage/TestImage.webp");
+
+        assertNull(ImageFormat.recognize(png, 7));
+        assertNull(ImageFormat.recognize(Arrays.copyOf(webp, 8), 8));
+    }
+
+    private byte[] readHeader(String testImage) throws IOException {
+        try (InputStream inputStream = this.getClass().getClassLoader().getResourceAsStream(TEST_IMAGE_DIRECTORY + testImage)) {
+            assert inputStream != null;
+            return inputStream.readNBytes(ImageFormat.SIGNATURE_LENGTH);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.mealtiger.backend.imageio;
+
+import com.mealtiger.backend.rest.error_handling.exceptions.ImageTooLargeException;
+import com.mealtiger.backend.rest.error_handling.exceptions.ServiceUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class tests the ImageMemoryBudget.
+ */
+@Tag("unit")
+class ImageMemoryBudgetTest {
+
+    /**
+     * Tests whether reserved memory is accounted for until it is released.
+     */
+    @Test
+    void reserveTest() throws InterruptedIOException {
+        ImageMemoryBudget memoryBudget = new ImageMemoryBudget(10000, 0, 5, new SimpleMeterRegistry());
+
+        ImageMemoryBudget.Reservation first = memoryBudget.reserve(4000);
+        ImageMemoryBudget.Reservation second = memoryBudget.reserve(4000);
+
+        assertEquals(8000, memoryBudget.getUsedBytes());
+
+        first.close();
+        // Releasing twice returns the memory only once.
+        first.close();
+        assertEquals(4000, memoryBudget.getUsedBytes());
+
+        second.close();
+        assertEquals(0, memoryBudget.getUsedBytes());
+    }
+
+    /**
+     * Tests whether a reservation waits until enough memory has been released.
+     */
+    @Test
+    void waitTest() throws InterruptedIOException, ExecutionException, InterruptedException, TimeoutException {
+        ImageMemoryBudget memoryBudget = new ImageMemoryBudget(10000, 10000, 5, new SimpleMeterRegistry());
+
+        ImageMemoryBudget.Reservation first = memoryBudget.reserve(8000);
+
+        CompletableFuture<ImageMemoryBudget.Reservation> second = CompletableFuture.supplyAsync(() -> {
+            try {
+                return memoryBudget.reserve(8000);
+            } catch (InterruptedIOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        assertThrows(TimeoutException.class, () -> second.get(200, TimeUnit.MILLISECONDS));
+
+        first.close();
+
+        assertEquals(8000, second.get(5, TimeUnit.SECONDS).getBytes());
+        assertEquals(8000, memoryBudget.getUsedBytes());
+    }
+
+    /**
+     * Tests whether reservations which must not wait give up right away while the memory is used up.
+     */
+    @Test
+    void tryReserveTest() throws InterruptedIOException {
+        ImageMemoryBudget memoryBudget = new ImageMemoryBudget(10000, 10000, 5, new SimpleMeterRegistry());
+
+        ImageMemoryBudget.Reservation first = memoryBudget.tryReserve(8000);
+        assertNotNull(first);
+
+        long start = System.nanoTime();
+        assertNull(memoryBudget.tryReserve(8000));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        assertEquals(8000, memoryBudget.getUsedBytes());
+
+        first.close();
+
+        assertNotNull(memoryBudget.tryReserve(8000));
+        assertEquals(8000, memoryBudget.getUsedBytes());
+    }
+
+    /**
+     * Tests whether a disabled budget reserves nothing.
+     */
+    @Test
+    void disabledTest() throws InterruptedIOException {
+        ImageMemoryBudget memoryBudget = new ImageMemoryBudget(0, 0, 5, new SimpleMeterRegistry());
+
+        memoryBudget.reserve(Long.MAX_VALUE).close();
+
+        assertEquals(0, memoryBudget.getBudget());
+        assertEquals(0, memoryBudget.getUsedBytes());
+    }
+
+    // NEGATIVE TESTS
+
+    /**
+     * Tests whether reservations are rejected once the timeout has elapsed.
+     */
+    @Test
+    void timeoutTest() throws InterruptedIOException {
+        ImageMemoryBudget memoryBudget = new ImageMemoryBudget(10000, 50, 5, new SimpleMeterRegistry());
+
+        memoryBudget.reserve(8000);
+
+        ServiceUnavailableException exception = assertThrows(ServiceUnavailableException.class, () -> memoryBudget.reserve(8000));
+        assertEquals(5, exception.getRetryAfter());
+        assertEquals(8000, memoryBudget.getUsedBytes());
+    }
+
+    /**
+     * Tests whether images taking up more memory than the whole budget are rejected right away.
+     */
+    @Test
+    void exceedingBudgetTest() {
+        ImageMemoryBudget memoryBudget = new ImageMemoryBudget(10000, 10000, 5, new SimpleMeterRegistry());
+
+        assertThrows(ImageTooLargeException.class, () -> memoryBudget.reserve(20000));
+        assertEquals(0, memoryBudget.getUsedBytes());
+    }
+}
@@ -1,7 +1,6 @@
 package com.mealtiger.backend.imageio;
 
 import javax.imageio.ImageIO;
-import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.util.Objects;
@@ -21,12 +20,7 @@ public class ImageSource {
                 ImageIO.read(Objects.requireNonNull(ImageSource.class.getClassLoader().getResourceAsStream("com/mealtiger/backend/imageio/testImages/Flower/TestImage.bmp"))),
                 ImageIO.read(Objects.requireNonNull(ImageSource.class.getClassLoader().getResourceAsStream("com/mealtiger/backend/imageio/testImages/PiggyBank/TestImage.bmp"))),
                 ImageIO.read(Objects.requireNonNull(ImageSource.class.getClassLoader().getResourceAsStream("com/mealtiger/backend/imageio/testImages/TransparentTestImage/TestImage.bmp")))
-        ).map(image -> {
-            BufferedImage indexedImage = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_BYTE_INDEXED);
-            Graphics2D graphics2D = indexedImage.createGraphics();
-            graphics2D.drawImage(image, 0, 0, null);
-            return indexedImage;
-        });
+        );
     }
 
     /**
@@ -39,12 +33,7 @@ public class ImageSource {
                 ImageIO.read(Objects.requireNonNull(ImageSource.class.getClassLoader().getResourceAsStream("com/mealtiger/backend/imageio/testImages/DefaultTestImage/TestImage.jpg"))),
                 ImageIO.read(Objects.requireNonNull(ImageSource.class.getClassLoader().getResourceAsStream("com/mealtiger/backend/imageio/testImages/Flower/TestImage.jpg"))),
                 ImageIO.read(Objects.requireNonNull(ImageSource.class.getClassLoader().getResourceAsStream("com/mealtiger/backend/imageio/testImages/PiggyBank/TestImage.jpg")))
-        ).map(image -> {
-            BufferedImage indexedImage = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_BYTE_INDEXED);
-            Graphics2D graphics2D = indexedImage.createGraphics();
-            graphics2D.drawImage(image, 0, 0, null);
-            return indexedImage;
-        });
+        );
     }
 
     /**
@@ -58,12 +47,7 @@ public class ImageSource {
                 ImageIO.read(Objects.requireNonNull(ImageSource.class.getClassLoader().getResourceAsStream("com/mealtiger/backend/imageio/testImages/Flower/TestImage.png"))),
                 ImageIO.read(Objects.requireNonNull(ImageSource.class.getClassLoader().getResourceAsStream("com/mealtiger/backend/imageio/testImages/PiggyBank/TestImage.png"))),
                 ImageIO.read(Objects.requireNonNull(ImageSource.class.getClassLoader().getResourceAsStream("com/mealtiger/backend/imageio/testImages/TransparentTestImage/TestImage.png")))
-        ).map(image -> {
-            BufferedImage indexedImage = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_BYTE_INDEXED);
-            Graphics2D graphics2D = indexedImage.createGraphics();
-            graphics2D.drawImage(image, 0, 0, null);
-            return indexedImage;
-        });
+        );
     }
 
     /**
@@ -77,12 +61,7 @@ public class ImageSource {
                 ImageIO.read(Objects.requireNonNull(ImageSource.class.getClassLoader().getResourceAsStream("com/mealtiger/backend/imageio/testImages/Flower/TestImage.gif"))),
                 ImageIO.read(Objects.requireNonNull(ImageSource.class.getClassLoader().getResourceAsStream("com/mealtiger/backend/imageio/testImages/PiggyBank/TestImage.gif"))),
                 ImageIO.read(Objects.requireNonNull(ImageSource.class.getClassLoader().getResourceAsStream("com/mealtiger/backend/imageio/testImages/TransparentTestImage/TestImage.gif")))
-        ).map(image -> {
-            BufferedImage indexedImage = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_BYTE_INDEXED);
-            Graphics2D graphics2D = indexedImage.createGraphics();
-            graphics2D.drawImage(image, 0, 0, null);
-            return indexedImage;
-        });
+        );
     }
 
     /**
@@ -96,12 +75,7 @@ public class ImageSource {
                 ImageIO.read(Objects.requireNonNull(ImageSource.class.getClassLoader().getResourceAsStream("com/mealtiger/backend/imageio/testImages/Flower/TestImage.webp"))),
                 ImageIO.read(Objects.requireNonNull(ImageSource.class.getClassLoader().getResourceAsStream("com/mealtiger/backend/imageio/testImages/PiggyBank/TestImage.webp"))),
                 ImageIO.read(Objects.requireNonNull(ImageSource.class.getClassLoader().getResourceAsStream("com/mealtiger/backend/imageio/testImages/TransparentTestImage/TestImage.webp")))
-        ).map(image -> {
-            BufferedImage indexedImage = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_BYTE_INDEXED);
-            Graphics2D graphics2D = indexedImage.createGraphics();
-            graphics2D.drawImage(image, 0, 0, null);
-            return indexedImage;
-        });
+        );
     }
 
     /**
@@ -115,12 +89,7 @@ public class ImageSource {
                 ImageIO.read(Objects.requireNonNull(ImageSource.class.getClassLoader().getResourceAsStream("com/mealtiger/backend/imageio/testImages/Flower/TestImage.lossless.webp"))),
                 ImageIO.read(Objects.requireNonNull(ImageSource.class.getClassLoader().getResourceAsStream("com/mealtiger/backend/imageio/testImages/PiggyBank/TestImage.lossless.webp"))),
                 ImageIO.read(Objects.requireNonNull(ImageSource.class.getClassLoader().getResourceAsStream("com/mealtiger/backend/imageio/testImages/TransparentTestImage/TestImage.lossless.webp")))
-        ).map(image -> {
-            BufferedImage indexedImage = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_BYTE_INDEXED);
-            Graphics2D graphics2D = indexedImage.createGraphics();
-            graphics2D.drawImage(image, 0, 0, null);
-            return indexedImage;
-        });
+        );
     }
 
     /**
@@ -134,12 +103,7 @@ public class ImageSource {
                 ImageIO.read(Objects.requireNonNull(ImageSource.class.getClassLoader().getResourceAsStream("com/mealtiger/backend/imageio/testImages/Flower/TestImage.tiff"))),
                 ImageIO.read(Objects.requireNonNull(ImageSource.class.getClassLoader().getResourceAsStream("com/mealtiger/backend/imageio/testImages/PiggyBank/TestImage.tiff"))),
                 ImageIO.read(Objects.requireNonNull(ImageSource.class.getClassLoader().getResourceAsStream("com/mealtiger/backend/imageio/testImages/TransparentTestImage/TestImage.tiff")))
-        ).map(image -> {
-            BufferedImage indexedImage = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_BYTE_INDEXED);
-            Graphics2D graphics2D = indexedImage.createGraphics();
-            graphics2D.drawImage(image, 0, 0, null);
-            return indexedImage;
-        });
+        );
     }
 
 }
@@ -0,0 +1,77 @@
+package com.mealtiger.backend.imageio;
+
+import com.mealtiger.backend.rest.error_handling.exceptions.ImageTooLargeException;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class tests the SizeLimitedInputStream.
+ */
+@Tag("unit")
+class SizeLimitedInputStreamTest {
+
+    /**
+     * Tests reading streams within the limit.
+     */
+    @Test
+    void readTest() throws IOException {
+        try (SizeLimitedInputStream inputStream = new SizeLimitedInputStream(new ByteArrayInputStream(new byte[100]), 100)) {
+            assertEquals(0, inputStream.read());
+            assertEquals(9, inputStream.skip(9));
+            assertEquals(90, inputStream.readAllBytes().length);
+            assertEquals(-1, inputStream.read());
+            assertEquals(100, inputStream.getSize());
+        }
+    }
+
+    /**
+     * Tests whether images are decoded from a limited stream.
+     */
+    @Test
+    void decodeTest() throws IOException {
+        ImageDecoder imageDecoder = new ImageDecoder(Integer.MAX_VALUE, Long.MAX_VALUE, 0);
+
+        try (InputStream inputStream = new SizeLimitedInputStream(getTestImage(), 5 * 1024 * 1024)) {
+            assertEquals(512, imageDecoder.decode(inputStream).image().getWidth());
+        }
+    }
+
+    // NEGATIVE TESTS
+
+    /**
+     * Tests whether reading beyond the limit is rejected.
+     */
+    @Test
+    void exceedingLimitTest() throws IOException {
+        try (InputStream inputStream = new SizeLimitedInputStream(new ByteArrayInputStream(new byte[101]), 100)) {
+            assertThrows(ImageTooLargeException.class, () -> inputStream.transferTo(OutputStream.nullOutputStream()));
+        }
+
+        try (InputStream inputStream = new SizeLimitedInputStream(new ByteArrayInputStream(new byte[101]), 100)) {
+            assertThrows(ImageTooLargeException.class, () -> inputStream.skip(101));
+        }
+    }
+
+    /**
+     * Tests whether images exceeding the limit are rejected while they are decoded.
+     */
+    @Test
+    void decodeExceedingLimitTest() throws IOException {
+        ImageDecoder imageDecoder = new ImageDecoder(Integer.MAX_VALUE, Long.MAX_VALUE, 0);
+
+        try (InputStream inputStream = new SizeLimitedInputStream(getTestImage(), 1024)) {
+            assertThrows(ImageTooLargeException.class, () -> imageDecoder.decode(inputStream));
+        }
+    }
+
+    private InputStream getTestImage() {
+        return this.getClass().getClassLoader().getResourceAsStream("com/mealtiger/backend/imageio/testImages/DefaultTestImage/TestImage.jpg");
+    }
+}
@@ -0,0 +1,152 @@
+package com.mealtiger.backend.imageio.adapters;
+
+import com.mealtiger.backend.configuration.exceptions.InvalidConfigPropertyException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class tests the CWebPEncoder with a fake cwebp binary, which writes its arguments and its input to the output file.
+ */
+@Tag("unit")
+@DisabledOnOs(OS.WINDOWS)
+class CWebPEncoderTest {
+
+    private static final String FAKE_CWEBP = """
+            #!/bin/sh
+            arguments="$*"
+            while [ "$#" -gt 2 ]; do shift; done
+            input=$(echo "$arguments" | awk '{ print $(NF - 2) }')
+            { echo "$arguments"; cat "$input"; } > "$2"
+            """;
+
+    private static final String FAILING_CWEBP = """
+            #!/bin/sh
+            echo "Unsupported image format" >&2
+            exit 3
+            """;
+
+    private static final String HANGING_CWEBP = """
+            #!/bin/sh
+            exec sleep 60
+            """;
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private Path directory;
+    private Path scratchDirectory;
+
+    @BeforeEach
+    void beforeEach() throws IOException {
+        directory = Files.createTempDirectory("cwebp-test");
+        scratchDirectory = directory.resolve("scratch");
+    }
+
+    @AfterEach
+    void afterEach() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /**
+     * Tests whether images are handed to cwebp as PAM files along with the configured arguments.
+     */
+    @Test
+    void encodeTest() throws IOException {
+        CWebPEncoder encoder = new CWebPEncoder(createBinary(FAKE_CWEBP), scratchDirectory, List.of("-q", "80"), TIMEOUT);
+
+        BufferedImage image = new BufferedImage(3, 2, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, 0x112233);
+
+        String output = new String(encoder.encode(image), StandardCharsets.ISO_8859_1);
+
+        assertTrue(output.startsWith("-q 80 -quiet "), output);
+        assertTrue(output.endsWith("P7\nWIDTH 3\nHEIGHT 2\nDEPTH 3\nMAXVAL 255\nTUPLTYPE RGB\nENDHDR\n\u0011\"3" + "\0".repeat(15)), output);
+
+        // Scratch files are deleted after encoding.
+        try (Stream<Path> scratchFiles = Files.list(scratchDirectory)) {
+            assertEquals(0, scratchFiles.count());
+        }
+    }
+
+    /**
+     * Tests whether the alpha channel is handed to cwebp.
+     */
+    @Test
+    void alphaTest() throws IOException {
+        CWebPEncoder encoder = new CWebPEncoder(createBinary(FAKE_CWEBP), scratchDirectory, List.of(), TIMEOUT);
+
+        BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 0, 0x80112233);
+
+        String output = new String(encoder.encode(image), StandardCharsets.ISO_8859_1);
+
+        assertTrue(output.endsWith("DEPTH 4\nMAXVAL 255\nTUPLTYPE RGB_ALPHA\nENDHDR\n\u0011\"3\u0080"), output);
+    }
+
+    // NEGATIVE TESTS
+
+    /**
+     * Tests whether failures of cwebp are reported.
+     */
+    @Test
+    void failingEncoderTest() throws IOException {
+        CWebPEncoder encoder = new CWebPEncoder(createBinary(FAILING_CWEBP), scratchDirectory, List.of(), TIMEOUT);
+        BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+
+        IOException exception = assertThrows(IOException.class, () -> encoder.encode(image));
+        assertTrue(exception.getMessage().contains("Unsupported image format"));
+    }
+
+    /**
+     * Tests whether cwebp is killed when it does not finish in time.
+     */
+    @Test
+    void hangingEncoderTest() throws IOException {
+        CWebPEncoder encoder = new CWebPEncoder(createBinary(HANGING_CWEBP), scratchDirectory, List.of(), Duration.ofMillis(200));
+        BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+
+        IOException exception = assertTimeoutPreemptively(TIMEOUT, () -> assertThrows(IOException.class, () -> encoder.encode(image)));
+        assertTrue(exception.getMessage().contains("did not finish"));
+
+        // Scratch files are deleted after encoding.
+        try (Stream<Path> scratchFiles = Files.list(scratchDirectory)) {
+            assertEquals(0, scratchFiles.count());
+        }
+    }
+
+    /**
+     * Tests whether missing binaries are rejected.
+     */
+    @Test
+    void missingBinaryTest() {
+        Path binary = directory.resolve("cwebp");
+        assertThrows(InvalidConfigPropertyException.class, () -> new CWebPEncoder(binary, scratchDirectory, List.of(), TIMEOUT));
+    }
+
+    private Path createBinary(String script) throws IOException {
+        Path binary = directory.resolve("cwebp");
+        Files.writeString(binary, script);
+        Files.setPosixFilePermissions(binary, PosixFilePermissions.fromString("rwx------"));
+        return binary;
+    }
+}
@@ -0,0 +1,82 @@
+package com.mealtiger.backend.imageio.adapters;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class tests the ImageWriterPool.
+ */
+@Tag("unit")
+class ImageWriterPoolTest {
+
+    private static final int THREADS = 8;
+
+    /**
+     * Tests whether concurrent writes yield the same images as sequential writes.
+     */
+    @Test
+    void concurrentWriteTest() throws IOException, InterruptedException, ExecutionException {
+        BufferedImage image = ImageIO.read(Objects.requireNonNull(ImageWriterPoolTest.class.getClassLoader()
+                .getResourceAsStream("com/mealtiger/backend/imageio/testImages/DefaultTestImage/TestImage.png")));
+
+        for (String formatName : List.of("jpg", "png", "gif")) {
+            ImageWriterPool imageWriterPool = new ImageWriterPool(formatName, 2);
+            ImageWriteParam params = imageWriterPool.getDefaultWriteParam();
+
+            byte[] expected = imageWriterPool.write(image, params);
+            assertNotNull(ImageIO.read(new ByteArrayInputStream(expected)));
+
+            CountDownLatch start = new CountDownLatch(1);
+            ExecutorService executorService = Executors.newFixedThreadPool(THREADS);
+
+            try {
+                List<Future<byte[]>> futures = new ArrayList<>();
+                for (int i = 0; i < THREADS * 2; i++) {
+                    futures.add(executorService.submit(() -> {
+                        start.await();
+                        return imageWriterPool.write(image, params);
+                    }));
+                }
+                start.countDown();
+
+                for (Future<byte[]> future : futures) {
+                    assertArrayEquals(expected, future.get(), "Concurrent " + formatName + " write differs from sequential write");
+                }
+            } finally {
+                executorService.shutdownNow();
+            }
+
+            int idleWriters = imageWriterPool.getIdleWriterCount();
+            assertTrue(idleWriters >= 1 && idleWriters <= 2, "Pool keeps " + idleWriters + " idle writers");
+        }
+    }
+
+    /**
+     * Tests whether writers are reused.
+     */
+    @Test
+    void reuseTest() throws IOException {
+        BufferedImage image = new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB);
+        ImageWriterPool imageWriterPool = new ImageWriterPool("png", 4);
+        ImageWriteParam params = imageWriterPool.getDefaultWriteParam();
+
+        for (int i = 0; i < 10; i++) {
+            imageWriterPool.write(image, params);
+        }
+
+        assertEquals(1, imageWriterPool.getIdleWriterCount());
+    }
+
+}
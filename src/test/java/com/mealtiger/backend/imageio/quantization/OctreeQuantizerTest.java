@@ -0,0 +1,127 @@
+package com.mealtiger.backend.imageio.quantization;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class tests the OctreeQuantizer.
+ */
+@Tag("unit")
+class OctreeQuantizerTest {
+
+    /**
+     * Tests whether images with few colors keep their exact colors.
+     */
+    @Test
+    void fewColorsTest() {
+        int[] colors = {0xFF0000, 0x00FF00, 0x0000FF, 0xFFFFFF};
+        BufferedImage image = new BufferedImage(40, 40, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, colors[(x / 10 + y / 10) % colors.length]);
+            }
+        }
+
+        BufferedImage quantizedImage = new OctreeQuantizer(OctreeQuantizer.MAX_COLORS, 1).quantize(image);
+
+        assertEquals(BufferedImage.TYPE_BYTE_INDEXED, quantizedImage.getType());
+        assertEquals(colors.length, ((IndexColorModel) quantizedImage.getColorModel()).getMapSize());
+        assertSameColors(image, quantizedImage, 0);
+    }
+
+    /**
+     * Tests whether images with more colors than the palette may hold are reduced to a palette of similar colors.
+     */
+    @Test
+    void gradientTest() {
+        BufferedImage image = createGradient(256, 256);
+
+        BufferedImage quantizedImage = new OctreeQuantizer(OctreeQuantizer.MAX_COLORS, 1).quantize(image);
+
+        assertTrue(((IndexColorModel) quantizedImage.getColorModel()).getMapSize() <= OctreeQuantizer.MAX_COLORS);
+        assertSameColors(image, quantizedImage, 32);
+
+        BufferedImage smallPaletteImage = new OctreeQuantizer(16, 1).quantize(image);
+        assertTrue(((IndexColorModel) smallPaletteImage.getColorModel()).getMapSize() <= 16);
+    }
+
+    /**
+     * Tests whether transparent pixels are mapped to the transparent palette entry.
+     */
+    @Test
+    void transparencyTest() {
+        BufferedImage image = new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, x < 5 ? 0x00000000 : 0xFF336699);
+            }
+        }
+
+        BufferedImage quantizedImage = new OctreeQuantizer(OctreeQuantizer.MAX_COLORS, 1).quantize(image);
+        IndexColorModel colorModel = (IndexColorModel) quantizedImage.getColorModel();
+
+        assertNotEquals(-1, colorModel.getTransparentPixel());
+        assertEquals(0, quantizedImage.getRGB(0, 0) >>> 24);
+        assertEquals(0xFF336699, quantizedImage.getRGB(9, 9));
+    }
+
+    /**
+     * Tests whether quantizing an image in parallel bands yields the same image as quantizing it sequentially.
+     */
+    @Test
+    void parallelismTest() {
+        BufferedImage image = createGradient(300, 203);
+
+        byte[] sequential = getIndices(new OctreeQuantizer(OctreeQuantizer.MAX_COLORS, 1).quantize(image));
+        byte[] parallel = getIndices(new OctreeQuantizer(OctreeQuantizer.MAX_COLORS, 4).quantize(image));
+
+        assertArrayEquals(sequential, parallel);
+    }
+
+    // NEGATIVE TESTS
+
+    /**
+     * Tests whether palettes of invalid sizes are rejected.
+     */
+    @Test
+    void invalidPaletteSizeTest() {
+        assertThrows(IllegalArgumentException.class, () -> new OctreeQuantizer(1, 1));
+        assertThrows(IllegalArgumentException.class, () -> new OctreeQuantizer(OctreeQuantizer.MAX_COLORS + 1, 1));
+    }
+
+    private static BufferedImage createGradient(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int red = x * 255 / (width - 1);
+                int green = y * 255 / (height - 1);
+                int blue = (x + y) * 255 / (width + height - 2);
+                image.setRGB(x, y, (red << 16) | (green << 8) | blue);
+            }
+        }
+        return image;
+    }
+
+    private static byte[] getIndices(BufferedImage image) {
+        return ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+    }
+
+    private static void assertSameColors(BufferedImage expected, BufferedImage actual, int tolerance) {
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                int expectedRGB = expected.getRGB(x, y);
+                int actualRGB = actual.getRGB(x, y);
+                for (int shift = 0; shift <= 16; shift += 8) {
+                    int difference = Math.abs(((expectedRGB >> shift) & 0xFF) - ((actualRGB >> shift) & 0xFF));
+                    assertTrue(difference <= tolerance, "Color of pixel " + x + "," + y + " differs by " + difference);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.mealtiger.backend.imageio.store;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * This class tests merging listed files into file sets.
+ */
+@Tag("unit")
+class FileSetTest {
+
+    /**
+     * Tests whether consecutive files of a file set are merged.
+     */
+    @Test
+    void mergeTest() {
+        List<FileSet> files = List.of(
+                new FileSet("a", 1, 10),
+                new FileSet("a", 2, 30),
+                new FileSet("a", 3, 20),
+                new FileSet("b", 4, 40),
+                new FileSet("c", 5, 50),
+                new FileSet("c", 6, 60));
+
+        assertEquals(List.of(
+                new FileSet("a", 6, 30),
+                new FileSet("b", 4, 40),
+                new FileSet("c", 11, 60)), FileSet.merge(files.iterator()).toList());
+
+        assertTrue(FileSet.merge(Collections.emptyIterator()).toList().isEmpty());
+    }
+}
@@ -0,0 +1,85 @@
+package com.mealtiger.backend.imageio.store;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class tests the FileSystemImageStore.
+ */
+@Tag("unit")
+class FileSystemImageStoreTest extends ImageStoreTest {
+
+    private Path root;
+    private ImageStoreLayout layout;
+
+    @Override
+    protected ImageStore createImageStore() throws IOException {
+        root = Files.createTempDirectory("image-store-test");
+        layout = new ImageStoreLayout(root, 2);
+        return new FileSystemImageStore(layout);
+    }
+
+    @AfterEach
+    void afterEach() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /**
+     * Tests whether files are written into the fan-out layout and no temporary files are left.
+     */
+    @Test
+    void layoutTest() throws IOException {
+        write(fileSetId, "image.webp", "WEBP");
+
+        try (Stream<Path> files = Files.list(layout.resolve(fileSetId))) {
+            assertEquals(1, files.count());
+        }
+        assertTrue(Files.exists(layout.resolve(fileSetId).resolve("image.webp")));
+    }
+
+    /**
+     * Tests whether file sets in the flat layout are read and migrated.
+     */
+    @Test
+    void migrateTest() throws IOException {
+        Files.createDirectories(layout.resolveFlat(fileSetId));
+        Files.writeString(layout.resolveFlat(fileSetId).resolve("image.webp"), "WEBP");
+
+        assertEquals("WEBP", read(imageStore.read(fileSetId, "image.webp")));
+
+        assertTrue(((FileSystemImageStore) imageStore).migrate(fileSetId));
+        assertFalse(((FileSystemImageStore) imageStore).migrate(fileSetId));
+
+        assertFalse(Files.exists(layout.resolveFlat(fileSetId)));
+        assertEquals("WEBP", read(imageStore.read(fileSetId, "image.webp")));
+    }
+
+    /**
+     * Tests whether file sets are listed in the flat layout as well as in the fan-out layout.
+     */
+    @Test
+    void listLayoutTest() throws IOException {
+        Files.createDirectories(layout.resolveFlat(fileSetId));
+        Files.writeString(layout.resolveFlat(fileSetId).resolve("image.webp"), "WEBP");
+        write(otherFileSetId, "image.webp", "OTHER");
+
+        try (Stream<FileSet> fileSets = imageStore.list()) {
+            assertEquals(Set.of(fileSetId, otherFileSetId), fileSets.map(FileSet::id).collect(Collectors.toSet()));
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.mealtiger.backend.imageio.store;
+
+import com.mealtiger.backend.BackendApplication;
+import com.mongodb.client.gridfs.GridFSBuckets;
+import com.mongodb.client.model.Filters;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * This class tests the GridFSImageStore against the test database.
+ */
+@SpringBootTest(classes = {BackendApplication.class})
+@Tag("integration")
+class GridFSImageStoreTest extends ImageStoreTest {
+
+    @Autowired
+    private MongoDatabaseFactory mongoDatabaseFactory;
+
+    @Override
+    protected ImageStore createImageStore() {
+        // Small chunks, so that files are split into several chunks.
+        return new GridFSImageStore(GridFSBuckets.create(mongoDatabaseFactory.getMongoDatabase(), "test-images")
+                .withChunkSizeBytes(2));
+    }
+
+    /**
+     * Tests whether replaced files leave no older revisions behind.
+     */
+    @Test
+    void revisionTest() throws IOException {
+        write(fileSetId, "image.webp", "WEBP");
+        write(fileSetId, "image.webp", "REPLACED");
+
+        long revisions = GridFSBuckets.create(mongoDatabaseFactory.getMongoDatabase(), "test-images")
+                .find(Filters.eq("filename", fileSetId + "/image.webp"))
+                .into(new ArrayList<>())
+                .size();
+
+        assertEquals(1, revisions);
+    }
+}
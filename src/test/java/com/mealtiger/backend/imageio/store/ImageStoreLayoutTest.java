@@ -0,0 +1,98 @@
+package com.mealtiger.backend.imageio.store;
+
+import com.mealtiger.backend.configuration.exceptions.InvalidConfigPropertyException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static com.mealtiger.backend.SampleSource.SAMPLE_IMAGE_ID;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class tests the ImageStoreLayout.
+ */
+@Tag("unit")
+class ImageStoreLayoutTest {
+
+    private Path root;
+
+    @BeforeEach
+    void beforeEach() throws IOException {
+        root = Files.createTempDirectory("image-store-test");
+    }
+
+    @AfterEach
+    void afterEach() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /**
+     * Tests whether image directories are fanned out into shard directories.
+     */
+    @Test
+    void resolveTest() {
+        ImageStoreLayout layout = new ImageStoreLayout(root, 2);
+
+        Path imageDirectory = layout.resolve(SAMPLE_IMAGE_ID);
+        String hash = String.format("%08x", SAMPLE_IMAGE_ID.hashCode());
+
+        assertEquals(root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(SAMPLE_IMAGE_ID), imageDirectory);
+        assertTrue(layout.isShardDirectory(hash.substring(0, 2)));
+        assertFalse(layout.isShardDirectory(SAMPLE_IMAGE_ID));
+
+        // The same image is always resolved to the same directory.
+        assertEquals(imageDirectory, new ImageStoreLayout(root, 2).resolve(SAMPLE_IMAGE_ID));
+    }
+
+    /**
+     * Tests whether image directories are kept in the root without fan-out.
+     */
+    @Test
+    void flatTest() {
+        ImageStoreLayout layout = new ImageStoreLayout(root, 0);
+
+        assertTrue(layout.isFlat());
+        assertEquals(root.resolve(SAMPLE_IMAGE_ID), layout.resolve(SAMPLE_IMAGE_ID));
+        assertEquals(root.resolve(SAMPLE_IMAGE_ID), layout.locate(SAMPLE_IMAGE_ID));
+        assertFalse(layout.isShardDirectory("ab"));
+    }
+
+    /**
+     * Tests whether images are located in both layouts.
+     */
+    @Test
+    void locateTest() throws IOException {
+        ImageStoreLayout layout = new ImageStoreLayout(root, 2);
+
+        // Images which do not exist yet are located in the configured layout.
+        assertEquals(layout.resolve(SAMPLE_IMAGE_ID), layout.locate(SAMPLE_IMAGE_ID));
+
+        Files.createDirectories(root.resolve(SAMPLE_IMAGE_ID));
+        assertEquals(root.resolve(SAMPLE_IMAGE_ID), layout.locate(SAMPLE_IMAGE_ID));
+
+        Files.createDirectories(layout.resolve(SAMPLE_IMAGE_ID));
+        assertEquals(layout.resolve(SAMPLE_IMAGE_ID), layout.locate(SAMPLE_IMAGE_ID));
+    }
+
+    // NEGATIVE TESTS
+
+    /**
+     * Tests whether invalid fan-out levels are rejected.
+     */
+    @Test
+    void invalidFanOutLevelsTest() {
+        assertThrows(InvalidConfigPropertyException.class, () -> new ImageStoreLayout(root, -1));
+        assertThrows(InvalidConfigPropertyException.class, () -> new ImageStoreLayout(root, 5));
+    }
+}
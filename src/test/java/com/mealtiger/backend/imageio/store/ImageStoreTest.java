@@ -0,0 +1,180 @@
+package com.mealtiger.backend.imageio.store;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class tests the behaviour all image stores share. Subclasses test the single backends.
+ */
+abstract class ImageStoreTest {
+
+    protected ImageStore imageStore;
+
+    protected String fileSetId;
+    protected String otherFileSetId;
+
+    /**
+     * @return Image store to be tested.
+     */
+    protected abstract ImageStore createImageStore() throws IOException;
+
+    @BeforeEach
+    void setUpImageStore() throws IOException {
+        imageStore = createImageStore();
+        fileSetId = UUID.randomUUID().toString();
+        otherFileSetId = UUID.randomUUID().toString();
+    }
+
+    @AfterEach
+    void cleanUpImageStore() throws IOException {
+        for (String id : new String[]{fileSetId, otherFileSetId}) {
+            if (imageStore.exists(id)) {
+                imageStore.deleteAll(id);
+            }
+        }
+    }
+
+    /**
+     * Tests whether written files are read.
+     */
+    @Test
+    void writeReadTest() throws IOException {
+        assertFalse(imageStore.exists(fileSetId));
+
+        write(fileSetId, "image.webp", "WEBP");
+
+        assertTrue(imageStore.exists(fileSetId));
+        assertTrue(imageStore.exists(fileSetId, "image.webp"));
+        assertFalse(imageStore.exists(fileSetId, "image.png"));
+
+        ImageFile imageFile = imageStore.read(fileSetId, "image.webp");
+        assertEquals("image.webp", imageFile.name());
+        assertEquals(4, imageFile.size());
+        assertEquals(4, imageFile.content().contentLength());
+        assertEquals("WEBP", read(imageFile));
+
+        // The content can be read more than once.
+        assertEquals("WEBP", read(imageFile));
+    }
+
+    /**
+     * Tests whether files are replaced.
+     */
+    @Test
+    void replaceTest() throws IOException {
+        write(fileSetId, "image.webp", "WEBP");
+        write(fileSetId, "image.webp", "REPLACED");
+
+        assertEquals("REPLACED", read(imageStore.read(fileSetId, "image.webp")));
+    }
+
+    /**
+     * Tests whether single files are deleted.
+     */
+    @Test
+    void deleteTest() throws IOException {
+        write(fileSetId, "image.webp", "WEBP");
+        write(fileSetId, "image.png", "PNG");
+
+        imageStore.delete(fileSetId, "image.webp");
+        // Files which do not exist are ignored.
+        imageStore.delete(fileSetId, "image.webp");
+
+        assertFalse(imageStore.exists(fileSetId, "image.webp"));
+        assertTrue(imageStore.exists(fileSetId, "image.png"));
+    }
+
+    /**
+     * Tests whether all files of a file set are deleted.
+     */
+    @Test
+    void deleteAllTest() throws IOException {
+        write(fileSetId, "image.webp", "WEBP");
+        write(fileSetId, "image.png", "PNG");
+        write(otherFileSetId, "image.webp", "OTHER");
+
+        imageStore.deleteAll(fileSetId);
+
+        assertFalse(imageStore.exists(fileSetId));
+        assertFalse(imageStore.exists(fileSetId, "image.png"));
+        assertTrue(imageStore.exists(otherFileSetId));
+    }
+
+    /**
+     * Tests whether all files of a file set are moved.
+     */
+    @Test
+    void moveTest() throws IOException {
+        write(fileSetId, "image.webp", "WEBP");
+        write(fileSetId, "image.png", "PNG");
+
+        imageStore.move(fileSetId, otherFileSetId);
+
+        assertFalse(imageStore.exists(fileSetId));
+        assertEquals("WEBP", read(imageStore.read(otherFileSetId, "image.webp")));
+        assertEquals("PNG", read(imageStore.read(otherFileSetId, "image.png")));
+    }
+
+    /**
+     * Tests whether all file sets are listed with the size of their files.
+     */
+    @Test
+    void listTest() throws IOException {
+        long writtenAt = System.currentTimeMillis();
+
+        write(fileSetId, "image.webp", "WEBP");
+        write(fileSetId, "image.png", "PNG");
+        write(otherFileSetId, "image.webp", "OTHER");
+
+        List<FileSet> fileSets;
+
+        // The store may hold file sets of other tests as well.
+        try (Stream<FileSet> listedFileSets = imageStore.list()) {
+            fileSets = listedFileSets
+                    .filter(fileSet -> fileSet.id().equals(fileSetId) || fileSet.id().equals(otherFileSetId))
+                    .toList();
+        }
+
+        assertEquals(2, fileSets.size());
+
+        FileSet fileSet = fileSets.stream().filter(listedFileSet -> listedFileSet.id().equals(fileSetId)).findFirst().orElseThrow();
+        assertEquals(7, fileSet.size());
+        // Some stores keep modification times in seconds only.
+        assertTrue(fileSet.lastModified() >= writtenAt - 1000);
+    }
+
+    // NEGATIVE TESTS
+
+    /**
+     * Tests whether missing files and file sets are reported.
+     */
+    @Test
+    void missingFileTest() {
+        assertThrows(NoSuchFileException.class, () -> imageStore.read(fileSetId, "image.webp"));
+        assertThrows(NoSuchFileException.class, () -> imageStore.deleteAll(fileSetId));
+        assertThrows(NoSuchFileException.class, () -> imageStore.move(fileSetId, otherFileSetId));
+    }
+
+    protected void write(String id, String fileName, String content) throws IOException {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        imageStore.write(id, fileName, new ByteArrayInputStream(bytes), bytes.length);
+    }
+
+    protected String read(ImageFile imageFile) throws IOException {
+        try (InputStream inputStream = imageFile.content().getInputStream()) {
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.mealtiger.backend.imageio.store;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * This class tests the S3ImageStore against an S3-compatible object storage, e.g. a local MinIO:
+ * <pre>
+ * docker run -p 9000:9000 -e MINIO_ROOT_USER=minioadmin -e MINIO_ROOT_PASSWORD=minioadmin minio/minio server /data
+ * </pre>
+ * The tests only run if S3_ENDPOINT is set. The bucket named by S3_BUCKET, images by default, has to exist.
+ */
+@Tag("integration")
+@EnabledIfEnvironmentVariable(named = "S3_ENDPOINT", matches = ".+")
+class S3ImageStoreTest extends ImageStoreTest {
+
+    @Override
+    protected ImageStore createImageStore() {
+        return new S3ImageStore(URI.create(System.getenv("S3_ENDPOINT")),
+                Objects.requireNonNullElse(System.getenv("S3_REGION"), "us-east-1"),
+                Objects.requireNonNullElse(System.getenv("S3_BUCKET"), "images"),
+                Objects.requireNonNullElse(System.getenv("S3_ACCESS_KEY"), "minioadmin"),
+                Objects.requireNonNullElse(System.getenv("S3_SECRET_KEY"), "minioadmin"),
+                Duration.ofSeconds(10));
+    }
+}
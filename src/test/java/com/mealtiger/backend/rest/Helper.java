@@ -1,5 +1,14 @@
 package com.mealtiger.backend.rest;
 
+import com.mealtiger.backend.database.model.image_metadata.validation.ImageArrayValidator;
+import com.mealtiger.backend.database.model.image_metadata.validation.ImageExistenceCache;
+import com.mealtiger.backend.database.model.image_metadata.validation.ImageValidator;
+import jakarta.validation.Configuration;
+import jakarta.validation.ConstraintValidator;
+import jakarta.validation.ConstraintValidatorFactory;
+import jakarta.validation.Validation;
+import jakarta.validation.ValidatorFactory;
+
 import java.io.IOException;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
@@ -35,4 +44,34 @@ public class Helper {
         );
     }
 
+    /**
+     * Builds a validator factory outside of Spring. The image validators, which are injected by Spring otherwise,
+     * look up images in the given cache.
+     * @param imageExistenceCache Cache looking up the images.
+     * @return Validator factory.
+     */
+    public static ValidatorFactory buildValidatorFactory(ImageExistenceCache imageExistenceCache) {
+        Configuration<?> configuration = Validation.byDefaultProvider().configure();
+        ConstraintValidatorFactory defaultFactory = configuration.getDefaultConstraintValidatorFactory();
+
+        return configuration.constraintValidatorFactory(new ConstraintValidatorFactory() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T extends ConstraintValidator<?, ?>> T getInstance(Class<T> key) {
+                if (key == ImageValidator.class) {
+                    return (T) new ImageValidator(imageExistenceCache);
+                }
+                if (key == ImageArrayValidator.class) {
+                    return (T) new ImageArrayValidator(imageExistenceCache);
+                }
+                return defaultFactory.getInstance(key);
+            }
+
+            @Override
+            public void releaseInstance(ConstraintValidator<?, ?> instance) {
+                defaultFactory.releaseInstance(instance);
+            }
+        }).buildValidatorFactory();
+    }
+
 }
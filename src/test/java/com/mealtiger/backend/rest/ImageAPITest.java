@@ -3,6 +3,8 @@ package com.mealtiger.backend.rest;
 import com.mealtiger.backend.BackendApplication;
 import com.mealtiger.backend.configuration.Configurator;
 import com.mealtiger.backend.database.repository.ImageMetadataRepository;
+import com.mealtiger.backend.imageio.ImageConversionScheduler;
+import com.mealtiger.backend.imageio.store.ImageStore;
 import com.mealtiger.backend.rest.controller.ImageIOController;
 import com.mealtiger.backend.rest.error_handling.exceptions.UploadException;
 import org.junit.jupiter.api.AfterEach;
@@ -15,7 +17,11 @@ import org.mockito.Answers;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
-import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockReset;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Primary;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.test.context.support.WithMockUser;
@@ -32,6 +38,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Objects;
 import java.util.UUID;
 import java.util.stream.Stream;
@@ -39,7 +46,12 @@ import java.util.stream.Stream;
 import static com.mealtiger.backend.SampleSource.SAMPLE_IMAGE_ID;
 import static com.mealtiger.backend.SampleSource.SAMPLE_OTHER_USER_ID;
 import static com.mealtiger.backend.SampleSource.SAMPLE_USER_ID;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.matchesPattern;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -54,8 +66,11 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
         classes = {BackendApplication.class}
 )
 @AutoConfigureMockMvc
+@Import(ImageAPITest.ConfiguratorConfiguration.class)
 @Tag("integration")
 class ImageAPITest {
+
+    private static final String SERVED_IMAGE_MEDIA_TYPES = "image/png;q=1.0,image/jpeg;q=1.0,image/bmp;q=1.0,image/webp;q=1.0,image/gif;q=1.0";
     
     @Autowired
     private WebApplicationContext webApplicationContext;
@@ -66,12 +81,31 @@ class ImageAPITest {
     @Autowired
     private ImageMetadataRepository imageMetadataRepository;
 
+    @Autowired
+    private ImageStore imageStore;
+
     @Autowired
     private MockMvc mvc;
 
-    @MockBean(answer = Answers.CALLS_REAL_METHODS)
+    @Autowired
     private Configurator configurator;
 
+    /**
+     * Provides the configurator stubbed by the tests. The served media types are parsed once when the context starts,
+     * thus they are stubbed before any test runs.
+     */
+    @TestConfiguration
+    static class ConfiguratorConfiguration {
+
+        @Bean
+        @Primary
+        Configurator stubbedConfigurator() {
+            Configurator configurator = mock(Configurator.class, MockReset.withSettings(MockReset.AFTER).defaultAnswer(Answers.CALLS_REAL_METHODS));
+            doReturn(SERVED_IMAGE_MEDIA_TYPES).when(configurator).getString("Image.servedImageMediaTypes");
+            return configurator;
+        }
+    }
+
     /**
      * Deletes all images created in tests.
      */
@@ -92,7 +126,6 @@ class ImageAPITest {
     @ParameterizedTest
     @MethodSource("fileStream")
     void postImageTest(File inputFile) throws Exception {
-        when(configurator.getString("Image.servedImageMediaTypes")).thenReturn("image/png;q=1.0,image/jpeg;q=1.0,image/bmp;q=1.0,image/webp;q=1.0,image/gif;q=1.0");
         when(configurator.getString("Image.servedImageFormats")).thenReturn("png,jpeg,gif,webp,bmp");
 
         MockMultipartFile file;
@@ -111,13 +144,43 @@ class ImageAPITest {
                 .andExpect(content().string(matchesPattern("\"[a-f0-9]{8}-[a-f0-9]{4}-4[a-f0-9]{3}-[89aAbB][a-f0-9]{3}-[a-f0-9]{12}\"")));
     }
 
+    /**
+     * Tests posting single images as raw request body.
+     */
+    @WithMockUser("123e4567-e89b-12d3-a456-42661417400")
+    @Test
+    void postRawImageTest() throws Exception {
+        when(configurator.getString("Image.servedImageFormats")).thenReturn("png,jpeg,gif,webp,bmp");
+
+        byte[] input;
+
+        try (InputStream inputStream = Objects.requireNonNull(this.getClass().getClassLoader().getResourceAsStream("com/mealtiger/backend/imageio/testImages/DefaultTestImage/TestImage.jpg"))) {
+            input = inputStream.readAllBytes();
+        }
+
+        MvcResult result = mvc.perform(post("/image/raw")
+                        .contentType(MediaType.IMAGE_JPEG)
+                        .content(input)
+                )
+                .andExpect(status().isCreated())
+                .andExpect(header().exists("Location"))
+                .andExpect(content().string(matchesPattern("\"[a-f0-9]{8}-[a-f0-9]{4}-4[a-f0-9]{3}-[89aAbB][a-f0-9]{3}-[a-f0-9]{12}\"")))
+                .andReturn();
+
+        String uuid = result.getResponse().getContentAsString().replace("\"", "");
+
+        mvc.perform(get("/image/" + uuid)
+                        .header("Accept", "image/png"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.IMAGE_PNG));
+    }
+
     /**
      * Tests posting multiple images.
      */
     @WithMockUser("123e4567-e89b-12d3-a456-42661417400")
     @Test
     void postImagesTest() throws Exception {
-        when(configurator.getString("Image.servedImageMediaTypes")).thenReturn("image/png;q=1.0,image/jpeg;q=1.0,image/bmp;q=1.0,image/webp;q=1.0,image/gif;q=1.0");
         when(configurator.getString("Image.servedImageFormats")).thenReturn("png,jpeg,gif,webp,bmp");
 
         MockMultipartFile file1;
@@ -140,7 +203,47 @@ class ImageAPITest {
                         .file(file2)
                 )
                 .andExpect(status().isCreated())
-                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.length()").value(2));
+
+        assertEquals(2, imageMetadataRepository.count());
+    }
+
+    /**
+     * Tests posting single images asynchronously.
+     */
+    @WithMockUser("123e4567-e89b-12d3-a456-42661417400")
+    @Test
+    void postImageAsyncTest() throws Exception {
+        when(configurator.getString("Image.servedImageFormats")).thenReturn("png,jpeg,gif,webp,bmp");
+
+        MockMultipartFile file;
+
+        try (InputStream inputStream = new FileInputStream(fileStream().toList().get(0))) {
+            file = new MockMultipartFile("file", inputStream.readAllBytes());
+        }
+
+        MvcResult result = mvc.perform(multipart("/image")
+                        .file(file)
+                        .param("async", "true")
+                )
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", matchesPattern("/image/[a-f0-9-]{36}/status")))
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.status").value("PROCESSING"))
+                .andReturn();
+
+        String statusUrl = result.getResponse().getHeader("Location");
+        String uuid = Objects.requireNonNull(statusUrl).split("/")[2];
+
+        // The image is served right away, even if its conversion has not finished yet.
+        mvc.perform(get("/image/" + uuid)
+                        .header("Accept", "image/webp"))
+                .andExpect(status().isOk());
+
+        mvc.perform(get(statusUrl))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(uuid));
     }
 
     /**
@@ -148,7 +251,6 @@ class ImageAPITest {
      */
     @Test
     void getImageTest() throws Exception {
-        when(configurator.getString("Image.servedImageMediaTypes")).thenReturn("image/png;q=1.0,image/jpeg;q=1.0,image/bmp;q=1.0,image/webp;q=1.0,image/gif;q=1.0");
         when(configurator.getString("Image.servedImageFormats")).thenReturn("png,jpeg,gif,webp,bmp");
 
         File inputFile = fileStream().toList().get(0);
@@ -159,13 +261,74 @@ class ImageAPITest {
                 .andExpect(status().isOk());
     }
 
+    /**
+     * Tests conditional and range requests of images.
+     */
+    @Test
+    void getImageConditionalRangeTest() throws Exception {
+        when(configurator.getString("Image.servedImageFormats")).thenReturn("png,jpeg,gif,webp,bmp");
+
+        File inputFile = fileStream().toList().get(0);
+        saveImage(inputFile, SAMPLE_IMAGE_ID, SAMPLE_USER_ID);
+
+        MvcResult result = mvc.perform(get("/image/" + SAMPLE_IMAGE_ID)
+                        .header("Accept", "image/png"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andExpect(header().string("Cache-Control", containsString("immutable")))
+                .andExpect(header().string("Vary", "Accept"))
+                .andExpect(header().string("Accept-Ranges", "bytes"))
+                .andReturn();
+
+        String eTag = result.getResponse().getHeader("ETag");
+        byte[] image = result.getResponse().getContentAsByteArray();
+
+        mvc.perform(get("/image/" + SAMPLE_IMAGE_ID)
+                        .header("Accept", "image/png")
+                        .header("If-None-Match", eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().bytes(new byte[0]));
+
+        mvc.perform(get("/image/" + SAMPLE_IMAGE_ID)
+                        .header("Accept", "image/png")
+                        .header("Range", "bytes=0-7"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Range", "bytes 0-7/" + image.length))
+                .andExpect(content().bytes(Arrays.copyOfRange(image, 0, 8)));
+    }
+
+    /**
+     * Tests getting variants of images.
+     */
+    @Test
+    void getImageVariantTest() throws Exception {
+        when(configurator.getString("Image.servedImageFormats")).thenReturn("png,jpeg,gif,webp,bmp");
+        when(configurator.getString("Image.servedImageVariants")).thenReturn("thumb:320,medium:1024");
+
+        File inputFile = fileStream().toList().get(0);
+        saveImage(inputFile, SAMPLE_IMAGE_ID, SAMPLE_USER_ID);
+
+        mvc.perform(get("/image/" + SAMPLE_IMAGE_ID)
+                        .param("variant", "thumb")
+                        .header("Accept", "image/webp"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("image/webp"));
+
+        mvc.perform(get("/image/" + SAMPLE_IMAGE_ID)
+                        .param("w", "300")
+                        .header("Accept", "image/png"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("image/png"));
+
+        assertTrue(imageStore.exists(SAMPLE_IMAGE_ID, "image.thumb.webp"));
+    }
+
     /**
      * Tests getting images using different accept headers.
      */
     @WithMockUser("123e4567-e89b-12d3-a456-42661417400")
     @Test
     void getImageAcceptHeaderTest() throws Exception {
-        when(configurator.getString("Image.servedImageMediaTypes")).thenReturn("image/png;q=1.0,image/jpeg;q=1.0,image/bmp;q=1.0,image/webp;q=1.0,image/gif;q=1.0");
         when(configurator.getString("Image.servedImageFormats")).thenReturn("png,jpeg,gif,webp,bmp");
 
         File inputFile = fileStream().toList().get(0);
@@ -218,7 +381,6 @@ class ImageAPITest {
     @WithMockUser("123e4567-e89b-12d3-a456-42661417400")
     @Test
     void deleteImageTest() throws Exception {
-        when(configurator.getString("Image.servedImageMediaTypes")).thenReturn("image/png;q=1.0,image/jpeg;q=1.0,image/bmp;q=1.0,image/webp;q=1.0,image/gif;q=1.0");
         when(configurator.getString("Image.servedImageFormats")).thenReturn("png,jpeg,gif,webp,bmp");
 
         File inputFile = fileStream().toList().get(0);
@@ -243,6 +405,29 @@ class ImageAPITest {
                 .andExpect(status().isNoContent());
     }
 
+    /**
+     * Tests getting the metadata of several images at once.
+     */
+    @Test
+    void getImageMetadataTest() throws Exception {
+        when(configurator.getString("Image.servedImageFormats")).thenReturn("png");
+
+        File inputFile = fileStream().toList().get(0);
+        saveImage(inputFile, SAMPLE_IMAGE_ID, SAMPLE_USER_ID);
+        BufferedImage image = ImageIO.read(inputFile);
+
+        mvc.perform(get("/images/metadata")
+                        .param("ids", SAMPLE_IMAGE_ID, UUID.randomUUID().toString()))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(SAMPLE_IMAGE_ID))
+                .andExpect(jsonPath("$[0].width").value(image.getWidth()))
+                .andExpect(jsonPath("$[0].height").value(image.getHeight()))
+                .andExpect(jsonPath("$[0].fileSizes.png").isNumber())
+                .andExpect(jsonPath("$[0].placeholder").isString());
+    }
+
     // NEGATIVE TESTS
 
     /**
@@ -251,7 +436,6 @@ class ImageAPITest {
     @WithMockUser("123e4567-e89b-12d3-a456-42661417400")
     @Test
     void negative_400_postImageUnsupportedTypeTest() throws Exception {
-        when(configurator.getString("Image.servedImageMediaTypes")).thenReturn("image/png;q=1.0,image/jpeg;q=1.0,image/bmp;q=1.0,image/webp;q=1.0,image/gif;q=1.0");
         when(configurator.getString("Image.servedImageFormats")).thenReturn("png,jpeg,gif,webp,bmp");
 
         File inputFile = new File(Objects.requireNonNull(this.getClass().getClassLoader().getResource("com/mealtiger/backend/imageio/testImages/DefaultTestImage/TestImage.pdf")).getFile());
@@ -273,6 +457,36 @@ class ImageAPITest {
                 .andExpect(jsonPath("$.path").value("/image"));
     }
 
+    /**
+     * Tests posting a raw request body larger than the maximum file size.
+     */
+    @WithMockUser("123e4567-e89b-12d3-a456-42661417400")
+    @Test
+    void negative_413_postRawImageTest() throws Exception {
+        when(configurator.getString("Image.maxFileSize")).thenReturn("1KB");
+
+        mvc.perform(post("/image/raw")
+                        .contentType(MediaType.IMAGE_JPEG)
+                        .content(new byte[2048])
+                )
+                .andExpect(status().isPayloadTooLarge())
+                .andExpect(jsonPath("$.status").value(413))
+                .andExpect(jsonPath("$.path").value("/image/raw"));
+    }
+
+    /**
+     * Tests posting a raw request body which is not an image.
+     */
+    @WithMockUser("123e4567-e89b-12d3-a456-42661417400")
+    @Test
+    void negative_415_postRawImageTest() throws Exception {
+        mvc.perform(post("/image/raw")
+                        .contentType(MediaType.APPLICATION_PDF)
+                        .content(new byte[16])
+                )
+                .andExpect(status().isUnsupportedMediaType());
+    }
+
     /**
      * Tests posting on "/image" while unauthorized.
      */
@@ -284,11 +498,11 @@ class ImageAPITest {
 
     /**
      * Tests posting multiple files with one of unsupported type. In this case a PDF-Document.
+     * Only the unsupported file is rejected.
      */
     @WithMockUser("123e4567-e89b-12d3-a456-42661417400")
     @Test
     void negative_400_postImagesUnsupportedTypeTest() throws Exception {
-        when(configurator.getString("Image.servedImageMediaTypes")).thenReturn("image/png;q=1.0,image/jpeg;q=1.0,image/bmp;q=1.0,image/webp;q=1.0,image/gif;q=1.0");
         when(configurator.getString("Image.servedImageFormats")).thenReturn("png,jpeg,gif,webp,bmp");
 
         MockMvc mvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
@@ -312,11 +526,59 @@ class ImageAPITest {
                         .file(file1)
                         .file(file2)
                 )
-                .andExpect(status().isBadRequest())
-                .andExpect(content().contentType("application/json"))
-                .andExpect(jsonPath("$.status").value(400))
-                .andExpect(jsonPath("$.error").isString())
-                .andExpect(jsonPath("$.path").value("/images"));
+                .andExpect(status().isMultiStatus())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$[0].status").value(201))
+                .andExpect(jsonPath("$[0].id").isString())
+                .andExpect(jsonPath("$[1].status").value(400))
+                .andExpect(jsonPath("$[1].error").isString())
+                .andExpect(jsonPath("$[1].id").doesNotExist());
+
+        // The supported image is saved nonetheless.
+        assertEquals(1, imageMetadataRepository.count());
+    }
+
+    /**
+     * Tests posting multiple files asynchronously with one of unsupported type. In this case a PDF-Document.
+     * Only the unsupported file is rejected.
+     */
+    @WithMockUser("123e4567-e89b-12d3-a456-42661417400")
+    @Test
+    void negative_400_postImagesAsyncUnsupportedTypeTest() throws Exception {
+        when(configurator.getString("Image.servedImageFormats")).thenReturn("png,jpeg,gif,webp,bmp");
+
+        MockMvc mvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+
+        MockMultipartFile file1;
+        MockMultipartFile file2;
+
+        File inputFile1 = fileStream().toList().get(0);
+        File inputFile2 = new File(Objects.requireNonNull(this.getClass().getClassLoader().getResource("com/mealtiger/backend/imageio/testImages/DefaultTestImage/TestImage.pdf")).getFile());
+
+        try (InputStream inputStream1 = new FileInputStream(inputFile1);
+             InputStream inputStream2 = new FileInputStream(inputFile2)) {
+            byte[] input1 = inputStream1.readAllBytes();
+            file1 = new MockMultipartFile("files", input1);
+
+            byte[] input2 = inputStream2.readAllBytes();
+            file2 = new MockMultipartFile("files", input2);
+        }
+
+        mvc.perform(multipart("/images")
+                        .file(file1)
+                        .file(file2)
+                        .param("async", "true")
+                )
+                .andExpect(status().isMultiStatus())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$[0].status").value(202))
+                .andExpect(jsonPath("$[0].id").isString())
+                .andExpect(jsonPath("$[1].status").value(400))
+                .andExpect(jsonPath("$[1].error").isString())
+                .andExpect(jsonPath("$[1].id").doesNotExist());
+
+        // The supported image is accepted nonetheless.
+        assertEquals(1, imageMetadataRepository.count());
     }
 
     /**
@@ -328,12 +590,36 @@ class ImageAPITest {
                 .andExpect(status().isUnauthorized());
     }
 
+    /**
+     * Tests getting unknown variants of images.
+     */
+    @Test
+    void negative_400_getImageVariantTest() throws Exception {
+        when(configurator.getString("Image.servedImageVariants")).thenReturn("thumb:320,medium:1024");
+
+        mvc.perform(get("/image/" + SAMPLE_IMAGE_ID)
+                        .param("variant", "huge")
+                        .header("Accept", "image/webp"))
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Tests whether bad request (400) is returned when the metadata of too many images is requested.
+     */
+    @Test
+    void negative_400_getImageMetadataTest() throws Exception {
+        String[] ids = Stream.generate(() -> UUID.randomUUID().toString()).limit(101).toArray(String[]::new);
+
+        mvc.perform(get("/images/metadata")
+                        .param("ids", ids))
+                .andExpect(status().isBadRequest());
+    }
+
     /**
      * Tests whether not found (404) is returned when an image does not exist.
      */
     @Test
     void negative_404_getImageTest() throws Exception {
-        when(configurator.getString("Image.servedImageMediaTypes")).thenReturn("image/png;q=1.0,image/jpeg;q=1.0,image/bmp;q=1.0,image/webp;q=1.0,image/gif;q=1.0");
         when(configurator.getString("Image.servedImageFormats")).thenReturn("png,jpeg,gif,webp,bmp");
 
         MockMvc mvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
@@ -354,7 +640,6 @@ class ImageAPITest {
      */
     @Test
     void negative_406_getImageTest() throws Exception {
-        when(configurator.getString("Image.servedImageMediaTypes")).thenReturn("image/png;q=1.0,image/jpeg;q=1.0,image/webp;q=1.0,image/gif;q=1.0");
         when(configurator.getString("Image.servedImageFormats")).thenReturn("png,jpeg,gif,webp,bmp");
 
         MockMvc mvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
@@ -362,7 +647,7 @@ class ImageAPITest {
         String uuid = UUID.randomUUID().toString();
 
         mvc.perform(get("/image/" + uuid)
-                        .header("Accept", "image/bmp"))
+                        .header("Accept", "image/avif"))
                 .andExpect(status().isNotAcceptable())
                 .andExpect(content().contentType("application/json"))
                 .andExpect(jsonPath("$.status").value(406))
@@ -385,7 +670,6 @@ class ImageAPITest {
     @WithMockUser("123e4567-e89b-12d3-a456-42661417400")
     @Test
     void negative_403_deleteImageTest() throws Exception {
-        when(configurator.getString("Image.servedImageMediaTypes")).thenReturn("image/png;q=1.0,image/jpeg;q=1.0,image/bmp;q=1.0,image/webp;q=1.0,image/gif;q=1.0");
         when(configurator.getString("Image.servedImageFormats")).thenReturn("png,jpeg,gif,webp,bmp");
 
         MockMvc mvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
@@ -441,7 +725,7 @@ class ImageAPITest {
      */
     private void saveImage(File file, String uuid, String userId) throws IOException, UploadException {
         BufferedImage image = ImageIO.read(file);
-        imageIOController.saveImage(image, uuid, userId);
+        imageIOController.saveImage(image, uuid, userId, ImageConversionScheduler.Priority.INTERACTIVE);
     }
 
 }
@@ -6,9 +6,12 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mealtiger.backend.BackendApplication;
 import com.mealtiger.backend.SampleSource;
 import com.mealtiger.backend.configuration.Configurator;
+import com.mealtiger.backend.database.model.image_metadata.ImageMetadata;
+import com.mealtiger.backend.database.model.image_metadata.validation.ImageExistenceCache;
 import com.mealtiger.backend.database.model.recipe.Ingredient;
 import com.mealtiger.backend.database.model.recipe.Rating;
 import com.mealtiger.backend.database.model.recipe.Recipe;
+import com.mealtiger.backend.database.repository.ImageMetadataRepository;
 import com.mealtiger.backend.database.repository.RecipeRepository;
 import com.mealtiger.backend.rest.model.recipe.RecipeRequest;
 import com.mealtiger.backend.rest.model.recipe.RecipeResponse;
@@ -57,6 +60,12 @@ class RecipeAPITest {
     @Autowired
     private RecipeRepository recipeRepository;
 
+    @Autowired
+    private ImageMetadataRepository imageMetadataRepository;
+
+    @Autowired
+    private ImageExistenceCache imageExistenceCache;
+
     @Autowired
     private Configurator configurator;
 
@@ -64,6 +73,8 @@ class RecipeAPITest {
     @AfterEach
     void beforeAfterEach() throws IOException {
         recipeRepository.deleteAll();
+        imageMetadataRepository.deleteAll();
+        imageExistenceCache.invalidateAll();
         if(Files.exists(Path.of(configurator.getString("Image.imagePath")))) {
             Helper.deleteFile(Path.of(configurator.getString("Image.imagePath")));
         }
@@ -264,6 +275,41 @@ class RecipeAPITest {
                 .andExpect(content().json(new ObjectMapper().writer().writeValueAsString(testRecipeResponse)));
     }
 
+    /**
+     * Tests embedding the metadata of the images of recipes.
+     */
+    @Test
+    void getRecipesEmbedImagesTest() throws Exception {
+        String imageId = SampleSource.getSampleUUIDs().get(0);
+
+        ImageMetadata imageMetadata = new ImageMetadata(imageId, SAMPLE_USER_ID);
+        imageMetadata.setWidth(800);
+        imageMetadata.setHeight(600);
+        imageMetadataRepository.save(imageMetadata);
+
+        Recipe testRecipe = SampleSource.getSampleRecipes(1).get(0);
+        testRecipe.setImages(new UUID[]{UUID.fromString(imageId)});
+        recipeRepository.save(testRecipe);
+
+        String id = recipeRepository.findAll().get(0).getId();
+
+        mvc.perform(get("/recipes")
+                        .param("embed", "images"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.recipes[0].imageMetadata['" + imageId + "'].width").value(800))
+                .andExpect(jsonPath("$.recipes[0].imageMetadata['" + imageId + "'].height").value(600));
+
+        mvc.perform(get("/recipes/" + id)
+                        .param("embed", "images"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imageMetadata['" + imageId + "'].width").value(800));
+
+        // Nothing is embedded unless requested.
+        mvc.perform(get("/recipes/" + id))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imageMetadata").doesNotExist());
+    }
+
     /**
      * Testing the query parameter
      */
@@ -383,7 +429,7 @@ class RecipeAPITest {
     void postRecipeWithImageTest() throws Exception {
         UUID imageUUID = UUID.fromString(SampleSource.getSampleUUIDs().get(0));
 
-        Files.createDirectories(Path.of(configurator.getString("Image.imagePath"), imageUUID.toString()));
+        imageMetadataRepository.save(new ImageMetadata(imageUUID.toString(), SAMPLE_USER_ID));
 
         RecipeRequest testRecipe = new RecipeRequest();
         testRecipe.setTitle("Gebrannte Mandeln");
@@ -542,6 +588,18 @@ class RecipeAPITest {
                 .andExpect(jsonPath("$.path").value("/recipes?page=15"));
     }
 
+    /**
+     * Tests whether bad request (400) is returned when anything else than images is to be embedded.
+     */
+    @Test
+    void negative_400_getEmbedTest() throws Exception {
+        recipeRepository.save(SampleSource.getSampleRecipes(1).get(0));
+
+        mvc.perform(get("/recipes")
+                        .param("embed", "ratings"))
+                .andExpect(status().isBadRequest());
+    }
+
     /**
      * Testing a 404 error on a wrong ID.
      */
@@ -5,6 +5,7 @@ import com.mealtiger.backend.BackendApplication;
 import com.mealtiger.backend.SampleSource;
 import com.mealtiger.backend.configuration.Configurator;
 import com.mealtiger.backend.database.model.image_metadata.ImageMetadata;
+import com.mealtiger.backend.database.model.image_metadata.validation.ImageExistenceCache;
 import com.mealtiger.backend.database.model.recipe.Ingredient;
 import com.mealtiger.backend.database.model.recipe.Rating;
 import com.mealtiger.backend.database.model.recipe.Recipe;
@@ -63,6 +64,9 @@ class UserAPITest {
     @Autowired
     private ImageMetadataRepository imageMetadataRepository;
 
+    @Autowired
+    private ImageExistenceCache imageExistenceCache;
+
     @Autowired
     private UserMetadataRepository userMetadataRepository;
 
@@ -75,6 +79,7 @@ class UserAPITest {
         recipeRepository.deleteAll();
         userMetadataRepository.deleteAll();
         imageMetadataRepository.deleteAll();
+        imageExistenceCache.invalidateAll();
         if(Files.exists(Path.of(configurator.getString("Image.imagePath")))) {
             Helper.deleteFile(Path.of(configurator.getString("Image.imagePath")));
         }
@@ -97,7 +102,7 @@ class UserAPITest {
 
         userMetadataRepository.deleteAll();
         userMetadataRepository.save(new UserMetadata(SAMPLE_USER_ID, "SampleUsername", SAMPLE_IMAGE_ID));
-        Files.createDirectories(Path.of(configurator.getString("Image.imagePath"), SAMPLE_IMAGE_ID));
+        imageMetadataRepository.save(new ImageMetadata(SAMPLE_IMAGE_ID, SAMPLE_USER_ID));
 
         mvc.perform(get("/user"))
                 .andExpect(status().isOk())
@@ -113,7 +118,7 @@ class UserAPITest {
     @Test
     @WithMockUser("123e4567-e89b-12d3-a456-42661417400")
     void postUserInformationTest() throws Exception {
-        Files.createDirectories(Path.of(configurator.getString("Image.imagePath"), SAMPLE_IMAGE_ID));
+        imageMetadataRepository.save(new ImageMetadata(SAMPLE_IMAGE_ID, SAMPLE_USER_ID));
         UserInformationRequest userInformationRequest = new UserInformationRequest("SampleUsername", null);
 
         mvc.perform(post("/user")
@@ -169,7 +174,7 @@ class UserAPITest {
     @Test
     @WithMockUser("123e4567-e89b-12d3-a456-42661417400")
     void putUserInformationTest() throws Exception {
-        Files.createDirectories(Path.of(configurator.getString("Image.imagePath"), SAMPLE_IMAGE_ID));
+        imageMetadataRepository.save(new ImageMetadata(SAMPLE_IMAGE_ID, SAMPLE_USER_ID));
         UserInformationRequest userInformationRequest = new UserInformationRequest("SampleUsername", null);
 
         mvc.perform(put("/user")
@@ -378,7 +383,7 @@ class UserAPITest {
 
         userMetadataRepository.deleteAll();
         userMetadataRepository.save(new UserMetadata(SAMPLE_USER_ID, "SampleUsername", SAMPLE_IMAGE_ID));
-        Files.createDirectories(Path.of(configurator.getString("Image.imagePath"), SAMPLE_IMAGE_ID));
+        imageMetadataRepository.save(new ImageMetadata(SAMPLE_IMAGE_ID, SAMPLE_USER_ID));
 
         mvc.perform(get("/user/" + SAMPLE_USER_ID))
                 .andExpect(status().isOk())
@@ -1,16 +1,42 @@
 package com.mealtiger.backend.rest.controller;
 
+import com.mealtiger.backend.SampleSource;
 import com.mealtiger.backend.UnitTestConfigSetup;
 import com.mealtiger.backend.configuration.Configurator;
+import com.mealtiger.backend.database.filter.ExistenceFilter;
+import com.mealtiger.backend.database.lease.LeaseManager;
+import com.mealtiger.backend.database.model.image_metadata.ImageConversionJob;
 import com.mealtiger.backend.database.model.image_metadata.ImageMetadata;
+import com.mealtiger.backend.database.model.image_metadata.validation.ImageExistenceCache;
+import com.mealtiger.backend.database.model.lease.Lease;
+import com.mealtiger.backend.database.repository.ImageConversionJobRepository;
 import com.mealtiger.backend.database.repository.ImageMetadataRepository;
+import com.mealtiger.backend.imageio.ImageCache;
+import com.mealtiger.backend.imageio.ImageConversionScheduler;
+import com.mealtiger.backend.imageio.ImageDecoder;
+import com.mealtiger.backend.imageio.ImageMemoryBudget;
 import com.mealtiger.backend.imageio.adapters.*;
+import com.mealtiger.backend.imageio.store.FileSystemImageStore;
+import com.mealtiger.backend.imageio.store.ImageStoreLayout;
 import com.mealtiger.backend.rest.Helper;
 import com.mealtiger.backend.rest.error_handling.exceptions.EntityNotFoundException;
+import com.mealtiger.backend.rest.error_handling.exceptions.ImageTooLargeException;
+import com.mealtiger.backend.rest.error_handling.exceptions.InvalidRequestFormatException;
+import com.mealtiger.backend.rest.error_handling.exceptions.ServiceUnavailableException;
 import com.mealtiger.backend.rest.error_handling.exceptions.UploadException;
+import com.mealtiger.backend.rest.model.Response;
+import com.mealtiger.backend.rest.model.image.ImageConversionJobResponse;
+import com.mealtiger.backend.rest.model.image.ImageMetadataResponse;
+import com.mealtiger.backend.rest.model.image.ImageUploadResponse;
+import com.mealtiger.backend.rest.model.recipe.RecipeResponse;
+import com.mealtiger.backend.rest.model.user.UserInformationResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.*;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoSettings;
+import org.springframework.core.io.Resource;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -21,15 +47,24 @@ import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.*;
 
 import static com.mealtiger.backend.SampleSource.SAMPLE_IMAGE_ID;
+import static com.mealtiger.backend.SampleSource.SAMPLE_OTHER_USER_ID;
 import static com.mealtiger.backend.SampleSource.SAMPLE_USER_ID;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -52,6 +87,20 @@ class ImageIOControllerTest {
     private WebPAdapter webPAdapter;
     @Mock
     private ImageMetadataRepository imageMetadataRepository;
+    @Mock
+    private ImageConversionJobRepository imageConversionJobRepository;
+    @Mock
+    private ImageCache imageCache;
+    @Mock
+    private ImageExistenceCache imageExistenceCache;
+    @Mock
+    private ExistenceFilter existenceFilter;
+    @Mock
+    private MongoOperations mongoOperations;
+
+    private ImageConversionScheduler conversionScheduler;
+    private ImageDecoder imageDecoder;
+    private ImageMemoryBudget memoryBudget;
 
     @BeforeEach
     @AfterEach
@@ -63,6 +112,22 @@ class ImageIOControllerTest {
         }
     }
 
+    @BeforeEach
+    void setupScheduler() {
+        conversionScheduler = new ImageConversionScheduler(new Configurator());
+        memoryBudget = new ImageMemoryBudget(new Configurator(), new SimpleMeterRegistry());
+        imageDecoder = new ImageDecoder(new Configurator(), memoryBudget);
+        // All images pass the existence filter, unless a test stubs otherwise.
+        lenient().when(existenceFilter.mightExist(eq(ExistenceFilter.Entity.IMAGES), anyString())).thenReturn(true);
+        // The served media types are parsed when the controller is created. All of them are served, unless a test stubs otherwise.
+        lenient().when(configurator.getString("Image.servedImageMediaTypes")).thenReturn("image/png;q=1.0,image/jpeg;q=1.0,image/bmp;q=1.0,image/webp;q=1.0,image/gif;q=1.0");
+    }
+
+    @AfterEach
+    void teardownScheduler() {
+        conversionScheduler.shutdown();
+    }
+
     @BeforeAll
     static void beforeAll() {
         UnitTestConfigSetup.setupConfigs();
@@ -73,23 +138,6 @@ class ImageIOControllerTest {
         UnitTestConfigSetup.teardownConfigs();
     }
 
-    /**
-     * Tests reading images.
-     */
-    @Test
-    void readImageTest() throws IOException {
-        when(configurator.getString("Image.imagePath")).thenReturn("testImages/");
-
-        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository);
-
-        MockMultipartFile multipartFile = spy(new MockMultipartFile("file", this.getClass().getClassLoader().getResourceAsStream("com/mealtiger/backend/imageio/testImages/DefaultTestImage/TestImage.jpg")));
-        BufferedImage image = controller.readImage(multipartFile);
-
-        verify(multipartFile).getBytes();
-        assertNotEquals(0, image.getHeight());
-        assertNotEquals(0, image.getWidth());
-    }
-
     /**
      * Tests saving images.
      */
@@ -98,7 +146,7 @@ class ImageIOControllerTest {
         when(configurator.getString("Image.servedImageFormats")).thenReturn("png,jpeg,gif,webp,bmp");
         when(configurator.getString("Image.imagePath")).thenReturn("testImages/");
 
-        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository);
+        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository, imageConversionJobRepository, conversionScheduler, imageDecoder, imageCache, imageExistenceCache, existenceFilter, new FileSystemImageStore(configurator), new LeaseManager(mongoOperations));
 
         BufferedImage image = new BufferedImage(256,256,BufferedImage.TYPE_INT_RGB);
 
@@ -108,7 +156,7 @@ class ImageIOControllerTest {
         when(pngAdapter.convert(any())).thenReturn(new byte[]{});
         when(webPAdapter.convert(any())).thenReturn(new byte[]{});
 
-        controller.saveImage(image, SAMPLE_IMAGE_ID, SAMPLE_USER_ID);
+        controller.saveImage(image, SAMPLE_IMAGE_ID, SAMPLE_USER_ID, ImageConversionScheduler.Priority.INTERACTIVE);
 
         verify(bitmapAdapter).convert(any());
         verify(jpegAdapter).convert(any());
@@ -119,6 +167,265 @@ class ImageIOControllerTest {
         verify(imageMetadataRepository).save(new ImageMetadata(SAMPLE_IMAGE_ID, SAMPLE_USER_ID));
     }
 
+    /**
+     * Tests whether the sizes of the converted files are recorded in the metadata.
+     */
+    @Test
+    void saveImageFileSizesTest() throws IOException, UploadException {
+        when(configurator.getString("Image.servedImageFormats")).thenReturn("png,jpeg");
+        when(configurator.getString("Image.servedImageVariants")).thenReturn("thumb:64");
+        when(configurator.getString("Image.imagePath")).thenReturn("testImages/");
+
+        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository, imageConversionJobRepository, conversionScheduler, imageDecoder, imageCache, imageExistenceCache, existenceFilter, new FileSystemImageStore(configurator), new LeaseManager(mongoOperations));
+
+        when(jpegAdapter.convert(any())).thenReturn(new byte[10]);
+        when(pngAdapter.convert(any())).thenReturn(new byte[40]);
+
+        controller.saveImage(new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB), SAMPLE_IMAGE_ID, SAMPLE_USER_ID, ImageConversionScheduler.Priority.INTERACTIVE);
+
+        // Only the sizes of the full size files are recorded.
+        verify(imageMetadataRepository).save(argThat(imageMetadata -> imageMetadata.getFileSizes().equals(Map.of("jpeg", 10L, "png", 40L))));
+    }
+
+    /**
+     * Tests whether the dimensions and the placeholder of an image are recorded in the metadata.
+     */
+    @Test
+    void saveImageDescriptionTest() throws IOException, UploadException {
+        when(configurator.getString("Image.servedImageFormats")).thenReturn("png");
+        when(configurator.getString("Image.imagePath")).thenReturn("testImages/");
+
+        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository, imageConversionJobRepository, conversionScheduler, imageDecoder, imageCache, imageExistenceCache, existenceFilter, new FileSystemImageStore(configurator), new LeaseManager(mongoOperations));
+
+        when(pngAdapter.convert(any())).thenReturn(new byte[40]);
+
+        controller.saveImage(new BufferedImage(400, 300, BufferedImage.TYPE_INT_RGB), SAMPLE_IMAGE_ID, SAMPLE_USER_ID, ImageConversionScheduler.Priority.INTERACTIVE);
+
+        verify(imageMetadataRepository).save(argThat(imageMetadata -> imageMetadata.getWidth() == 400
+                && imageMetadata.getHeight() == 300
+                && imageMetadata.getPlaceholder() != null));
+    }
+
+    /**
+     * Tests whether the metadata of several images is looked up at once.
+     */
+    @Test
+    void getImageMetadataTest() {
+        String otherImageId = SampleSource.getSampleUUIDs().get(0);
+        String unknownImageId = SampleSource.getSampleUUIDs().get(1);
+
+        when(configurator.getString("Image.imagePath")).thenReturn("testImages/");
+
+        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository, imageConversionJobRepository, conversionScheduler, imageDecoder, imageCache, imageExistenceCache, existenceFilter, new FileSystemImageStore(configurator), new LeaseManager(mongoOperations));
+
+        ImageMetadata imageMetadata = new ImageMetadata(SAMPLE_IMAGE_ID, SAMPLE_USER_ID, "hash", SAMPLE_IMAGE_ID);
+        imageMetadata.setWidth(400);
+        imageMetadata.setHeight(300);
+
+        when(imageMetadataRepository.findByIdIn(List.of(otherImageId, SAMPLE_IMAGE_ID, unknownImageId)))
+                .thenReturn(List.of(imageMetadata, new ImageMetadata(otherImageId, SAMPLE_USER_ID)));
+
+        Map<String, Response> response = controller.getImageMetadata(List.of(otherImageId, SAMPLE_IMAGE_ID, unknownImageId, SAMPLE_IMAGE_ID));
+
+        // The metadata is returned in the order requested, unknown images are left out.
+        assertEquals(List.of(otherImageId, SAMPLE_IMAGE_ID), List.copyOf(response.keySet()));
+        ImageMetadataResponse imageMetadataResponse = (ImageMetadataResponse) response.get(SAMPLE_IMAGE_ID);
+        assertEquals("hash", imageMetadataResponse.getContentHash());
+        assertEquals(400, imageMetadataResponse.getWidth());
+        assertEquals(300, imageMetadataResponse.getHeight());
+        verify(imageMetadataRepository, times(1)).findByIdIn(any());
+    }
+
+    /**
+     * Tests whether the metadata of the images referenced by several responses is embedded with one lookup.
+     */
+    @Test
+    void embedImageMetadataTest() {
+        String otherImageId = SampleSource.getSampleUUIDs().get(0);
+
+        when(configurator.getString("Image.imagePath")).thenReturn("testImages/");
+
+        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository, imageConversionJobRepository, conversionScheduler, imageDecoder, imageCache, imageExistenceCache, existenceFilter, new FileSystemImageStore(configurator), new LeaseManager(mongoOperations));
+
+        when(imageMetadataRepository.findByIdIn(List.of(SAMPLE_IMAGE_ID, otherImageId)))
+                .thenReturn(List.of(new ImageMetadata(SAMPLE_IMAGE_ID, SAMPLE_USER_ID), new ImageMetadata(otherImageId, SAMPLE_USER_ID)));
+
+        RecipeResponse recipe = new RecipeResponse(null, null, SAMPLE_USER_ID, null, null, 0, 0, new UUID[]{UUID.fromString(SAMPLE_IMAGE_ID)});
+        UserInformationResponse user = new UserInformationResponse(SAMPLE_USER_ID, null, otherImageId);
+        UserInformationResponse userWithoutPicture = new UserInformationResponse(SAMPLE_OTHER_USER_ID, null, null);
+
+        controller.embedImageMetadata("images", List.of(recipe, user, userWithoutPicture));
+
+        assertEquals(Set.of(SAMPLE_IMAGE_ID), recipe.getImageMetadata().keySet());
+        assertEquals(Set.of(otherImageId), user.getImageMetadata().keySet());
+        assertTrue(userWithoutPicture.getImageMetadata().isEmpty());
+        verify(imageMetadataRepository, times(1)).findByIdIn(any());
+
+        // Nothing is looked up if nothing is to be embedded.
+        RecipeResponse notEmbedded = new RecipeResponse(null, null, SAMPLE_USER_ID, null, null, 0, 0, new UUID[]{UUID.fromString(SAMPLE_IMAGE_ID)});
+        controller.embedImageMetadata(null, List.of(notEmbedded));
+        assertNull(notEmbedded.getImageMetadata());
+        verifyNoMoreInteractions(imageMetadataRepository);
+    }
+
+    /**
+     * Tests whether the formats already written are deleted if another format fails.
+     */
+    @Test
+    void saveImageFailureTest() throws IOException {
+        when(configurator.getString("Image.servedImageFormats")).thenReturn("png,webp");
+        when(configurator.getString("Image.imagePath")).thenReturn("testImages/");
+
+        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository, imageConversionJobRepository, conversionScheduler, imageDecoder, imageCache, imageExistenceCache, existenceFilter, new FileSystemImageStore(configurator), new LeaseManager(mongoOperations));
+
+        BufferedImage image = new BufferedImage(256,256,BufferedImage.TYPE_INT_RGB);
+        Path imageDirectory = Path.of("testImages/" + SAMPLE_IMAGE_ID);
+
+        lenient().when(pngAdapter.convert(any())).thenReturn(new byte[]{1});
+        when(webPAdapter.convert(any())).thenAnswer(invocation -> {
+            // PNG is written before WebP fails.
+            for (int i = 0; i < 100 && !Files.exists(imageDirectory.resolve("image.png")); i++) {
+                Thread.sleep(50);
+            }
+            throw new IOException("Encoding failed");
+        });
+
+        assertThrows(UploadException.class, () -> controller.saveImage(image, SAMPLE_IMAGE_ID, SAMPLE_USER_ID, ImageConversionScheduler.Priority.INTERACTIVE));
+
+        assertFalse(Files.exists(imageDirectory));
+        verify(imageMetadataRepository, never()).save(any());
+    }
+
+    /**
+     * Tests saving multiple images at once.
+     */
+    @Test
+    void saveImagesTest() throws IOException, UploadException {
+        when(configurator.getString("Image.servedImageFormats")).thenReturn("png,webp");
+        when(configurator.getString("Image.imagePath")).thenReturn("testImages/");
+
+        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository, imageConversionJobRepository, conversionScheduler, imageDecoder, imageCache, imageExistenceCache, existenceFilter, new FileSystemImageStore(configurator), new LeaseManager(mongoOperations));
+
+        when(pngAdapter.convert(any())).thenReturn("PNG".getBytes());
+        when(webPAdapter.convert(any())).thenReturn("WEBP".getBytes());
+
+        List<ImageUploadResponse> results = controller.saveImages(List.of(getTestImageFile(), getTestImageFile()), SAMPLE_USER_ID, ImageConversionScheduler.Priority.BULK);
+        List<String> uuids = results.stream().map(ImageUploadResponse::getId).toList();
+
+        assertEquals(2, uuids.size());
+        assertTrue(results.stream().allMatch(result -> result.getStatus() == 201));
+        assertTrue(Files.exists(Path.of("testImages/" + uuids.get(0) + "/image.png")));
+        assertTrue(Files.exists(Path.of("testImages/" + uuids.get(0) + "/image.webp")));
+
+        // Identical files of the same upload are converted only once.
+        verify(pngAdapter, times(1)).convert(any());
+        verify(webPAdapter, times(1)).convert(any());
+        verify(imageMetadataRepository).saveAll(List.of(
+                new ImageMetadata(uuids.get(0), SAMPLE_USER_ID, getTestImageHash(), uuids.get(0)),
+                new ImageMetadata(uuids.get(1), SAMPLE_USER_ID, getTestImageHash(), uuids.get(0))));
+
+        // The memory of the images is returned once they are saved.
+        assertEquals(0, memoryBudget.getUsedBytes());
+    }
+
+    /**
+     * Tests whether a rejected file of a batch does not prevent the other files from being saved.
+     */
+    @Test
+    void saveImagesRejectedFileTest() throws IOException {
+        when(configurator.getString("Image.servedImageFormats")).thenReturn("png");
+        when(configurator.getString("Image.servedImageVariants")).thenReturn("");
+        when(configurator.getString("Image.imagePath")).thenReturn("testImages/");
+
+        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository, imageConversionJobRepository, conversionScheduler, imageDecoder, imageCache, imageExistenceCache, existenceFilter, new FileSystemImageStore(configurator), new LeaseManager(mongoOperations));
+
+        when(pngAdapter.convert(any())).thenReturn("PNG".getBytes());
+
+        MockMultipartFile unsupportedFile = new MockMultipartFile("files", "NOT AN IMAGE".getBytes());
+        List<ImageUploadResponse> results = controller.saveImages(List.of(unsupportedFile, getTestImageFile()), SAMPLE_USER_ID, ImageConversionScheduler.Priority.BULK);
+
+        assertEquals(400, results.get(0).getStatus());
+        assertNull(results.get(0).getId());
+        assertNotNull(results.get(0).getError());
+
+        String uuid = results.get(1).getId();
+        assertEquals(201, results.get(1).getStatus());
+        assertTrue(Files.exists(Path.of("testImages/" + uuid + "/image.png")));
+        verify(imageMetadataRepository).saveAll(List.of(new ImageMetadata(uuid, SAMPLE_USER_ID, getTestImageHash(), uuid)));
+    }
+
+    /**
+     * Tests saving only the originals of multiple images at once.
+     */
+    @Test
+    void saveOriginalImagesTest() throws IOException {
+        when(configurator.getBoolean("Image.Processing.lazyConversion")).thenReturn(true);
+        when(configurator.getString("Image.imagePath")).thenReturn("testImages/");
+
+        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository, imageConversionJobRepository, conversionScheduler, imageDecoder, imageCache, imageExistenceCache, existenceFilter, new FileSystemImageStore(configurator), new LeaseManager(mongoOperations));
+
+        when(configurator.getInteger("Image.Processing.batchParallelism")).thenReturn(2);
+
+        MockMultipartFile unsupportedFile = new MockMultipartFile("files", "NOT AN IMAGE".getBytes());
+        List<ImageUploadResponse> results = controller.saveImages(List.of(getTestImageFile(), unsupportedFile, getTestImageFile()), SAMPLE_USER_ID, ImageConversionScheduler.Priority.BULK);
+
+        assertEquals(List.of(201, 400, 201), results.stream().map(ImageUploadResponse::getStatus).toList());
+        assertTrue(Files.exists(Path.of("testImages/" + results.get(0).getId() + "/image.original")));
+        assertTrue(Files.exists(Path.of("testImages/" + results.get(2).getId() + "/image.original")));
+        verify(imageMetadataRepository, times(2)).save(any());
+        verifyNoInteractions(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter);
+
+        controller.shutdown();
+    }
+
+    /**
+     * Tests saving images uploaded as raw request body.
+     */
+    @Test
+    void saveRawImageTest() throws IOException, UploadException {
+        when(configurator.getString("Image.servedImageFormats")).thenReturn("png,webp");
+        when(configurator.getString("Image.imagePath")).thenReturn("testImages/");
+        when(configurator.getString("Image.maxFileSize")).thenReturn("5MB");
+
+        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository, imageConversionJobRepository, conversionScheduler, imageDecoder, imageCache, imageExistenceCache, existenceFilter, new FileSystemImageStore(configurator), new LeaseManager(mongoOperations));
+
+        when(pngAdapter.convert(any())).thenReturn("PNG".getBytes());
+        when(webPAdapter.convert(any())).thenReturn("WEBP".getBytes());
+
+        try (InputStream inputStream = getTestImageFile().getInputStream()) {
+            controller.saveImage(inputStream, SAMPLE_IMAGE_ID, SAMPLE_USER_ID, ImageConversionScheduler.Priority.INTERACTIVE);
+        }
+
+        assertTrue(Files.exists(Path.of("testImages/" + SAMPLE_IMAGE_ID + "/image.png")));
+        assertTrue(Files.exists(Path.of("testImages/" + SAMPLE_IMAGE_ID + "/image.webp")));
+        // The hash covers the whole body, just like for multipart uploads.
+        verify(imageMetadataRepository).save(new ImageMetadata(SAMPLE_IMAGE_ID, SAMPLE_USER_ID, getTestImageHash(), SAMPLE_IMAGE_ID));
+        assertEquals(0, memoryBudget.getUsedBytes());
+    }
+
+    /**
+     * Tests whether raw request bodies exceeding the maximum file size are rejected.
+     */
+    @Test
+    void saveRawImageTooLargeTest() throws IOException {
+        when(configurator.getString("Image.imagePath")).thenReturn("testImages/");
+        when(configurator.getString("Image.maxFileSize")).thenReturn("1KB");
+
+        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository, imageConversionJobRepository, conversionScheduler, imageDecoder, imageCache, imageExistenceCache, existenceFilter, new FileSystemImageStore(configurator), new LeaseManager(mongoOperations));
+
+        try (InputStream inputStream = getTestImageFile().getInputStream()) {
+            assertThrows(ImageTooLargeException.class, () -> controller.saveImage(inputStream, SAMPLE_IMAGE_ID, SAMPLE_USER_ID, ImageConversionScheduler.Priority.INTERACTIVE));
+        }
+
+        try (InputStream inputStream = getTestImageFile().getInputStream()) {
+            assertThrows(ImageTooLargeException.class, () -> controller.saveOriginalImage(inputStream, 100, SAMPLE_IMAGE_ID, SAMPLE_USER_ID));
+        }
+
+        assertFalse(Files.exists(Path.of("testImages/" + SAMPLE_IMAGE_ID)));
+        verifyNoInteractions(imageMetadataRepository, pngAdapter, webPAdapter);
+        assertEquals(0, memoryBudget.getUsedBytes());
+    }
+
     /**
      * Tests getting the best suited image mediatypes with only one given accepted mediatype.
      */
@@ -129,15 +436,94 @@ class ImageIOControllerTest {
 
         createTestImages();
 
-        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository);
-        assertEquals("BMP", getResourceAsString(controller, List.of(MediaType.valueOf("image/bmp"))));
-        assertEquals("JPEG", getResourceAsString(controller, List.of(MediaType.IMAGE_JPEG)));
-        assertEquals("GIF", getResourceAsString(controller, List.of(MediaType.valueOf("image/gif"))));
-        assertEquals("PNG", getResourceAsString(controller, List.of(MediaType.IMAGE_PNG)));
-        assertEquals("WEBP", getResourceAsString(controller, List.of(MediaType.valueOf("image/webp"))));
+        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository, imageConversionJobRepository, conversionScheduler, imageDecoder, imageCache, imageExistenceCache, existenceFilter, new FileSystemImageStore(configurator), new LeaseManager(mongoOperations));
+        assertEquals("BMP", getResourceAsString(controller, "image/bmp"));
+        assertEquals("JPEG", getResourceAsString(controller, "image/jpeg"));
+        assertEquals("GIF", getResourceAsString(controller, "image/gif"));
+        assertEquals("PNG", getResourceAsString(controller, "image/png"));
+        assertEquals("WEBP", getResourceAsString(controller, "image/webp"));
+
+        assertThrowsExactly(HttpMediaTypeNotAcceptableException.class, () -> controller.getBestSuitedImage(SAMPLE_IMAGE_ID, "text/html", null));
+        assertThrowsExactly(HttpMediaTypeNotAcceptableException.class, () -> controller.getBestSuitedImage(SAMPLE_IMAGE_ID, "image/tiff", null));
+    }
+
+    /**
+     * Tests whether images rejected by the existence filter are neither looked up nor read.
+     */
+    @Test
+    void getFilteredImageTest() {
+        when(configurator.getString("Image.imagePath")).thenReturn("testImages/");
+        when(configurator.getString("Image.servedImageMediaTypes")).thenReturn("image/png;q=1.0,image/webp;q=1.0");
+        when(existenceFilter.mightExist(ExistenceFilter.Entity.IMAGES, SAMPLE_IMAGE_ID)).thenReturn(false);
+
+        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository, imageConversionJobRepository, conversionScheduler, imageDecoder, imageCache, imageExistenceCache, existenceFilter, new FileSystemImageStore(configurator), new LeaseManager(mongoOperations));
+
+        assertThrowsExactly(EntityNotFoundException.class, () -> controller.getBestSuitedImage(SAMPLE_IMAGE_ID, "image/webp", null));
+        assertThrowsExactly(EntityNotFoundException.class, () -> controller.getConversionStatus(SAMPLE_IMAGE_ID));
+        assertFalse(controller.doesImageExist(SAMPLE_IMAGE_ID));
+
+        verifyNoInteractions(imageMetadataRepository, imageConversionJobRepository);
+    }
+
+    /**
+     * Tests the caching headers of served images.
+     */
+    @Test
+    void getImageCachingHeadersTest() throws IOException, HttpMediaTypeNotAcceptableException {
+        when(configurator.getString("Image.imagePath")).thenReturn("testImages/");
+        when(configurator.getString("Image.servedImageMediaTypes")).thenReturn("image/png;q=1.0,image/jpeg;q=1.0,image/bmp;q=1.0,image/webp;q=1.0,image/gif;q=1.0");
+
+        createTestImages();
+
+        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository, imageConversionJobRepository, conversionScheduler, imageDecoder, imageCache, imageExistenceCache, existenceFilter, new FileSystemImageStore(configurator), new LeaseManager(mongoOperations));
+
+        HttpHeaders webPHeaders = controller.getBestSuitedImage(SAMPLE_IMAGE_ID, "image/webp", null).getHeaders();
+        HttpHeaders pngHeaders = controller.getBestSuitedImage(SAMPLE_IMAGE_ID, "image/png", null).getHeaders();
+
+        assertNotNull(webPHeaders.getETag());
+        assertFalse(webPHeaders.getETag().startsWith("W/"));
+        assertEquals(webPHeaders.getETag(), controller.getBestSuitedImage(SAMPLE_IMAGE_ID, "image/webp", null).getHeaders().getETag());
+        assertNotEquals(webPHeaders.getETag(), pngHeaders.getETag());
+
+        assertTrue(Objects.requireNonNull(webPHeaders.getCacheControl()).contains("immutable"));
+        assertEquals(List.of(HttpHeaders.ACCEPT), webPHeaders.getVary());
+
+        // Images whose conversion has not finished yet must be revalidated.
+        when(imageConversionJobRepository.findById(SAMPLE_IMAGE_ID)).thenReturn(Optional.of(new ImageConversionJob(SAMPLE_IMAGE_ID, ImageConversionJob.Status.PROCESSING, "image/jpeg")));
+        Files.delete(Path.of("testImages/" + SAMPLE_IMAGE_ID + "/image.webp"));
+
+        HttpHeaders partialHeaders = controller.getBestSuitedImage(SAMPLE_IMAGE_ID, "image/webp,image/png;q=0.8", null).getHeaders();
+        assertEquals("no-cache", partialHeaders.getCacheControl());
+        assertEquals(pngHeaders.getETag(), partialHeaders.getETag());
+    }
+
+    /**
+     * Tests serving images from the image cache.
+     */
+    @Test
+    void getCachedImageTest() throws IOException, HttpMediaTypeNotAcceptableException {
+        when(configurator.getString("Image.imagePath")).thenReturn("testImages/");
+        when(configurator.getString("Image.servedImageMediaTypes")).thenReturn("image/png;q=1.0,image/jpeg;q=1.0,image/bmp;q=1.0,image/webp;q=1.0,image/gif;q=1.0");
+
+        createTestImages();
+
+        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository, imageConversionJobRepository, conversionScheduler, imageDecoder, imageCache, imageExistenceCache, existenceFilter, new FileSystemImageStore(configurator), new LeaseManager(mongoOperations));
+
+        ImageCache.CachedImage cachedImage = new ImageCache.CachedImage(ByteBuffer.wrap("CACHED".getBytes()), "\"cached\"");
+        when(imageCache.get(eq(SAMPLE_IMAGE_ID), anyString())).thenAnswer(invocation -> "image.webp".equals(invocation.getArgument(1)) ? cachedImage : null);
+
+        ResponseEntity<Resource> response = controller.getBestSuitedImage(SAMPLE_IMAGE_ID, "image/webp", null);
+        assertEquals("CACHED", getResourceAsString(response));
+        assertEquals("\"cached\"", response.getHeaders().getETag());
 
-        assertThrowsExactly(HttpMediaTypeNotAcceptableException.class, () -> controller.getBestSuitedImage(SAMPLE_IMAGE_ID, List.of(MediaType.TEXT_HTML)));
-        assertThrowsExactly(HttpMediaTypeNotAcceptableException.class, () -> controller.getBestSuitedImage(SAMPLE_IMAGE_ID, List.of(MediaType.valueOf("image/tiff"))));
+        // Files which are not cached yet are loaded into the cache.
+        assertEquals("PNG", getResourceAsString(controller, "image/png"));
+        verify(imageCache).load(eq(SAMPLE_IMAGE_ID), argThat(imageFile -> imageFile.name().equals("image.png") && imageFile.size() == 3), anyString());
+
+        // Deleted images are removed from the cache.
+        when(imageMetadataRepository.findById(SAMPLE_IMAGE_ID)).thenReturn(Optional.of(new ImageMetadata(SAMPLE_IMAGE_ID, SAMPLE_USER_ID)));
+        controller.deleteImage(SAMPLE_IMAGE_ID, SAMPLE_USER_ID, false);
+        verify(imageCache).invalidate(SAMPLE_IMAGE_ID);
     }
 
     /**
@@ -150,17 +536,19 @@ class ImageIOControllerTest {
 
         createTestImages();
 
-        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository);
+        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository, imageConversionJobRepository, conversionScheduler, imageDecoder, imageCache, imageExistenceCache, existenceFilter, new FileSystemImageStore(configurator), new LeaseManager(mongoOperations));
 
         // CHROME / SAFARI ACCEPT HEADER
         // ALL MEDIATYPES SERVED
-        assertEquals("WEBP", getResourceAsString(controller, MediaType.parseMediaTypes("text/html,application/xhtml+xml,application/xml;q=0.9,image/webp,image/apng,*/*;q=0.8")));
+        assertEquals("WEBP", getResourceAsString(controller, "text/html,application/xhtml+xml,application/xml;q=0.9,image/webp,image/apng,*/*;q=0.8"));
         // ALL BUT WEBP SERVED
         when(configurator.getString("Image.servedImageMediaTypes")).thenReturn("image/png;q=1.0,image/jpeg;q=1.0,image/bmp;q=1.0,image/gif;q=1.0");
-        assertEquals("PNG", getResourceAsString(controller, MediaType.parseMediaTypes("text/html,application/xhtml+xml,application/xml;q=0.9,image/webp,image/apng,*/*;q=0.8")));
+        controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository, imageConversionJobRepository, conversionScheduler, imageDecoder, imageCache, imageExistenceCache, existenceFilter, new FileSystemImageStore(configurator), new LeaseManager(mongoOperations));
+        assertEquals("PNG", getResourceAsString(controller, "text/html,application/xhtml+xml,application/xml;q=0.9,image/webp,image/apng,*/*;q=0.8"));
         // ALL BUT WEBP SERVED, BUT JPEG IS PREFERRED
         when(configurator.getString("Image.servedImageMediaTypes")).thenReturn("image/png;q=0.9,image/jpeg;q=1.0,image/bmp;q=0.9,image/gif;q=0.9");
-        assertEquals("JPEG", getResourceAsString(controller, MediaType.parseMediaTypes("text/html,application/xhtml+xml,application/xml;q=0.9,image/webp,image/apng,*/*;q=0.8")));
+        controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository, imageConversionJobRepository, conversionScheduler, imageDecoder, imageCache, imageExistenceCache, existenceFilter, new FileSystemImageStore(configurator), new LeaseManager(mongoOperations));
+        assertEquals("JPEG", getResourceAsString(controller, "text/html,application/xhtml+xml,application/xml;q=0.9,image/webp,image/apng,*/*;q=0.8"));
     }
 
     /**
@@ -173,17 +561,19 @@ class ImageIOControllerTest {
 
         createTestImages();
 
-        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository);
+        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository, imageConversionJobRepository, conversionScheduler, imageDecoder, imageCache, imageExistenceCache, existenceFilter, new FileSystemImageStore(configurator), new LeaseManager(mongoOperations));
 
         // INTERNET EXPLORER ACCEPT HEADER
         // ALL MEDIATYPES SERVED
-        assertEquals("JPEG", getResourceAsString(controller, MediaType.parseMediaTypes("image/jpeg, application/x-ms-application, image/gif, application/xaml+xml, image/pjpeg, application/x-ms-xbap, application/x-shockwave-flash, application/msword, */*")));
+        assertEquals("JPEG", getResourceAsString(controller, "image/jpeg, application/x-ms-application, image/gif, application/xaml+xml, image/pjpeg, application/x-ms-xbap, application/x-shockwave-flash, application/msword, */*"));
         // ALL BUT JPEG SERVED
         when(configurator.getString("Image.servedImageMediaTypes")).thenReturn("image/png;q=1.0,image/bmp;q=1.0,image/gif;q=1.0");
-        assertEquals("GIF", getResourceAsString(controller, MediaType.parseMediaTypes("image/jpeg, application/x-ms-application, image/gif, application/xaml+xml, image/pjpeg, application/x-ms-xbap, application/x-shockwave-flash, application/msword, */*")));
+        controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository, imageConversionJobRepository, conversionScheduler, imageDecoder, imageCache, imageExistenceCache, existenceFilter, new FileSystemImageStore(configurator), new LeaseManager(mongoOperations));
+        assertEquals("GIF", getResourceAsString(controller, "image/jpeg, application/x-ms-application, image/gif, application/xaml+xml, image/pjpeg, application/x-ms-xbap, application/x-shockwave-flash, application/msword, */*"));
         // ALL BUT WEBP SERVED, BUT PNG IS PREFERRED
         when(configurator.getString("Image.servedImageMediaTypes")).thenReturn("image/png;q=1.0,image/bmp;q=0.9,image/gif;q=0.9");
-        assertEquals("PNG", getResourceAsString(controller, MediaType.parseMediaTypes("image/jpeg, application/x-ms-application, image/gif, application/xaml+xml, image/pjpeg, application/x-ms-xbap, application/x-shockwave-flash, application/msword, */*")));
+        controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository, imageConversionJobRepository, conversionScheduler, imageDecoder, imageCache, imageExistenceCache, existenceFilter, new FileSystemImageStore(configurator), new LeaseManager(mongoOperations));
+        assertEquals("PNG", getResourceAsString(controller, "image/jpeg, application/x-ms-application, image/gif, application/xaml+xml, image/pjpeg, application/x-ms-xbap, application/x-shockwave-flash, application/msword, */*"));
     }
 
     /**
@@ -196,17 +586,412 @@ class ImageIOControllerTest {
 
         createTestImages();
 
-        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository);
+        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository, imageConversionJobRepository, conversionScheduler, imageDecoder, imageCache, imageExistenceCache, existenceFilter, new FileSystemImageStore(configurator), new LeaseManager(mongoOperations));
 
         // FIREFOX ACCEPT HEADER
         // ALL MEDIATYPES SERVED
-        assertEquals("WEBP", getResourceAsString(controller, MediaType.parseMediaTypes("text/html,application/xhtml+xml,application/xml;q=0.9,image/webp,image/apng,*/*;q=0.8")));
+        assertEquals("WEBP", getResourceAsString(controller, "text/html,application/xhtml+xml,application/xml;q=0.9,image/webp,image/apng,*/*;q=0.8"));
         // ALL BUT WEBP SERVED
         when(configurator.getString("Image.servedImageMediaTypes")).thenReturn("image/png;q=1.0,image/jpeg;q=1.0,image/bmp;q=1.0,image/gif;q=1.0");
-        assertEquals("PNG", getResourceAsString(controller, MediaType.parseMediaTypes("text/html,application/xhtml+xml,application/xml;q=0.9,image/avif,image/webp,*/*;q=0.8")));
+        controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository, imageConversionJobRepository, conversionScheduler, imageDecoder, imageCache, imageExistenceCache, existenceFilter, new FileSystemImageStore(configurator), new LeaseManager(mongoOperations));
+        assertEquals("PNG", getResourceAsString(controller, "text/html,application/xhtml+xml,application/xml;q=0.9,image/avif,image/webp,*/*;q=0.8"));
         // ALL BUT WEBP SERVED, BUT JPEG IS PREFERRED
         when(configurator.getString("Image.servedImageMediaTypes")).thenReturn("image/png;q=0.9,image/jpeg;q=1.0,image/bmp;q=0.9,image/gif;q=0.9");
-        assertEquals("JPEG", getResourceAsString(controller, MediaType.parseMediaTypes("text/html,application/xhtml+xml,application/xml;q=0.9,image/avif,image/webp,*/*;q=0.8")));
+        controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository, imageConversionJobRepository, conversionScheduler, imageDecoder, imageCache, imageExistenceCache, existenceFilter, new FileSystemImageStore(configurator), new LeaseManager(mongoOperations));
+        assertEquals("JPEG", getResourceAsString(controller, "text/html,application/xhtml+xml,application/xml;q=0.9,image/avif,image/webp,*/*;q=0.8"));
+    }
+
+    /**
+     * Tests whether the smallest of the formats a client accepts equally is served.
+     */
+    @Test
+    void smallestAcceptedImageTest() throws IOException, HttpMediaTypeNotAcceptableException {
+        when(configurator.getString("Image.imagePath")).thenReturn("testImages/");
+        when(configurator.getString("Image.servedImageMediaTypes")).thenReturn("image/png;q=1.0,image/jpeg;q=1.0,image/webp;q=1.0");
+
+        createTestImages();
+
+        ImageMetadata imageMetadata = new ImageMetadata(SAMPLE_IMAGE_ID, SAMPLE_USER_ID);
+        imageMetadata.setFileSizes(Map.of("png", 4000L, "jpeg", 1000L, "webp", 800L));
+        when(imageMetadataRepository.findById(SAMPLE_IMAGE_ID)).thenReturn(Optional.of(imageMetadata));
+
+        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository, imageConversionJobRepository, conversionScheduler, imageDecoder, imageCache, imageExistenceCache, existenceFilter, new FileSystemImageStore(configurator), new LeaseManager(mongoOperations));
+
+        // PNG and JPEG are accepted equally, but the JPEG file is smaller.
+        assertEquals("JPEG", getResourceAsString(controller, "image/png,image/jpeg"));
+        // WebP is accepted most, even though other formats are accepted as well.
+        assertEquals("WEBP", getResourceAsString(controller, "image/webp,*/*;q=0.8"));
+        // The client's preference outweighs the size.
+        assertEquals("PNG", getResourceAsString(controller, "image/png,image/jpeg;q=0.5"));
+        // The sizes are looked up only once.
+        verify(imageMetadataRepository, times(1)).findById(SAMPLE_IMAGE_ID);
+
+        // A format weighted lower by the server is only served if it is smaller by more than its weight.
+        when(configurator.getString("Image.servedImageMediaTypes")).thenReturn("image/png;q=1.0,image/jpeg;q=0.2");
+        controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository, imageConversionJobRepository, conversionScheduler, imageDecoder, imageCache, imageExistenceCache, existenceFilter, new FileSystemImageStore(configurator), new LeaseManager(mongoOperations));
+        assertEquals("PNG", getResourceAsString(controller, "image/png,image/jpeg"));
+    }
+
+    /**
+     * Tests saving images asynchronously.
+     */
+    @Test
+    void acceptImageTest() throws IOException {
+        when(configurator.getString("Image.servedImageFormats")).thenReturn("png,webp");
+        when(configurator.getString("Image.imagePath")).thenReturn("testImages/");
+
+        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository, imageConversionJobRepository, conversionScheduler, imageDecoder, imageCache, imageExistenceCache, existenceFilter, new FileSystemImageStore(configurator), new LeaseManager(mongoOperations));
+
+        MockMultipartFile multipartFile = new MockMultipartFile("file", this.getClass().getClassLoader().getResourceAsStream("com/mealtiger/backend/imageio/testImages/DefaultTestImage/TestImage.jpg"));
+
+        when(pngAdapter.convert(any())).thenReturn("PNG".getBytes());
+        when(webPAdapter.convert(any())).thenReturn("WEBP".getBytes());
+        when(imageMetadataRepository.existsById(SAMPLE_IMAGE_ID)).thenReturn(true);
+
+        ImageConversionJobResponse response = (ImageConversionJobResponse) controller.acceptImage(multipartFile, SAMPLE_IMAGE_ID, SAMPLE_USER_ID, ImageConversionScheduler.Priority.INTERACTIVE);
+
+        assertEquals(SAMPLE_IMAGE_ID, response.getId());
+        assertEquals("PROCESSING", response.getStatus());
+        assertEquals("/image/" + SAMPLE_IMAGE_ID + "/status", response.getStatusUrl());
+
+        verify(imageConversionJobRepository).save(new ImageConversionJob(SAMPLE_IMAGE_ID, ImageConversionJob.Status.PROCESSING, "image/jpeg"));
+        verify(imageMetadataRepository).save(new ImageMetadata(SAMPLE_IMAGE_ID, SAMPLE_USER_ID, getTestImageHash(), SAMPLE_IMAGE_ID));
+
+        // The job is removed as soon as all conversions have finished.
+        verify(imageConversionJobRepository, timeout(10000)).deleteById(SAMPLE_IMAGE_ID);
+        assertEquals(0, memoryBudget.getUsedBytes());
+
+        assertTrue(Files.exists(Path.of("testImages/" + SAMPLE_IMAGE_ID + "/image.png")));
+        assertTrue(Files.exists(Path.of("testImages/" + SAMPLE_IMAGE_ID + "/image.webp")));
+        assertFalse(Files.exists(Path.of("testImages/" + SAMPLE_IMAGE_ID + "/image.original")));
+    }
+
+    /**
+     * Tests whether images deleted while their conversions are queued are neither encoded nor leave files behind.
+     */
+    @Test
+    void acceptDeletedImageTest() throws IOException {
+        when(configurator.getString("Image.servedImageFormats")).thenReturn("png,webp");
+        when(configurator.getString("Image.imagePath")).thenReturn("testImages/");
+
+        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository, imageConversionJobRepository, conversionScheduler, imageDecoder, imageCache, imageExistenceCache, existenceFilter, new FileSystemImageStore(configurator), new LeaseManager(mongoOperations));
+
+        MockMultipartFile multipartFile = new MockMultipartFile("file", this.getClass().getClassLoader().getResourceAsStream("com/mealtiger/backend/imageio/testImages/DefaultTestImage/TestImage.jpg"));
+
+        // The image has been deleted before its conversions have started.
+        when(imageMetadataRepository.existsById(SAMPLE_IMAGE_ID)).thenReturn(false);
+
+        controller.acceptImage(multipartFile, SAMPLE_IMAGE_ID, SAMPLE_USER_ID, ImageConversionScheduler.Priority.INTERACTIVE);
+
+        verify(imageConversionJobRepository, timeout(10000)).deleteById(SAMPLE_IMAGE_ID);
+        assertEquals(0, memoryBudget.getUsedBytes());
+
+        verifyNoInteractions(pngAdapter, webPAdapter);
+        assertFalse(Files.exists(Path.of("testImages/" + SAMPLE_IMAGE_ID)));
+    }
+
+    /**
+     * Tests whether the stored original, job and metadata are deleted whenever an image cannot be accepted.
+     */
+    @Test
+    void acceptImageFailureTest() throws IOException {
+        when(configurator.getString("Image.servedImageFormats")).thenReturn("png,webp");
+        when(configurator.getString("Image.imagePath")).thenReturn("testImages/");
+
+        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository, imageConversionJobRepository, conversionScheduler, imageDecoder, imageCache, imageExistenceCache, existenceFilter, new FileSystemImageStore(configurator), new LeaseManager(mongoOperations));
+
+        MockMultipartFile multipartFile = new MockMultipartFile("file", this.getClass().getClassLoader().getResourceAsStream("com/mealtiger/backend/imageio/testImages/DefaultTestImage/TestImage.jpg"));
+
+        when(imageMetadataRepository.save(any())).thenThrow(new IllegalStateException("Database unavailable"));
+
+        assertThrows(IllegalStateException.class, () -> controller.acceptImage(multipartFile, SAMPLE_IMAGE_ID, SAMPLE_USER_ID, ImageConversionScheduler.Priority.INTERACTIVE));
+
+        verify(imageConversionJobRepository).deleteById(SAMPLE_IMAGE_ID);
+        verify(imageMetadataRepository).deleteById(SAMPLE_IMAGE_ID);
+        assertFalse(Files.exists(Path.of("testImages/" + SAMPLE_IMAGE_ID)));
+        assertEquals(0, memoryBudget.getUsedBytes());
+        verifyNoInteractions(pngAdapter, webPAdapter);
+    }
+
+    /**
+     * Tests whether a rejected file does not affect the other files of an asynchronous batch upload.
+     */
+    @Test
+    void acceptImagesRejectedFileTest() throws IOException {
+        when(configurator.getString("Image.servedImageFormats")).thenReturn("png");
+        when(configurator.getString("Image.imagePath")).thenReturn("testImages/");
+
+        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository, imageConversionJobRepository, conversionScheduler, imageDecoder, imageCache, imageExistenceCache, existenceFilter, new FileSystemImageStore(configurator), new LeaseManager(mongoOperations));
+
+        when(pngAdapter.convert(any())).thenReturn("PNG".getBytes());
+        when(imageMetadataRepository.existsById(anyString())).thenReturn(true);
+
+        MockMultipartFile unsupportedFile = new MockMultipartFile("files", "NOT AN IMAGE".getBytes());
+        List<ImageUploadResponse> results = controller.acceptImages(List.of(unsupportedFile, getTestImageFile()), SAMPLE_USER_ID, ImageConversionScheduler.Priority.BULK);
+
+        assertEquals(400, results.get(0).getStatus());
+        assertNull(results.get(0).getId());
+        assertNotNull(results.get(0).getError());
+
+        String uuid = results.get(1).getId();
+        assertEquals(202, results.get(1).getStatus());
+        verify(imageConversionJobRepository, timeout(10000)).deleteById(uuid);
+        assertTrue(Files.exists(Path.of("testImages/" + uuid + "/image.png")));
+    }
+
+    /**
+     * Tests getting the conversion state of an image.
+     */
+    @Test
+    void getConversionStatusTest() throws IOException {
+        when(configurator.getString("Image.imagePath")).thenReturn("testImages/");
+
+        createTestImages();
+
+        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository, imageConversionJobRepository, conversionScheduler, imageDecoder, imageCache, imageExistenceCache, existenceFilter, new FileSystemImageStore(configurator), new LeaseManager(mongoOperations));
+
+        // PROCESSING
+        when(imageConversionJobRepository.findById(SAMPLE_IMAGE_ID)).thenReturn(Optional.of(new ImageConversionJob(SAMPLE_IMAGE_ID, ImageConversionJob.Status.PROCESSING, "image/jpeg")));
+        ImageConversionJobResponse response = (ImageConversionJobResponse) controller.getConversionStatus(SAMPLE_IMAGE_ID);
+        assertEquals("PROCESSING", response.getStatus());
+        assertEquals(List.of("webp", "png", "jpeg", "gif", "bmp"), response.getAvailableFormats());
+
+        // DONE
+        when(imageConversionJobRepository.findById(SAMPLE_IMAGE_ID)).thenReturn(Optional.empty());
+        when(imageMetadataRepository.existsById(SAMPLE_IMAGE_ID)).thenReturn(true);
+        assertEquals("DONE", ((ImageConversionJobResponse) controller.getConversionStatus(SAMPLE_IMAGE_ID)).getStatus());
+
+        // NOT FOUND
+        when(imageMetadataRepository.existsById(SAMPLE_IMAGE_ID)).thenReturn(false);
+        assertThrowsExactly(EntityNotFoundException.class, () -> controller.getConversionStatus(SAMPLE_IMAGE_ID));
+    }
+
+    /**
+     * Tests getting images whose conversion has not finished yet.
+     */
+    @Test
+    void getPartiallyConvertedImageTest() throws IOException, HttpMediaTypeNotAcceptableException {
+        when(configurator.getString("Image.imagePath")).thenReturn("testImages/");
+        when(configurator.getString("Image.servedImageMediaTypes")).thenReturn("image/png;q=1.0,image/jpeg;q=1.0,image/bmp;q=1.0,image/webp;q=1.0,image/gif;q=1.0");
+
+        Files.createDirectories(Path.of("testImages/" + SAMPLE_IMAGE_ID));
+        Files.writeString(Path.of("testImages/" + SAMPLE_IMAGE_ID + "/image.original"), "ORIGINAL");
+        Files.writeString(Path.of("testImages/" + SAMPLE_IMAGE_ID + "/image.png"), "PNG");
+
+        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository, imageConversionJobRepository, conversionScheduler, imageDecoder, imageCache, imageExistenceCache, existenceFilter, new FileSystemImageStore(configurator), new LeaseManager(mongoOperations));
+
+        when(imageConversionJobRepository.findById(SAMPLE_IMAGE_ID)).thenReturn(Optional.of(new ImageConversionJob(SAMPLE_IMAGE_ID, ImageConversionJob.Status.PROCESSING, "image/jpeg")));
+
+        // Already converted formats are served.
+        assertEquals("PNG", getResourceAsString(controller, "image/webp,image/png;q=0.8"));
+
+        // The original is served whenever no acceptable format has been converted yet.
+        assertEquals("ORIGINAL", getResourceAsString(controller, "image/webp"));
+        assertEquals(MediaType.IMAGE_JPEG, controller.getBestSuitedImage(SAMPLE_IMAGE_ID, "image/webp", null).getHeaders().getContentType());
+    }
+
+    /**
+     * Tests saving only the original of images.
+     */
+    @Test
+    void saveOriginalImageTest() throws IOException {
+        when(configurator.getString("Image.imagePath")).thenReturn("testImages/");
+
+        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository, imageConversionJobRepository, conversionScheduler, imageDecoder, imageCache, imageExistenceCache, existenceFilter, new FileSystemImageStore(configurator), new LeaseManager(mongoOperations));
+
+        MockMultipartFile multipartFile = new MockMultipartFile("file", this.getClass().getClassLoader().getResourceAsStream("com/mealtiger/backend/imageio/testImages/DefaultTestImage/TestImage.jpg"));
+
+        controller.saveOriginalImage(multipartFile, SAMPLE_IMAGE_ID, SAMPLE_USER_ID);
+
+        assertTrue(Files.exists(Path.of("testImages/" + SAMPLE_IMAGE_ID + "/image.original")));
+        verify(imageMetadataRepository).save(new ImageMetadata(SAMPLE_IMAGE_ID, SAMPLE_USER_ID, getTestImageHash(), SAMPLE_IMAGE_ID));
+        verifyNoInteractions(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter);
+    }
+
+    /**
+     * Tests saving only the original of images uploaded as raw request body.
+     */
+    @Test
+    void saveOriginalRawImageTest() throws IOException {
+        when(configurator.getString("Image.imagePath")).thenReturn("testImages/");
+        when(configurator.getString("Image.maxFileSize")).thenReturn("5MB");
+
+        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository, imageConversionJobRepository, conversionScheduler, imageDecoder, imageCache, imageExistenceCache, existenceFilter, new FileSystemImageStore(configurator), new LeaseManager(mongoOperations));
+
+        MockMultipartFile multipartFile = getTestImageFile();
+
+        try (InputStream inputStream = multipartFile.getInputStream()) {
+            controller.saveOriginalImage(inputStream, multipartFile.getSize(), SAMPLE_IMAGE_ID, SAMPLE_USER_ID);
+        }
+
+        assertTrue(Files.exists(Path.of("testImages/" + SAMPLE_IMAGE_ID + "/image.original")));
+        verify(imageMetadataRepository).save(new ImageMetadata(SAMPLE_IMAGE_ID, SAMPLE_USER_ID, getTestImageHash(), SAMPLE_IMAGE_ID));
+        verifyNoInteractions(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter);
+
+        // Without a Content-Length header, the size of the body is unknown.
+        try (InputStream inputStream = multipartFile.getInputStream()) {
+            assertThrows(InvalidRequestFormatException.class, () -> controller.saveOriginalImage(inputStream, -1, SAMPLE_IMAGE_ID, SAMPLE_USER_ID));
+        }
+    }
+
+    /**
+     * Tests converting images when they are requested for the first time.
+     */
+    @Test
+    void getLazilyConvertedImageTest() throws Exception {
+        when(configurator.getString("Image.imagePath")).thenReturn("testImages/");
+        when(configurator.getString("Image.servedImageMediaTypes")).thenReturn("image/png;q=1.0,image/jpeg;q=1.0,image/bmp;q=1.0,image/webp;q=1.0,image/gif;q=1.0");
+
+        Files.createDirectories(Path.of("testImages/" + SAMPLE_IMAGE_ID));
+        try (InputStream inputStream = Objects.requireNonNull(this.getClass().getClassLoader().getResourceAsStream("com/mealtiger/backend/imageio/testImages/DefaultTestImage/TestImage.jpg"))) {
+            Files.write(Path.of("testImages/" + SAMPLE_IMAGE_ID + "/image.original"), inputStream.readAllBytes());
+        }
+
+        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository, imageConversionJobRepository, conversionScheduler, imageDecoder, imageCache, imageExistenceCache, existenceFilter, new FileSystemImageStore(configurator), new LeaseManager(mongoOperations));
+
+        CountDownLatch conversionStarted = new CountDownLatch(1);
+        CountDownLatch conversionReleased = new CountDownLatch(1);
+
+        when(webPAdapter.convert(any())).thenAnswer(invocation -> {
+            conversionStarted.countDown();
+            assertTrue(conversionReleased.await(10, TimeUnit.SECONDS));
+            return "WEBP".getBytes();
+        });
+
+        ExecutorService requests = Executors.newFixedThreadPool(2);
+
+        try {
+            Future<String> firstRequest = requests.submit(() -> getResourceAsString(controller, "image/webp"));
+            assertTrue(conversionStarted.await(10, TimeUnit.SECONDS));
+            Future<String> secondRequest = requests.submit(() -> getResourceAsString(controller, "image/webp"));
+
+            conversionReleased.countDown();
+
+            assertEquals("WEBP", firstRequest.get());
+            assertEquals("WEBP", secondRequest.get());
+        } finally {
+            requests.shutdownNow();
+        }
+
+        // Both requests share one conversion. Later requests are served from disk.
+        assertEquals("WEBP", getResourceAsString(controller, "image/webp"));
+        verify(webPAdapter, times(1)).convert(any());
+        assertTrue(Files.exists(Path.of("testImages/" + SAMPLE_IMAGE_ID + "/image.webp")));
+    }
+
+    /**
+     * Tests whether lazy conversions are submitted again instead of waiting for memory on a worker while the memory budget is used up.
+     */
+    @Test
+    void getLazilyConvertedImageMemoryBudgetTest() throws Exception {
+        when(configurator.getString("Image.imagePath")).thenReturn("testImages/");
+        when(configurator.getString("Image.servedImageMediaTypes")).thenReturn("image/webp;q=1.0");
+
+        Files.createDirectories(Path.of("testImages/" + SAMPLE_IMAGE_ID));
+        try (InputStream inputStream = Objects.requireNonNull(this.getClass().getClassLoader().getResourceAsStream("com/mealtiger/backend/imageio/testImages/DefaultTestImage/TestImage.jpg"))) {
+            Files.write(Path.of("testImages/" + SAMPLE_IMAGE_ID + "/image.original"), inputStream.readAllBytes());
+        }
+
+        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository, imageConversionJobRepository, conversionScheduler, imageDecoder, imageCache, imageExistenceCache, existenceFilter, new FileSystemImageStore(configurator), new LeaseManager(mongoOperations));
+
+        ImageMemoryBudget.Reservation reservation = memoryBudget.reserve(memoryBudget.getBudget() / 1024 * 1024);
+
+        // The request is rejected once the memory has not become available in time.
+        when(configurator.getInteger("Image.Limits.memoryBudgetTimeout")).thenReturn(100);
+        assertThrows(ServiceUnavailableException.class, () -> getResourceAsString(controller, "image/webp"));
+
+        when(configurator.getInteger("Image.Limits.memoryBudgetTimeout")).thenReturn(10000);
+        when(webPAdapter.convert(any())).thenReturn("WEBP".getBytes());
+
+        ExecutorService requests = Executors.newSingleThreadExecutor();
+
+        try {
+            Future<String> request = requests.submit(() -> getResourceAsString(controller, "image/webp"));
+            assertThrows(TimeoutException.class, () -> request.get(200, TimeUnit.MILLISECONDS));
+
+            reservation.close();
+
+            assertEquals("WEBP", request.get(10, TimeUnit.SECONDS));
+        } finally {
+            requests.shutdownNow();
+        }
+
+        verify(webPAdapter, times(1)).convert(any());
+        assertEquals(0, memoryBudget.getUsedBytes());
+    }
+
+    /**
+     * Tests picking the variant of an image to be served.
+     */
+    @Test
+    void resolveVariantTest() {
+        when(configurator.getString("Image.imagePath")).thenReturn("testImages/");
+        when(configurator.getString("Image.servedImageVariants")).thenReturn("thumb:320,medium:1024");
+
+        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository, imageConversionJobRepository, conversionScheduler, imageDecoder, imageCache, imageExistenceCache, existenceFilter, new FileSystemImageStore(configurator), new LeaseManager(mongoOperations));
+
+        assertNull(controller.resolveVariant(null, null));
+
+        // BY NAME
+        assertEquals("thumb", controller.resolveVariant("thumb", null));
+        assertEquals("medium", controller.resolveVariant("medium", 100));
+        assertNull(controller.resolveVariant("full", null));
+
+        // BY WIDTH
+        assertEquals("thumb", controller.resolveVariant(null, 100));
+        assertEquals("thumb", controller.resolveVariant(null, 320));
+        assertEquals("medium", controller.resolveVariant(null, 500));
+        assertNull(controller.resolveVariant(null, 2000));
+
+        // INVALID
+        assertThrowsExactly(InvalidRequestFormatException.class, () -> controller.resolveVariant("huge", null));
+        assertThrowsExactly(InvalidRequestFormatException.class, () -> controller.resolveVariant(null, 0));
+    }
+
+    /**
+     * Tests getting variants of an image.
+     */
+    @Test
+    void getImageVariantTest() throws IOException, HttpMediaTypeNotAcceptableException {
+        when(configurator.getString("Image.imagePath")).thenReturn("testImages/");
+        when(configurator.getString("Image.servedImageMediaTypes")).thenReturn("image/png;q=1.0,image/jpeg;q=1.0,image/bmp;q=1.0,image/webp;q=1.0,image/gif;q=1.0");
+
+        createTestImages();
+        Files.writeString(Path.of("testImages/" + SAMPLE_IMAGE_ID + "/image.thumb.webp"), "THUMB");
+
+        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository, imageConversionJobRepository, conversionScheduler, imageDecoder, imageCache, imageExistenceCache, existenceFilter, new FileSystemImageStore(configurator), new LeaseManager(mongoOperations));
+
+        assertEquals("THUMB", getResourceAsString(controller.getBestSuitedImage(SAMPLE_IMAGE_ID, "image/webp", "thumb")));
+
+        // Images saved before a variant was configured are served in full size.
+        assertEquals("WEBP", getResourceAsString(controller.getBestSuitedImage(SAMPLE_IMAGE_ID, "image/webp", "medium")));
+
+        // Variants are deleted together with the image.
+        when(imageMetadataRepository.findById(SAMPLE_IMAGE_ID)).thenReturn(Optional.of(new ImageMetadata(SAMPLE_IMAGE_ID, SAMPLE_USER_ID)));
+        controller.deleteImage(SAMPLE_IMAGE_ID, SAMPLE_USER_ID, false);
+        assertFalse(Files.exists(Path.of("testImages/" + SAMPLE_IMAGE_ID + "/image.thumb.webp")));
+    }
+
+    /**
+     * Tests converting variants of images when they are requested for the first time.
+     */
+    @Test
+    void getLazilyConvertedImageVariantTest() throws IOException, HttpMediaTypeNotAcceptableException {
+        when(configurator.getString("Image.imagePath")).thenReturn("testImages/");
+        when(configurator.getString("Image.servedImageMediaTypes")).thenReturn("image/png;q=1.0,image/jpeg;q=1.0,image/bmp;q=1.0,image/webp;q=1.0,image/gif;q=1.0");
+        when(configurator.getString("Image.servedImageVariants")).thenReturn("thumb:100");
+
+        Files.createDirectories(Path.of("testImages/" + SAMPLE_IMAGE_ID));
+        try (InputStream inputStream = Objects.requireNonNull(this.getClass().getClassLoader().getResourceAsStream("com/mealtiger/backend/imageio/testImages/DefaultTestImage/TestImage.jpg"))) {
+            Files.write(Path.of("testImages/" + SAMPLE_IMAGE_ID + "/image.original"), inputStream.readAllBytes());
+        }
+
+        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository, imageConversionJobRepository, conversionScheduler, imageDecoder, imageCache, imageExistenceCache, existenceFilter, new FileSystemImageStore(configurator), new LeaseManager(mongoOperations));
+
+        when(webPAdapter.convert(argThat(image -> image.getWidth() == 100))).thenReturn("THUMB".getBytes());
+
+        assertEquals("THUMB", getResourceAsString(controller.getBestSuitedImage(SAMPLE_IMAGE_ID, "image/webp", "thumb")));
+        assertTrue(Files.exists(Path.of("testImages/" + SAMPLE_IMAGE_ID + "/image.thumb.webp")));
     }
 
     /**
@@ -218,10 +1003,11 @@ class ImageIOControllerTest {
 
         createTestImages();
 
-        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository);
+        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository, imageConversionJobRepository, conversionScheduler, imageDecoder, imageCache, imageExistenceCache, existenceFilter, new FileSystemImageStore(configurator), new LeaseManager(mongoOperations));
 
         when(imageMetadataRepository.findById(SAMPLE_IMAGE_ID)).thenReturn(Optional.of(new ImageMetadata(SAMPLE_IMAGE_ID, SAMPLE_USER_ID)));
         assertEquals(ResponseEntity.noContent().build(), controller.deleteImage(SAMPLE_IMAGE_ID, SAMPLE_USER_ID, false));
+        verify(imageExistenceCache).invalidate(SAMPLE_IMAGE_ID);
 
         // UNAUTHORIZED
 
@@ -240,13 +1026,255 @@ class ImageIOControllerTest {
         assertThrowsExactly(EntityNotFoundException.class, () -> controller.deleteImage(SAMPLE_IMAGE_ID, SAMPLE_USER_ID, false));
     }
 
+    /**
+     * Tests whether identical uploads share their converted files.
+     */
+    @Test
+    void saveDuplicateImageTest() throws IOException, UploadException, HttpMediaTypeNotAcceptableException {
+        when(configurator.getString("Image.servedImageFormats")).thenReturn("png,webp");
+        when(configurator.getString("Image.servedImageMediaTypes")).thenReturn("image/png;q=1.0,image/webp;q=1.0");
+        when(configurator.getString("Image.servedImageVariants")).thenReturn("");
+        when(configurator.getString("Image.imagePath")).thenReturn("testImages/");
+
+        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository, imageConversionJobRepository, conversionScheduler, imageDecoder, imageCache, imageExistenceCache, existenceFilter, new FileSystemImageStore(configurator), new LeaseManager(mongoOperations));
+
+        when(pngAdapter.convert(any())).thenReturn("PNG".getBytes());
+        when(webPAdapter.convert(any())).thenReturn("WEBP".getBytes());
+
+        String duplicateImageId = SampleSource.getSampleUUIDs().get(0);
+        ImageMetadata imageMetadata = new ImageMetadata(SAMPLE_IMAGE_ID, SAMPLE_USER_ID, getTestImageHash(), SAMPLE_IMAGE_ID);
+        ImageMetadata duplicateMetadata = new ImageMetadata(duplicateImageId, SAMPLE_OTHER_USER_ID, getTestImageHash(), SAMPLE_IMAGE_ID);
+
+        controller.saveImage(getTestImageFile(), SAMPLE_IMAGE_ID, SAMPLE_USER_ID, ImageConversionScheduler.Priority.INTERACTIVE);
+        verify(imageMetadataRepository).save(imageMetadata);
+
+        // The second upload references the files of the first one.
+        when(imageMetadataRepository.findFirstByContentHash(getTestImageHash())).thenReturn(Optional.of(imageMetadata));
+        controller.saveImage(getTestImageFile(), duplicateImageId, SAMPLE_OTHER_USER_ID, ImageConversionScheduler.Priority.INTERACTIVE);
+
+        verify(imageMetadataRepository).save(duplicateMetadata);
+        verify(pngAdapter, times(1)).convert(any());
+        verify(webPAdapter, times(1)).convert(any());
+        assertFalse(Files.exists(Path.of("testImages/" + duplicateImageId)));
+
+        when(imageMetadataRepository.findById(duplicateImageId)).thenReturn(Optional.of(duplicateMetadata));
+        assertEquals("WEBP", getResourceAsString(controller.getBestSuitedImage(duplicateImageId, "image/webp", null)));
+    }
+
+    /**
+     * Tests whether files shared by identical uploads are locked on all nodes and not reused once they have been handed over.
+     */
+    @Test
+    void saveDuplicateImageLockTest() throws IOException, UploadException {
+        when(configurator.getString("Image.servedImageFormats")).thenReturn("png");
+        when(configurator.getString("Image.servedImageVariants")).thenReturn("");
+        when(configurator.getString("Image.imagePath")).thenReturn("testImages/");
+
+        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository, imageConversionJobRepository, conversionScheduler, imageDecoder, imageCache, imageExistenceCache, existenceFilter, new FileSystemImageStore(configurator), new LeaseManager(mongoOperations));
+
+        when(pngAdapter.convert(any())).thenReturn("PNG".getBytes());
+
+        String duplicateImageId = SampleSource.getSampleUUIDs().get(0);
+        String newFileSetId = SampleSource.getSampleUUIDs().get(1);
+
+        // The files of the identical image are handed over to another image while waiting for the lock.
+        when(imageMetadataRepository.findFirstByContentHash(getTestImageHash())).thenReturn(
+                Optional.of(new ImageMetadata(SAMPLE_IMAGE_ID, SAMPLE_USER_ID, getTestImageHash(), SAMPLE_IMAGE_ID)),
+                Optional.of(new ImageMetadata(newFileSetId, SAMPLE_USER_ID, getTestImageHash(), newFileSetId)));
+
+        controller.saveImage(getTestImageFile(), duplicateImageId, SAMPLE_OTHER_USER_ID, ImageConversionScheduler.Priority.INTERACTIVE);
+
+        verify(mongoOperations).upsert(any(), any(), eq(Lease.class));
+        verify(mongoOperations).remove(any(), eq(Lease.class));
+
+        // The upload is converted instead of referencing files which have been moved.
+        verify(imageMetadataRepository).save(new ImageMetadata(duplicateImageId, SAMPLE_OTHER_USER_ID, getTestImageHash(), duplicateImageId));
+        verify(pngAdapter, times(1)).convert(any());
+    }
+
+    /**
+     * Tests whether shared files are only deleted together with the last image referencing them.
+     */
+    @Test
+    void deleteDuplicateImageTest() throws IOException {
+        when(configurator.getString("Image.imagePath")).thenReturn("testImages/");
+
+        createTestImages();
+
+        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository, imageConversionJobRepository, conversionScheduler, imageDecoder, imageCache, imageExistenceCache, existenceFilter, new FileSystemImageStore(configurator), new LeaseManager(mongoOperations));
+
+        String firstDuplicateId = SampleSource.getSampleUUIDs().get(0);
+        String secondDuplicateId = SampleSource.getSampleUUIDs().get(1);
+        ImageMetadata imageMetadata = new ImageMetadata(SAMPLE_IMAGE_ID, SAMPLE_USER_ID, "hash", SAMPLE_IMAGE_ID);
+        ImageMetadata firstDuplicate = new ImageMetadata(firstDuplicateId, SAMPLE_USER_ID, "hash", SAMPLE_IMAGE_ID);
+        ImageMetadata secondDuplicate = new ImageMetadata(secondDuplicateId, SAMPLE_USER_ID, "hash", SAMPLE_IMAGE_ID);
+
+        // A REFERENCING IMAGE IS DELETED
+        when(imageMetadataRepository.findById(firstDuplicateId)).thenReturn(Optional.of(firstDuplicate));
+        when(imageMetadataRepository.findByFileSetId(SAMPLE_IMAGE_ID)).thenReturn(List.of(imageMetadata, firstDuplicate, secondDuplicate));
+        assertEquals(ResponseEntity.noContent().build(), controller.deleteImage(firstDuplicateId, SAMPLE_USER_ID, false));
+        assertTrue(Files.exists(Path.of("testImages/" + SAMPLE_IMAGE_ID + "/image.webp")));
+        verify(imageMetadataRepository).deleteById(firstDuplicateId);
+
+        // THE IMAGE HOLDING THE FILES IS DELETED
+        when(imageMetadataRepository.findById(SAMPLE_IMAGE_ID)).thenReturn(Optional.of(imageMetadata));
+        when(imageMetadataRepository.findByFileSetId(SAMPLE_IMAGE_ID)).thenReturn(List.of(imageMetadata, secondDuplicate));
+        assertEquals(ResponseEntity.noContent().build(), controller.deleteImage(SAMPLE_IMAGE_ID, SAMPLE_USER_ID, false));
+        assertFalse(Files.exists(Path.of("testImages/" + SAMPLE_IMAGE_ID)));
+        assertTrue(Files.exists(Path.of("testImages/" + secondDuplicateId + "/image.webp")));
+        verify(imageMetadataRepository).saveAll(List.of(new ImageMetadata(secondDuplicateId, SAMPLE_USER_ID, "hash", secondDuplicateId)));
+
+        // THE LAST REFERENCE IS DELETED
+        ImageMetadata lastReference = new ImageMetadata(secondDuplicateId, SAMPLE_USER_ID, "hash", secondDuplicateId);
+        when(imageMetadataRepository.findById(secondDuplicateId)).thenReturn(Optional.of(lastReference));
+        when(imageMetadataRepository.findByFileSetId(secondDuplicateId)).thenReturn(List.of(lastReference));
+        assertEquals(ResponseEntity.noContent().build(), controller.deleteImage(secondDuplicateId, SAMPLE_USER_ID, false));
+        assertFalse(Files.exists(Path.of("testImages/" + secondDuplicateId)));
+    }
+
+    /**
+     * Tests whether handed over files are moved back whenever the references cannot be updated.
+     */
+    @Test
+    void deleteDuplicateImageFailureTest() throws IOException {
+        when(configurator.getString("Image.imagePath")).thenReturn("testImages/");
+
+        createTestImages();
+
+        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository, imageConversionJobRepository, conversionScheduler, imageDecoder, imageCache, imageExistenceCache, existenceFilter, new FileSystemImageStore(configurator), new LeaseManager(mongoOperations));
+
+        String duplicateId = SampleSource.getSampleUUIDs().get(0);
+        ImageMetadata imageMetadata = new ImageMetadata(SAMPLE_IMAGE_ID, SAMPLE_USER_ID, "hash", SAMPLE_IMAGE_ID);
+        ImageMetadata duplicate = new ImageMetadata(duplicateId, SAMPLE_USER_ID, "hash", SAMPLE_IMAGE_ID);
+
+        when(imageMetadataRepository.findById(SAMPLE_IMAGE_ID)).thenReturn(Optional.of(imageMetadata));
+        when(imageMetadataRepository.findByFileSetId(SAMPLE_IMAGE_ID)).thenReturn(List.of(imageMetadata, duplicate));
+        when(imageMetadataRepository.saveAll(any())).thenThrow(IllegalStateException.class);
+
+        assertThrows(IllegalStateException.class, () -> controller.deleteImage(SAMPLE_IMAGE_ID, SAMPLE_USER_ID, false));
+
+        // The files stay where the references point at, and the image is not deleted.
+        assertTrue(Files.exists(Path.of("testImages/" + SAMPLE_IMAGE_ID + "/image.webp")));
+        assertFalse(Files.exists(Path.of("testImages/" + duplicateId)));
+        assertEquals(SAMPLE_IMAGE_ID, duplicate.getFileSetId());
+        verify(imageMetadataRepository, never()).deleteById(SAMPLE_IMAGE_ID);
+    }
+
+    /**
+     * Tests whether the file set of an image is looked up once and looked up again once its files have been handed over.
+     */
+    @Test
+    void getSharedImageTest() throws IOException, HttpMediaTypeNotAcceptableException {
+        when(configurator.getString("Image.imagePath")).thenReturn("testImages/");
+        when(configurator.getString("Image.servedImageMediaTypes")).thenReturn("image/webp;q=1.0");
+
+        createTestImages();
+
+        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository, imageConversionJobRepository, conversionScheduler, imageDecoder, imageCache, imageExistenceCache, existenceFilter, new FileSystemImageStore(configurator), new LeaseManager(mongoOperations));
+
+        String duplicateImageId = SampleSource.getSampleUUIDs().get(0);
+        when(imageMetadataRepository.findById(duplicateImageId)).thenReturn(
+                Optional.of(new ImageMetadata(duplicateImageId, SAMPLE_USER_ID, "hash", SAMPLE_IMAGE_ID)),
+                Optional.of(new ImageMetadata(duplicateImageId, SAMPLE_USER_ID, "hash", duplicateImageId)));
+
+        assertEquals("WEBP", getResourceAsString(controller.getBestSuitedImage(duplicateImageId, "image/webp", null)));
+        assertEquals("WEBP", getResourceAsString(controller.getBestSuitedImage(duplicateImageId, "image/webp", null)));
+        verify(imageMetadataRepository, times(1)).findById(duplicateImageId);
+
+        // The files are handed over by another node.
+        Files.move(Path.of("testImages/" + SAMPLE_IMAGE_ID), Path.of("testImages/" + duplicateImageId));
+
+        assertEquals("WEBP", getResourceAsString(controller.getBestSuitedImage(duplicateImageId, "image/webp", null)));
+        verify(imageMetadataRepository, times(2)).findById(duplicateImageId);
+    }
+
+    /**
+     * Tests moving images from the flat layout to the fan-out layout.
+     */
+    @Test
+    void migrateImageDirectoryTest() throws IOException, HttpMediaTypeNotAcceptableException {
+        when(configurator.getString("Image.imagePath")).thenReturn("testImages/");
+        when(configurator.getString("Image.servedImageMediaTypes")).thenReturn("image/png;q=1.0,image/jpeg;q=1.0,image/bmp;q=1.0,image/webp;q=1.0,image/gif;q=1.0");
+        when(configurator.getInteger("Image.Storage.fanOutLevels")).thenReturn(2);
+
+        createTestImages();
+
+        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository, imageConversionJobRepository, conversionScheduler, imageDecoder, imageCache, imageExistenceCache, existenceFilter, new FileSystemImageStore(configurator), new LeaseManager(mongoOperations));
+
+        Path flatDirectory = Path.of("testImages/" + SAMPLE_IMAGE_ID);
+        Path imageDirectory = new ImageStoreLayout(Path.of("testImages/"), 2).resolve(SAMPLE_IMAGE_ID);
+
+        // Images in the flat layout are served until they are moved.
+        assertEquals("WEBP", getResourceAsString(controller, "image/webp"));
+
+        // Images which are being converted are skipped.
+        when(imageConversionJobRepository.existsById(SAMPLE_IMAGE_ID)).thenReturn(true);
+        assertFalse(controller.migrateImageDirectory(SAMPLE_IMAGE_ID));
+        assertTrue(Files.exists(flatDirectory));
+
+        when(imageConversionJobRepository.existsById(SAMPLE_IMAGE_ID)).thenReturn(false);
+        assertTrue(controller.migrateImageDirectory(SAMPLE_IMAGE_ID));
+        assertFalse(Files.exists(flatDirectory));
+        assertTrue(Files.exists(imageDirectory.resolve("image.webp")));
+
+        // Moved images are served from the fan-out layout and are not moved again.
+        assertEquals("WEBP", getResourceAsString(controller, "image/webp"));
+        assertFalse(controller.migrateImageDirectory(SAMPLE_IMAGE_ID));
+    }
+
+    /**
+     * Tests deleting orphaned images and files of images.
+     */
+    @Test
+    void deleteOrphanedImageTest() throws IOException {
+        when(configurator.getString("Image.imagePath")).thenReturn("testImages/");
+
+        createTestImages();
+
+        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository, imageConversionJobRepository, conversionScheduler, imageDecoder, imageCache, imageExistenceCache, existenceFilter, new FileSystemImageStore(configurator), new LeaseManager(mongoOperations));
+
+        String missingImageId = SampleSource.getSampleUUIDs().get(0);
+
+        // FILES WHICH ARE REFERENCED OR BEING CONVERTED ARE KEPT
+        when(imageMetadataRepository.existsById(SAMPLE_IMAGE_ID)).thenReturn(true);
+        assertFalse(controller.deleteOrphanedFileSet(SAMPLE_IMAGE_ID));
+
+        when(imageMetadataRepository.existsById(SAMPLE_IMAGE_ID)).thenReturn(false);
+        when(imageConversionJobRepository.existsById(SAMPLE_IMAGE_ID)).thenReturn(true);
+        assertFalse(controller.deleteOrphanedFileSet(SAMPLE_IMAGE_ID));
+        assertTrue(Files.exists(Path.of("testImages/" + SAMPLE_IMAGE_ID)));
+
+        // ORPHANED FILES
+        when(imageConversionJobRepository.existsById(SAMPLE_IMAGE_ID)).thenReturn(false);
+        assertTrue(controller.deleteOrphanedFileSet(SAMPLE_IMAGE_ID));
+        assertFalse(Files.exists(Path.of("testImages/" + SAMPLE_IMAGE_ID)));
+        verify(imageCache).invalidate(SAMPLE_IMAGE_ID);
+
+        // ORPHANED IMAGE
+        createTestImages();
+
+        when(imageMetadataRepository.findById(SAMPLE_IMAGE_ID)).thenReturn(Optional.of(new ImageMetadata(SAMPLE_IMAGE_ID, SAMPLE_USER_ID)));
+        assertTrue(controller.deleteOrphanedImage(SAMPLE_IMAGE_ID));
+        assertFalse(Files.exists(Path.of("testImages/" + SAMPLE_IMAGE_ID)));
+        verify(imageMetadataRepository).deleteById(SAMPLE_IMAGE_ID);
+
+        // ORPHANED IMAGE WITHOUT FILES
+        when(imageMetadataRepository.findById(missingImageId)).thenReturn(Optional.of(new ImageMetadata(missingImageId, SAMPLE_USER_ID)));
+        assertTrue(controller.deleteOrphanedImage(missingImageId));
+        verify(imageMetadataRepository).deleteById(missingImageId);
+        verify(imageExistenceCache).invalidate(missingImageId);
+
+        // DELETED IN THE MEANTIME
+        assertFalse(controller.deleteOrphanedImage(SampleSource.getSampleUUIDs().get(1)));
+    }
+
     /**
      * Tests the doesImageExist method in ImageIOController.
      */
     @Test
     void doesImageExistTest() {
         when(configurator.getString("Image.imagePath")).thenReturn("testImages/");
-        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository);
+        ImageIOController controller = new ImageIOController(bitmapAdapter, gifAdapter, jpegAdapter, pngAdapter, webPAdapter, configurator, imageMetadataRepository, imageConversionJobRepository, conversionScheduler, imageDecoder, imageCache, imageExistenceCache, existenceFilter, new FileSystemImageStore(configurator), new LeaseManager(mongoOperations));
 
         when(imageMetadataRepository.existsById(SAMPLE_IMAGE_ID)).thenReturn(true);
         assertTrue(controller.doesImageExist(SAMPLE_IMAGE_ID));
@@ -257,6 +1285,24 @@ class ImageIOControllerTest {
 
     // HELPER METHODS
 
+    /**
+     * @return Upload of the default test image.
+     */
+    private MockMultipartFile getTestImageFile() throws IOException {
+        return new MockMultipartFile("file", this.getClass().getClassLoader().getResourceAsStream("com/mealtiger/backend/imageio/testImages/DefaultTestImage/TestImage.jpg"));
+    }
+
+    /**
+     * @return Hex encoded SHA-256 hash of the default test image.
+     */
+    private String getTestImageHash() throws IOException {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(getTestImageFile().getBytes()));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     /**
      * This method creates dummy image files for the different formats.
      */
@@ -300,15 +1346,14 @@ class ImageIOControllerTest {
     }
 
     /**
-     * Gets the result of the getBestSuitedImage method in ImageIOController and converts its body to a String.
-     * @param controller ImageIOController to be used to call the method on.
-     * @param acceptedMediaTypes MediaTypes accepted.
+     * Converts the body of a response to a String.
+     * @param response Response of the getBestSuitedImage method in ImageIOController.
      * @return Content as a string (Attention: Only up to 16 Bytes/characters!).
      */
-    private String getResourceAsString(ImageIOController controller, List<MediaType> acceptedMediaTypes) throws IOException, HttpMediaTypeNotAcceptableException {
+    private String getResourceAsString(ResponseEntity<Resource> response) throws IOException {
         String result;
 
-        try (ReadableByteChannel channel = Objects.requireNonNull(controller.getBestSuitedImage(SAMPLE_IMAGE_ID, acceptedMediaTypes).getBody()).readableChannel()) {
+        try (ReadableByteChannel channel = Objects.requireNonNull(response.getBody()).readableChannel()) {
             ByteBuffer buffer = ByteBuffer.allocate(16);
             channel.read(buffer);
             result = new String(buffer.array());
@@ -317,4 +1362,14 @@ class ImageIOControllerTest {
         return result.trim();
     }
 
+    /**
+     * Gets the result of the getBestSuitedImage method in ImageIOController and converts its body to a String.
+     * @param controller ImageIOController to be used to call the method on.
+     * @param acceptHeader Accept header of the request.
+     * @return Content as a string (Attention: Only up to 16 Bytes/characters!).
+     */
+    private String getResourceAsString(ImageIOController controller, String acceptHeader) throws IOException, HttpMediaTypeNotAcceptableException {
+        return getResourceAsString(controller.getBestSuitedImage(SAMPLE_IMAGE_ID, acceptHeader, null));
+    }
+
 }
@@ -0,0 +1,95 @@
+package com.mealtiger.backend.rest.controller;
+
+import com.mealtiger.backend.configuration.Configurator;
+import com.mealtiger.backend.configuration.exceptions.InvalidConfigPropertyException;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.springframework.http.MediaType;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@MockitoSettings
+@Tag("unit")
+class ImageMediaTypeNegotiatorTest {
+
+    private static final String CHROME_ACCEPT_HEADER = "text/html,application/xhtml+xml,application/xml;q=0.9,image/webp,image/apng,*/*;q=0.8";
+
+    @Mock
+    private Configurator configurator;
+
+    /**
+     * Tests whether served media types are ordered by how well they suit the client.
+     */
+    @Test
+    void negotiateTest() {
+        when(configurator.getString("Image.servedImageMediaTypes")).thenReturn("image/png;q=0.9,image/jpeg;q=1.0,image/webp;q=1.0");
+
+        ImageMediaTypeNegotiator negotiator = new ImageMediaTypeNegotiator(configurator);
+
+        assertEquals(List.of(MediaType.parseMediaType("image/webp"), MediaType.IMAGE_JPEG, MediaType.IMAGE_PNG),
+                negotiator.getNegotiation(CHROME_ACCEPT_HEADER).mediaTypes());
+        assertEquals(List.of(MediaType.IMAGE_PNG), negotiator.getNegotiation("image/png").mediaTypes());
+        assertEquals(List.of(), negotiator.getNegotiation("image/bmp").mediaTypes());
+        assertEquals("png, jpeg, webp", negotiator.getServedSubtypes());
+    }
+
+    /**
+     * Tests whether the smallest of the media types the client accepts equally is moved to the front.
+     */
+    @Test
+    void orderBySizeTest() {
+        when(configurator.getString("Image.servedImageMediaTypes")).thenReturn("image/png;q=1.0,image/jpeg;q=0.5,image/gif;q=0.5");
+
+        ImageMediaTypeNegotiator negotiator = new ImageMediaTypeNegotiator(configurator);
+        MediaType imageGif = MediaType.parseMediaType("image/gif");
+
+        ImageMediaTypeNegotiator.Negotiation negotiation = negotiator.getNegotiation("image/png,image/jpeg,image/gif;q=0.5");
+        assertEquals(List.of(MediaType.IMAGE_PNG, MediaType.IMAGE_JPEG, imageGif), negotiation.mediaTypes());
+        assertEquals(Map.of(MediaType.IMAGE_PNG, 1.0, MediaType.IMAGE_JPEG, 0.5), negotiation.sizeWeights());
+
+        // JPEG is weighted half, thus it is served if it is less than half the size of PNG.
+        assertEquals(List.of(MediaType.IMAGE_JPEG, MediaType.IMAGE_PNG, imageGif),
+                negotiation.orderBySize(Map.of(MediaType.IMAGE_PNG, 400L, MediaType.IMAGE_JPEG, 100L, imageGif, 10L)));
+        assertEquals(List.of(MediaType.IMAGE_PNG, MediaType.IMAGE_JPEG, imageGif),
+                negotiation.orderBySize(Map.of(MediaType.IMAGE_PNG, 400L, MediaType.IMAGE_JPEG, 300L)));
+        // Unknown sizes keep the negotiated order.
+        assertSame(negotiation.mediaTypes(), negotiation.orderBySize(Map.of(MediaType.IMAGE_JPEG, 100L)));
+
+        // A single media type accepted most leaves nothing to be picked by size.
+        assertTrue(negotiator.getNegotiation("image/png,image/jpeg;q=0.9").sizeWeights().isEmpty());
+        // The most specific media range applies.
+        assertTrue(negotiator.getNegotiation("image/*,image/jpeg;q=0.1,image/gif;q=0.1").sizeWeights().isEmpty());
+    }
+
+    /**
+     * Tests whether the config is read only once and negotiations are memoized per Accept header.
+     */
+    @Test
+    void memoizationTest() {
+        when(configurator.getString("Image.servedImageMediaTypes")).thenReturn("image/png;q=1.0,image/webp;q=1.0");
+
+        ImageMediaTypeNegotiator negotiator = new ImageMediaTypeNegotiator(configurator);
+
+        ImageMediaTypeNegotiator.Negotiation negotiation = negotiator.getNegotiation(CHROME_ACCEPT_HEADER);
+        assertSame(negotiation, negotiator.getNegotiation(CHROME_ACCEPT_HEADER));
+        assertNotSame(negotiation, negotiator.getNegotiation("image/png,image/webp"));
+
+        verify(configurator, times(1)).getString("Image.servedImageMediaTypes");
+    }
+
+    /**
+     * Tests whether invalid served media types are rejected as soon as the negotiator is created.
+     */
+    @Test
+    void invalidServedMediaTypesTest() {
+        when(configurator.getString("Image.servedImageMediaTypes")).thenReturn("image/png;q=1.0,png");
+
+        assertThrows(InvalidConfigPropertyException.class, () -> new ImageMediaTypeNegotiator(configurator));
+    }
+}
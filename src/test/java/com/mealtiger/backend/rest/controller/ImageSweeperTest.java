@@ -0,0 +1,176 @@
+package com.mealtiger.backend.rest.controller;
+
+import com.mealtiger.backend.configuration.Configurator;
+import com.mealtiger.backend.database.lease.LeaseManager;
+import com.mealtiger.backend.database.model.image_metadata.ImageMetadata;
+import com.mealtiger.backend.database.model.recipe.Recipe;
+import com.mealtiger.backend.database.model.user.UserMetadata;
+import com.mealtiger.backend.database.repository.ImageMetadataRepository;
+import com.mealtiger.backend.database.repository.RecipeRepository;
+import com.mealtiger.backend.database.repository.UserMetadataRepository;
+import com.mealtiger.backend.imageio.store.FileSet;
+import com.mealtiger.backend.imageio.store.ImageStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoSettings;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@MockitoSettings
+@Tag("unit")
+class ImageSweeperTest {
+
+    private static final String REFERENCED_IMAGE_ID = "9120d6cd-8820-464e-9bb1-d2fa049ce57b";
+    private static final String PROFILE_PICTURE_ID = "3f9a9e4c-5d3b-4c55-9e2c-1f1b8a6c2f10";
+    private static final String ORPHANED_IMAGE_ID = "6809c76b-5a48-44fe-85bf-d44cef12a828";
+    private static final String NEW_IMAGE_ID = "c2d9a6de-0f6b-4f8e-a1c3-7b4e8d2f9a01";
+    private static final String LEGACY_IMAGE_ID = "e7b1c5a2-3d4f-4a6b-8c9d-0e1f2a3b4c5d";
+
+    @Mock
+    private ImageIOController imageIOController;
+    @Mock
+    private ImageMetadataRepository imageMetadataRepository;
+    @Mock
+    private RecipeRepository recipeRepository;
+    @Mock
+    private UserMetadataRepository userMetadataRepository;
+    @Mock
+    private ImageStore imageStore;
+    @Mock
+    private LeaseManager leaseManager;
+    @Mock
+    private Configurator configurator;
+
+    private ImageSweeper imageSweeper;
+
+    @BeforeEach
+    void beforeEach() {
+        lenient().when(configurator.getInteger("Image.Sweeper.interval")).thenReturn(360);
+        lenient().when(configurator.getInteger("Image.Sweeper.gracePeriod")).thenReturn(60);
+        lenient().when(configurator.getInteger("Image.Sweeper.batchSize")).thenReturn(2);
+        lenient().when(configurator.getInteger("Image.Sweeper.pause")).thenReturn(0);
+        lenient().when(configurator.getInteger("Image.Sweeper.leaseDuration")).thenReturn(10);
+
+        imageSweeper = new ImageSweeper(imageIOController, imageMetadataRepository, recipeRepository, userMetadataRepository,
+                imageStore, leaseManager, configurator, new SimpleMeterRegistry());
+    }
+
+    /**
+     * Tests whether orphaned images are deleted once they are older than the grace period.
+     */
+    @Test
+    void sweepImagesTest() throws IOException, InterruptedException {
+        Instant old = Instant.now().minus(Duration.ofDays(2));
+
+        when(leaseManager.acquire(eq(ImageSweeper.LEASE_NAME), any())).thenReturn(true);
+        when(imageMetadataRepository.streamAllFileSets()).thenReturn(Stream.of(
+                new ImageMetadata(REFERENCED_IMAGE_ID, null, null, REFERENCED_IMAGE_ID, old),
+                new ImageMetadata(PROFILE_PICTURE_ID, null, null, PROFILE_PICTURE_ID, old),
+                new ImageMetadata(ORPHANED_IMAGE_ID, null, null, ORPHANED_IMAGE_ID, old),
+                new ImageMetadata(NEW_IMAGE_ID, null, null, NEW_IMAGE_ID, Instant.now()),
+                new ImageMetadata(LEGACY_IMAGE_ID, null, null, LEGACY_IMAGE_ID, null)));
+        when(imageStore.list()).thenReturn(Stream.empty());
+        when(imageStore.exists(anyString())).thenReturn(true);
+
+        Recipe recipe = new Recipe(null, null, null, null, 0, null, 0, new UUID[]{UUID.fromString(REFERENCED_IMAGE_ID)});
+        when(recipeRepository.findImagesByImagesIn(anyCollection())).thenReturn(List.of(recipe), List.of(), List.of());
+        when(userMetadataRepository.findProfilePicturesByProfilePictureIdIn(anyCollection()))
+                .thenReturn(List.of(new UserMetadata("user", null, PROFILE_PICTURE_ID)), List.of(), List.of());
+        when(imageIOController.deleteOrphanedImage(ORPHANED_IMAGE_ID)).thenReturn(true);
+
+        ImageSweeper.SweepReport report = imageSweeper.sweep();
+
+        assertEquals(new ImageSweeper.SweepReport(1, 0, 0, 0), report);
+        verify(imageIOController).deleteOrphanedImage(ORPHANED_IMAGE_ID);
+        verifyNoMoreInteractions(imageIOController);
+        verify(imageMetadataRepository).updateMissingCreatedAtByIdIn(eq(List.of(LEGACY_IMAGE_ID)), any());
+
+        // The lease is held until the next sweep is due.
+        verify(leaseManager).acquire(ImageSweeper.LEASE_NAME, Duration.ofMinutes(360));
+    }
+
+    /**
+     * Tests whether orphaned files are deleted once they are older than the grace period.
+     */
+    @Test
+    void sweepFileSetsTest() throws IOException, InterruptedException {
+        long old = Instant.now().minus(Duration.ofDays(2)).toEpochMilli();
+
+        when(leaseManager.acquire(eq(ImageSweeper.LEASE_NAME), any())).thenReturn(true);
+        when(imageMetadataRepository.streamAllFileSets()).thenReturn(Stream.empty());
+        when(imageStore.list()).thenReturn(Stream.of(
+                new FileSet(REFERENCED_IMAGE_ID, 10, old),
+                new FileSet(ORPHANED_IMAGE_ID, 20, old),
+                new FileSet(NEW_IMAGE_ID, 30, Instant.now().toEpochMilli())));
+        when(imageMetadataRepository.findFileSetIdsByFileSetIdIn(anyCollection()))
+                .thenReturn(List.of(new ImageMetadata(PROFILE_PICTURE_ID, null, null, REFERENCED_IMAGE_ID, null)), List.of());
+        when(imageIOController.deleteOrphanedFileSet(ORPHANED_IMAGE_ID)).thenReturn(true);
+
+        ImageSweeper.SweepReport report = imageSweeper.sweep();
+
+        assertEquals(new ImageSweeper.SweepReport(0, 1, 20, 0), report);
+        verify(imageIOController).deleteOrphanedFileSet(ORPHANED_IMAGE_ID);
+        verifyNoMoreInteractions(imageIOController);
+    }
+
+    /**
+     * Tests whether missing files of referenced images are reported.
+     */
+    @Test
+    void missingFileSetTest() throws IOException, InterruptedException {
+        when(leaseManager.acquire(eq(ImageSweeper.LEASE_NAME), any())).thenReturn(true);
+        when(imageMetadataRepository.streamAllFileSets()).thenReturn(Stream.of(
+                new ImageMetadata(PROFILE_PICTURE_ID, null, null, PROFILE_PICTURE_ID, Instant.now())));
+        when(imageStore.list()).thenReturn(Stream.empty());
+        when(userMetadataRepository.findProfilePicturesByProfilePictureIdIn(anyCollection()))
+                .thenReturn(List.of(new UserMetadata("user", null, PROFILE_PICTURE_ID)));
+        when(imageStore.exists(PROFILE_PICTURE_ID)).thenReturn(false);
+
+        assertEquals(new ImageSweeper.SweepReport(0, 0, 0, 1), imageSweeper.sweep());
+        verifyNoInteractions(imageIOController);
+    }
+
+    // NEGATIVE TESTS
+
+    /**
+     * Tests whether nothing is swept while another node holds the lease.
+     */
+    @Test
+    void leaseHeldTest() throws IOException, InterruptedException {
+        when(leaseManager.acquire(eq(ImageSweeper.LEASE_NAME), any())).thenReturn(false);
+
+        assertNull(imageSweeper.sweep());
+        verifyNoInteractions(imageIOController, imageMetadataRepository, imageStore);
+    }
+
+    /**
+     * Tests whether a sweep stops once another node has taken over the lease.
+     */
+    @Test
+    void leaseLostTest() throws IOException {
+        when(leaseManager.acquire(eq(ImageSweeper.LEASE_NAME), any())).thenReturn(true, false);
+        when(imageMetadataRepository.streamAllFileSets()).thenReturn(Stream.of(
+                new ImageMetadata(ORPHANED_IMAGE_ID, null, null, ORPHANED_IMAGE_ID, Instant.now()),
+                new ImageMetadata(NEW_IMAGE_ID, null, null, NEW_IMAGE_ID, Instant.now()),
+                new ImageMetadata(LEGACY_IMAGE_ID, null, null, LEGACY_IMAGE_ID, Instant.now())));
+
+        assertThrows(IllegalStateException.class, () -> imageSweeper.sweep());
+        verify(userMetadataRepository, times(1)).findProfilePicturesByProfilePictureIdIn(anyCollection());
+        verifyNoInteractions(imageStore);
+    }
+}
@@ -1,6 +1,7 @@
 package com.mealtiger.backend.rest.controller;
 
 import com.mealtiger.backend.SampleSource;
+import com.mealtiger.backend.database.filter.ExistenceFilter;
 import com.mealtiger.backend.database.model.recipe.Ingredient;
 import com.mealtiger.backend.database.model.recipe.Rating;
 import com.mealtiger.backend.database.model.recipe.Recipe;
@@ -49,6 +50,7 @@ class RecipeControllerTest {
     );
 
     private RecipeRepository recipeRepository;
+    private ExistenceFilter existenceFilter;
 
     private RecipeController recipeController;
 
@@ -73,7 +75,9 @@ class RecipeControllerTest {
     @AfterEach
     void beforeAfterEach() {
         recipeRepository = mock(RecipeRepository.class);
-        recipeController = new RecipeController(recipeRepository);
+        existenceFilter = mock(ExistenceFilter.class);
+        when(existenceFilter.mightExist(eq(ExistenceFilter.Entity.RECIPES), anyString())).thenReturn(true);
+        recipeController = new RecipeController(recipeRepository, existenceFilter);
     }
 
     /**
@@ -177,6 +181,19 @@ class RecipeControllerTest {
         assertFalse(recipeController.doesRecipeExist("B"));
     }
 
+    /**
+     * This tests whether recipes rejected by the existence filter are not looked up.
+     */
+    @Test
+    void filteredRecipeTest() {
+        when(existenceFilter.mightExist(ExistenceFilter.Entity.RECIPES, "C")).thenReturn(false);
+
+        assertThrows(EntityNotFoundException.class, () -> recipeController.getRecipe("C"));
+        assertFalse(recipeController.doesRecipeExist("C"));
+        verify(recipeRepository, never()).findById("C");
+        verify(recipeRepository, never()).existsById("C");
+    }
+
     /**
      * This tests the deleteRecipe method by verifying whether the correct methods on RecipeRepository are called.
      */
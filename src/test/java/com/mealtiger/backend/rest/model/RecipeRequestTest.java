@@ -1,12 +1,15 @@
 package com.mealtiger.backend.rest.model;
 
+import com.mealtiger.backend.configuration.Configurator;
+import com.mealtiger.backend.database.model.image_metadata.validation.ImageExistenceCache;
 import com.mealtiger.backend.database.model.recipe.Ingredient;
+import com.mealtiger.backend.database.repository.ImageMetadataRepository;
+import com.mealtiger.backend.rest.Helper;
 import com.mealtiger.backend.rest.model.recipe.RecipeRequest;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 
-import jakarta.validation.Validation;
 import jakarta.validation.Validator;
 import jakarta.validation.ValidatorFactory;
 import java.util.UUID;
@@ -14,6 +17,7 @@ import java.util.UUID;
 import static com.mealtiger.backend.SampleSource.SAMPLE_USER_ID;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
 
 @Tag("unit")
 class RecipeRequestTest {
@@ -22,7 +26,10 @@ class RecipeRequestTest {
 
     @BeforeAll
     static void beforeAll() {
-        try (ValidatorFactory validatorFactory = Validation.buildDefaultValidatorFactory()) {
+        // No image exists in the mocked repository.
+        ImageExistenceCache imageExistenceCache = new ImageExistenceCache(mock(ImageMetadataRepository.class), mock(Configurator.class));
+
+        try (ValidatorFactory validatorFactory = Helper.buildValidatorFactory(imageExistenceCache)) {
             validator = validatorFactory.getValidator();
         }
     }
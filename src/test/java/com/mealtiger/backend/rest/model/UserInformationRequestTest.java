@@ -1,17 +1,21 @@
 package com.mealtiger.backend.rest.model;
 
+import com.mealtiger.backend.configuration.Configurator;
+import com.mealtiger.backend.database.model.image_metadata.validation.ImageExistenceCache;
 import com.mealtiger.backend.database.model.user.UserMetadata;
+import com.mealtiger.backend.database.repository.ImageMetadataRepository;
+import com.mealtiger.backend.rest.Helper;
 import com.mealtiger.backend.rest.model.user.UserInformationRequest;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 
-import jakarta.validation.Validation;
 import jakarta.validation.Validator;
 import jakarta.validation.ValidatorFactory;
 
 import static com.mealtiger.backend.SampleSource.SAMPLE_IMAGE_ID;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
 
 @Tag("unit")
 class UserInformationRequestTest {
@@ -20,7 +24,10 @@ class UserInformationRequestTest {
 
     @BeforeAll
     static void beforeAll() {
-        try (ValidatorFactory validatorFactory = Validation.buildDefaultValidatorFactory()) {
+        // No image exists in the mocked repository.
+        ImageExistenceCache imageExistenceCache = new ImageExistenceCache(mock(ImageMetadataRepository.class), mock(Configurator.class));
+
+        try (ValidatorFactory validatorFactory = Helper.buildValidatorFactory(imageExistenceCache)) {
             validator = validatorFactory.getValidator();
         }
     }